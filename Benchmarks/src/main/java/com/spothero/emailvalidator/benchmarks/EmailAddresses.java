@@ -0,0 +1,94 @@
+/*
+ * EmailAddresses
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Deterministic sets of email addresses for the benchmarks, so that every run measures the same inputs
+ */
+final class EmailAddresses {
+
+	static final String VALID = "valid";
+	static final String TYPO = "typo";
+	static final String INVALID = "invalid";
+	static final String LONG = "long";
+	static final String NON_ASCII = "nonAscii";
+	/** Mostly valid addresses, with typos and mistakes in roughly the proportions a signup form sees */
+	static final String REALISTIC = "realistic";
+
+	private static final int COUNT = 1024;
+	private static final String[] USERNAMES = new String[] { "john.smith", "jane_doe", "support", "a", "kim+signup", "m.o'brien", "user1234", "first.middle.last" };
+	private static final String[] DOMAINS = new String[] { "gmail.com", "yahoo.com", "hotmail.com", "aol.com", "comcast.net", "spothero.com", "example.co.uk", "mail.university.edu" };
+	private static final String[] TYPO_DOMAINS = new String[] { "gamil.com", "gmial.con", "yaho.com", "yahoo.co.uj", "hotmial.com", "hotmail.cmo", "aol.co", "comcats.net", "outlok.com" };
+	private static final String[] INVALID_ADDRESSES = new String[] { "", "plainaddress", "@gmail.com", "john smith@gmail.com", "john@", "john@gmail", "john@gmail.c", "john@-gmail.com", "john@gmail..com", "john@@gmail.com", ".john@gmail.com", "john@gmail.com." };
+	private static final String[] NON_ASCII_ADDRESSES = new String[] { "j\u00f6rg@gmail.com", "user@b\u00fccher.de", "\u0438\u0432\u0430\u043d@\u044f\u043d\u0434\u0435\u043a\u0441.\u0440\u0444", "jos\u00e9@gmial.com", "test@m\u00fcnchen.de", "\u7528\u6237@\u4f8b\u5b50.\u4e2d\u56fd" };
+
+	private EmailAddresses() { }
+
+	static String[] get(String mix) {
+		Random random = new Random(mix.hashCode());
+		String[] addresses = new String[COUNT];
+		for (int i = 0; i < COUNT; i++) {
+			addresses[i] = get(mix, random);
+		}
+		return addresses;
+	}
+
+	private static String get(String mix, Random random) {
+		if (mix.equals(VALID)) {
+			return pick(random, USERNAMES) + "@" + pick(random, DOMAINS);
+		} else if (mix.equals(TYPO)) {
+			return pick(random, USERNAMES) + "@" + pick(random, TYPO_DOMAINS);
+		} else if (mix.equals(INVALID)) {
+			return pick(random, INVALID_ADDRESSES);
+		} else if (mix.equals(LONG)) {
+			return repeat(pick(random, USERNAMES), 8) + "@" + repeat("subdomain.", 12) + pick(random, random.nextBoolean() ? DOMAINS : TYPO_DOMAINS);
+		} else if (mix.equals(NON_ASCII)) {
+			return pick(random, NON_ASCII_ADDRESSES);
+		} else if (mix.equals(REALISTIC)) {
+			final int roll = random.nextInt(100);
+			if (roll < 80) {
+				return get(VALID, random);
+			} else if (roll < 90) {
+				return get(TYPO, random);
+			} else if (roll < 97) {
+				return get(INVALID, random);
+			} else if (roll < 99) {
+				return get(NON_ASCII, random);
+			} else {
+				return get(LONG, random);
+			}
+		} else {
+			throw new IllegalArgumentException("Unknown address mix " + mix);
+		}
+	}
+
+	private static String pick(Random random, String[] strings) {
+		return strings[random.nextInt(strings.length)];
+	}
+
+	private static String repeat(String string, int count) {
+		StringBuilder builder = new StringBuilder(string.length() * count);
+		for (int i = 0; i < count; i++) {
+			builder.append(string);
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * EmailValidatorBenchmark
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.benchmarks;
+
+import com.spothero.emailvalidator.EmailCanonicalizer;
+import com.spothero.emailvalidator.EmailValidationResult;
+import com.spothero.emailvalidator.EmailValidationResult.ValidationError;
+import com.spothero.emailvalidator.EmailValidator;
+import com.spothero.emailvalidator.EmailValidatorConfiguration;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the public validation entry points, one address per operation, cycling through a fixed set of
+ * addresses of the chosen mix. The set is small enough for the suggestion cache to hold every domain in it, so the
+ * benchmarks that make typo suggestions also run with the cache turned off, which is what the first sight of each
+ * mistyped domain costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailValidatorBenchmark {
+
+	@Param({ EmailAddresses.REALISTIC, EmailAddresses.VALID, EmailAddresses.TYPO, EmailAddresses.INVALID, EmailAddresses.LONG, EmailAddresses.NON_ASCII })
+	public String mix;
+
+	private final EmailCanonicalizer mCanonicalizer = new EmailCanonicalizer();
+	private String[] mAddresses;
+	private int mIndex;
+
+	@Setup
+	public void setUp() {
+		mAddresses = EmailAddresses.get(mix);
+	}
+
+	@Benchmark
+	public ValidationError validateSyntax() {
+		return EmailValidator.validateSyntax(nextAddress());
+	}
+
+	@Benchmark
+	public String getAutocorrectSuggestion(Validator validator) {
+		return validator.validator.getSuggestion(nextAddress());
+	}
+
+	@Benchmark
+	public EmailValidationResult validateAndAutocorrect(Validator validator) {
+		return validator.validator.validate(nextAddress());
+	}
+
+	@Benchmark
+	public String canonicalize() {
+		return mCanonicalizer.canonicalize(nextAddress());
+	}
+
+	@Benchmark
+	public long getFingerprint() {
+		return mCanonicalizer.getFingerprint(nextAddress());
+	}
+
+	/**
+	 * A validator with the default settings apart from the size of its suggestion cache, shared by every thread as the
+	 * default validator would be
+	 */
+	@State(Scope.Benchmark)
+	public static class Validator {
+
+		@Param({ "0", "1024" })
+		public int suggestionCacheSize;
+
+		EmailValidator validator;
+
+		@Setup
+		public void setUp() {
+			EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+			configuration.suggestionCacheSize = suggestionCacheSize;
+			validator = new EmailValidator(configuration);
+		}
+	}
+
+	private String nextAddress() {
+		// The address count is a power of two
+		final String address = mAddresses[mIndex];
+		mIndex = (mIndex + 1) & (mAddresses.length - 1);
+		return address;
+	}
+}
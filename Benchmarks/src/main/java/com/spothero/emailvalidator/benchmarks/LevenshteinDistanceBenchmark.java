@@ -0,0 +1,88 @@
+/*
+ * LevenshteinDistanceBenchmark
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.benchmarks;
+
+import com.spothero.emailvalidator.EmailValidator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link EmailValidator#getLevenshteinDistance(char[], char[])} and
+ * {@link EmailValidator#getKeyboardDistance(char[], char[])} on pairs of strings of the same kinds that typo
+ * suggestions compare: domains against domains, and longer strings that need more than one machine word
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevenshteinDistanceBenchmark {
+
+	private static final int PAIR_COUNT = 256;
+
+	@Param({ EmailAddresses.VALID, EmailAddresses.TYPO, EmailAddresses.LONG, EmailAddresses.NON_ASCII })
+	public String mix;
+
+	private char[][] mFirst;
+	private char[][] mSecond;
+	private int mIndex;
+
+	@Setup
+	public void setUp() {
+		String[] addresses = EmailAddresses.get(mix);
+		String[] validAddresses = EmailAddresses.get(EmailAddresses.VALID);
+		mFirst = new char[PAIR_COUNT][];
+		mSecond = new char[PAIR_COUNT][];
+		for (int i = 0; i < PAIR_COUNT; i++) {
+			mFirst[i] = getDomain(addresses[i]).toCharArray();
+			mSecond[i] = getDomain(validAddresses[i]).toCharArray();
+		}
+	}
+
+	@Benchmark
+	public int getLevenshteinDistance() {
+		final int index = mIndex;
+		mIndex = (index + 1) & (PAIR_COUNT - 1);
+		return EmailValidator.getLevenshteinDistance(mFirst[index], mSecond[index]);
+	}
+
+	@Benchmark
+	public float getKeyboardDistance() {
+		final int index = mIndex;
+		mIndex = (index + 1) & (PAIR_COUNT - 1);
+		return EmailValidator.getKeyboardDistance(mFirst[index], mSecond[index]);
+	}
+
+	private static String getDomain(String address) {
+		return address.substring(address.indexOf('@') + 1);
+	}
+}
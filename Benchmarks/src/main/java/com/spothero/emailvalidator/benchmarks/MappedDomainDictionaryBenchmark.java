@@ -0,0 +1,124 @@
+/*
+ * MappedDomainDictionaryBenchmark
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.benchmarks;
+
+import com.spothero.emailvalidator.MappedDomainDictionary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closest matches in a memory mapped dictionary of random domains, for domains that are one edit from an entry and for
+ * unknown domains of various lengths, with the bound the validator uses at its default domain tolerance
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappedDomainDictionaryBenchmark {
+
+	private static final String TYPO = "typo";
+	private static final int QUERY_COUNT = 64;
+	private static final float DOMAIN_TOLERANCE = 0.25f;
+
+	@Param({ "20000", "200000" })
+	public int size;
+
+	/** The length of unknown domains, or "typo" for entries with one character left out */
+	@Param({ TYPO, "20", "80", "320" })
+	public String query;
+
+	private MappedDomainDictionary mDictionary;
+	private String[] mQueries;
+	private int mIndex;
+
+	@Setup
+	public void setUp() throws IOException {
+		Random random = new Random(size);
+		List<String> domains = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			domains.add(randomLabel(random, 4 + random.nextInt(14)) + (random.nextBoolean() ? ".com" : ".net"));
+		}
+
+		File file = File.createTempFile("domains", ".dict");
+		file.deleteOnExit();
+		FileOutputStream outputStream = new FileOutputStream(file);
+		try {
+			MappedDomainDictionary.write(domains, outputStream);
+		} finally {
+			outputStream.close();
+		}
+		mDictionary = MappedDomainDictionary.open(file);
+
+		mQueries = new String[QUERY_COUNT];
+		for (int i = 0; i < QUERY_COUNT; i++) {
+			if (query.equals(TYPO)) {
+				final String domain = domains.get(random.nextInt(size));
+				final int index = random.nextInt(domain.length());
+				mQueries[i] = domain.substring(0, index) + domain.substring(index + 1);
+			} else {
+				mQueries[i] = randomLabel(random, Integer.parseInt(query) - 4) + ".com";
+			}
+		}
+	}
+
+	@Benchmark
+	public String findClosest() {
+		// The query count is a power of two
+		final String domain = mQueries[mIndex];
+		mIndex = (mIndex + 1) & (QUERY_COUNT - 1);
+		return mDictionary.findClosest(domain, 0, domain.length(), getMaxDistance(domain.length()));
+	}
+
+	// The largest distance for which distance / length is under the tolerance, as the validator works it out
+	private static int getMaxDistance(int length) {
+		int maxDistance = (int)(DOMAIN_TOLERANCE * length);
+		while (maxDistance >= 0 && !((float)maxDistance / length < DOMAIN_TOLERANCE)) {
+			maxDistance--;
+		}
+		return maxDistance;
+	}
+
+	private static String randomLabel(Random random, int length) {
+		char[] characters = new char[length];
+		for (int i = 0; i < length; i++) {
+			characters[i] = (char)('a' + random.nextInt(26));
+		}
+		return new String(characters);
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * MappedDomainDictionaryTypoBenchmark
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator.benchmarks;
+
+import com.spothero.emailvalidator.DistanceMetric;
+import com.spothero.emailvalidator.MappedDomainDictionary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closest matches in large memory mapped dictionaries for domains that are one edit (a deletion, insertion,
+ * substitution or swap) from an entry, which is what most misspelled domains look like, with the bound the validator
+ * uses at its default domain tolerance
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappedDomainDictionaryTypoBenchmark {
+
+	private static final int QUERY_COUNT = 256;
+	private static final float DOMAIN_TOLERANCE = 0.25f;
+	private static final int KEYBOARD_EDIT_COST = 2;
+
+	@Param({ "200000", "1000000" })
+	public int size;
+
+	@Param({ "LEVENSHTEIN", "KEYBOARD" })
+	public DistanceMetric metric;
+
+	private MappedDomainDictionary mDictionary;
+	private String[] mQueries;
+	private int[] mMaxDistances;
+	private int mIndex;
+
+	@Setup
+	public void setUp() throws IOException {
+		Random random = new Random(size);
+		List<String> domains = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			domains.add(randomLabel(random, 4 + random.nextInt(14)) + (random.nextBoolean() ? ".com" : ".net"));
+		}
+
+		File file = File.createTempFile("domains", ".dict");
+		file.deleteOnExit();
+		FileOutputStream outputStream = new FileOutputStream(file);
+		try {
+			MappedDomainDictionary.write(domains, outputStream);
+		} finally {
+			outputStream.close();
+		}
+		mDictionary = MappedDomainDictionary.open(file);
+
+		mQueries = new String[QUERY_COUNT];
+		mMaxDistances = new int[QUERY_COUNT];
+		for (int i = 0; i < QUERY_COUNT; i++) {
+			mQueries[i] = addTypo(random, domains.get(random.nextInt(size)));
+			final int length = mQueries[i].length();
+			mMaxDistances[i] = getMaxDistance(metric == DistanceMetric.KEYBOARD ? length * KEYBOARD_EDIT_COST : length);
+		}
+	}
+
+	@Benchmark
+	public String findClosest() {
+		// The query count is a power of two
+		final int index = mIndex;
+		mIndex = (index + 1) & (QUERY_COUNT - 1);
+		final String domain = mQueries[index];
+		return mDictionary.findClosest(domain, 0, domain.length(), mMaxDistances[index], metric);
+	}
+
+	// Makes one edit in the label of the domain, so the TLD stays intact
+	private static String addTypo(Random random, String domain) {
+		final int labelLength = domain.indexOf('.');
+		final int index = random.nextInt(labelLength - 1);
+		final char c = (char)('a' + random.nextInt(26));
+		switch (random.nextInt(4)) {
+			case 0:
+				return domain.substring(0, index) + domain.substring(index + 1);
+			case 1:
+				return domain.substring(0, index) + c + domain.substring(index);
+			case 2:
+				return domain.substring(0, index) + c + domain.substring(index + 1);
+			default:
+				return domain.substring(0, index) + domain.charAt(index + 1) + domain.charAt(index) + domain.substring(index + 2);
+		}
+	}
+
+	// The largest distance for which distance / length is under the tolerance, as the validator works it out
+	private static int getMaxDistance(int length) {
+		int maxDistance = (int)(DOMAIN_TOLERANCE * length);
+		while (maxDistance >= 0 && !((float)maxDistance / length < DOMAIN_TOLERANCE)) {
+			maxDistance--;
+		}
+		return maxDistance;
+	}
+
+	private static String randomLabel(Random random, int length) {
+		char[] characters = new char[length];
+		for (int i = 0; i < length; i++) {
+			characters[i] = (char)('a' + random.nextInt(26));
+		}
+		return new String(characters);
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * AddressReader
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.cli;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads email addresses from a file with one address per line, or from one column of a CSV file. The file is read in
+ * large chunks, and only the bytes of the address itself are decoded (as UTF-8), so the rest of each row is never
+ * turned into Strings. Memory use is bounded by the buffer size and the longest allowed line.
+ * <p>
+ * In a CSV file, quoted fields can hold commas, doubled quotes and line breaks, so a row can span several lines. A line
+ * or row longer than {@link #MAX_LINE_LENGTH} is skipped, and read as a null address.
+ */
+final class AddressReader {
+
+	static final int MAX_LINE_LENGTH = 64 * 1024;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	// Where the scan for the end of a CSV row is, since a line break only ends the row outside quotes
+	private static final int FIELD_START = 0;
+	private static final int UNQUOTED = 1;
+	private static final int QUOTED = 2;
+	// Just after a quote inside a quoted field, which either closes the field or is the first of a doubled quote
+	private static final int QUOTE_IN_QUOTED = 3;
+
+	private final ReadableByteChannel mChannel;
+	private final ByteBuffer mBuffer;
+	private final int mColumn;
+
+	// Holds the start of a line that continues past the end of the buffer
+	private byte[] mLine = new byte[256];
+	private int mLineLength;
+	// True once the line being carried across buffers has grown too long, and is only being looked through for its end
+	private boolean mSkippingLine;
+	private int mRowState = FIELD_START;
+	private char[] mCharacters = new char[256];
+	private long mLineNumber;
+	private boolean mEndOfInput;
+
+	/**
+	 * @param channel The channel to read from
+	 * @param bufferSize The number of bytes to read from the channel at a time
+	 * @param column The CSV column that holds the addresses, or -1 if each line is an address
+	 */
+	AddressReader(ReadableByteChannel channel, int bufferSize, int column) {
+		mChannel = channel;
+		mBuffer = ByteBuffer.allocate(bufferSize);
+		mBuffer.limit(0);
+		mColumn = column;
+	}
+
+	/**
+	 * @return The number of lines, or CSV rows, read so far
+	 */
+	long getLineNumber() {
+		return mLineNumber;
+	}
+
+	/**
+	 * Reads the next addresses
+	 * @param addresses The array to read addresses into, where a line longer than {@link #MAX_LINE_LENGTH} is read as
+	 *                  null
+	 * @return The number of addresses read, which is only less than the size of the array at the end of the input
+	 * @throws IOException If the channel could not be read
+	 */
+	int read(String[] addresses) throws IOException {
+		int count = 0;
+		while (count < addresses.length) {
+			if (!mBuffer.hasRemaining()) {
+				if (mEndOfInput || !fillBuffer()) {
+					// The last line doesn't need to end with a line break
+					if (mLineLength > 0 || mSkippingLine) {
+						addresses[count++] = endCarriedLine(null, 0, 0);
+					}
+					break;
+				}
+			}
+
+			final byte[] bytes = mBuffer.array();
+			final int offset = mBuffer.arrayOffset();
+			final int position = offset + mBuffer.position();
+			final int limit = offset + mBuffer.limit();
+			final int lineEnd = mColumn < 0 ? indexOf(bytes, (byte)'\n', position, limit) : indexOfRowEnd(bytes, position, limit);
+
+			if (lineEnd == limit) {
+				appendToLine(bytes, position, limit);
+				mBuffer.position(mBuffer.limit());
+			} else {
+				if (mLineLength > 0 || mSkippingLine) {
+					addresses[count++] = endCarriedLine(bytes, position, lineEnd);
+				} else {
+					addresses[count++] = parseLine(bytes, position, lineEnd);
+				}
+				mBuffer.position(lineEnd + 1 - offset);
+			}
+		}
+		return count;
+	}
+
+	private boolean fillBuffer() throws IOException {
+		mBuffer.clear();
+		int read;
+		do {
+			read = mChannel.read(mBuffer);
+		} while (read == 0);
+		mBuffer.flip();
+
+		if (read < 0) {
+			mEndOfInput = true;
+			return false;
+		}
+		return true;
+	}
+
+	private void appendToLine(byte[] bytes, int start, int end) {
+		if (mSkippingLine) {
+			return;
+		}
+		final int length = mLineLength + end - start;
+		if (length > MAX_LINE_LENGTH) {
+			// Only the end of the line is needed from now on, so nothing more is kept
+			mSkippingLine = true;
+			mLineLength = 0;
+			return;
+		}
+		if (mLine.length < length) {
+			byte[] line = new byte[Math.min(Math.max(length, mLine.length * 2), MAX_LINE_LENGTH)];
+			System.arraycopy(mLine, 0, line, 0, mLineLength);
+			mLine = line;
+		}
+		System.arraycopy(bytes, start, mLine, mLineLength, end - start);
+		mLineLength = length;
+	}
+
+	// Parses the line carried across buffers, with the part of it in this buffer
+	private String endCarriedLine(byte[] bytes, int start, int end) {
+		if (end > start) {
+			appendToLine(bytes, start, end);
+		}
+		final String address;
+		if (mSkippingLine) {
+			mLineNumber++;
+			address = null;
+		} else {
+			address = parseLine(mLine, 0, mLineLength);
+		}
+		mLineLength = 0;
+		mSkippingLine = false;
+		return address;
+	}
+
+	private String parseLine(byte[] bytes, int start, int end) {
+		mLineNumber++;
+		// Lines within the buffer are never copied through appendToLine, so their length is checked here
+		if (end - start > MAX_LINE_LENGTH) {
+			return null;
+		}
+		if (end > start && bytes[end - 1] == '\r') {
+			end--;
+		}
+		if (mColumn < 0) {
+			return decode(bytes, start, end);
+		}
+
+		int fieldStart = start;
+		for (int column = 0; ; column++) {
+			final boolean quoted = fieldStart < end && bytes[fieldStart] == '"';
+			final int fieldEnd = quoted ? indexOfClosingQuote(bytes, fieldStart + 1, end) : indexOf(bytes, (byte)',', fieldStart, end);
+
+			if (column == mColumn) {
+				return quoted ? decode(bytes, fieldStart + 1, fieldEnd).replace("\"\"", "\"") : decode(bytes, fieldStart, fieldEnd);
+			}
+
+			final int separator = quoted ? indexOf(bytes, (byte)',', fieldEnd, end) : fieldEnd;
+			if (separator >= end) {
+				// Rows that are missing the column are treated as blank addresses
+				return "";
+			}
+			fieldStart = separator + 1;
+		}
+	}
+
+	// Finds the line break that ends the CSV row, reading quotes the same way parseLine does, and carrying where it got
+	// to across buffers
+	private int indexOfRowEnd(byte[] bytes, int start, int end) {
+		int state = mRowState;
+		for (int i = start; i < end; i++) {
+			final byte b = bytes[i];
+			switch (state) {
+				case QUOTED:
+					if (b == '"') {
+						state = QUOTE_IN_QUOTED;
+					}
+					break;
+				case QUOTE_IN_QUOTED:
+					state = b == '"' ? QUOTED : b == ',' ? FIELD_START : UNQUOTED;
+					break;
+				default:
+					state = b == '"' && state == FIELD_START ? QUOTED : b == ',' ? FIELD_START : UNQUOTED;
+					break;
+			}
+			if (b == '\n' && state != QUOTED) {
+				mRowState = FIELD_START;
+				return i;
+			}
+		}
+		mRowState = state;
+		return end;
+	}
+
+	private String decode(byte[] bytes, int start, int end) {
+		final int length = end - start;
+		if (mCharacters.length < length) {
+			mCharacters = new char[Math.max(length, mCharacters.length * 2)];
+		}
+
+		// Almost every address is ASCII, which can be copied across without a decoder
+		for (int i = 0; i < length; i++) {
+			final byte b = bytes[start + i];
+			if (b < 0) {
+				return new String(bytes, start, length, UTF_8);
+			}
+			mCharacters[i] = (char)b;
+		}
+		return new String(mCharacters, 0, length);
+	}
+
+	private static int indexOf(byte[] bytes, byte b, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (bytes[i] == b) {
+				return i;
+			}
+		}
+		return end;
+	}
+
+	// Quotes inside a quoted field are escaped by doubling them
+	private static int indexOfClosingQuote(byte[] bytes, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (bytes[i] == '"') {
+				if (i + 1 < end && bytes[i + 1] == '"') {
+					i++;
+				} else {
+					return i;
+				}
+			}
+		}
+		return end;
+	}
+}
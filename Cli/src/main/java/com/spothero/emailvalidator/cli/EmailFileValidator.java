@@ -0,0 +1,437 @@
+/*
+ * EmailFileValidator
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.cli;
+
+import com.spothero.emailvalidator.BlockedDomainList;
+import com.spothero.emailvalidator.DomainVerifier;
+import com.spothero.emailvalidator.EmailCanonicalizer;
+import com.spothero.emailvalidator.EmailDeduplicator;
+import com.spothero.emailvalidator.EmailValidationResult;
+import com.spothero.emailvalidator.EmailValidator;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Validates every address in a file, writing an "address,error,suggestion" CSV row for each one.
+ * <p>
+ * Reading, validating and writing run on separate threads, connected by bounded queues of batches of addresses, so the
+ * reader stops reading ahead once the validators or the writer fall behind. Memory use depends only on the batch size
+ * and the number of threads, never on the size of the file. Rows are written in the same order as the input.
+ * <p>
+ * With --verify-domains, the domain of every valid address is also checked for MX or address records with a
+ * {@link DomainVerifier}, adding a "deliverability" column. Validators start the lookups, and the writer waits for them
+ * in order, so lookups for the batches in flight overlap. Each distinct domain is only looked up once.
+ * <p>
+ * With --skip-duplicates, only the first row for each address is written, where addresses with the same
+ * {@link EmailCanonicalizer} form count as the same. Validators fingerprint the addresses, so
+ * the writer only has to look each fingerprint up.
+ * <p>
+ * With --blocked-domains, addresses from any domain in the given file, one per line, fail with
+ * {@link EmailValidationResult.ValidationError#BLOCKED_DOMAIN}.
+ * <p>
+ * A line longer than {@link AddressReader#MAX_LINE_LENGTH} bytes gets a row with no address and a LINE_TOO_LONG error,
+ * and the rest of the file is still validated.
+ * <p>
+ * Usage: {@code EmailFileValidator [--threads n] [--column n] [--skip-header] [--verify-domains] [--skip-duplicates] [--blocked-domains file] [--quiet] input|- [output|-]}
+ */
+public final class EmailFileValidator {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final int BATCH_SIZE = 4096;
+	private static final long PROGRESS_INTERVAL_NANOS = 1000000000L;
+	private static final int DNS_TIMEOUT_MILLIS = 2000;
+	private static final int DNS_RETRIES = 2;
+	private static final int MAX_CONCURRENT_LOOKUPS = 64;
+	private static final String LOOKUP_FAILED = "LOOKUP_FAILED";
+	private static final String LINE_TOO_LONG = "LINE_TOO_LONG";
+
+	private static final Batch END = new Batch(0, false, false);
+
+	private final int mThreadCount;
+	private final int mColumn;
+	private final boolean mSkipHeader;
+	private final PrintStream mProgress;
+	private final DomainVerifier mDomainVerifier;
+	private final EmailDeduplicator mDeduplicator;
+
+	/**
+	 * @param threadCount The number of threads to validate addresses on
+	 * @param column The CSV column that holds the addresses, or -1 if each line is an address
+	 * @param skipHeader True if the first line of the input is a header that shouldn't be validated
+	 * @param progress Where to report progress, or null
+	 */
+	public EmailFileValidator(int threadCount, int column, boolean skipHeader, PrintStream progress) {
+		this(threadCount, column, skipHeader, progress, null, null);
+	}
+
+	/**
+	 * @param threadCount The number of threads to validate addresses on
+	 * @param column The CSV column that holds the addresses, or -1 if each line is an address
+	 * @param skipHeader True if the first line of the input is a header that shouldn't be validated
+	 * @param progress Where to report progress, or null
+	 * @param domainVerifier The verifier to check the domains of valid addresses with, or null to skip the check
+	 * @param deduplicator The deduplicator to leave out repeated addresses with, or null to write every row
+	 */
+	public EmailFileValidator(int threadCount, int column, boolean skipHeader, PrintStream progress, DomainVerifier domainVerifier, EmailDeduplicator deduplicator) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("Thread count must be at least 1: " + threadCount);
+		}
+		mThreadCount = threadCount;
+		mColumn = column;
+		mSkipHeader = skipHeader;
+		mProgress = progress;
+		mDomainVerifier = domainVerifier;
+		mDeduplicator = deduplicator;
+	}
+
+	public static void main(String[] args) {
+		int threadCount = Runtime.getRuntime().availableProcessors();
+		int column = -1;
+		boolean skipHeader = false;
+		boolean verifyDomains = false;
+		boolean skipDuplicates = false;
+		String blockedDomainsPath = null;
+		boolean quiet = false;
+		List<String> paths = new ArrayList<String>();
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("--threads") && i + 1 < args.length) {
+					threadCount = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--column") && i + 1 < args.length) {
+					column = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--skip-header")) {
+					skipHeader = true;
+				} else if (args[i].equals("--verify-domains")) {
+					verifyDomains = true;
+				} else if (args[i].equals("--skip-duplicates")) {
+					skipDuplicates = true;
+				} else if (args[i].equals("--blocked-domains") && i + 1 < args.length) {
+					blockedDomainsPath = args[++i];
+				} else if (args[i].equals("--quiet")) {
+					quiet = true;
+				} else if (args[i].startsWith("--")) {
+					throw new IllegalArgumentException("Unknown option " + args[i]);
+				} else {
+					paths.add(args[i]);
+				}
+			}
+			if (paths.isEmpty() || paths.size() > 2) {
+				throw new IllegalArgumentException("Expected an input file and an optional output file");
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: EmailFileValidator [--threads n] [--column n] [--skip-header] [--verify-domains] [--skip-duplicates] [--blocked-domains file] [--quiet] input|- [output|-]");
+			System.exit(2);
+			return;
+		}
+
+		final String inputPath = paths.get(0);
+		final String outputPath = paths.size() > 1 ? paths.get(1) : "-";
+		final DomainVerifier domainVerifier = verifyDomains
+				? new DomainVerifier(new JndiDomainResolver(DNS_TIMEOUT_MILLIS, DNS_RETRIES), MAX_CONCURRENT_LOOKUPS, DomainVerifier.DEFAULT_TIME_TO_LIVE_MILLIS)
+				: null;
+		try {
+			if (blockedDomainsPath != null) {
+				Reader blockedDomains = new InputStreamReader(new FileInputStream(blockedDomainsPath), "UTF-8");
+				try {
+					EmailValidator.setBlockedDomains(BlockedDomainList.parse(blockedDomains));
+				} finally {
+					blockedDomains.close();
+				}
+			}
+
+			ReadableByteChannel input = inputPath.equals("-") ? Channels.newChannel(System.in) : new FileInputStream(inputPath).getChannel();
+			try {
+				WritableByteChannel output = outputPath.equals("-") ? Channels.newChannel(System.out) : new FileOutputStream(outputPath).getChannel();
+				try {
+					new EmailFileValidator(threadCount, column, skipHeader, quiet ? null : System.err, domainVerifier,
+							skipDuplicates ? new EmailDeduplicator() : null).validate(input, output);
+				} finally {
+					output.close();
+				}
+			} finally {
+				input.close();
+			}
+		} catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(1);
+		} catch (InterruptedException e) {
+			System.exit(130);
+		} finally {
+			if (domainVerifier != null) {
+				domainVerifier.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Validates every address read from the input, writing a row for each one to the output. Neither channel is closed.
+	 * @param input The addresses, one per line or in a CSV column
+	 * @param output The channel to write results to
+	 * @return The number of rows written, not counting the header or any skipped duplicates
+	 * @throws IOException If the input could not be read or the output could not be written
+	 * @throws InterruptedException If the calling thread was interrupted
+	 */
+	public long validate(ReadableByteChannel input, WritableByteChannel output) throws IOException, InterruptedException {
+		return new Pipeline(new AddressReader(input, BUFFER_SIZE, mColumn), new ResultWriter(output, BUFFER_SIZE, mDomainVerifier != null)).run();
+	}
+
+	private static final class Batch {
+		final String[] addresses;
+		final EmailValidationResult[] results;
+		// Only filled in for valid addresses, and only when verifying domains
+		final List<Future<DomainVerifier.Deliverability>> verifications;
+		// Only when skipping duplicates
+		final long[] fingerprints;
+		final CountDownLatch validated = new CountDownLatch(1);
+		int size;
+
+		Batch(int capacity, boolean verifyDomains, boolean skipDuplicates) {
+			addresses = new String[capacity];
+			results = new EmailValidationResult[capacity];
+			verifications = verifyDomains ? new ArrayList<Future<DomainVerifier.Deliverability>>(capacity) : null;
+			fingerprints = skipDuplicates ? new long[capacity] : null;
+		}
+	}
+
+	private final class Pipeline {
+		private final AddressReader mReader;
+		private final ResultWriter mWriter;
+
+		// Batches waiting for a validator, and every batch that hasn't been written yet in input order
+		private final BlockingQueue<Batch> mUnvalidated = new ArrayBlockingQueue<Batch>(mThreadCount * 2);
+		private final BlockingQueue<Batch> mUnwritten = new ArrayBlockingQueue<Batch>(mThreadCount * 2 + 2);
+
+		private final List<Thread> mThreads = new ArrayList<Thread>();
+		private final Thread mReaderThread = Thread.currentThread();
+		private volatile Throwable mFailure;
+		// Only touched by the writer until run() returns
+		private long mRowCount;
+
+		Pipeline(AddressReader reader, ResultWriter writer) {
+			mReader = reader;
+			mWriter = writer;
+		}
+
+		long run() throws IOException, InterruptedException {
+			for (int i = 0; i < mThreadCount; i++) {
+				mThreads.add(new Thread(new Runnable() {
+					@Override
+					public void run() {
+						validateBatches();
+					}
+				}, "EmailFileValidator-validator-" + i));
+			}
+			mThreads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					writeBatches();
+				}
+			}, "EmailFileValidator-writer"));
+			for (Thread thread : mThreads) {
+				thread.start();
+			}
+
+			try {
+				readBatches();
+				for (Thread thread : mThreads) {
+					thread.join();
+				}
+			} catch (InterruptedException e) {
+				if (mFailure == null) {
+					throw e;
+				}
+			} catch (IOException e) {
+				fail(e);
+			} finally {
+				for (Thread thread : mThreads) {
+					thread.interrupt();
+				}
+				joinThreads();
+			}
+
+			final Throwable failure = mFailure;
+			if (failure != null) {
+				// Clear the interrupt that reported the failure to this thread
+				Thread.interrupted();
+				if (failure instanceof IOException) {
+					throw (IOException)failure;
+				} else if (failure instanceof RuntimeException) {
+					throw (RuntimeException)failure;
+				} else if (failure instanceof Error) {
+					throw (Error)failure;
+				} else {
+					throw new RuntimeException(failure);
+				}
+			}
+			return mRowCount;
+		}
+
+		// Waits for every thread to stop, so that nothing touches the channels after run() returns
+		private void joinThreads() {
+			boolean interrupted = false;
+			for (Thread thread : mThreads) {
+				while (thread.isAlive()) {
+					try {
+						thread.join();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		private void readBatches() throws IOException, InterruptedException {
+			if (mSkipHeader) {
+				mReader.read(new String[1]);
+			}
+
+			while (true) {
+				Batch batch = new Batch(BATCH_SIZE, mDomainVerifier != null, mDeduplicator != null);
+				batch.size = mReader.read(batch.addresses);
+				if (batch.size == 0) {
+					break;
+				}
+				mUnwritten.put(batch);
+				mUnvalidated.put(batch);
+			}
+
+			mUnwritten.put(END);
+			for (int i = 0; i < mThreadCount; i++) {
+				mUnvalidated.put(END);
+			}
+		}
+
+		private void validateBatches() {
+			try {
+				Batch batch;
+				while ((batch = mUnvalidated.take()) != END) {
+					// Lines that were too long have no address, and are left without a result
+					for (int i = 0; i < batch.size; i++) {
+						if (batch.addresses[i] != null) {
+							batch.results[i] = EmailValidator.validateAndAutocorrect(batch.addresses[i]);
+						}
+					}
+					if (batch.verifications != null) {
+						for (int i = 0; i < batch.size; i++) {
+							final EmailValidationResult result = batch.results[i];
+							batch.verifications.add(result != null && result.passedValidation ? mDomainVerifier.verify(batch.addresses[i]) : null);
+						}
+					}
+					if (batch.fingerprints != null) {
+						final EmailCanonicalizer canonicalizer = mDeduplicator.getCanonicalizer();
+						for (int i = 0; i < batch.size; i++) {
+							if (batch.addresses[i] != null) {
+								batch.fingerprints[i] = canonicalizer.getFingerprint(batch.addresses[i]);
+							}
+						}
+					}
+					batch.validated.countDown();
+				}
+			} catch (Throwable t) {
+				fail(t);
+			}
+		}
+
+		private void writeBatches() {
+			try {
+				final long startTime = System.nanoTime();
+				long lastReportTime = startTime;
+
+				mWriter.writeHeader();
+				Batch batch;
+				while ((batch = mUnwritten.take()) != END) {
+					batch.validated.await();
+					for (int i = 0; i < batch.size; i++) {
+						final EmailValidationResult result = batch.results[i];
+						if (result != null && batch.fingerprints != null && !mDeduplicator.addFingerprint(batch.fingerprints[i])) {
+							continue;
+						}
+
+						if (result == null) {
+							mWriter.writeError(LINE_TOO_LONG);
+						} else {
+							mWriter.write(batch.addresses[i], result, batch.verifications != null ? getDeliverability(batch.verifications.get(i)) : null);
+						}
+						mRowCount++;
+					}
+
+					final long now = System.nanoTime();
+					if (now - lastReportTime >= PROGRESS_INTERVAL_NANOS) {
+						reportProgress(now - startTime);
+						lastReportTime = now;
+					}
+				}
+				mWriter.flush();
+				reportProgress(System.nanoTime() - startTime);
+			} catch (Throwable t) {
+				fail(t);
+			}
+		}
+
+		// Waits for a domain verification to finish
+		private String getDeliverability(Future<DomainVerifier.Deliverability> verification) throws InterruptedException {
+			if (verification == null) {
+				return null;
+			}
+			try {
+				return verification.get().name();
+			} catch (ExecutionException e) {
+				return LOOKUP_FAILED;
+			}
+		}
+
+		private void reportProgress(long elapsedNanos) {
+			if (mProgress != null) {
+				final double seconds = Math.max(elapsedNanos, 1L) / 1e9;
+				mProgress.println(String.format("%,d rows in %.1fs (%,.0f rows/s)", mRowCount, seconds, mRowCount / seconds));
+			}
+		}
+
+		// Records the first failure and wakes up every thread, so that none of them is left waiting on a queue
+		private synchronized void fail(Throwable failure) {
+			if (mFailure == null) {
+				mFailure = failure;
+				mReaderThread.interrupt();
+				for (Thread thread : mThreads) {
+					thread.interrupt();
+				}
+			}
+		}
+	}
+}
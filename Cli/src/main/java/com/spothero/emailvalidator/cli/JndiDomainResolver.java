@@ -0,0 +1,107 @@
+/*
+ * JndiDomainResolver
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator.cli;
+
+import com.spothero.emailvalidator.DomainResolver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+import javax.naming.Context;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+
+/**
+ * Looks up DNS records with the JDK's JNDI DNS provider, using the system's DNS servers. JNDI isn't available on
+ * Android, which is why this lives here rather than in the library.
+ */
+final class JndiDomainResolver implements DomainResolver {
+
+	private static final String[] MAIL_EXCHANGER_RECORDS = new String[] { "MX" };
+	private static final String[] ADDRESS_RECORDS = new String[] { "A", "AAAA" };
+
+	private final Hashtable<String, String> mEnvironment = new Hashtable<String, String>();
+
+	/**
+	 * @param timeoutMillis How long to wait for the first answer to each query, doubling with each retry
+	 * @param retries How many times to retry each query
+	 */
+	JndiDomainResolver(int timeoutMillis, int retries) {
+		mEnvironment.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.dns.DnsContextFactory");
+		mEnvironment.put("com.sun.jndi.dns.timeout.initial", Integer.toString(timeoutMillis));
+		mEnvironment.put("com.sun.jndi.dns.timeout.retries", Integer.toString(retries));
+	}
+
+	@Override
+	public String[] getMailExchangers(String domain) throws IOException {
+		final Attribute records = getRecords(domain, MAIL_EXCHANGER_RECORDS).get("MX");
+		if (records == null) {
+			return new String[0];
+		}
+
+		List<String> hosts = new ArrayList<String>(records.size());
+		try {
+			NamingEnumeration<?> values = records.getAll();
+			while (values.hasMore()) {
+				// Records look like "10 mx.example.com.", a preference followed by the host
+				final String value = values.next().toString().trim();
+				hosts.add(value.substring(value.indexOf(' ') + 1).trim());
+			}
+		} catch (NamingException e) {
+			throw new IOException("Could not read the MX records of " + domain, e);
+		}
+		return hosts.toArray(new String[hosts.size()]);
+	}
+
+	@Override
+	public boolean hasAddress(String domain) throws IOException {
+		return getRecords(domain, ADDRESS_RECORDS).size() > 0;
+	}
+
+	private Attributes getRecords(String domain, String[] types) throws IOException {
+		// Contexts aren't thread safe, so each lookup gets its own
+		DirContext context = null;
+		try {
+			context = new InitialDirContext(mEnvironment);
+			return context.getAttributes(domain, types);
+		} catch (NameNotFoundException e) {
+			// The domain doesn't exist, which is an answer rather than a failure
+			return new BasicAttributes();
+		} catch (NamingException e) {
+			throw new IOException("Could not look up " + domain, e);
+		} finally {
+			if (context != null) {
+				try {
+					context.close();
+				} catch (NamingException e) {
+					// Nothing left to release
+				}
+			}
+		}
+	}
+}
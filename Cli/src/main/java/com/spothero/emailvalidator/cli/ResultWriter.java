@@ -0,0 +1,159 @@
+/*
+ * ResultWriter
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.cli;
+
+import com.spothero.emailvalidator.EmailValidationResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes validation results as "address,error,suggestion" CSV rows, encoded as UTF-8 straight into a large buffer that
+ * is written to the channel whenever it fills up. Rows can also have a "deliverability" column, for addresses whose
+ * domains were verified.
+ */
+final class ResultWriter {
+
+	private final WritableByteChannel mChannel;
+	private final ByteBuffer mBuffer;
+	private final boolean mDeliverabilityColumn;
+
+	ResultWriter(WritableByteChannel channel, int bufferSize, boolean deliverabilityColumn) {
+		mChannel = channel;
+		mBuffer = ByteBuffer.allocateDirect(bufferSize);
+		mDeliverabilityColumn = deliverabilityColumn;
+	}
+
+	void writeHeader() throws IOException {
+		writeField("address");
+		put(',');
+		writeField("error");
+		put(',');
+		writeField("suggestion");
+		if (mDeliverabilityColumn) {
+			put(',');
+			writeField("deliverability");
+		}
+		put('\n');
+	}
+
+	/**
+	 * @param deliverability What domain verification found, or null if the address wasn't verified
+	 */
+	void write(String emailAddress, EmailValidationResult result, String deliverability) throws IOException {
+		writeField(emailAddress);
+		put(',');
+		if (result.validationError != null) {
+			writeField(result.validationError.name());
+		}
+		put(',');
+		if (result.autocorrectSuggestion != null) {
+			writeField(result.autocorrectSuggestion);
+		}
+		if (mDeliverabilityColumn) {
+			put(',');
+			if (deliverability != null) {
+				writeField(deliverability);
+			}
+		}
+		put('\n');
+	}
+
+	/**
+	 * Writes a row with no address for a line that couldn't be read, such as one that was too long
+	 * @param error The error to write, such as "LINE_TOO_LONG"
+	 */
+	void writeError(String error) throws IOException {
+		put(',');
+		writeField(error);
+		put(',');
+		if (mDeliverabilityColumn) {
+			put(',');
+		}
+		put('\n');
+	}
+
+	/**
+	 * Writes everything that is buffered to the channel
+	 */
+	void flush() throws IOException {
+		mBuffer.flip();
+		while (mBuffer.hasRemaining()) {
+			mChannel.write(mBuffer);
+		}
+		mBuffer.clear();
+	}
+
+	private void writeField(String field) throws IOException {
+		final int length = field.length();
+		boolean needsQuotes = false;
+		for (int i = 0; i < length && !needsQuotes; i++) {
+			final char c = field.charAt(i);
+			needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+
+		if (needsQuotes) {
+			put('"');
+		}
+		for (int i = 0; i < length; i++) {
+			final char c = field.charAt(i);
+			if (c == '"') {
+				put('"');
+			}
+
+			if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(field.charAt(i + 1))) {
+				putCodePoint(Character.toCodePoint(c, field.charAt(++i)));
+			} else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				// Unpaired surrogates can't be encoded
+				put('?');
+			} else {
+				putCodePoint(c);
+			}
+		}
+		if (needsQuotes) {
+			put('"');
+		}
+	}
+
+	private void putCodePoint(int codePoint) throws IOException {
+		if (mBuffer.remaining() < 4) {
+			flush();
+		}
+		if (codePoint < 0x80) {
+			mBuffer.put((byte)codePoint);
+		} else if (codePoint < 0x800) {
+			mBuffer.put((byte)(0xc0 | codePoint >> 6));
+			mBuffer.put((byte)(0x80 | codePoint & 0x3f));
+		} else if (codePoint < 0x10000) {
+			mBuffer.put((byte)(0xe0 | codePoint >> 12));
+			mBuffer.put((byte)(0x80 | codePoint >> 6 & 0x3f));
+			mBuffer.put((byte)(0x80 | codePoint & 0x3f));
+		} else {
+			mBuffer.put((byte)(0xf0 | codePoint >> 18));
+			mBuffer.put((byte)(0x80 | codePoint >> 12 & 0x3f));
+			mBuffer.put((byte)(0x80 | codePoint >> 6 & 0x3f));
+			mBuffer.put((byte)(0x80 | codePoint & 0x3f));
+		}
+	}
+
+	private void put(char c) throws IOException {
+		putCodePoint(c);
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * DefaultDictionariesTestCase
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Checks that the generated DefaultDictionaries match the lists they were generated from, and that its packed tables
+ * are the same ones the library would build from those lists at runtime
+ */
+public class DefaultDictionariesTestCase extends TestCase {
+
+	private static final File DICTIONARY_DIRECTORY = new File("../Library/src/main/dictionaries");
+
+	public void testLists() throws Throwable {
+		String[] registeredTLDs = PublicSuffixRegistry.readRegisteredTLDs(open("tlds-alpha-by-domain.txt"));
+		for (int i = 0; i < registeredTLDs.length; i++) {
+			registeredTLDs[i] = registeredTLDs[i].toLowerCase(Locale.US);
+		}
+		Assert.assertTrue(Arrays.equals(registeredTLDs, DefaultDictionaries.REGISTERED_TLDS));
+		Assert.assertTrue(Arrays.equals(PublicSuffixRegistry.readRules(open("public_suffix_list.dat")), DefaultDictionaries.PUBLIC_SUFFIX_RULES));
+		Assert.assertTrue(Arrays.equals(readList("common-tlds.txt"), DefaultDictionaries.COMMON_TLDS));
+		Assert.assertTrue(Arrays.equals(readList("common-multi-label-suffixes.txt"), DefaultDictionaries.COMMON_MULTI_LABEL_SUFFIXES));
+		Assert.assertTrue(Arrays.equals(readList("common-domains.txt"), DefaultDictionaries.COMMON_DOMAINS));
+	}
+
+	public void testPublicSuffixRegistry() throws Throwable {
+		PublicSuffixRegistry built = new PublicSuffixRegistry(DefaultDictionaries.REGISTERED_TLDS, DefaultDictionaries.PUBLIC_SUFFIX_RULES);
+		Assert.assertTrue(Arrays.equals(built.pack(), EmailValidator.DEFAULT_PUBLIC_SUFFIX_REGISTRY.pack()));
+
+		Assert.assertEquals("co.uk", EmailValidator.DEFAULT_PUBLIC_SUFFIX_REGISTRY.getPublicSuffix("yahoo.co.uk"));
+		Assert.assertTrue(EmailValidator.DEFAULT_PUBLIC_SUFFIX_REGISTRY.isRegisteredTLD("com"));
+		Assert.assertFalse(EmailValidator.DEFAULT_PUBLIC_SUFFIX_REGISTRY.isRegisteredTLD("con"));
+	}
+
+	public void testTLDTypoMap() throws Throwable {
+		TLDTypoMap built = TLDTypoMap.build(DefaultDictionaries.COMMON_TLDS, DefaultDictionaries.TLD_TYPO_TOLERANCE, DefaultDictionaries.TLD_TYPO_METRIC);
+		Assert.assertTrue(Arrays.equals(built.pack(), new String[] { DefaultDictionaries.TLD_TYPOS, DefaultDictionaries.TLD_TYPO_CORRECTIONS }));
+
+		TLDTypoMap unpacked = TLDTypoMap.unpack(DefaultDictionaries.TLD_TYPOS, DefaultDictionaries.TLD_TYPO_CORRECTIONS,
+				DefaultDictionaries.COMMON_TLDS, DefaultDictionaries.TLD_TYPO_TOLERANCE, DefaultDictionaries.TLD_TYPO_METRIC);
+		Assert.assertEquals(built.size(), unpacked.size());
+		Assert.assertTrue(Arrays.equals(built.pack(), unpacked.pack()));
+		Assert.assertEquals("com", unpacked.getCorrection("con", 0, 3));
+
+		// The default configuration has to use the generated map rather than building its own
+		EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+		Assert.assertTrue(unpacked.isFor(configuration.commonTLDs.toArray(new String[0]), configuration.tldTolerance,
+				configuration.distanceMetric));
+	}
+
+	private static Reader open(String name) throws IOException {
+		return new InputStreamReader(new FileInputStream(new File(DICTIONARY_DIRECTORY, name)), "UTF-8");
+	}
+
+	private static String[] readList(String name) throws IOException {
+		List<String> list = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(open(name));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() > 0 && !line.startsWith("#")) {
+					list.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return list.toArray(new String[list.size()]);
+	}
+}
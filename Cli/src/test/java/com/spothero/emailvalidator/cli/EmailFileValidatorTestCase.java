@@ -0,0 +1,256 @@
+/*
+ * EmailFileValidatorTestCase
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.cli;
+
+import com.spothero.emailvalidator.DomainResolver;
+import com.spothero.emailvalidator.DomainVerifier;
+import com.spothero.emailvalidator.EmailDeduplicator;
+import com.spothero.emailvalidator.EmailValidationResult;
+import com.spothero.emailvalidator.EmailValidator;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EmailFileValidatorTestCase extends TestCase {
+
+	public void testLines() throws Throwable {
+		String output = validate("test@gamil.con\r\n\nnot an address\ntest@spothero.com\nj\u00f6rg@gmail.con\nj\u00f6rg@b\u00fc cher.com", -1, false);
+
+		Assert.assertEquals("address,error,suggestion\n"
+				+ "test@gamil.con,,test@gmail.com\n"
+				+ ",BLANK_ADDRESS,\n"
+				+ "not an address,INVALID_SYNTAX,\n"
+				+ "test@spothero.com,,\n"
+				+ "j\u00f6rg@gmail.con,,j\u00f6rg@gmail.com\n"
+				+ "j\u00f6rg@b\u00fc cher.com,INVALID_DOMAIN,\n", output);
+	}
+
+	public void testCsvColumn() throws Throwable {
+		String output = validate("name,email\n"
+				+ "Test,test@hotmial.com\n"
+				+ "\"Last, First\",\"test@yahoo.com\"\n"
+				+ "\"Quoted \"\"name\"\"\",\"a,b\"\"@example.com\",extra\n"
+				+ "Missing\n", 1, true);
+
+		Assert.assertEquals("address,error,suggestion\n"
+				+ "test@hotmial.com,,test@hotmail.com\n"
+				+ "test@yahoo.com,,\n"
+				+ "\"a,b\"\"@example.com\",INVALID_USERNAME,\n"
+				+ ",BLANK_ADDRESS,\n", output);
+	}
+
+	public void testLargeInput() throws Throwable {
+		String[] domains = new String[] { "gmail.com", "gamil.con", "yahoo.co.uk", "hotmial.com", "spothero", "aol.cmo" };
+		StringBuilder input = new StringBuilder();
+		StringBuilder expected = new StringBuilder("address,error,suggestion\n");
+		for (int i = 0; i < 200000; i++) {
+			String emailAddress = "user" + i + "@" + domains[i % domains.length];
+			input.append(emailAddress).append('\n');
+
+			EmailValidationResult result = EmailValidator.validateAndAutocorrect(emailAddress);
+			expected.append(emailAddress).append(',');
+			if (result.validationError != null) {
+				expected.append(result.validationError.name());
+			}
+			expected.append(',');
+			if (result.autocorrectSuggestion != null) {
+				expected.append(result.autocorrectSuggestion);
+			}
+			expected.append('\n');
+		}
+
+		Assert.assertEquals(expected.toString(), validate(input.toString(), -1, false));
+	}
+
+	public void testLineTooLong() throws Throwable {
+		StringBuilder longLine = new StringBuilder();
+		for (int i = 0; i <= AddressReader.MAX_LINE_LENGTH; i++) {
+			longLine.append('a');
+		}
+		String input = "test@spothero.com\n" + longLine + "\ntest@gmial.com\n" + longLine + "\n";
+		String expected = "address,error,suggestion\n"
+				+ "test@spothero.com,,\n"
+				+ ",LINE_TOO_LONG,\n"
+				+ "test@gmial.com,,test@gmail.com\n"
+				+ ",LINE_TOO_LONG,\n";
+
+		Assert.assertEquals(expected, validate(input, -1, false));
+		// Lines that were too long have no address to be a duplicate of
+		Assert.assertEquals(expected, validate(input, -1, false, null, new EmailDeduplicator()));
+	}
+
+	public void testLineTooLongWithinBuffer() throws Throwable {
+		StringBuilder input = new StringBuilder("test@spothero.com\n");
+		for (int i = 0; i <= AddressReader.MAX_LINE_LENGTH; i++) {
+			input.append('a');
+		}
+		input.append("\ntest@gmail.com\n");
+
+		// The whole input arrives in one read, so the long line never has to be carried across buffers
+		final ByteBuffer source = ByteBuffer.wrap(input.toString().getBytes("UTF-8"));
+		ReadableByteChannel channel = new ReadableByteChannel() {
+			@Override
+			public int read(ByteBuffer destination) {
+				if (!source.hasRemaining()) {
+					return -1;
+				}
+				final int count = source.remaining();
+				destination.put(source);
+				return count;
+			}
+
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+
+		AddressReader reader = new AddressReader(channel, input.length() * 2, -1);
+		String[] addresses = new String[4];
+		Assert.assertEquals(3, reader.read(addresses));
+		Assert.assertEquals("test@spothero.com", addresses[0]);
+		Assert.assertNull(addresses[1]);
+		Assert.assertEquals("test@gmail.com", addresses[2]);
+		Assert.assertEquals(3, reader.getLineNumber());
+	}
+
+	public void testLineTooLongAcrossBuffers() throws Throwable {
+		StringBuilder input = new StringBuilder("test@spothero.com\n");
+		for (int i = 0; i <= AddressReader.MAX_LINE_LENGTH; i++) {
+			input.append('a');
+		}
+		input.append("\ntest@gmail.com\n");
+		for (int i = 0; i <= AddressReader.MAX_LINE_LENGTH; i++) {
+			input.append('b');
+		}
+
+		// Small buffers, so that both long lines are carried across many of them, and the last one ends the input
+		AddressReader reader = new AddressReader(Channels.newChannel(new ByteArrayInputStream(input.toString().getBytes("UTF-8"))), 1000, -1);
+		String[] addresses = new String[5];
+		Assert.assertEquals(4, reader.read(addresses));
+		Assert.assertEquals("test@spothero.com", addresses[0]);
+		Assert.assertNull(addresses[1]);
+		Assert.assertEquals("test@gmail.com", addresses[2]);
+		Assert.assertNull(addresses[3]);
+	}
+
+	public void testQuotedLineBreaks() throws Throwable {
+		String input = "name,email,notes\n"
+				+ "\"Line\nbreak\",test@hotmial.com,\"more\r\nlines, and \"\"quotes\"\"\n\"\r\n"
+				+ "\"Quote \"\"\n\"\"\",\"test@\ngmail.com\"\n"
+				+ "Unquoted\"field,test@spothero.com\n";
+		String expected = "address,error,suggestion\n"
+				+ "test@hotmial.com,,test@hotmail.com\n"
+				+ "\"test@\ngmail.com\",INVALID_SYNTAX,\n"
+				+ "test@spothero.com,,\n";
+
+		Assert.assertEquals(expected, validate(input, 1, true));
+
+		// The same rows read a few bytes at a time, so that rows end in a different buffer from their quotes
+		AddressReader reader = new AddressReader(Channels.newChannel(new ByteArrayInputStream(input.getBytes("UTF-8"))), 3, 1);
+		String[] addresses = new String[5];
+		Assert.assertEquals(4, reader.read(addresses));
+		Assert.assertEquals("email", addresses[0]);
+		Assert.assertEquals("test@hotmial.com", addresses[1]);
+		Assert.assertEquals("test@\ngmail.com", addresses[2]);
+		Assert.assertEquals("test@spothero.com", addresses[3]);
+		Assert.assertEquals(4, reader.getLineNumber());
+	}
+
+	public void testVerifiedDomains() throws Throwable {
+		final AtomicInteger lookupCount = new AtomicInteger();
+		DomainResolver resolver = new DomainResolver() {
+			@Override
+			public String[] getMailExchangers(String domain) throws IOException {
+				lookupCount.incrementAndGet();
+				if (domain.equals("broken.com")) {
+					throw new IOException("Timed out");
+				}
+				return domain.equals("gmail.com") ? new String[] { "gmail-smtp-in.l.google.com" } : new String[0];
+			}
+
+			@Override
+			public boolean hasAddress(String domain) {
+				return domain.equals("spothero.com");
+			}
+		};
+
+		DomainVerifier domainVerifier = new DomainVerifier(resolver);
+		try {
+			String output = validate("test@gmail.com\nnot an address\ntest@spothero.com\ntest@gamil.con\n"
+					+ "user@nonexistent-domain.com\nuser@broken.com\nother@gmail.com\n", -1, false, domainVerifier, null);
+
+			Assert.assertEquals("address,error,suggestion,deliverability\n"
+					+ "test@gmail.com,,,MAIL_EXCHANGER\n"
+					+ "not an address,INVALID_SYNTAX,,\n"
+					+ "test@spothero.com,,,ADDRESS\n"
+					+ "test@gamil.con,,test@gmail.com,UNDELIVERABLE\n"
+					+ "user@nonexistent-domain.com,,,UNDELIVERABLE\n"
+					+ "user@broken.com,,,LOOKUP_FAILED\n"
+					+ "other@gmail.com,,,MAIL_EXCHANGER\n", output);
+			Assert.assertEquals(5, lookupCount.get());
+		} finally {
+			domainVerifier.shutdown();
+		}
+	}
+
+	public void testSkipDuplicates() throws Throwable {
+		StringBuilder input = new StringBuilder();
+		StringBuilder expected = new StringBuilder("address,error,suggestion\n");
+		for (int i = 0; i < 20000; i++) {
+			input.append("John.Doe").append(i % 7000).append("+list").append(i).append("@gmail.com\n");
+			if (i < 7000) {
+				expected.append("John.Doe").append(i).append("+list").append(i).append("@gmail.com,,\n");
+			}
+		}
+		input.append("not an address\nnot an address\njohndoe0@googlemail.com\n");
+		expected.append("not an address,INVALID_SYNTAX,\n");
+
+		Assert.assertEquals(expected.toString(), validate(input.toString(), -1, false, null, new EmailDeduplicator()));
+
+		// Only the rows that were written are counted
+		EmailFileValidator validator = new EmailFileValidator(3, -1, false, null, null, new EmailDeduplicator());
+		Assert.assertEquals(7001, validator.validate(Channels.newChannel(new ByteArrayInputStream(input.toString().getBytes("UTF-8"))),
+				Channels.newChannel(new ByteArrayOutputStream())));
+	}
+
+	private static String validate(String input, int column, boolean skipHeader) throws Exception {
+		return validate(input, column, skipHeader, null, null);
+	}
+
+	private static String validate(String input, int column, boolean skipHeader, DomainVerifier domainVerifier, EmailDeduplicator deduplicator) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		new EmailFileValidator(3, column, skipHeader, null, domainVerifier, deduplicator).validate(
+				Channels.newChannel(new ByteArrayInputStream(input.getBytes("UTF-8"))),
+				Channels.newChannel(output));
+		return output.toString("UTF-8");
+	}
+}
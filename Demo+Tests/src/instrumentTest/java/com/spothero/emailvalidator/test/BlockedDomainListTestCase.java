@@ -0,0 +1,221 @@
+/*
+ * BlockedDomainListTestCase
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.test;
+
+import android.test.AndroidTestCase;
+
+import com.spothero.emailvalidator.BlockedDomainList;
+import com.spothero.emailvalidator.EmailValidationResult;
+import com.spothero.emailvalidator.EmailValidator;
+import com.spothero.emailvalidator.EmailValidatorConfiguration;
+
+import junit.framework.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class BlockedDomainListTestCase extends AndroidTestCase {
+
+	private static final String BLOCKED_DOMAINS =
+			"# Disposable providers\n" +
+			"mailinator.com\n" +
+			"  Guerrillamail.COM  \n" +
+			"*.trashmail.net\n" +
+			".10minutemail.com\n" +
+			"mailinator.com\n" +
+			"\n";
+
+	public void testIsBlocked() throws Throwable {
+		BlockedDomainList blockedDomains = BlockedDomainList.parse(new StringReader(BLOCKED_DOMAINS));
+
+		Assert.assertEquals(4, blockedDomains.size());
+		Assert.assertTrue(blockedDomains.isBlocked("mailinator.com"));
+		Assert.assertTrue(blockedDomains.isBlocked("MailInator.Com"));
+		Assert.assertTrue(blockedDomains.isBlocked("guerrillamail.com"));
+		Assert.assertTrue(blockedDomains.isBlocked("trashmail.net"));
+		Assert.assertTrue(blockedDomains.isBlocked("10minutemail.com"));
+
+		// Subdomains of a blocked domain are blocked, but not domains that merely end the same way
+		Assert.assertTrue(blockedDomains.isBlocked("eu.mailinator.com"));
+		Assert.assertTrue(blockedDomains.isBlocked("a.b.trashmail.net"));
+		Assert.assertFalse(blockedDomains.isBlocked("notmailinator.com"));
+		Assert.assertFalse(blockedDomains.isBlocked("mailinator.co"));
+		Assert.assertFalse(blockedDomains.isBlocked("com"));
+		Assert.assertFalse(blockedDomains.isBlocked("gmail.com"));
+		Assert.assertFalse(blockedDomains.isBlocked(""));
+
+		BlockedDomainList noDomains = BlockedDomainList.parse(new StringReader("# Nothing yet\n"));
+		Assert.assertEquals(0, noDomains.size());
+		Assert.assertFalse(noDomains.isBlocked("mailinator.com"));
+	}
+
+	public void testMatchesExactSet() throws Throwable {
+		Random random = new Random(20);
+		Set<String> listedDomains = new HashSet<String>();
+		StringBuilder list = new StringBuilder();
+		while (listedDomains.size() < 20000) {
+			String domain = randomDomain(random);
+			if (listedDomains.add(domain)) {
+				list.append(domain).append('\n');
+			}
+		}
+		BlockedDomainList blockedDomains = BlockedDomainList.parse(new StringReader(list.toString()));
+		Assert.assertEquals(listedDomains.size(), blockedDomains.size());
+
+		for (String domain : listedDomains) {
+			Assert.assertTrue(domain, blockedDomains.isBlocked(domain));
+		}
+
+		// Anything the filter lets through by chance has to be caught by the exact check
+		for (int i = 0; i < 100000; i++) {
+			String domain = randomDomain(random);
+			Assert.assertEquals(domain, isListed(listedDomains, domain), blockedDomains.isBlocked(domain));
+		}
+	}
+
+	public void testWriteAndRead() throws Throwable {
+		Random random = new Random(21);
+		List<String> domains = new ArrayList<String>();
+		StringBuilder list = new StringBuilder(BLOCKED_DOMAINS);
+		for (int i = 0; i < 1000; i++) {
+			String domain = randomDomain(random);
+			domains.add(domain);
+			list.append(domain).append('\n');
+		}
+		BlockedDomainList blockedDomains = BlockedDomainList.parse(new StringReader(list.toString()));
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		blockedDomains.write(output);
+		BlockedDomainList readDomains = BlockedDomainList.read(new ByteArrayInputStream(output.toByteArray()));
+
+		Assert.assertEquals(blockedDomains.size(), readDomains.size());
+		Assert.assertTrue(readDomains.isBlocked("eu.mailinator.com"));
+		Assert.assertFalse(readDomains.isBlocked("gmail.com"));
+		for (String domain : domains) {
+			Assert.assertTrue(domain, readDomains.isBlocked(domain));
+		}
+		for (int i = 0; i < 10000; i++) {
+			String domain = randomDomain(random);
+			Assert.assertEquals(domain, blockedDomains.isBlocked(domain), readDomains.isBlocked(domain));
+		}
+
+		try {
+			BlockedDomainList.read(new ByteArrayInputStream(list.toString().getBytes("UTF-8")));
+			Assert.fail("Read a list that was never written");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	public void testReadCorruptLengths() throws Throwable {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		BlockedDomainList.parse(new StringReader(BLOCKED_DOMAINS)).write(output);
+		final byte[] written = output.toByteArray();
+
+		// The size, then the filter length, follow the magic number and version
+		assertCorrupt(written, 8, Integer.MAX_VALUE);
+		assertCorrupt(written, 12, Integer.MAX_VALUE);
+		assertCorrupt(written, 12, 8 * 1024 * 1024);
+		// The domains length follows the filter, which is one block for a short list
+		assertCorrupt(written, 16 + 64, Integer.MAX_VALUE);
+		assertCorrupt(written, 16 + 64, -1);
+	}
+
+	public void testValidation() throws Throwable {
+		EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+		configuration.blockedDomains = BlockedDomainList.parse(new StringReader(BLOCKED_DOMAINS));
+		EmailValidator validator = new EmailValidator(configuration);
+
+		EmailValidationResult result = validator.validate("test@mailinator.com");
+		Assert.assertFalse(result.passedValidation);
+		Assert.assertEquals(EmailValidationResult.ValidationError.BLOCKED_DOMAIN, result.validationError);
+		Assert.assertNull(result.autocorrectSuggestion);
+		Assert.assertEquals(EmailValidationResult.ValidationError.BLOCKED_DOMAIN, validator.validate("Test@EU.Mailinator.com").validationError);
+
+		// Syntax errors still come first, and other domains are unaffected
+		Assert.assertEquals(EmailValidationResult.ValidationError.INVALID_SYNTAX, validator.validate(".test@mailinator.com").validationError);
+		Assert.assertTrue(validator.validate("test@gmail.com").passedValidation);
+		Assert.assertEquals("test@gmail.com", validator.validate("test@gmial.com").autocorrectSuggestion);
+
+		EmailValidationResult reusedResult = new EmailValidationResult();
+		Assert.assertSame(reusedResult, validator.validate("test@trashmail.net", reusedResult));
+		Assert.assertEquals(EmailValidationResult.ValidationError.BLOCKED_DOMAIN, reusedResult.validationError);
+
+		// The static methods only block domains once a list has been set
+		Assert.assertTrue(EmailValidator.validateAndAutocorrect("test@mailinator.com").passedValidation);
+		EmailValidator.setBlockedDomains(configuration.blockedDomains);
+		try {
+			Assert.assertEquals(EmailValidationResult.ValidationError.BLOCKED_DOMAIN, EmailValidator.validateAndAutocorrect("test@mailinator.com").validationError);
+		} finally {
+			EmailValidator.setBlockedDomains(null);
+		}
+		Assert.assertTrue(EmailValidator.validateAndAutocorrect("test@mailinator.com").passedValidation);
+	}
+
+	// Whether the domain or any of its parent domains is in the set
+	private static void assertCorrupt(byte[] written, int offset, int length) {
+		byte[] corrupt = written.clone();
+		corrupt[offset] = (byte)(length >>> 24);
+		corrupt[offset + 1] = (byte)(length >>> 16);
+		corrupt[offset + 2] = (byte)(length >>> 8);
+		corrupt[offset + 3] = (byte)length;
+		try {
+			BlockedDomainList.read(new ByteArrayInputStream(corrupt));
+			Assert.fail("Read a list with a length of " + length + " at " + offset);
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	private static boolean isListed(Set<String> listedDomains, String domain) {
+		int start = 0;
+		while (true) {
+			if (listedDomains.contains(domain.substring(start))) {
+				return true;
+			}
+			final int periodIndex = domain.indexOf('.', start);
+			if (periodIndex < 0) {
+				return false;
+			}
+			start = periodIndex + 1;
+		}
+	}
+
+	private static String randomDomain(Random random) {
+		StringBuilder domain = new StringBuilder();
+		final int labels = 2 + random.nextInt(2);
+		for (int i = 0; i < labels; i++) {
+			if (i > 0) {
+				domain.append('.');
+			}
+			final int length = 2 + random.nextInt(8);
+			for (int j = 0; j < length; j++) {
+				domain.append((char)('a' + random.nextInt(26)));
+			}
+		}
+		return domain.toString();
+	}
+}
@@ -0,0 +1,290 @@
+/*
+ * DictionaryWatcherTestCase
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.test;
+
+import android.test.AndroidTestCase;
+
+import com.spothero.emailvalidator.BlockedDomainList;
+import com.spothero.emailvalidator.DictionaryFiles;
+import com.spothero.emailvalidator.DictionaryWatcher;
+import com.spothero.emailvalidator.EmailValidationResult;
+import com.spothero.emailvalidator.EmailValidator;
+import com.spothero.emailvalidator.EmailValidatorConfiguration;
+import com.spothero.emailvalidator.MappedDomainDictionary;
+
+import junit.framework.Assert;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class DictionaryWatcherTestCase extends AndroidTestCase {
+
+	public void testLoad() throws Throwable {
+		DictionaryFiles files = new DictionaryFiles();
+		files.registeredTLDs = writeFile("tlds", "# Version 2024010100\nCOM\nNET\nZZ\n");
+		files.commonDomains = writeFile("domains", "# Ours first\nspothero.com\ngmail.com\n");
+		files.blockedDomains = writeFile("blocked", "mailinator.com\n");
+
+		EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+		configuration.dictionaryVersion = 7;
+		EmailValidator validator = files.load(configuration);
+
+		Assert.assertEquals(7, validator.getDictionaryVersion());
+		Assert.assertEquals("test@spothero.com", validator.getSuggestion("test@spothreo.com"));
+		Assert.assertNull(validator.getSuggestion("test@example.zz"));
+		// "cat" is registered in the built in list, but not in the loaded one
+		Assert.assertEquals("test@example.ca", validator.getSuggestion("test@example.cat"));
+		Assert.assertEquals(EmailValidationResult.ValidationError.BLOCKED_DOMAIN, validator.validate("test@mailinator.com").validationError);
+
+		// The built in public suffixes are kept when only the TLDs are loaded
+		Assert.assertNull(validator.getSuggestion("test@example.co.uk"));
+
+		// Indexed formats are read as they are
+		MappedDomainDictionary.write(Arrays.asList("spothero.com"), new FileOutputStream(files.commonDomains));
+		OutputStream output = new FileOutputStream(files.blockedDomains);
+		BlockedDomainList.parse(new StringReader("trashmail.net\n")).write(output);
+		output.close();
+		validator = files.load(configuration);
+
+		Assert.assertEquals("test@spothero.com", validator.getSuggestion("test@spothreo.com"));
+		Assert.assertEquals(EmailValidationResult.ValidationError.BLOCKED_DOMAIN, validator.validate("test@trashmail.net").validationError);
+		Assert.assertTrue(validator.validate("test@mailinator.com").passedValidation);
+	}
+
+	public void testReload() throws Throwable {
+		DictionaryFiles files = new DictionaryFiles();
+		files.commonDomains = writeFile("domains", "spothero.com\n");
+		RecordingListener listener = new RecordingListener();
+		DictionaryWatcher watcher = new DictionaryWatcher(new EmailValidatorConfiguration(), files, listener);
+
+		EmailValidator firstValidator = watcher.getValidator();
+		Assert.assertEquals(1, firstValidator.getDictionaryVersion());
+		Assert.assertEquals("test@spothero.com", firstValidator.getSuggestion("test@spothreo.com"));
+		Assert.assertFalse(watcher.reloadIfChanged());
+		Assert.assertSame(firstValidator, watcher.getValidator());
+
+		replaceFile(files.commonDomains, "spothero.com\nparkwhiz.com\n");
+		Assert.assertTrue(watcher.reloadIfChanged());
+		EmailValidator secondValidator = watcher.getValidator();
+		Assert.assertSame(secondValidator, listener.reloaded.poll());
+		Assert.assertEquals(2, secondValidator.getDictionaryVersion());
+		Assert.assertEquals("test@parkwhiz.com", secondValidator.getSuggestion("test@parkwhix.com"));
+		Assert.assertFalse(watcher.reloadIfChanged());
+
+		// The previous snapshot is left as it was, for validations that were already using it
+		Assert.assertNull(firstValidator.getSuggestion("test@parkwhix.com"));
+		Assert.assertEquals(1, firstValidator.validate("test@spothreo.com").dictionaryVersion);
+		Assert.assertEquals(2, secondValidator.validate("test@spothreo.com").dictionaryVersion);
+	}
+
+	public void testFailedReload() throws Throwable {
+		DictionaryFiles files = new DictionaryFiles();
+		files.blockedDomains = writeFile("blocked", "mailinator.com\n");
+		DictionaryWatcher watcher = new DictionaryWatcher(new EmailValidatorConfiguration(), files, null);
+		EmailValidator validator = watcher.getValidator();
+
+		// A list in the indexed format that stops part way through
+		OutputStream output = new FileOutputStream(files.blockedDomains);
+		BlockedDomainList.parse(new StringReader("mailinator.com\n")).write(output);
+		output.close();
+		byte[] truncated = Arrays.copyOf(readFile(files.blockedDomains), 12);
+		output = new FileOutputStream(files.blockedDomains);
+		output.write(truncated);
+		output.close();
+		files.blockedDomains.setLastModified(files.blockedDomains.lastModified() + 2000);
+
+		try {
+			watcher.reloadIfChanged();
+			Assert.fail("Loaded a truncated list");
+		} catch (IOException e) {
+			// Expected
+		}
+		Assert.assertSame(validator, watcher.getValidator());
+		Assert.assertEquals(EmailValidationResult.ValidationError.BLOCKED_DOMAIN, watcher.getValidator().validate("test@mailinator.com").validationError);
+
+		// The broken files aren't retried until they change again
+		Assert.assertFalse(watcher.reloadIfChanged());
+		replaceFile(files.blockedDomains, "trashmail.net\n");
+		Assert.assertTrue(watcher.reloadIfChanged());
+		Assert.assertEquals(2, watcher.getValidator().getDictionaryVersion());
+		Assert.assertEquals(EmailValidationResult.ValidationError.BLOCKED_DOMAIN, watcher.getValidator().validate("test@trashmail.net").validationError);
+	}
+
+	public void testPolling() throws Throwable {
+		DictionaryFiles files = new DictionaryFiles();
+		files.commonDomains = writeFile("domains", "spothero.com\n");
+		RecordingListener listener = new RecordingListener();
+		DictionaryWatcher watcher = new DictionaryWatcher(new EmailValidatorConfiguration(), files, listener);
+		watcher.start(10);
+		try {
+			replaceFile(files.commonDomains, "spothero.com\nparkwhiz.com\n");
+			EmailValidator validator = listener.reloaded.poll(10, TimeUnit.SECONDS);
+			Assert.assertNotNull(validator);
+			Assert.assertSame(validator, watcher.getValidator());
+			Assert.assertEquals("test@parkwhiz.com", validator.getSuggestion("test@parkwhix.com"));
+		} finally {
+			watcher.stop();
+		}
+		Assert.assertTrue(listener.failures.isEmpty());
+	}
+
+	public void testReloadOrder() throws Throwable {
+		DictionaryFiles files = new DictionaryFiles();
+		files.commonDomains = writeFile("domains", "spothero.com\n");
+		RacingListener listener = new RacingListener(files);
+		DictionaryWatcher watcher = new DictionaryWatcher(new EmailValidatorConfiguration(), files, listener);
+		listener.watcher = watcher;
+
+		// The listener starts a second reload while it is still being told about the first
+		replaceFile(files.commonDomains, "spothero.com\nparkwhiz.com\n");
+		Assert.assertTrue(watcher.reloadIfChanged());
+		listener.racingReload.join();
+
+		Assert.assertNull(listener.error, listener.error);
+		Assert.assertEquals(Arrays.asList(2L, 3L), listener.versions);
+		Assert.assertEquals(3, watcher.getValidator().getDictionaryVersion());
+	}
+
+	public void testResultVersions() throws Throwable {
+		EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+		configuration.dictionaryVersion = 42;
+		EmailValidator validator = new EmailValidator(configuration);
+
+		Assert.assertEquals(42, validator.validate("test@gmail.com").dictionaryVersion);
+		Assert.assertEquals(42, validator.validate("test@gmial.com").dictionaryVersion);
+		Assert.assertEquals(42, validator.validate("not an address").dictionaryVersion);
+		Assert.assertEquals(42, validator.validate("test@gmail.com", new EmailValidationResult()).dictionaryVersion);
+
+		// Replacing the default validator's lists moves it on to the next version
+		EmailValidator defaultValidator = EmailValidator.getDefault();
+		try {
+			EmailValidator.setCommonDomains(Arrays.asList("spothero.com"));
+			Assert.assertEquals(defaultValidator.getDictionaryVersion() + 1, EmailValidator.getDefault().getDictionaryVersion());
+			Assert.assertEquals(defaultValidator.getDictionaryVersion() + 1, EmailValidator.validateAndAutocorrect("test@spothreo.com").dictionaryVersion);
+		} finally {
+			EmailValidator.setDefault(defaultValidator);
+		}
+	}
+
+	private static File writeFile(String prefix, String contents) throws IOException {
+		File file = File.createTempFile(prefix, ".txt");
+		file.deleteOnExit();
+		OutputStream output = new FileOutputStream(file);
+		try {
+			output.write(contents.getBytes("UTF-8"));
+		} finally {
+			output.close();
+		}
+		return file;
+	}
+
+	// Writes a new file and renames it over the old one, the way a watched file should be replaced
+	private static void replaceFile(File file, String contents) throws IOException {
+		final long lastModified = file.lastModified();
+		File newFile = writeFile(file.getName(), contents);
+		Assert.assertTrue(newFile.renameTo(file));
+		// Some file systems only keep modification times to the second
+		file.setLastModified(lastModified + 2000);
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		byte[] contents = new byte[(int)file.length()];
+		DataInputStream input = new DataInputStream(new FileInputStream(file));
+		try {
+			input.readFully(contents);
+		} finally {
+			input.close();
+		}
+		return contents;
+	}
+
+	// Reloads changed files from another thread while the first validator is being delivered
+	private static final class RacingListener implements DictionaryWatcher.Listener {
+		final DictionaryFiles files;
+		final List<Long> versions = new CopyOnWriteArrayList<Long>();
+		volatile DictionaryWatcher watcher;
+		volatile Thread racingReload;
+		volatile String error;
+
+		RacingListener(DictionaryFiles files) {
+			this.files = files;
+		}
+
+		@Override
+		public void onReloaded(EmailValidator validator) {
+			versions.add(validator.getDictionaryVersion());
+			if (racingReload != null) {
+				return;
+			}
+
+			try {
+				replaceFile(files.commonDomains, "spothero.com\nparkwhiz.com\nexample.com\n");
+				racingReload = new Thread() {
+					@Override
+					public void run() {
+						try {
+							watcher.reloadIfChanged();
+						} catch (IOException e) {
+							error = e.toString();
+						}
+					}
+				};
+				racingReload.start();
+				// Gives the other reload time to finish, which it mustn't be able to do until this returns
+				racingReload.join(200);
+			} catch (Exception e) {
+				error = e.toString();
+			}
+			if (validator != watcher.getValidator()) {
+				error = "Version " + validator.getDictionaryVersion() + " was replaced while it was being delivered";
+			}
+		}
+
+		@Override
+		public void onReloadFailed(Exception exception) {
+			error = exception.toString();
+		}
+	}
+
+	private static final class RecordingListener implements DictionaryWatcher.Listener {
+		final BlockingQueue<EmailValidator> reloaded = new LinkedBlockingQueue<EmailValidator>();
+		final BlockingQueue<Exception> failures = new LinkedBlockingQueue<Exception>();
+
+		@Override
+		public void onReloaded(EmailValidator validator) {
+			reloaded.add(validator);
+		}
+
+		@Override
+		public void onReloadFailed(Exception exception) {
+			failures.add(exception);
+		}
+	}
+}
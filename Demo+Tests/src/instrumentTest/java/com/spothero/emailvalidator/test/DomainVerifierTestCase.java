@@ -0,0 +1,340 @@
+/*
+ * DomainVerifierTestCase
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator.test;
+
+import android.test.AndroidTestCase;
+
+import com.spothero.emailvalidator.DomainResolver;
+import com.spothero.emailvalidator.DomainVerifier;
+import com.spothero.emailvalidator.DomainVerifier.Deliverability;
+import com.spothero.emailvalidator.EmailValidator;
+
+import junit.framework.Assert;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DomainVerifierTestCase extends AndroidTestCase {
+
+	public void testDeliverability() throws Throwable {
+		InProcessResolver resolver = new InProcessResolver();
+		resolver.addMailExchangers("gmail.com", "gmail-smtp-in.l.google.com", "alt1.gmail-smtp-in.l.google.com");
+		resolver.addAddress("gmail.com");
+		resolver.addAddress("spothero.com");
+		resolver.addMailExchangers("example.com", ".");
+		resolver.addAddress("example.com");
+
+		DomainVerifier verifier = new DomainVerifier(resolver);
+		try {
+			Assert.assertEquals(Deliverability.MAIL_EXCHANGER, verifier.verify("test@gmail.com").get());
+			Assert.assertEquals(Deliverability.ADDRESS, verifier.verify("test@spothero.com").get());
+			// A null MX record means no mail is accepted, even though the domain has an address
+			Assert.assertEquals(Deliverability.UNDELIVERABLE, verifier.verify("test@example.com").get());
+			Assert.assertEquals(Deliverability.UNDELIVERABLE, verifier.verify("user@nonexistent-domain.com").get());
+
+			// Domains are looked up in lower case, and only once
+			Assert.assertEquals(Deliverability.MAIL_EXCHANGER, verifier.verify("Test@GMail.com").get());
+			Assert.assertEquals(1, resolver.getLookupCount("gmail.com"));
+
+			// International domains are looked up in their ASCII form
+			resolver.addAddress("xn--bcher-kva.com");
+			Assert.assertEquals(Deliverability.ADDRESS, verifier.verify("test@B\u00fccher.com").get());
+			Assert.assertEquals(1, resolver.getLookupCount("xn--bcher-kva.com"));
+
+			try {
+				verifier.verify("not an address");
+				Assert.fail("Address without a domain was accepted");
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		} finally {
+			verifier.shutdown();
+		}
+	}
+
+	public void testOneLookupPerDomain() throws Throwable {
+		InProcessResolver resolver = new InProcessResolver();
+		String[] domains = new String[500];
+		for (int i = 0; i < domains.length; i++) {
+			domains[i] = "domain" + i + ".com";
+			if (i % 3 != 0) {
+				resolver.addMailExchangers(domains[i], "mx." + domains[i]);
+			}
+		}
+
+		// Addresses go through validation first, as they would in practice, and only the ones that pass are verified
+		final Random random = new Random(18);
+		List<String> emailAddresses = new ArrayList<String>();
+		for (int i = 0; i < 100000; i++) {
+			String emailAddress = (i % 50 == 0 ? "bad address " : "user" + i + "@") + domains[random.nextInt(domains.length)];
+			if (EmailValidator.validateAndAutocorrect(emailAddress).passedValidation) {
+				emailAddresses.add(emailAddress);
+			}
+		}
+
+		final int maxConcurrentLookups = 4;
+		DomainVerifier verifier = new DomainVerifier(resolver, maxConcurrentLookups, DomainVerifier.DEFAULT_TIME_TO_LIVE_MILLIS);
+		try {
+			List<Future<Deliverability>> futures = new ArrayList<Future<Deliverability>>(emailAddresses.size());
+			for (String emailAddress : emailAddresses) {
+				futures.add(verifier.verify(emailAddress));
+			}
+
+			Set<String> verifiedDomains = new HashSet<String>();
+			for (int i = 0; i < futures.size(); i++) {
+				String domain = emailAddresses.get(i).substring(emailAddresses.get(i).indexOf('@') + 1);
+				Deliverability expected = resolver.hasMailExchangers(domain) ? Deliverability.MAIL_EXCHANGER : Deliverability.UNDELIVERABLE;
+				Assert.assertEquals(emailAddresses.get(i), expected, futures.get(i).get());
+				verifiedDomains.add(domain);
+			}
+
+			Assert.assertEquals(verifiedDomains.size(), resolver.getTotalLookupCount());
+			for (String domain : verifiedDomains) {
+				Assert.assertEquals(domain, 1, resolver.getLookupCount(domain));
+			}
+			Assert.assertTrue(resolver.getMaxConcurrentLookups() <= maxConcurrentLookups);
+		} finally {
+			verifier.shutdown();
+		}
+	}
+
+	public void testLookupsInProgressAreShared() throws Throwable {
+		InProcessResolver resolver = new InProcessResolver();
+		resolver.addMailExchangers("gmail.com", "gmail-smtp-in.l.google.com");
+		resolver.blockLookups();
+
+		// Without caching, only requests made while the lookup is in progress share it
+		DomainVerifier verifier = new DomainVerifier(resolver, 2, 0);
+		try {
+			final List<Future<Deliverability>> futures = new ArrayList<Future<Deliverability>>();
+			for (int i = 0; i < 100; i++) {
+				futures.add(verifier.verify("user" + i + "@gmail.com"));
+			}
+			resolver.unblockLookups();
+			for (Future<Deliverability> future : futures) {
+				Assert.assertEquals(Deliverability.MAIL_EXCHANGER, future.get());
+			}
+			Assert.assertEquals(1, resolver.getLookupCount("gmail.com"));
+
+			Assert.assertEquals(Deliverability.MAIL_EXCHANGER, verifier.verify("test@gmail.com").get());
+			Assert.assertEquals(2, resolver.getLookupCount("gmail.com"));
+		} finally {
+			verifier.shutdown();
+		}
+	}
+
+	public void testExpiry() throws Throwable {
+		InProcessResolver resolver = new InProcessResolver();
+		resolver.addAddress("spothero.com");
+
+		DomainVerifier verifier = new DomainVerifier(resolver, 2, 50);
+		try {
+			Assert.assertEquals(Deliverability.ADDRESS, verifier.verify("a@spothero.com").get());
+			Assert.assertEquals(Deliverability.ADDRESS, verifier.verify("b@spothero.com").get());
+			Assert.assertEquals(1, resolver.getLookupCount("spothero.com"));
+
+			Thread.sleep(100);
+			resolver.addMailExchangers("spothero.com", "mx.spothero.com");
+			Assert.assertEquals(Deliverability.MAIL_EXCHANGER, verifier.verify("c@spothero.com").get());
+			Assert.assertEquals(2, resolver.getLookupCount("spothero.com"));
+		} finally {
+			verifier.shutdown();
+		}
+	}
+
+	public void testFailuresAreNotCached() throws Throwable {
+		InProcessResolver resolver = new InProcessResolver();
+		resolver.addMailExchangers("gmail.com", "gmail-smtp-in.l.google.com");
+		resolver.failNextLookup("gmail.com");
+
+		DomainVerifier verifier = new DomainVerifier(resolver);
+		try {
+			try {
+				verifier.verify("test@gmail.com").get();
+				Assert.fail("Failed lookup succeeded");
+			} catch (ExecutionException e) {
+				Assert.assertTrue(e.getCause() instanceof IOException);
+			}
+			Assert.assertEquals(Deliverability.MAIL_EXCHANGER, verifier.verify("test@gmail.com").get());
+			Assert.assertEquals(2, resolver.getLookupCount("gmail.com"));
+		} finally {
+			verifier.shutdown();
+		}
+	}
+
+	public void testCallbacks() throws Throwable {
+		InProcessResolver resolver = new InProcessResolver();
+		resolver.addMailExchangers("gmail.com", "gmail-smtp-in.l.google.com");
+
+		DomainVerifier verifier = new DomainVerifier(resolver);
+		try {
+			final Map<String, Object> outcomes = new ConcurrentHashMap<String, Object>();
+			final CountDownLatch finished = new CountDownLatch(3);
+			DomainVerifier.Callback callback = new DomainVerifier.Callback() {
+				@Override
+				public void onVerified(String domain, Deliverability deliverability) {
+					outcomes.put(domain, deliverability);
+					finished.countDown();
+				}
+
+				@Override
+				public void onFailed(String domain, Throwable cause) {
+					outcomes.put(domain, cause);
+					finished.countDown();
+				}
+			};
+
+			resolver.failNextLookup("hotmail.com");
+			verifier.verify("test@hotmail.com", callback);
+			verifier.verify("test@gmail.com", callback);
+			verifier.verify("test@yahoo.com", callback);
+			Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+
+			Assert.assertEquals(3, outcomes.size());
+			Assert.assertTrue(outcomes.get("hotmail.com") instanceof IOException);
+			Assert.assertEquals(Deliverability.MAIL_EXCHANGER, outcomes.get("gmail.com"));
+			Assert.assertEquals(Deliverability.UNDELIVERABLE, outcomes.get("yahoo.com"));
+
+			// Cached answers are reported straight away
+			outcomes.clear();
+			verifier.verify("other@gmail.com", callback);
+			Assert.assertEquals(Deliverability.MAIL_EXCHANGER, outcomes.get("gmail.com"));
+		} finally {
+			verifier.shutdown();
+		}
+	}
+
+	public void testInvalidArguments() throws Throwable {
+		try {
+			new DomainVerifier(new InProcessResolver(), 0, 0);
+			Assert.fail("No concurrent lookups were accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		try {
+			new DomainVerifier(new InProcessResolver(), 1, -1);
+			Assert.fail("Negative time to live was accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Answers lookups from records held in memory, counting every lookup and how many run at once
+	 */
+	private static final class InProcessResolver implements DomainResolver {
+		private final Map<String, String[]> mMailExchangers = new ConcurrentHashMap<String, String[]>();
+		private final Map<String, Boolean> mAddresses = new ConcurrentHashMap<String, Boolean>();
+		private final Map<String, AtomicInteger> mLookupCounts = new HashMap<String, AtomicInteger>();
+		private final AtomicInteger mTotalLookupCount = new AtomicInteger();
+		private final AtomicInteger mConcurrentLookups = new AtomicInteger();
+		private final AtomicInteger mMaxConcurrentLookups = new AtomicInteger();
+		private final Map<String, Boolean> mFailingDomains = new ConcurrentHashMap<String, Boolean>();
+		private volatile CountDownLatch mBlocker = new CountDownLatch(0);
+
+		void addMailExchangers(String domain, String... hosts) {
+			mMailExchangers.put(domain, hosts);
+		}
+
+		void addAddress(String domain) {
+			mAddresses.put(domain, Boolean.TRUE);
+		}
+
+		boolean hasMailExchangers(String domain) {
+			return mMailExchangers.containsKey(domain);
+		}
+
+		void failNextLookup(String domain) {
+			mFailingDomains.put(domain, Boolean.TRUE);
+		}
+
+		void blockLookups() {
+			mBlocker = new CountDownLatch(1);
+		}
+
+		void unblockLookups() {
+			mBlocker.countDown();
+		}
+
+		synchronized int getLookupCount(String domain) {
+			AtomicInteger count = mLookupCounts.get(domain);
+			return count != null ? count.get() : 0;
+		}
+
+		int getTotalLookupCount() {
+			return mTotalLookupCount.get();
+		}
+
+		int getMaxConcurrentLookups() {
+			return mMaxConcurrentLookups.get();
+		}
+
+		@Override
+		public String[] getMailExchangers(String domain) throws IOException {
+			final int concurrentLookups = mConcurrentLookups.incrementAndGet();
+			try {
+				synchronized (this) {
+					if (!mLookupCounts.containsKey(domain)) {
+						mLookupCounts.put(domain, new AtomicInteger());
+					}
+					mLookupCounts.get(domain).incrementAndGet();
+				}
+				mTotalLookupCount.incrementAndGet();
+				while (true) {
+					final int max = mMaxConcurrentLookups.get();
+					if (concurrentLookups <= max || mMaxConcurrentLookups.compareAndSet(max, concurrentLookups)) {
+						break;
+					}
+				}
+
+				try {
+					mBlocker.await();
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted");
+				}
+				if (mFailingDomains.remove(domain) != null) {
+					throw new IOException("Timed out looking up " + domain);
+				}
+
+				final String[] hosts = mMailExchangers.get(domain);
+				return hosts != null ? hosts : new String[0];
+			} finally {
+				mConcurrentLookups.decrementAndGet();
+			}
+		}
+
+		@Override
+		public boolean hasAddress(String domain) {
+			return mAddresses.containsKey(domain);
+		}
+	}
+}
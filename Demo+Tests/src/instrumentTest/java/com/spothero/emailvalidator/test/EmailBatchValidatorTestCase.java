@@ -0,0 +1,151 @@
+/*
+ * EmailBatchValidatorTestCase
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.test;
+
+import android.test.AndroidTestCase;
+
+import com.spothero.emailvalidator.EmailBatchValidator;
+import com.spothero.emailvalidator.EmailValidationResult;
+import com.spothero.emailvalidator.EmailValidator;
+
+import junit.framework.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class EmailBatchValidatorTestCase extends AndroidTestCase {
+
+	private static final String[] DOMAINS = new String[] { "gmail.com", "gamil.con", "yahoo.co.uk", "hotmial.com", "spothero.com", "example", "-bad.com", "aol.cmo" };
+
+	public void testResultsMatchSingleValidation() throws Throwable {
+		String[] emailAddresses = getEmailAddresses(5000);
+		for (int parallelism = 1; parallelism <= 4; parallelism++) {
+			EmailBatchValidator batchValidator = new EmailBatchValidator(parallelism);
+			try {
+				assertResultsMatch(emailAddresses, batchValidator.validateAndAutocorrect(emailAddresses));
+			} finally {
+				batchValidator.shutdown();
+			}
+		}
+	}
+
+	public void testCollectionsAndIterables() throws Throwable {
+		final String[] emailAddresses = getEmailAddresses(1000);
+		EmailBatchValidator batchValidator = new EmailBatchValidator(3);
+		try {
+			List<EmailValidationResult> results = batchValidator.validateAndAutocorrect(Arrays.asList(emailAddresses));
+			assertResultsMatch(emailAddresses, results.toArray(new EmailValidationResult[results.size()]));
+
+			Iterable<String> iterable = new Iterable<String>() {
+				@Override
+				public Iterator<String> iterator() {
+					return Arrays.asList(emailAddresses).iterator();
+				}
+			};
+			results = batchValidator.validateAndAutocorrect(iterable);
+			assertResultsMatch(emailAddresses, results.toArray(new EmailValidationResult[results.size()]));
+		} finally {
+			batchValidator.shutdown();
+		}
+	}
+
+	public void testSharedExecutor() throws Throwable {
+		String[] emailAddresses = getEmailAddresses(3000);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			EmailBatchValidator batchValidator = new EmailBatchValidator(executor, 3);
+			assertResultsMatch(emailAddresses, batchValidator.validateAndAutocorrect(emailAddresses));
+			batchValidator.shutdown();
+			Assert.assertFalse(executor.isShutdown());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	public void testReusedResults() throws Throwable {
+		EmailBatchValidator batchValidator = new EmailBatchValidator(2);
+		try {
+			EmailValidationResult[] results = new EmailValidationResult[1500];
+			String[] emailAddresses = getEmailAddresses(1500);
+			batchValidator.validateAndAutocorrect(emailAddresses, results);
+			assertResultsMatch(emailAddresses, results);
+
+			// The same results are overwritten for the next batch, including ones left over from a longer batch
+			EmailValidationResult[] firstResults = results.clone();
+			emailAddresses = getEmailAddresses(1000);
+			batchValidator.validateAndAutocorrect(emailAddresses, results);
+			assertResultsMatch(emailAddresses, Arrays.copyOf(results, 1000));
+			for (int i = 0; i < results.length; i++) {
+				Assert.assertSame(firstResults[i], results[i]);
+			}
+
+			try {
+				batchValidator.validateAndAutocorrect(getEmailAddresses(10), new EmailValidationResult[9]);
+				Assert.fail("Too few results were accepted");
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		} finally {
+			batchValidator.shutdown();
+		}
+	}
+
+	public void testEmptyBatch() throws Throwable {
+		EmailBatchValidator batchValidator = new EmailBatchValidator(2);
+		try {
+			Assert.assertEquals(0, batchValidator.validateAndAutocorrect(new String[0]).length);
+			Assert.assertTrue(batchValidator.validateAndAutocorrect(new ArrayList<String>()).isEmpty());
+		} finally {
+			batchValidator.shutdown();
+		}
+	}
+
+	public void testInvalidParallelism() throws Throwable {
+		try {
+			new EmailBatchValidator(0);
+			Assert.fail("Parallelism of 0 was accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	private static void assertResultsMatch(String[] emailAddresses, EmailValidationResult[] results) {
+		Assert.assertEquals(emailAddresses.length, results.length);
+		for (int i = 0; i < emailAddresses.length; i++) {
+			EmailValidationResult expected = EmailValidator.validateAndAutocorrect(emailAddresses[i]);
+			Assert.assertEquals(emailAddresses[i], expected.passedValidation, results[i].passedValidation);
+			Assert.assertEquals(emailAddresses[i], expected.validationError, results[i].validationError);
+			Assert.assertEquals(emailAddresses[i], expected.autocorrectSuggestion, results[i].autocorrectSuggestion);
+		}
+	}
+
+	private static String[] getEmailAddresses(int count) {
+		Random random = new Random(count);
+		String[] emailAddresses = new String[count];
+		for (int i = 0; i < count; i++) {
+			emailAddresses[i] = i % 97 == 0 ? "" : "user" + i + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+		}
+		return emailAddresses;
+	}
+}
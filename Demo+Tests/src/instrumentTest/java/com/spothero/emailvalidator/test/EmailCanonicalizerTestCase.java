@@ -0,0 +1,152 @@
+/*
+ * EmailCanonicalizerTestCase
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator.test;
+
+import android.test.AndroidTestCase;
+
+import com.spothero.emailvalidator.EmailCanonicalizer;
+import com.spothero.emailvalidator.EmailDeduplicator;
+
+import junit.framework.Assert;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class EmailCanonicalizerTestCase extends AndroidTestCase {
+
+	public void testCanonicalize() throws Throwable {
+		EmailCanonicalizer canonicalizer = new EmailCanonicalizer();
+
+		Assert.assertEquals("johndoe@gmail.com", canonicalizer.canonicalize("John.Doe+promo@GMail.com"));
+		Assert.assertEquals("johndoe@gmail.com", canonicalizer.canonicalize("johndoe@gmail.com"));
+		Assert.assertEquals("johndoe@gmail.com", canonicalizer.canonicalize("j.o.h.n.d.o.e@googlemail.com"));
+		Assert.assertEquals("john.doe@hotmail.com", canonicalizer.canonicalize("John.Doe+newsletter+2@Hotmail.com"));
+		Assert.assertEquals("john.doe@outlook.com", canonicalizer.canonicalize("john.doe+x@OUTLOOK.COM"));
+
+		// Other providers may treat usernames differently, so only their domains are changed
+		Assert.assertEquals("John.Doe+promo@spothero.com", canonicalizer.canonicalize("John.Doe+promo@SpotHero.com"));
+		Assert.assertEquals("John-Doe@yahoo.co.uk", canonicalizer.canonicalize("John-Doe@Yahoo.co.uk"));
+
+		// International domains are canonicalized to their ASCII form
+		Assert.assertEquals("t\u00e9st@xn--bcher-kva.com", canonicalizer.canonicalize("t\u00e9st@B\u00fccher.com"));
+		Assert.assertEquals("test@xn--mnchen-3ya.de", canonicalizer.canonicalize("test@m\u00fcnchen\uff0ede"));
+		Assert.assertEquals("test@xn--ihqwcrb4cv8a8dqg056pqjye.com",
+				canonicalizer.canonicalize("test@\u4ed6\u4eec\u4e3a\u4ec0\u4e48\u4e0d\u8bf4\u4e2d\u6587.com"));
+		Assert.assertEquals(canonicalizer.getFingerprint("test@xn--bcher-kva.com"), canonicalizer.getFingerprint("test@b\u00fccher.com"));
+
+		// Separate accents are composed before encoding, with their marks in canonical order
+		Assert.assertEquals("test@xn--cole-9oa.fr", canonicalizer.canonicalize("test@\u00e9cole.fr"));
+		Assert.assertEquals("test@xn--cole-9oa.fr", canonicalizer.canonicalize("test@e\u0301cole.fr"));
+		Assert.assertEquals("test@xn--cole-9oa.fr", canonicalizer.canonicalize("test@E\u0301cole.fr"));
+		Assert.assertEquals("test@xn--qlg.vn", canonicalizer.canonicalize("test@e\u0302\u0323.vn"));
+		Assert.assertEquals("test@xn--qlg.vn", canonicalizer.canonicalize("test@\u1ec7.vn"));
+		Assert.assertEquals("test@xn--lsaf293s.com", canonicalizer.canonicalize("test@\u1e17\u0323.com"));
+		Assert.assertEquals("test@xn----7sbb7afirdq1f.xn--p1ai",
+				canonicalizer.canonicalize("test@\u0438\u0306\u043e\u0448\u043a\u0430\u0440-\u043e\u043b\u0430.\u0440\u0444"));
+
+		Assert.assertNull(canonicalizer.canonicalize("not an address"));
+		Assert.assertNull(canonicalizer.canonicalize(""));
+		Assert.assertNull(canonicalizer.canonicalize(null));
+	}
+
+	public void testCustomRules() throws Throwable {
+		List<EmailCanonicalizer.ProviderRule> rules = EmailCanonicalizer.getDefaultRules();
+		rules.add(new EmailCanonicalizer.ProviderRule("SpotHero.com", "spothero-mail.example.com", true, '-'));
+		rules.add(new EmailCanonicalizer.ProviderRule("example.com", "example.com", false, '_'));
+		EmailCanonicalizer canonicalizer = new EmailCanonicalizer(rules);
+
+		Assert.assertEquals("johndoe@spothero-mail.example.com", canonicalizer.canonicalize("John.Doe-promo@spothero.com"));
+		Assert.assertEquals("johndoe@gmail.com", canonicalizer.canonicalize("John.Doe+promo@GMail.com"));
+		Assert.assertEquals("john@example.com", canonicalizer.canonicalize("John_promo@example.com"));
+
+		// A username that would be left empty is kept whole
+		Assert.assertEquals("_Promo@example.com", canonicalizer.canonicalize("_Promo@Example.com"));
+
+		// Without rules only domains are changed
+		EmailCanonicalizer plainCanonicalizer = new EmailCanonicalizer(new HashSet<EmailCanonicalizer.ProviderRule>());
+		Assert.assertEquals("John.Doe+promo@gmail.com", plainCanonicalizer.canonicalize("John.Doe+promo@GMail.com"));
+	}
+
+	public void testFingerprints() throws Throwable {
+		EmailCanonicalizer canonicalizer = new EmailCanonicalizer();
+		Assert.assertEquals(canonicalizer.getFingerprint("johndoe@gmail.com"), canonicalizer.getFingerprint("John.Doe+promo@GMail.com"));
+		Assert.assertFalse(canonicalizer.getFingerprint("johndoe@gmail.com") == canonicalizer.getFingerprint("janedoe@gmail.com"));
+		Assert.assertFalse(canonicalizer.getFingerprint("Not an address") == canonicalizer.getFingerprint("not an address"));
+		Assert.assertEquals(canonicalizer.getFingerprint(""), canonicalizer.getFingerprint(null));
+	}
+
+	public void testDeduplication() throws Throwable {
+		EmailDeduplicator deduplicator = new EmailDeduplicator();
+		Assert.assertTrue(deduplicator.add("John.Doe+promo@GMail.com"));
+		Assert.assertFalse(deduplicator.add("johndoe@gmail.com"));
+		Assert.assertFalse(deduplicator.add("JOHNDOE@googlemail.com"));
+		Assert.assertTrue(deduplicator.add("johndoe@yahoo.com"));
+		Assert.assertTrue(deduplicator.add("JohnDoe@yahoo.com"));
+		Assert.assertTrue(deduplicator.contains("john.doe@gmail.com"));
+		Assert.assertFalse(deduplicator.contains("jane.doe@gmail.com"));
+		Assert.assertEquals(3, deduplicator.size());
+
+		// Variations of the same addresses, checked against their canonical forms in a set of Strings
+		EmailCanonicalizer canonicalizer = new EmailCanonicalizer();
+		String[] domains = new String[] { "gmail.com", "GMail.com", "googlemail.com", "hotmail.com", "spothero.com", "SPOTHERO.com" };
+		Random random = new Random(19);
+		deduplicator = new EmailDeduplicator(canonicalizer, 1000);
+		Set<String> canonicalAddresses = new HashSet<String>();
+		for (int i = 0; i < 50000; i++) {
+			StringBuilder username = new StringBuilder("user" + random.nextInt(5000));
+			if (random.nextBoolean()) {
+				username.insert(1 + random.nextInt(username.length() - 1), '.');
+			}
+			if (random.nextBoolean()) {
+				username.append("+tag").append(random.nextInt(10));
+			}
+			String emailAddress = username + "@" + domains[random.nextInt(domains.length)];
+
+			Assert.assertEquals(emailAddress, canonicalAddresses.add(canonicalizer.canonicalize(emailAddress)), deduplicator.add(emailAddress));
+		}
+		Assert.assertEquals(canonicalAddresses.size(), deduplicator.size());
+	}
+
+	public void testFingerprintSetGrowth() throws Throwable {
+		// Raw fingerprints, including 0 and values that share their low bits, against a set of boxed longs
+		EmailDeduplicator deduplicator = new EmailDeduplicator(new EmailCanonicalizer(), 0);
+		Set<Long> expected = new HashSet<Long>();
+		Random random = new Random(20);
+		for (int i = 0; i < 200000; i++) {
+			long fingerprint;
+			switch (random.nextInt(4)) {
+				case 0:
+					fingerprint = random.nextInt(100);
+					break;
+				case 1:
+					fingerprint = (long)random.nextInt(1000) << 40;
+					break;
+				default:
+					fingerprint = random.nextLong();
+					break;
+			}
+			Assert.assertEquals(expected.add(fingerprint), deduplicator.addFingerprint(fingerprint));
+		}
+		Assert.assertEquals(expected.size(), deduplicator.size());
+		Assert.assertFalse(deduplicator.addFingerprint(0));
+	}
+}
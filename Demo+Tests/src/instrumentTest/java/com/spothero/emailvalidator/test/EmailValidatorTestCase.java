@@ -21,11 +21,22 @@ package com.spothero.emailvalidator.test;
 
 import android.test.AndroidTestCase;
 
+import com.spothero.emailvalidator.DistanceMetric;
 import com.spothero.emailvalidator.EmailValidationResult;
 import com.spothero.emailvalidator.EmailValidator;
+import com.spothero.emailvalidator.EmailValidatorConfiguration;
+import com.spothero.emailvalidator.PublicSuffixRegistry;
+import com.spothero.emailvalidator.StripedValidationMetrics;
+import com.spothero.emailvalidator.ValidationMetrics;
 
 import junit.framework.Assert;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
 public class EmailValidatorTestCase extends AndroidTestCase {
 
 	public void testLevenshteinDistance() throws Throwable {
@@ -36,7 +47,16 @@ public class EmailValidatorTestCase extends AndroidTestCase {
 				new LevenshteinDistanceTestModel("spot", "hero", 4),
 				new LevenshteinDistanceTestModel("parking", "rules", 6),
 				new LevenshteinDistanceTestModel("lame", "same", 1),
-				new LevenshteinDistanceTestModel("same", "same", 0)
+				new LevenshteinDistanceTestModel("same", "same", 0),
+				new LevenshteinDistanceTestModel("", "same", 4),
+				new LevenshteinDistanceTestModel("\u00e9t\u00e9", "ete", 2),
+				// Characters outside of the BMP are a single character
+				new LevenshteinDistanceTestModel("\ud83d\ude00", "", 1),
+				new LevenshteinDistanceTestModel("a\ud83d\ude00b", "a\ud83d\ude01b", 1),
+				new LevenshteinDistanceTestModel("\ud83d\ude00" + repeat("ab", 40), repeat("ab", 40), 1),
+				new LevenshteinDistanceTestModel(repeat("ab", 32), repeat("ba", 32), 2),
+				new LevenshteinDistanceTestModel(repeat("ab", 32) + "c", repeat("ab", 32), 1),
+				new LevenshteinDistanceTestModel(repeat("abc", 30), repeat("abd", 30), 30)
 		};
 
 		for (LevenshteinDistanceTestModel test : tests) {
@@ -45,6 +65,57 @@ public class EmailValidatorTestCase extends AndroidTestCase {
 		}
 	}
 
+	public void testLevenshteinDistanceMatchesDynamicProgramming() throws Throwable {
+		Random random = new Random(20131018);
+		String alphabet = "abcd.\u00e9\u00fc";
+
+		for (int i = 0; i < 5000; i++) {
+			char[] a = randomString(random, alphabet, random.nextInt(80));
+			char[] b = randomString(random, alphabet, random.nextInt(80));
+			assertEquals(getDynamicProgrammingDistance(a, b), EmailValidator.getLevenshteinDistance(a, b));
+		}
+	}
+
+	public void testKeyboardDistance() throws Throwable {
+		assertEquals(0f, EmailValidator.getKeyboardDistance("gmail".toCharArray(), "gmail".toCharArray()));
+		assertEquals(0.5f, EmailValidator.getKeyboardDistance("gamil".toCharArray(), "gmail".toCharArray()));
+		assertEquals(0.5f, EmailValidator.getKeyboardDistance("gmail.con".toCharArray(), "gmail.com".toCharArray()));
+		assertEquals(0.5f, EmailValidator.getKeyboardDistance("gmail.com".toCharArray(), "gmail.cpm".toCharArray()));
+		assertEquals(1f, EmailValidator.getKeyboardDistance("gmail.com".toCharArray(), "gxail.com".toCharArray()));
+		assertEquals(1f, EmailValidator.getKeyboardDistance("hotmial.con".toCharArray(), "hotmail.com".toCharArray()));
+		assertEquals(3f, EmailValidator.getKeyboardDistance("".toCharArray(), "aol".toCharArray()));
+
+		// With no neighbouring keys in the alphabet, only swaps are cheaper than plain edits
+		Random random = new Random(20131019);
+		String alphabet = "aeimt.\u00e9";
+		for (int i = 0; i < 5000; i++) {
+			char[] a = randomString(random, alphabet, random.nextInt(20));
+			char[] b = randomString(random, alphabet, random.nextInt(20));
+			assertEquals(getDynamicProgrammingSwapDistance(a, b) / 2f, EmailValidator.getKeyboardDistance(a, b));
+			assertEquals(EmailValidator.getKeyboardDistance(b, a), EmailValidator.getKeyboardDistance(a, b));
+		}
+	}
+
+	public void testPublicSuffixRegistry() throws Throwable {
+		PublicSuffixRegistry registry = PublicSuffixRegistry.parse(
+				new StringReader("# Version 2013101200\nCK\nCOM\nUK\n"),
+				new StringReader("// comment\nuk\nco.uk\n*.ck\n!www.ck\n\ncom\n"));
+
+		Assert.assertTrue(registry.isRegisteredTLD("com"));
+		Assert.assertTrue(registry.isRegisteredTLD("COM"));
+		Assert.assertTrue(registry.isRegisteredTLD("ck"));
+		Assert.assertFalse(registry.isRegisteredTLD("con"));
+		Assert.assertFalse(registry.isRegisteredTLD("co.uk"));
+
+		Assert.assertEquals("com", registry.getPublicSuffix("gmail.com"));
+		Assert.assertEquals("co.uk", registry.getPublicSuffix("yahoo.co.uk"));
+		Assert.assertEquals("co.uk", registry.getPublicSuffix("mail.yahoo.co.uk"));
+		Assert.assertEquals("uk", registry.getPublicSuffix("spothero.uk"));
+		Assert.assertEquals("foo.ck", registry.getPublicSuffix("bar.foo.ck"));
+		Assert.assertEquals("ck", registry.getPublicSuffix("www.ck"));
+		Assert.assertEquals("xyz", registry.getPublicSuffix("spothero.xyz"));
+	}
+
 	public void testSyntaxValidator() throws Throwable {
 		ValidatorTestModel[] tests = new ValidatorTestModel[] {
 				new ValidatorTestModel("test@email.com"),
@@ -71,7 +142,21 @@ public class EmailValidatorTestCase extends AndroidTestCase {
 				new ValidatorTestModel("test@yaho.com.uk", "test@yahoo.co.uk"),
 				new ValidatorTestModel("test@yahooo.co.uk", "test@yahoo.co.uk"),
 				new ValidatorTestModel("test@goglemail.coj", "test@googlemail.com"),
-				new ValidatorTestModel("test@goglemail.com", "test@googlemail.com")
+				new ValidatorTestModel("test@goglemail.com", "test@googlemail.com"),
+				new ValidatorTestModel("test@spothero.com"),
+				new ValidatorTestModel("test@spothero.con", "test@spothero.com"),
+				new ValidatorTestModel("test@spothero.co.uk"),
+				new ValidatorTestModel("test@spothero.co.uj", "test@spothero.co.uk"),
+				new ValidatorTestModel("test@yahoo.co.ukk", "test@yahoo.co.uk"),
+				// Ambiguous suffix typos are left to the domain match
+				new ValidatorTestModel("test@yahoo.co.ip", "test@yahoo.co.in"),
+				new ValidatorTestModel("test@hotmai.co.ku"),
+				new ValidatorTestModel("test@yahoo.com.ku"),
+				new ValidatorTestModel("test@gmail.co.on"),
+				// TLDs with upper case letters aren't registered, and are suggested in lower case
+				new ValidatorTestModel("x@ia.Com", "x@ia.com"),
+				new ValidatorTestModel("x@i.Mil", "x@i.mil"),
+				new ValidatorTestModel("test@gmail.coM", "test@gmail.com")
 		};
 
 		for (ValidatorTestModel test : tests) {
@@ -79,4 +164,298 @@ public class EmailValidatorTestCase extends AndroidTestCase {
 		}
 	}
 
+	public void testInternationalSuggestions() throws Throwable {
+		ValidatorTestModel[] tests = new ValidatorTestModel[] {
+				new ValidatorTestModel("t\u00e9st@gmail.com"),
+				new ValidatorTestModel("t\u00e9st@gmial.com", "t\u00e9st@gmail.com"),
+				new ValidatorTestModel("\u4ed6\u4eec@gmail.con", "\u4ed6\u4eec@gmail.com"),
+				new ValidatorTestModel("test@b\u00fccher.com"),
+				new ValidatorTestModel("test@b\u00fccher.con", "test@b\u00fccher.com"),
+				new ValidatorTestModel("test@b\u00fccher\u3002con", "test@b\u00fccher.com"),
+				new ValidatorTestModel("test@b\u00fccher.co.ukk", "test@b\u00fccher.co.uk")
+		};
+
+		for (ValidatorTestModel test : tests) {
+			assertEquals(test.suggestion, EmailValidator.getAutocorrectSuggestion(test.emailAddress));
+		}
+	}
+
+	public void testConfiguredValidators() throws Throwable {
+		EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+		configuration.commonTLDs = Arrays.asList("io", "com");
+		configuration.commonDomains = Arrays.asList("spothero.io", "example.org");
+		configuration.tldTolerance = 0.6f;
+		EmailValidator validator = new EmailValidator(configuration);
+
+		// Changes to the configuration after the validator is built don't affect it
+		configuration.commonDomains = Arrays.asList("gmail.com");
+
+		assertEquals("test@spothero.io", validator.getSuggestion("test@spothero.ii"));
+		assertEquals("test@spothero.io", validator.getSuggestion("test@spothreo.io"));
+		assertEquals("test@example.org", validator.validate("test@exampel.org").autocorrectSuggestion);
+		assertNull(validator.getSuggestion("test@gamil.com"));
+		assertNull(validator.getSuggestion("test@spothero.io"));
+		assertEquals(EmailValidationResult.ValidationError.INVALID_TLD, validator.validate("test@spothero.i").validationError);
+
+		// The default validator is unaffected
+		assertNull(EmailValidator.getAutocorrectSuggestion("test@spothero.ii"));
+		assertEquals("test@gmail.com", EmailValidator.getAutocorrectSuggestion("test@gamil.com"));
+
+		EmailValidatorConfiguration strictConfiguration = new EmailValidatorConfiguration();
+		strictConfiguration.domainTolerance = 0f;
+		EmailValidator strictValidator = new EmailValidator(strictConfiguration);
+		assertNull(strictValidator.getSuggestion("test@gamil.com"));
+		assertEquals("test@gamil.com", strictValidator.getSuggestion("test@gamil.con"));
+	}
+
+	public void testTLDCorrectionsMatchClosestTLD() throws Throwable {
+		Random random = new Random(20131023);
+		String alphabet = "comnetrgdeukjpinfo-1CM";
+		List<List<String>> tldLists = new ArrayList<List<String>>();
+		tldLists.add(new EmailValidatorConfiguration().commonTLDs);
+		// Ties go to the TLD that comes first
+		tldLists.add(Arrays.asList("com", "cm", "co", "om", "net", "nt", "info"));
+
+		// With no registered TLDs and no common domains, every suggestion is a TLD correction
+		EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+		configuration.publicSuffixRegistry = PublicSuffixRegistry.parse(new StringReader(""), null);
+		configuration.commonDomains = new ArrayList<String>();
+
+		for (List<String> tlds : tldLists) {
+			for (DistanceMetric metric : DistanceMetric.values()) {
+				for (float tolerance : new float[] { 0.5f, 0.7f, 0.34f }) {
+					configuration.commonTLDs = tlds;
+					configuration.distanceMetric = metric;
+					configuration.tldTolerance = tolerance;
+					EmailValidator validator = new EmailValidator(configuration);
+
+					for (int i = 0; i < 2000; i++) {
+						char[] tld = new char[2 + random.nextInt(6)];
+						for (int j = 0; j < tld.length; j++) {
+							tld[j] = alphabet.charAt(random.nextInt(alphabet.length()));
+						}
+						String emailAddress = "test@example." + new String(tld);
+						if (EmailValidator.validateSyntax(emailAddress) != null) {
+							continue;
+						}
+
+						String closestTLD = getClosestTLD(new String(tld), tlds, tolerance, metric);
+						String expected = closestTLD == null || closestTLD.equals(new String(tld)) ? null : "test@example." + closestTLD;
+						assertEquals(metric + " " + tolerance + " " + emailAddress, expected, validator.getSuggestion(emailAddress));
+					}
+				}
+			}
+		}
+	}
+
+	public void testKeyboardDistanceSuggestions() throws Throwable {
+		EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+		configuration.domainTolerance = 0.1f;
+		EmailValidator levenshteinValidator = new EmailValidator(configuration);
+		configuration.distanceMetric = DistanceMetric.KEYBOARD;
+		EmailValidator keyboardValidator = new EmailValidator(configuration);
+
+		assertNull(levenshteinValidator.getSuggestion("test@gamil.com"));
+		assertEquals("test@gmail.com", keyboardValidator.getSuggestion("test@gamil.com"));
+		assertEquals("test@gmail.com", keyboardValidator.getSuggestion("test@gnail.com"));
+		assertEquals("test@hotmail.com", keyboardValidator.getSuggestion("test@hotmial.com"));
+		assertEquals("test@yahoo.com", keyboardValidator.getSuggestion("test@yahoo.con"));
+		assertNull(keyboardValidator.getSuggestion("test@gxail.com"));
+		assertNull(keyboardValidator.getSuggestion("test@gmail.com"));
+	}
+
+	public void testCallerOwnedResults() throws Throwable {
+		EmailValidationResult result = new EmailValidationResult();
+		assertSame(result, EmailValidator.validateAndAutocorrect("test@gamil.com", result));
+		assertTrue(result.passedValidation);
+		assertNull(result.validationError);
+		assertEquals("test@gmail.com", result.autocorrectSuggestion);
+
+		assertSame(result, EmailValidator.validateAndAutocorrect("test@email+.com", result));
+		assertFalse(result.passedValidation);
+		assertEquals(EmailValidationResult.ValidationError.INVALID_DOMAIN, result.validationError);
+		assertNull(result.autocorrectSuggestion);
+
+		assertSame(result, EmailValidator.getDefault().validate("test@gmail.com", result));
+		assertTrue(result.passedValidation);
+		assertNull(result.validationError);
+		assertNull(result.autocorrectSuggestion);
+
+		// Returned results belong to the caller, so changing one doesn't affect later calls
+		EmailValidationResult failedResult = EmailValidator.validateAndAutocorrect("a@email+.com");
+		failedResult.validationError = null;
+		assertNotSame(failedResult, EmailValidator.validateAndAutocorrect("b@other+.com"));
+		assertEquals(EmailValidationResult.ValidationError.INVALID_DOMAIN, EmailValidator.validateAndAutocorrect("b@other+.com").validationError);
+		assertNotSame(EmailValidator.validateAndAutocorrect("a@gmail.com"), EmailValidator.validateAndAutocorrect("b@yahoo.com"));
+		assertNotSame(EmailValidator.validateAndAutocorrect("a@gamil.com"), EmailValidator.validateAndAutocorrect("a@gamil.com"));
+
+		// Failures only share results when asked to
+		EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+		configuration.shareFailureResults = true;
+		EmailValidator sharingValidator = new EmailValidator(configuration);
+		assertSame(sharingValidator.validate("a@email+.com"), sharingValidator.validate("b@other+.com"));
+		assertNotSame(sharingValidator.validate("a@gmail.com"), sharingValidator.validate("b@yahoo.com"));
+	}
+
+	public void testSuggestionCache() throws Throwable {
+		EmailValidator validator = new EmailValidator(new EmailValidatorConfiguration());
+
+		assertEquals("first@gmail.com", validator.getSuggestion("first@gamil.con"));
+		assertEquals("second@gmail.com", validator.getSuggestion("second@gamil.con"));
+		assertNull(validator.getSuggestion("third@gmail.com"));
+		assertNull(validator.getSuggestion("fourth@gmail.com"));
+		assertEquals(2, validator.getSuggestionCacheHitCount());
+		assertEquals(2, validator.getSuggestionCacheMissCount());
+
+		// Invalid addresses never reach the cache
+		validator.getSuggestion("invalid");
+		assertEquals(2, validator.getSuggestionCacheMissCount());
+
+		EmailValidatorConfiguration uncachedConfiguration = new EmailValidatorConfiguration();
+		uncachedConfiguration.suggestionCacheSize = 0;
+		EmailValidator uncachedValidator = new EmailValidator(uncachedConfiguration);
+		assertEquals("test@gmail.com", uncachedValidator.getSuggestion("test@gamil.con"));
+		assertEquals(0, uncachedValidator.getSuggestionCacheHitCount());
+		assertEquals(0, uncachedValidator.getSuggestionCacheMissCount());
+
+		// Constant eviction from a tiny cache still gives the same suggestions
+		EmailValidatorConfiguration smallConfiguration = new EmailValidatorConfiguration();
+		smallConfiguration.suggestionCacheSize = 8;
+		EmailValidator smallValidator = new EmailValidator(smallConfiguration);
+		String[] domains = new String[] { "gamil.con", "gmail.com", "yaho.com", "hotmial.com", "spothero.con", "yahoo.co.uj", "Gmail.com", "aol.cmo" };
+		Random random = new Random(12);
+		for (int i = 0; i < 5000; i++) {
+			String emailAddress = "user" + i + "@" + (random.nextInt(4) == 0 ? "x" + random.nextInt(100) : "") + domains[random.nextInt(domains.length)];
+			assertEquals(emailAddress, uncachedValidator.getSuggestion(emailAddress), smallValidator.getSuggestion(emailAddress));
+		}
+		assertTrue(smallValidator.getSuggestionCacheHitCount() > 0);
+	}
+
+	public void testMetrics() throws Throwable {
+		assertSame(ValidationMetrics.NONE, new EmailValidator(new EmailValidatorConfiguration()).getMetrics());
+
+		StripedValidationMetrics metrics = new StripedValidationMetrics();
+		EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+		configuration.metrics = metrics;
+		EmailValidator validator = new EmailValidator(configuration);
+		assertSame(metrics, validator.getMetrics());
+
+		validator.validate("test@gmail.com");
+		validator.validate("first@gamil.con");
+		validator.validate("second@gamil.con");
+		validator.validate("test.com");
+		validator.validate("test@com");
+		validator.validate("test@email+.com");
+
+		assertEquals(3, metrics.getPassedCount());
+		assertEquals(2, metrics.getFailedCount(EmailValidationResult.ValidationError.INVALID_SYNTAX));
+		assertEquals(1, metrics.getFailedCount(EmailValidationResult.ValidationError.INVALID_DOMAIN));
+		assertEquals(0, metrics.getFailedCount(EmailValidationResult.ValidationError.INVALID_TLD));
+
+		// Every address is scanned, but only valid ones that miss the suggestion cache get any further
+		assertEquals(6, metrics.getPhaseCount(ValidationMetrics.Phase.SYNTAX_CHECK));
+		assertEquals(2, metrics.getPhaseCount(ValidationMetrics.Phase.TLD_LOOKUP));
+		assertEquals(1, metrics.getPhaseCount(ValidationMetrics.Phase.TLD_MATCH));
+		assertEquals(1, metrics.getPhaseCount(ValidationMetrics.Phase.DOMAIN_MATCH));
+		assertTrue(metrics.getPhaseNanoseconds(ValidationMetrics.Phase.SYNTAX_CHECK) >= 0);
+
+		metrics.onSuggestionShown();
+		metrics.onSuggestionShown();
+		metrics.onSuggestionAccepted();
+		metrics.onSuggestionDismissed();
+		assertEquals(2, metrics.getSuggestionShownCount());
+		assertEquals(1, metrics.getSuggestionAcceptedCount());
+		assertEquals(1, metrics.getSuggestionDismissedCount());
+
+		// Counts from every thread add up
+		final EmailValidator sharedValidator = validator;
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						sharedValidator.validate("test" + j + "@gmail.com");
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(4003, metrics.getPassedCount());
+		assertEquals(4006, metrics.getPhaseCount(ValidationMetrics.Phase.SYNTAX_CHECK));
+	}
+
+	private static String repeat(String string, int count) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			builder.append(string);
+		}
+		return builder.toString();
+	}
+
+	private static char[] randomString(Random random, String alphabet, int length) {
+		char[] string = new char[length];
+		for (int i = 0; i < length; i++) {
+			string[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+		}
+		return string;
+	}
+
+	// The full matrix implementation the bit-parallel version is checked against
+	private static int getDynamicProgrammingDistance(char[] a, char[] b) {
+		int[][] distance = new int[a.length + 1][b.length + 1];
+		for (int i = 0; i <= a.length; i++) {
+			distance[i][0] = i;
+		}
+		for (int j = 0; j <= b.length; j++) {
+			distance[0][j] = j;
+		}
+		for (int i = 1; i <= a.length; i++) {
+			for (int j = 1; j <= b.length; j++) {
+				int substitution = distance[i - 1][j - 1] + (a[i - 1] == b[j - 1] ? 0 : 1);
+				distance[i][j] = Math.min(substitution, Math.min(distance[i - 1][j], distance[i][j - 1]) + 1);
+			}
+		}
+		return distance[a.length][b.length];
+	}
+
+	// Optimal string alignment distance in half edits, where swapping two neighbouring characters costs one
+	private static int getDynamicProgrammingSwapDistance(char[] a, char[] b) {
+		int[][] distance = new int[a.length + 1][b.length + 1];
+		for (int i = 0; i <= a.length; i++) {
+			distance[i][0] = 2 * i;
+		}
+		for (int j = 0; j <= b.length; j++) {
+			distance[0][j] = 2 * j;
+		}
+		for (int i = 1; i <= a.length; i++) {
+			for (int j = 1; j <= b.length; j++) {
+				int substitution = distance[i - 1][j - 1] + (a[i - 1] == b[j - 1] ? 0 : 2);
+				distance[i][j] = Math.min(substitution, Math.min(distance[i - 1][j], distance[i][j - 1]) + 2);
+				if (i > 1 && j > 1 && a[i - 1] != b[j - 1] && a[i - 1] == b[j - 2] && a[i - 2] == b[j - 1]) {
+					distance[i][j] = Math.min(distance[i][j], distance[i - 2][j - 2] + 1);
+				}
+			}
+		}
+		return distance[a.length][b.length];
+	}
+
+	// The closest TLD under the tolerance, with ties going to the one that comes first
+	private static String getClosestTLD(String tld, List<String> tlds, float tolerance, DistanceMetric metric) {
+		String closestTLD = null;
+		float closestDistance = Float.MAX_VALUE;
+		for (String candidate : tlds) {
+			float distance = metric == DistanceMetric.KEYBOARD
+					? EmailValidator.getKeyboardDistance(tld.toCharArray(), candidate.toCharArray())
+					: EmailValidator.getLevenshteinDistance(tld.toCharArray(), candidate.toCharArray());
+			if (distance / tld.length() < tolerance && distance < closestDistance) {
+				closestTLD = candidate;
+				closestDistance = distance;
+			}
+		}
+		return closestTLD;
+	}
 }
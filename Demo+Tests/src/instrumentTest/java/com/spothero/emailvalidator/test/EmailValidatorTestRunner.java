@@ -11,6 +11,14 @@ public class EmailValidatorTestRunner extends InstrumentationTestRunner {
 	public TestSuite getAllTests() {
 		InstrumentationTestSuite suite = new InstrumentationTestSuite(this);
 		suite.addTestSuite(EmailValidatorTestCase.class);
+		suite.addTestSuite(SyntaxEquivalenceTestCase.class);
+		suite.addTestSuite(MappedDomainDictionaryTestCase.class);
+		suite.addTestSuite(EmailBatchValidatorTestCase.class);
+		suite.addTestSuite(IncrementalEmailValidatorTestCase.class);
+		suite.addTestSuite(DomainVerifierTestCase.class);
+		suite.addTestSuite(EmailCanonicalizerTestCase.class);
+		suite.addTestSuite(BlockedDomainListTestCase.class);
+		suite.addTestSuite(DictionaryWatcherTestCase.class);
 		return suite;
 	}
 
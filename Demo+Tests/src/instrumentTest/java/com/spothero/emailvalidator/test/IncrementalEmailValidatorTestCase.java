@@ -0,0 +1,101 @@
+/*
+ * IncrementalEmailValidatorTestCase
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.test;
+
+import android.test.AndroidTestCase;
+
+import com.spothero.emailvalidator.DistanceMetric;
+import com.spothero.emailvalidator.EmailValidationResult;
+import com.spothero.emailvalidator.EmailValidator;
+import com.spothero.emailvalidator.EmailValidatorConfiguration;
+import com.spothero.emailvalidator.IncrementalEmailValidator;
+
+import junit.framework.Assert;
+
+import java.util.Random;
+
+public class IncrementalEmailValidatorTestCase extends AndroidTestCase {
+
+	private static final String ALPHABET = "abcegilmnost.@";
+
+	public void testTyping() throws Throwable {
+		EmailValidator validator = EmailValidator.getDefault();
+		IncrementalEmailValidator incrementalValidator = new IncrementalEmailValidator(validator);
+
+		String emailAddress = "test@gamil.con";
+		for (int i = 1; i <= emailAddress.length(); i++) {
+			assertSameResult(validator, incrementalValidator, emailAddress.substring(0, i));
+		}
+		Assert.assertEquals("test@gmail.com", incrementalValidator.getResult().autocorrectSuggestion);
+
+		// Backspacing and retyping
+		assertSameResult(validator, incrementalValidator, "test@gamil.co");
+		assertSameResult(validator, incrementalValidator, "test@gamil.c");
+		assertSameResult(validator, incrementalValidator, "test@gamil.com");
+		Assert.assertEquals("test@gmail.com", incrementalValidator.getResult().autocorrectSuggestion);
+
+		// Editing in the middle
+		assertSameResult(validator, incrementalValidator, "test@gmail.com");
+		Assert.assertNull(incrementalValidator.getResult().autocorrectSuggestion);
+	}
+
+	public void testRandomEdits() throws Throwable {
+		assertSameResultsForRandomEdits(DistanceMetric.LEVENSHTEIN, new Random(13));
+	}
+
+	public void testRandomEditsByKeyboardDistance() throws Throwable {
+		assertSameResultsForRandomEdits(DistanceMetric.KEYBOARD, new Random(17));
+	}
+
+	private static void assertSameResultsForRandomEdits(DistanceMetric metric, Random random) {
+		EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+		configuration.suggestionCacheSize = 0;
+		configuration.domainTolerance = 0.4f;
+		configuration.distanceMetric = metric;
+		EmailValidator validator = new EmailValidator(configuration);
+		IncrementalEmailValidator incrementalValidator = new IncrementalEmailValidator(validator);
+
+		StringBuilder text = new StringBuilder("user@");
+		for (int i = 0; i < 20000; i++) {
+			int action = random.nextInt(10);
+			if (action < 6 || text.length() == 0) {
+				text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			} else if (action < 8) {
+				text.setLength(text.length() - 1);
+			} else if (action < 9) {
+				text.setCharAt(random.nextInt(text.length()), ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			} else {
+				text.setLength(0);
+				text.append(random.nextBoolean() ? "someone@" : "someone@gmai");
+			}
+			if (text.length() > 40) {
+				text.delete(5, text.length());
+			}
+			assertSameResult(validator, incrementalValidator, text);
+		}
+	}
+
+	private static void assertSameResult(EmailValidator validator, IncrementalEmailValidator incrementalValidator, CharSequence emailAddress) {
+		EmailValidationResult expected = validator.validate(emailAddress.toString());
+		EmailValidationResult result = incrementalValidator.update(emailAddress);
+		Assert.assertEquals(emailAddress.toString(), expected.passedValidation, result.passedValidation);
+		Assert.assertEquals(emailAddress.toString(), expected.validationError, result.validationError);
+		Assert.assertEquals(emailAddress.toString(), expected.autocorrectSuggestion, result.autocorrectSuggestion);
+	}
+}
@@ -0,0 +1,244 @@
+/*
+ * MappedDomainDictionaryTestCase
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.test;
+
+import android.test.AndroidTestCase;
+
+import com.spothero.emailvalidator.DistanceMetric;
+import com.spothero.emailvalidator.EmailValidator;
+import com.spothero.emailvalidator.MappedDomainDictionary;
+
+import junit.framework.Assert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+public class MappedDomainDictionaryTestCase extends AndroidTestCase {
+
+	private static final String ALPHABET = "abcdeilmnorst.";
+
+	public void testExactLookups() throws Throwable {
+		MappedDomainDictionary dictionary = writeAndOpen(Arrays.asList("yahoo.com", "gmail.com", "aol.com", "gmail.com", "yahoo.co.uk"));
+
+		Assert.assertEquals(4, dictionary.size());
+		Assert.assertTrue(contains(dictionary, "gmail.com"));
+		Assert.assertTrue(contains(dictionary, "aol.com"));
+		Assert.assertTrue(contains(dictionary, "yahoo.co.uk"));
+		Assert.assertFalse(contains(dictionary, "gmail.co"));
+		Assert.assertFalse(contains(dictionary, "gmail.comm"));
+		Assert.assertFalse(contains(dictionary, "a"));
+		Assert.assertFalse(contains(dictionary, "zzz.com"));
+		Assert.assertFalse(contains(dictionary, "gm\u00e9il.com"));
+		Assert.assertTrue(dictionary.contains("test@gmail.com", 5, 14));
+	}
+
+	public void testClosestMatches() throws Throwable {
+		MappedDomainDictionary dictionary = writeAndOpen(Arrays.asList("yahoo.com", "gmail.com", "aol.com", "hotmail.com"));
+
+		Assert.assertEquals("gmail.com", dictionary.findClosest("gamil.com", 0, 9, 2));
+		Assert.assertEquals("hotmail.com", dictionary.findClosest("hotmial.con", 0, 11, 3));
+		Assert.assertEquals("yahoo.com", dictionary.findClosest("yahoo.com", 0, 9, 0));
+		Assert.assertNull(dictionary.findClosest("gamil.com", 0, 9, 1));
+		Assert.assertNull(dictionary.findClosest("example.org", 0, 11, 2));
+	}
+
+	public void testEmptyDictionary() throws Throwable {
+		MappedDomainDictionary dictionary = writeAndOpen(new ArrayList<String>());
+
+		Assert.assertEquals(0, dictionary.size());
+		Assert.assertFalse(contains(dictionary, "gmail.com"));
+		Assert.assertNull(dictionary.findClosest("gmail.com", 0, 9, 5));
+	}
+
+	public void testClosestMatchesAgreeWithLinearScan() throws Throwable {
+		Random random = new Random(7);
+		List<String> domains = new ArrayList<String>();
+		for (int i = 0; i < 2000; i++) {
+			domains.add(randomString(random, 1 + random.nextInt(12)));
+		}
+		MappedDomainDictionary dictionary = writeAndOpen(domains);
+
+		String[] sortedDomains = domains.toArray(new String[domains.size()]);
+		Arrays.sort(sortedDomains);
+
+		for (int i = 0; i < 300; i++) {
+			String query = random.nextBoolean() ? randomString(random, random.nextInt(14)) : mutate(random, domains.get(random.nextInt(domains.size())));
+			int maxDistance = random.nextInt(5);
+			Assert.assertEquals(query + " within " + maxDistance, findClosestLinearly(sortedDomains, query, maxDistance), dictionary.findClosest(query, 0, query.length(), maxDistance));
+			Assert.assertEquals(query, domains.contains(query), contains(dictionary, query));
+		}
+	}
+
+	public void testKeyboardClosestMatchesAgreeWithLinearScan() throws Throwable {
+		Random random = new Random(11);
+		List<String> domains = new ArrayList<String>();
+		for (int i = 0; i < 2000; i++) {
+			domains.add(randomString(random, 1 + random.nextInt(12)));
+		}
+		MappedDomainDictionary dictionary = writeAndOpen(domains);
+
+		String[] sortedDomains = domains.toArray(new String[domains.size()]);
+		Arrays.sort(sortedDomains);
+
+		for (int i = 0; i < 300; i++) {
+			String query = random.nextBoolean() ? randomString(random, random.nextInt(14)) : mutate(random, domains.get(random.nextInt(domains.size())));
+			int maxHalfEdits = random.nextInt(8);
+			Assert.assertEquals(query + " within " + maxHalfEdits, findClosestByKeyboardDistanceLinearly(sortedDomains, query, maxHalfEdits),
+					dictionary.findClosest(query, 0, query.length(), maxHalfEdits, DistanceMetric.KEYBOARD));
+		}
+	}
+
+	public void testLongAndUnknownDomains() throws Throwable {
+		Random random = new Random(13);
+		List<String> domains = new ArrayList<String>();
+		for (int i = 0; i < 2000; i++) {
+			domains.add(randomString(random, 1 + random.nextInt(12)));
+		}
+		String longDomain = randomString(random, 250);
+		domains.add(longDomain);
+		MappedDomainDictionary dictionary = writeAndOpen(domains);
+
+		String[] sortedDomains = domains.toArray(new String[domains.size()]);
+		Arrays.sort(sortedDomains);
+
+		// Bounds as wide as the validator gives long domains, which only entries of a similar length can be within
+		for (int i = 0; i < 20; i++) {
+			String query = randomString(random, 100 + random.nextInt(300));
+			int maxDistance = query.length() / 4;
+			Assert.assertEquals(query, findClosestLinearly(sortedDomains, query, maxDistance), dictionary.findClosest(query, 0, query.length(), maxDistance));
+			Assert.assertEquals(query, findClosestByKeyboardDistanceLinearly(sortedDomains, query, maxDistance * 2),
+					dictionary.findClosest(query, 0, query.length(), maxDistance * 2, DistanceMetric.KEYBOARD));
+		}
+
+		String mutatedLongDomain = mutate(random, longDomain.substring(3));
+		Assert.assertEquals(longDomain, dictionary.findClosest(mutatedLongDomain, 0, mutatedLongDomain.length(), 62));
+		Assert.assertEquals(longDomain, dictionary.findClosest(mutatedLongDomain, 0, mutatedLongDomain.length(), 124, DistanceMetric.KEYBOARD));
+
+		// Unknown domains close to many entries at once, where the closest has to win rather than the first found
+		for (int i = 0; i < 100; i++) {
+			String query = randomString(random, 8 + random.nextInt(8));
+			int maxDistance = 1 + random.nextInt(6);
+			Assert.assertEquals(query + " within " + maxDistance, findClosestLinearly(sortedDomains, query, maxDistance), dictionary.findClosest(query, 0, query.length(), maxDistance));
+		}
+	}
+
+	public void testRejectsInvalidDomains() throws Throwable {
+		try {
+			MappedDomainDictionary.write(Arrays.asList("gm\u00e9il.com"), new ByteArrayOutputStream());
+			Assert.fail("Non-ASCII domain was accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		try {
+			MappedDomainDictionary.write(Arrays.asList(""), new ByteArrayOutputStream());
+			Assert.fail("Empty domain was accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	public void testRejectsOtherFiles() throws Throwable {
+		File file = File.createTempFile("domains", ".dict");
+		file.deleteOnExit();
+		FileOutputStream outputStream = new FileOutputStream(file);
+		try {
+			outputStream.write("gmail.com\nyahoo.com\nhotmail.com\n".getBytes("US-ASCII"));
+		} finally {
+			outputStream.close();
+		}
+
+		try {
+			MappedDomainDictionary.open(file);
+			Assert.fail("Text file was opened as a dictionary");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	private static boolean contains(MappedDomainDictionary dictionary, String domain) {
+		return dictionary.contains(domain, 0, domain.length());
+	}
+
+	private static MappedDomainDictionary writeAndOpen(Collection<String> domains) throws IOException {
+		File file = File.createTempFile("domains", ".dict");
+		file.deleteOnExit();
+		FileOutputStream outputStream = new FileOutputStream(file);
+		try {
+			MappedDomainDictionary.write(domains, outputStream);
+		} finally {
+			outputStream.close();
+		}
+		return MappedDomainDictionary.open(file);
+	}
+
+	private static String findClosestLinearly(String[] sortedDomains, String query, int maxDistance) {
+		String closest = null;
+		int closestDistance = maxDistance + 1;
+		for (String domain : sortedDomains) {
+			int distance = EmailValidator.getLevenshteinDistance(domain.toCharArray(), query.toCharArray());
+			if (distance < closestDistance) {
+				closest = domain;
+				closestDistance = distance;
+			}
+		}
+		return closest;
+	}
+
+	private static String findClosestByKeyboardDistanceLinearly(String[] sortedDomains, String query, int maxHalfEdits) {
+		String closest = null;
+		float closestDistance = maxHalfEdits / 2f + 0.5f;
+		for (String domain : sortedDomains) {
+			float distance = EmailValidator.getKeyboardDistance(domain.toCharArray(), query.toCharArray());
+			if (distance < closestDistance) {
+				closest = domain;
+				closestDistance = distance;
+			}
+		}
+		return closest;
+	}
+
+	private static String mutate(Random random, String string) {
+		StringBuilder builder = new StringBuilder(string);
+		for (int edits = random.nextInt(4); edits > 0; edits--) {
+			int index = random.nextInt(builder.length() + 1);
+			char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+			if (index < builder.length() && random.nextBoolean()) {
+				builder.setCharAt(index, c);
+			} else {
+				builder.insert(index, c);
+			}
+		}
+		return builder.toString();
+	}
+
+	private static String randomString(Random random, int length) {
+		char[] characters = new char[length];
+		for (int i = 0; i < length; i++) {
+			characters[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+		}
+		return new String(characters);
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * SyntaxEquivalenceTestCase
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator.test;
+
+import android.test.AndroidTestCase;
+
+import com.spothero.emailvalidator.EmailValidationResult.ValidationError;
+import com.spothero.emailvalidator.EmailValidator;
+
+import java.util.Random;
+
+/**
+ * Checks that {@link EmailValidator#validateSyntax(String)} returns the same errors as the regular expressions it replaced
+ * for ASCII addresses. Non-ASCII letters in usernames are expected to be treated like ASCII letters, and other printable
+ * non-ASCII characters like ASCII punctuation.
+ */
+public class SyntaxEquivalenceTestCase extends AndroidTestCase {
+
+	// Characters at the very start and end of an address are restricted to ASCII, since regex word boundaries around
+	// non-ASCII characters differ between regex engines
+	private static final String EDGE_ALPHABET = "aZ09_.@-+!#&'*,/=?^`{|}~\"() ";
+	private static final String ALPHABET = EDGE_ALPHABET + "abcmo..@@\t\n\r\u00e9\u00fc\u0301\u2028\u0435";
+
+	public void testKnownAddresses() throws Throwable {
+		String[] addresses = new String[] {
+				"test@email.com",
+				"test+-.test@email.com",
+				"test@.com",
+				"test.com",
+				"test@com",
+				"test@email.c",
+				"test@email+.com",
+				"test&*\"@email.com",
+				"@email.com",
+				"@a@b.com",
+				"a@@b.com",
+				"a@b@c.com",
+				".test@email.com",
+				"test.@email.com",
+				"te..st@email.com",
+				"te.st@email.com",
+				"test@email..com",
+				"test@email.com.",
+				"test@email.com-",
+				"test@email.c-m",
+				"test@email.1om",
+				"test@email.co1",
+				"test@email.abcdefghijklmnopqrstuvwx",
+				"test@email.abcdefghijklmnopqrstuvwxy",
+				"test@em ail.com",
+				"te st@email.com",
+				"test@email.com\n",
+				"test\n@email.com",
+				"test@email.com_",
+				"_test@email.com",
+				"test@email_.com",
+				"t,e/s=t@email.com",
+				"t\u00e9st@email.com",
+				"\u00e9test@email.com",
+				"t\u0301st@email.com",
+				"t\u2028st@email.com",
+				"t\u3000st@email.com",
+				"t\u00e9.@email.com",
+				"test@a.b.c.d.com",
+				"a@b.cd",
+				"a@bc.d",
+				"a@.bc",
+				"a.@b.cd",
+				"a@b.c.",
+				" a@b.com",
+				"a@b.com ",
+				"a"
+		};
+
+		for (String address : addresses) {
+			assertEquals(address, validateSyntaxWithRegex(toAsciiUsername(address)), EmailValidator.validateSyntax(address));
+		}
+	}
+
+	public void testInternationalDomains() throws Throwable {
+		// Domains are checked in their ASCII form, so any label that can be converted passes
+		assertNull(EmailValidator.validateSyntax("test@\u00e9mail.com"));
+		assertNull(EmailValidator.validateSyntax("test@email.c\u00f6m"));
+		assertNull(EmailValidator.validateSyntax("test@email.co\u00e9"));
+		assertNull(EmailValidator.validateSyntax("test@email.com\u0301"));
+		assertNull(EmailValidator.validateSyntax("test@b\u00fccher\u3002com"));
+		assertNull(EmailValidator.validateSyntax("\u4ed6\u4eec@\u4f8b\u5b50.\u4e2d\u56fd"));
+
+		// Labels can't start with a mark, have spaces or symbols, or start or end with a hyphen
+		assertEquals(ValidationError.INVALID_DOMAIN, EmailValidator.validateSyntax("test@\u0301email.com"));
+		assertEquals(ValidationError.INVALID_DOMAIN, EmailValidator.validateSyntax("test@b\u00fc cher.com"));
+		assertEquals(ValidationError.INVALID_DOMAIN, EmailValidator.validateSyntax("test@b\u00fc\u2603cher.com"));
+		assertEquals(ValidationError.INVALID_DOMAIN, EmailValidator.validateSyntax("test@-b\u00fccher.com"));
+		assertEquals(ValidationError.INVALID_DOMAIN, EmailValidator.validateSyntax("test@b\u00fccher-.com"));
+		assertEquals(ValidationError.INVALID_SYNTAX, EmailValidator.validateSyntax("test@b\u00fccher.com\u2028"));
+		assertEquals(ValidationError.INVALID_TLD, EmailValidator.validateSyntax("test@b\u00fccher.c"));
+
+		// Only the converted labels change, so the rest of the domain is held to the ASCII rules
+		assertEquals(ValidationError.INVALID_DOMAIN, EmailValidator.validateSyntax("test@b\u00fccher_.com"));
+		assertEquals(ValidationError.INVALID_USERNAME, EmailValidator.validateSyntax("te..st@b\u00fccher.com"));
+	}
+
+	public void testRandomAddresses() throws Throwable {
+		Random random = new Random(20131018);
+		StringBuilder builder = new StringBuilder();
+
+		for (int i = 0; i < 20000; i++) {
+			builder.setLength(0);
+			int length = 1 + random.nextInt(16);
+			for (int j = 0; j < length; j++) {
+				String alphabet = (j == 0 || j == length - 1) ? EDGE_ALPHABET : ALPHABET;
+				builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			String address = builder.toString();
+
+			if (isAscii(getDomain(address))) {
+				assertEquals(address, validateSyntaxWithRegex(toAsciiUsername(address)), EmailValidator.validateSyntax(address));
+			}
+		}
+	}
+
+	public void testRandomWellFormedAddresses() throws Throwable {
+		Random random = new Random(20131021);
+		String[] usernames = new String[] { "test", "t.est", "t..est", ".test", "test.", "te+st", "te\"st", "t\u00e9st", "" };
+		String[] domains = new String[] { "email", "e-mail", "e.mail", "e+mail", "e_mail", "e@mail", "", "\u00e9mail" };
+		String[] tlds = new String[] { "com", "c", "co-m", "c-", "1com", "com1", "c_m", "abcdefghijklmnopqrstuvwx", "abcdefghijklmnopqrstuvwxy", "" };
+
+		for (int i = 0; i < 5000; i++) {
+			String address = usernames[random.nextInt(usernames.length)] + "@" + domains[random.nextInt(domains.length)] + "." + tlds[random.nextInt(tlds.length)];
+			if (isAscii(getDomain(address))) {
+				assertEquals(address, validateSyntaxWithRegex(toAsciiUsername(address)), EmailValidator.validateSyntax(address));
+			}
+		}
+	}
+
+	private static String getDomain(String emailAddress) {
+		final int atIndex = emailAddress.indexOf('@');
+		return atIndex >= 0 ? emailAddress.substring(atIndex + 1) : "";
+	}
+
+	private static boolean isAscii(String string) {
+		for (int i = 0; i < string.length(); i++) {
+			if (string.charAt(i) >= 128) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Replaces the non-ASCII characters of the username with the ASCII characters they are expected to act like
+	private static String toAsciiUsername(String emailAddress) {
+		int usernameEnd = emailAddress.indexOf('@');
+		if (usernameEnd < 0) {
+			usernameEnd = emailAddress.length();
+		}
+
+		StringBuilder builder = new StringBuilder(emailAddress);
+		for (int i = 0; i < usernameEnd; i++) {
+			final char c = builder.charAt(i);
+			if (c < 128) {
+				continue;
+			} else if (c == '\u2028' || c == '\u2029' || c == '\u0085') {
+				builder.setCharAt(i, '\n');
+			} else if (Character.isLetterOrDigit(c)) {
+				builder.setCharAt(i, 'a');
+			} else if (Character.isSpaceChar(c)) {
+				builder.setCharAt(i, ' ');
+			} else {
+				builder.setCharAt(i, '!');
+			}
+		}
+		return builder.toString();
+	}
+
+	// The regular expression based validation that EmailValidator.validateSyntax used to perform
+	private static ValidationError validateSyntaxWithRegex(String emailAddress) {
+		if (emailAddress == null || emailAddress.length() == 0) {
+			return ValidationError.BLANK_ADDRESS;
+		}
+
+		if (!emailAddress.matches("^\\b.+@.+\\..+\\b$")) {
+			return ValidationError.INVALID_SYNTAX;
+		}
+
+		String username = "";
+		String domain = "";
+		String tld = "";
+
+		int atIndex = emailAddress.indexOf('@');
+		if (atIndex >= 0) {
+			username = emailAddress.substring(0, atIndex);
+
+			int periodIndex = emailAddress.lastIndexOf('.');
+			if (periodIndex >= 0 && periodIndex > atIndex) {
+				domain = emailAddress.substring(atIndex + 1, periodIndex);
+				tld = emailAddress.substring(periodIndex + 1);
+			}
+		}
+
+		if (username.length() == 0 || !username.matches("[A-Z0-9a-z.!#$%&'*+-/=?^_`{|}~]+") || username.startsWith(".") || username.endsWith(".") || username.contains("..")) {
+			return ValidationError.INVALID_USERNAME;
+		} else if (domain.length() == 0 || !domain.matches("[A-Z0-9a-z.-]+")) {
+			return ValidationError.INVALID_DOMAIN;
+		} else if (!tld.matches("[A-Za-z][A-Z0-9a-z-]{0,22}[A-Z0-9a-z]")) {
+			return ValidationError.INVALID_TLD;
+		} else {
+			return null;
+		}
+	}
+}
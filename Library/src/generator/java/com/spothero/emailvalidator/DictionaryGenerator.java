@@ -0,0 +1,263 @@
+/*
+ * DictionaryGenerator
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Generates DefaultDictionaries.java from the plain text lists in src/main/dictionaries, with the lookup structures that
+ * the default validator uses already built and packed into constants, so that loading the library only has to unpack
+ * them. The structures are built by the library's own classes, and the output only depends on the lists, so the same
+ * lists always generate the same file. Run by dictionaries.gradle before the library's sources are compiled.
+ */
+public final class DictionaryGenerator {
+
+	private static final String REGISTERED_TLDS_FILE = "tlds-alpha-by-domain.txt";
+	private static final String PUBLIC_SUFFIX_LIST_FILE = "public_suffix_list.dat";
+	private static final String COMMON_TLDS_FILE = "common-tlds.txt";
+	private static final String COMMON_MULTI_LABEL_SUFFIXES_FILE = "common-multi-label-suffixes.txt";
+	private static final String COMMON_DOMAINS_FILE = "common-domains.txt";
+
+	// The default TLD tolerance and distance metric of EmailValidatorConfiguration
+	private static final float TLD_TYPO_TOLERANCE = 0.5f;
+	private static final DistanceMetric TLD_TYPO_METRIC = DistanceMetric.LEVENSHTEIN;
+
+	private static final String OUTPUT_FILE = "com/spothero/emailvalidator/DefaultDictionaries.java";
+	private static final int LINE_LENGTH = 120;
+	// The most bytes a string constant can take up in a class file
+	private static final int MAX_CONSTANT_LENGTH = 65535;
+
+	private DictionaryGenerator() { }
+
+	/**
+	 * @param args The directory of the lists, and the directory to generate sources into
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: DictionaryGenerator <dictionary directory> <output directory>");
+			System.exit(2);
+		}
+
+		final String source = generate(new File(args[0]));
+		final File outputFile = new File(args[1], OUTPUT_FILE);
+		if (outputFile.exists() && source.equals(read(outputFile))) {
+			return;
+		}
+		outputFile.getParentFile().mkdirs();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(outputFile), "UTF-8");
+		try {
+			writer.write(source);
+		} finally {
+			writer.close();
+		}
+	}
+
+	static String generate(File dictionaryDirectory) throws IOException {
+		final String[] registeredTLDs = readRegisteredTLDs(new File(dictionaryDirectory, REGISTERED_TLDS_FILE));
+		final String[] rules = readRules(new File(dictionaryDirectory, PUBLIC_SUFFIX_LIST_FILE));
+		final String[] commonTLDs = readList(new File(dictionaryDirectory, COMMON_TLDS_FILE));
+		final String[] commonMultiLabelSuffixes = readList(new File(dictionaryDirectory, COMMON_MULTI_LABEL_SUFFIXES_FILE));
+		final String[] commonDomains = readList(new File(dictionaryDirectory, COMMON_DOMAINS_FILE));
+
+		final String[] publicSuffixRegistry = new PublicSuffixRegistry(registeredTLDs, rules).pack();
+		final String[] tldTypos = TLDTypoMap.build(commonTLDs, TLD_TYPO_TOLERANCE, TLD_TYPO_METRIC).pack();
+
+		StringBuilder source = new StringBuilder();
+		source.append("/*\n")
+				.append(" * DefaultDictionaries\n")
+				.append(" *\n")
+				.append(" * Generated by DictionaryGenerator from the lists in src/main/dictionaries, do not edit.\n")
+				.append(" */\n")
+				.append("\n")
+				.append("package com.spothero.emailvalidator;\n")
+				.append("\n")
+				.append("/**\n")
+				.append(" * The built in TLDs, public suffixes and common domains, along with the lookup structures that the default validator\n")
+				.append(" * builds from them, packed into constants\n")
+				.append(" */\n")
+				.append("final class DefaultDictionaries {\n");
+
+		appendArray(source, "From " + REGISTERED_TLDS_FILE + ", lower cased", "REGISTERED_TLDS", registeredTLDs);
+		appendArray(source, "From " + PUBLIC_SUFFIX_LIST_FILE, "PUBLIC_SUFFIX_RULES", rules);
+		appendArray(source, "From " + COMMON_TLDS_FILE, "COMMON_TLDS", commonTLDs);
+		appendArray(source, "From " + COMMON_MULTI_LABEL_SUFFIXES_FILE, "COMMON_MULTI_LABEL_SUFFIXES", commonMultiLabelSuffixes);
+		appendArray(source, "From " + COMMON_DOMAINS_FILE, "COMMON_DOMAINS", commonDomains);
+
+		source.append("\n\t// new PublicSuffixRegistry(REGISTERED_TLDS, PUBLIC_SUFFIX_RULES).pack()\n");
+		appendString(source, "PUBLIC_SUFFIX_FIRST_EDGES", publicSuffixRegistry[0]);
+		appendString(source, "PUBLIC_SUFFIX_EDGE_CHARACTERS", publicSuffixRegistry[1]);
+		appendString(source, "PUBLIC_SUFFIX_EDGE_TARGETS", publicSuffixRegistry[2]);
+		appendString(source, "PUBLIC_SUFFIX_FLAGS", publicSuffixRegistry[3]);
+
+		source.append("\n\t// TLDTypoMap.build(COMMON_TLDS, TLD_TYPO_TOLERANCE, TLD_TYPO_METRIC).pack()\n");
+		source.append("\tstatic final float TLD_TYPO_TOLERANCE = ").append(TLD_TYPO_TOLERANCE).append("f;\n");
+		source.append("\tstatic final DistanceMetric TLD_TYPO_METRIC = DistanceMetric.").append(TLD_TYPO_METRIC.name()).append(";\n");
+		appendString(source, "TLD_TYPOS", tldTypos[0]);
+		appendString(source, "TLD_TYPO_CORRECTIONS", tldTypos[1]);
+
+		source.append("\n")
+				.append("\tprivate DefaultDictionaries() { }\n")
+				.append("}\n");
+		return source.toString();
+	}
+
+	private static String[] readRegisteredTLDs(File file) throws IOException {
+		Reader reader = open(file);
+		try {
+			String[] tlds = PublicSuffixRegistry.readRegisteredTLDs(reader);
+			for (int i = 0; i < tlds.length; i++) {
+				tlds[i] = tlds[i].toLowerCase(Locale.US);
+			}
+			return tlds;
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static String[] readRules(File file) throws IOException {
+		Reader reader = open(file);
+		try {
+			return PublicSuffixRegistry.readRules(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	// One entry per line, with comments starting with '#'
+	private static String[] readList(File file) throws IOException {
+		List<String> list = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(open(file));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() > 0 && !line.startsWith("#")) {
+					list.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return list.toArray(new String[list.size()]);
+	}
+
+	private static String read(File file) throws IOException {
+		StringBuilder contents = new StringBuilder();
+		Reader reader = open(file);
+		try {
+			char[] buffer = new char[8192];
+			int count;
+			while ((count = reader.read(buffer)) >= 0) {
+				contents.append(buffer, 0, count);
+			}
+		} finally {
+			reader.close();
+		}
+		return contents.toString();
+	}
+
+	private static Reader open(File file) throws IOException {
+		return new InputStreamReader(new FileInputStream(file), "UTF-8");
+	}
+
+	private static void appendArray(StringBuilder source, String comment, String name, String[] values) {
+		source.append("\n\t// ").append(comment).append('\n');
+		source.append("\tstatic final String[] ").append(name).append(" = new String[] {");
+		int lineLength = LINE_LENGTH;
+		for (int i = 0; i < values.length; i++) {
+			final String value = quote(values[i]);
+			if (lineLength + value.length() + 2 > LINE_LENGTH) {
+				source.append("\n\t\t\t");
+				lineLength = 12;
+			} else {
+				source.append(' ');
+			}
+			source.append(value);
+			lineLength += value.length() + 1;
+			if (i < values.length - 1) {
+				source.append(',');
+				lineLength++;
+			}
+		}
+		source.append("\n\t};\n");
+	}
+
+	// Splits the constant over several lines, which the compiler joins back into one
+	private static void appendString(StringBuilder source, String name, String value) {
+		if (getEncodedLength(value) > MAX_CONSTANT_LENGTH) {
+			throw new IllegalStateException(name + " is too long for a string constant");
+		}
+
+		source.append("\tstatic final String ").append(name).append(" =");
+		final int chunkLength = LINE_LENGTH / 6;
+		if (value.length() == 0) {
+			source.append(" \"\"");
+		}
+		for (int i = 0; i < value.length(); i += chunkLength) {
+			source.append(i == 0 ? "\n\t\t\t" : "\n\t\t\t+ ");
+			source.append(quote(value.substring(i, Math.min(i + chunkLength, value.length()))));
+		}
+		source.append(";\n");
+	}
+
+	private static String quote(String value) {
+		StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c >= 0x20 && c < 0x7f) {
+				quoted.append(c);
+			} else if (c < 0x100) {
+				// Unicode escapes are replaced before the source is parsed, so line breaks have to be escaped in octal
+				quoted.append(String.format(Locale.US, "\\%03o", (int)c));
+			} else {
+				quoted.append(String.format(Locale.US, "\\u%04x", (int)c));
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	// The length of the string in the modified UTF-8 of class files
+	private static int getEncodedLength(String value) {
+		int length = 0;
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c != 0 && c < 0x80) {
+				length += 1;
+			} else if (c < 0x800) {
+				length += 2;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * BkTree
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+/**
+ * An immutable Burkhard-Keller tree over a list of strings, keyed on Levenshtein distance. Because the distance is a
+ * metric, a search for strings within some distance of a query only has to descend into the children whose distance to
+ * their parent is within that distance of the query's distance to the parent, which skips most of the list.
+ * <p>
+ * Nodes are stored in flat arrays in list order, so a node's index is also its position in the original list.
+ * <p>
+ * The tree can also find the closest string by {@link KeyboardDistance}, which is not a metric. A keyboard distance of k
+ * half edits is never more than 2k edits of Levenshtein distance, so searching within twice the keyboard bound still
+ * finds every string that could be in range, and only those strings are measured by keyboard distance.
+ */
+final class BkTree {
+
+	private static final int NONE = -1;
+
+	private final String[] mWords;
+	private final int[] mFirstChild;
+	private final int[] mNextSibling;
+	private final int[] mDistanceToParent;
+	private final int[] mMaxChildDistance;
+
+	BkTree(String[] words) {
+		final int size = words.length;
+		mWords = words.clone();
+		mFirstChild = new int[size];
+		mNextSibling = new int[size];
+		mDistanceToParent = new int[size];
+		mMaxChildDistance = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			mFirstChild[i] = NONE;
+			mNextSibling[i] = NONE;
+		}
+
+		LevenshteinDistance levenshteinDistance = LevenshteinDistance.get();
+		for (int i = 1; i < size; i++) {
+			insert(i, levenshteinDistance);
+		}
+	}
+
+	private void insert(int index, LevenshteinDistance levenshteinDistance) {
+		final String word = mWords[index];
+		levenshteinDistance.setPattern(word, 0, word.length());
+
+		int node = 0;
+		while (true) {
+			final int distance = levenshteinDistance.getDistance(mWords[node], Integer.MAX_VALUE - 1);
+			if (distance == 0) {
+				// Duplicates stay detached so that the earliest copy is the one found
+				return;
+			}
+
+			int child = mFirstChild[node];
+			while (child != NONE && mDistanceToParent[child] != distance) {
+				child = mNextSibling[child];
+			}
+
+			if (child == NONE) {
+				mDistanceToParent[index] = distance;
+				mNextSibling[index] = mFirstChild[node];
+				mFirstChild[node] = index;
+				mMaxChildDistance[node] = Math.max(mMaxChildDistance[node], distance);
+				return;
+			}
+			node = child;
+		}
+	}
+
+	int size() {
+		return mWords.length;
+	}
+
+	/**
+	 * Finds the closest string to a query, with ties going to the string that came first in the list
+	 * @param query The string to search for
+	 * @param start The start of the range of the query to use
+	 * @param end The end of the range of the query to use
+	 * @param maxDistance The largest distance a match may have
+	 * @return The closest string, or null if there is none within maxDistance
+	 */
+	String findClosest(CharSequence query, int start, int end, int maxDistance) {
+		if (mWords.length == 0 || maxDistance < 0) {
+			return null;
+		}
+
+		LevenshteinDistance levenshteinDistance = LevenshteinDistance.get();
+		levenshteinDistance.setPattern(query, start, end);
+
+		// The best match is packed as (distance << 32 | index), so that comparing keys also breaks ties by list order.
+		// It starts out as a placeholder at maxDistance that any real node beats.
+		long best = search(0, levenshteinDistance, ((long)maxDistance << 32) | Integer.MAX_VALUE);
+
+		final int index = (int)best;
+		return index == Integer.MAX_VALUE ? null : mWords[index];
+	}
+
+	/**
+	 * Finds the closest string to a query by keyboard distance, with ties going to the string that came first in the
+	 * list
+	 * @param query The string to search for
+	 * @param start The start of the range of the query to use
+	 * @param end The end of the range of the query to use
+	 * @param maxDistance The largest keyboard distance a match may have, in half edits
+	 * @return The closest string, or null if there is none within maxDistance
+	 */
+	String findClosestByKeyboardDistance(CharSequence query, int start, int end, int maxDistance) {
+		if (mWords.length == 0 || maxDistance < 0) {
+			return null;
+		}
+
+		LevenshteinDistance levenshteinDistance = LevenshteinDistance.get();
+		levenshteinDistance.setPattern(query, start, end);
+		KeyboardDistance keyboardDistance = KeyboardDistance.get();
+		keyboardDistance.setPattern(query, start, end);
+
+		// Packed the same way as in findClosest, but by keyboard distance
+		long best = searchByKeyboardDistance(0, levenshteinDistance, keyboardDistance, ((long)maxDistance << 32) | Integer.MAX_VALUE);
+
+		final int index = (int)best;
+		return index == Integer.MAX_VALUE ? null : mWords[index];
+	}
+
+	private long search(int node, LevenshteinDistance levenshteinDistance, long best) {
+		int radius = (int)(best >>> 32);
+
+		// Past this distance every child would be pruned anyway, so the exact distance isn't needed
+		final int limit = radius < Integer.MAX_VALUE - 1 - mMaxChildDistance[node] ? radius + mMaxChildDistance[node] : Integer.MAX_VALUE - 1;
+		final int distance = levenshteinDistance.getDistance(mWords[node], limit);
+		final long key = ((long)distance << 32) | node;
+		if (distance <= radius && key < best) {
+			best = key;
+		}
+
+		for (int child = mFirstChild[node]; child != NONE; child = mNextSibling[child]) {
+			radius = (int)(best >>> 32);
+			if (Math.abs(mDistanceToParent[child] - distance) <= radius) {
+				best = search(child, levenshteinDistance, best);
+			}
+		}
+
+		return best;
+	}
+
+	private long searchByKeyboardDistance(int node, LevenshteinDistance levenshteinDistance, KeyboardDistance keyboardDistance, long best) {
+		int radius = getLevenshteinRadius(best);
+
+		final int limit = radius < Integer.MAX_VALUE - 1 - mMaxChildDistance[node] ? radius + mMaxChildDistance[node] : Integer.MAX_VALUE - 1;
+		final int distance = levenshteinDistance.getDistance(mWords[node], limit);
+		if (distance <= radius) {
+			final int bestDistance = (int)(best >>> 32);
+			final int keyboardDistanceToNode = keyboardDistance.getDistance(mWords[node], bestDistance);
+			final long key = ((long)keyboardDistanceToNode << 32) | node;
+			if (keyboardDistanceToNode <= bestDistance && key < best) {
+				best = key;
+			}
+		}
+
+		for (int child = mFirstChild[node]; child != NONE; child = mNextSibling[child]) {
+			radius = getLevenshteinRadius(best);
+			if (Math.abs(mDistanceToParent[child] - distance) <= radius) {
+				best = searchByKeyboardDistance(child, levenshteinDistance, keyboardDistance, best);
+			}
+		}
+
+		return best;
+	}
+
+	// The largest Levenshtein distance that a string within the best keyboard distance so far could have
+	private static int getLevenshteinRadius(long best) {
+		final int bestDistance = (int)(best >>> 32);
+		return bestDistance < (Integer.MAX_VALUE - 1) / 2 ? 2 * bestDistance : Integer.MAX_VALUE - 1;
+	}
+}
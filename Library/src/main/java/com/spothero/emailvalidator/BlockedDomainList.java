@@ -0,0 +1,417 @@
+/*
+ * BlockedDomainList
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Domains that addresses are rejected from, such as disposable email providers. A domain is blocked if it or any of
+ * its parent domains is listed, so listing "mailinator.com" also blocks "eu.mailinator.com". Lookups ignore case.
+ * <p>
+ * Most domains aren't blocked, so each one is first checked against a Bloom filter of about 10 bits per listed domain,
+ * whose bits for any one domain all lie in the same 64 byte block, so that a check reads a single cache line. Only the
+ * domains that the filter lets through (the blocked ones, and about 1% of the rest) are looked up in the list itself,
+ * which is kept sorted and packed into one byte array. 100,000 domains of 15 characters on average take about 1.7MB
+ * this way, where a HashSet of Strings would take more than 10MB.
+ * <p>
+ * A list can be loaded from text with {@link #parse(Reader)}, and then used with
+ * {@link EmailValidator#setBlockedDomains(BlockedDomainList)} or {@link EmailValidatorConfiguration#blockedDomains}.
+ * {@link #write(OutputStream)} saves it in a compact form that {@link #read(InputStream)} loads without sorting or
+ * hashing anything, so a list can be built once on a server and shipped to devices.
+ */
+public final class BlockedDomainList {
+
+	static final int MAGIC = 0x45564244;
+	// Version 1 lists were hashed with a mistyped MurmurHash3 constant, so their filters don't match this one
+	private static final int VERSION = 2;
+
+	private static final int BITS_PER_DOMAIN = 10;
+	private static final int HASH_COUNT = 7;
+	private static final int BLOCK_LONGS = 8;
+	private static final int BLOCK_BITS = BLOCK_LONGS * 64;
+
+	// Every INDEX_INTERVAL-th domain's offset is kept, and lookups scan forward from the closest one
+	private static final int INDEX_INTERVAL = 32;
+
+	private static final long PROBE_SEED = 0x9e3779b97f4a7c15L;
+
+	private static final byte END_OF_DOMAIN = '\n';
+
+	// How much of a saved list read allocates before any of it has arrived
+	private static final int READ_CHUNK_BYTES = 64 * 1024;
+
+	private final long[] mFilter;
+	private final int mBlockCount;
+	// The domains in sorted order, each followed by END_OF_DOMAIN
+	private final byte[] mDomains;
+	private final int[] mIndex;
+	private final int mSize;
+
+	/**
+	 * Loads a list of domains, one per line, with comments starting with '#'. Lines such as "*.example.com" or
+	 * ".example.com" block the same domains as "example.com". Domains have to be ASCII, so internationalized domains
+	 * must be listed in their punycode form, and any others are skipped.
+	 * @param domains The list
+	 * @return A new list
+	 * @throws IOException If the list could not be read
+	 */
+	public static BlockedDomainList parse(Reader domains) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(domains);
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.length() > 0 && !line.startsWith("#")) {
+				lines.add(line);
+			}
+		}
+		return new BlockedDomainList(lines.toArray(new String[lines.size()]));
+	}
+
+	/**
+	 * Loads a list saved by {@link #write(OutputStream)}. The stream is read up to the end of the list and not closed.
+	 * @param input The saved list
+	 * @return A new list
+	 * @throws IOException If the list could not be read, or was not saved by {@link #write(OutputStream)}
+	 */
+	public static BlockedDomainList read(InputStream input) throws IOException {
+		DataInputStream dataInput = new DataInputStream(input);
+		if (dataInput.readInt() != MAGIC) {
+			throw new IOException("Not a blocked domain list");
+		}
+		final int version = dataInput.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported blocked domain list version " + version);
+		}
+
+		// The lengths come from the file, so the arrays only grow as their contents arrive, rather than being allocated
+		// up front where a corrupt length could ask for gigabytes
+		final int size = dataInput.readInt();
+		final int filterLength = dataInput.readInt();
+		if (size < 0 || filterLength != getBlockCount(size) * BLOCK_LONGS) {
+			throw new IOException("Corrupt blocked domain list");
+		}
+		long[] filter = readLongs(dataInput, filterLength);
+
+		// Every domain takes at least two bytes, one character and END_OF_DOMAIN
+		final int domainsLength = dataInput.readInt();
+		if (domainsLength < 0 || domainsLength / 2 < size) {
+			throw new IOException("Corrupt blocked domain list");
+		}
+		byte[] domains = readBytes(dataInput, domainsLength);
+
+		int[] index = buildIndex(domains, size);
+		if (index == null) {
+			throw new IOException("Corrupt blocked domain list");
+		}
+		return new BlockedDomainList(filter, domains, index, size);
+	}
+
+	/**
+	 * @param domains Domains such as "mailinator.com", in any order and case
+	 */
+	BlockedDomainList(String[] domains) {
+		String[] normalizedDomains = new String[domains.length];
+		int count = 0;
+		for (String domain : domains) {
+			String normalizedDomain = normalize(domain);
+			if (normalizedDomain != null) {
+				normalizedDomains[count++] = normalizedDomain;
+			}
+		}
+		Arrays.sort(normalizedDomains, 0, count);
+
+		// Pack the sorted domains, dropping duplicates, which are next to each other now
+		int domainsLength = 0;
+		int size = 0;
+		for (int i = 0; i < count; i++) {
+			if (i == 0 || !normalizedDomains[i].equals(normalizedDomains[size - 1])) {
+				normalizedDomains[size++] = normalizedDomains[i];
+				domainsLength += normalizedDomains[i].length() + 1;
+			}
+		}
+
+		mBlockCount = getBlockCount(size);
+		mFilter = new long[mBlockCount * BLOCK_LONGS];
+		mDomains = new byte[domainsLength];
+		mIndex = new int[(size + INDEX_INTERVAL - 1) / INDEX_INTERVAL];
+		mSize = size;
+
+		int offset = 0;
+		for (int i = 0; i < size; i++) {
+			final String domain = normalizedDomains[i];
+			if (i % INDEX_INTERVAL == 0) {
+				mIndex[i / INDEX_INTERVAL] = offset;
+			}
+
+			// Hashed from the end, the same way that isBlocked hashes each parent domain on its way to the start
+			long hash = FnvHash.OFFSET_BASIS;
+			for (int j = domain.length() - 1; j >= 0; j--) {
+				hash = FnvHash.update(hash, domain.charAt(j));
+			}
+			addToFilter(hash);
+
+			for (int j = 0; j < domain.length(); j++) {
+				mDomains[offset++] = (byte)domain.charAt(j);
+			}
+			mDomains[offset++] = END_OF_DOMAIN;
+		}
+	}
+
+	private BlockedDomainList(long[] filter, byte[] domains, int[] index, int size) {
+		mFilter = filter;
+		mBlockCount = filter.length / BLOCK_LONGS;
+		mDomains = domains;
+		mIndex = index;
+		mSize = size;
+	}
+
+	/**
+	 * Saves the list in a compact form that {@link #read(InputStream)} can load on any platform. The stream is flushed
+	 * but not closed.
+	 * @param output Where to save the list
+	 * @throws IOException If the list could not be written
+	 */
+	public void write(OutputStream output) throws IOException {
+		DataOutputStream dataOutput = new DataOutputStream(output);
+		dataOutput.writeInt(MAGIC);
+		dataOutput.writeInt(VERSION);
+		dataOutput.writeInt(mSize);
+		dataOutput.writeInt(mFilter.length);
+		for (long word : mFilter) {
+			dataOutput.writeLong(word);
+		}
+		dataOutput.writeInt(mDomains.length);
+		dataOutput.write(mDomains);
+		dataOutput.flush();
+	}
+
+	/**
+	 * @return The number of distinct domains in the list
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * @param domain A domain, such as "eu.mailinator.com"
+	 * @return True if the domain or one of its parent domains is in the list
+	 */
+	public boolean isBlocked(String domain) {
+		return isBlocked(domain, 0, domain.length());
+	}
+
+	boolean isBlocked(CharSequence domain, int start, int end) {
+		// Each parent domain is a suffix, so the hash of every one of them comes up on the way from the end to the start
+		long hash = FnvHash.OFFSET_BASIS;
+		for (int i = end - 1; i >= start; i--) {
+			final char c = toLowerCase(domain.charAt(i));
+			if (c == '.' && mightContain(hash) && contains(domain, i + 1, end)) {
+				return true;
+			}
+			hash = FnvHash.update(hash, c);
+		}
+		return mightContain(hash) && contains(domain, start, end);
+	}
+
+	private void addToFilter(long hash) {
+		final long[] filter = mFilter;
+		final long mixedHash = FnvHash.mix(hash);
+		final int block = getBlock(mixedHash);
+		final long probeHash = FnvHash.mix(mixedHash ^ PROBE_SEED);
+		final int first = (int)probeHash;
+		final int step = (int)(probeHash >>> 32) | 1;
+		for (int i = 0; i < HASH_COUNT; i++) {
+			final int bit = (first + i * step) & (BLOCK_BITS - 1);
+			filter[block + (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	private boolean mightContain(long hash) {
+		final long[] filter = mFilter;
+		final long mixedHash = FnvHash.mix(hash);
+		final int block = getBlock(mixedHash);
+		final long probeHash = FnvHash.mix(mixedHash ^ PROBE_SEED);
+		final int first = (int)probeHash;
+		final int step = (int)(probeHash >>> 32) | 1;
+		for (int i = 0; i < HASH_COUNT; i++) {
+			final int bit = (first + i * step) & (BLOCK_BITS - 1);
+			if ((filter[block + (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// The index of the first long of the block, picked by the top 32 bits without a division
+	private int getBlock(long mixedHash) {
+		return (int)(((mixedHash >>> 32) * mBlockCount) >>> 32) * BLOCK_LONGS;
+	}
+
+	private boolean contains(CharSequence domain, int start, int end) {
+		// Find the last indexed domain that sorts before the query, then scan the domains that follow it
+		int low = 0;
+		int high = mIndex.length - 1;
+		int closest = -1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int comparison = compare(mIndex[middle], domain, start, end);
+			if (comparison < 0) {
+				closest = middle;
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return true;
+			}
+		}
+		if (closest < 0) {
+			return false;
+		}
+
+		final int scanEnd = closest + 1 < mIndex.length ? mIndex[closest + 1] : mDomains.length;
+		int offset = skipDomain(mIndex[closest]);
+		while (offset < scanEnd) {
+			final int comparison = compare(offset, domain, start, end);
+			if (comparison == 0) {
+				return true;
+			} else if (comparison > 0) {
+				return false;
+			}
+			offset = skipDomain(offset);
+		}
+		return false;
+	}
+
+	// Compares the packed domain at offset with the query, in the same order as String.compareTo
+	private int compare(int offset, CharSequence domain, int start, int end) {
+		final byte[] domains = mDomains;
+		for (int i = start; ; i++, offset++) {
+			final byte b = domains[offset];
+			if (b == END_OF_DOMAIN) {
+				return i == end ? 0 : -1;
+			} else if (i == end) {
+				return 1;
+			}
+			final int difference = b - toLowerCase(domain.charAt(i));
+			if (difference != 0) {
+				return difference;
+			}
+		}
+	}
+
+	private int skipDomain(int offset) {
+		while (mDomains[offset] != END_OF_DOMAIN) {
+			offset++;
+		}
+		return offset + 1;
+	}
+
+	private static int getBlockCount(int size) {
+		return Math.max(1, (int)(((long)size * BITS_PER_DOMAIN + BLOCK_BITS - 1) / BLOCK_BITS));
+	}
+
+	private static long[] readLongs(DataInputStream input, int length) throws IOException {
+		long[] values = new long[Math.min(length, READ_CHUNK_BYTES / 8)];
+		for (int i = 0; i < length; i++) {
+			if (i == values.length) {
+				long[] grownValues = new long[(int)Math.min(length, 2L * values.length)];
+				System.arraycopy(values, 0, grownValues, 0, i);
+				values = grownValues;
+			}
+			values[i] = input.readLong();
+		}
+		return values;
+	}
+
+	private static byte[] readBytes(DataInputStream input, int length) throws IOException {
+		byte[] bytes = new byte[Math.min(length, READ_CHUNK_BYTES)];
+		input.readFully(bytes);
+		while (bytes.length < length) {
+			byte[] grownBytes = new byte[(int)Math.min(length, 2L * bytes.length)];
+			System.arraycopy(bytes, 0, grownBytes, 0, bytes.length);
+			input.readFully(grownBytes, bytes.length, grownBytes.length - bytes.length);
+			bytes = grownBytes;
+		}
+		return bytes;
+	}
+
+	// Returns the offsets of every INDEX_INTERVAL-th domain, or null if the domains don't match the size
+	private static int[] buildIndex(byte[] domains, int size) {
+		if (domains.length > 0 && domains[domains.length - 1] != END_OF_DOMAIN) {
+			return null;
+		}
+		int[] index = new int[(size + INDEX_INTERVAL - 1) / INDEX_INTERVAL];
+		int count = 0;
+		int domainStart = 0;
+		for (int i = 0; i < domains.length; i++) {
+			if (domains[i] == END_OF_DOMAIN) {
+				if (count >= size) {
+					return null;
+				} else if (count % INDEX_INTERVAL == 0) {
+					index[count / INDEX_INTERVAL] = domainStart;
+				}
+				count++;
+				domainStart = i + 1;
+			}
+		}
+		return count == size ? index : null;
+	}
+
+	// Lower cases the domain and strips wildcards and leading or trailing dots, or returns null if it can't be blocked
+	private static String normalize(String domain) {
+		int start = 0;
+		int end = domain.length();
+		if (domain.startsWith("*.")) {
+			start = 2;
+		}
+		while (start < end && domain.charAt(start) == '.') {
+			start++;
+		}
+		while (end > start && domain.charAt(end - 1) == '.') {
+			end--;
+		}
+		if (start == end) {
+			return null;
+		}
+
+		char[] characters = new char[end - start];
+		for (int i = start; i < end; i++) {
+			final char c = domain.charAt(i);
+			if (c >= 128 || c == END_OF_DOMAIN) {
+				return null;
+			}
+			characters[i - start] = toLowerCase(c);
+		}
+		return new String(characters);
+	}
+
+	private static char toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char)(c + ('a' - 'A')) : c;
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * CanonicalComposition
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator;
+
+import java.util.Arrays;
+
+/**
+ * Unicode normalization form C (NFC) for the precomposed Latin, Greek and Cyrillic letters and the combining diacritical
+ * marks from U+0300 to U+036F, so that a domain typed with separate accents ("e" followed by a combining acute accent)
+ * gets the same ASCII form as one typed with precomposed letters ("\u00e9"). Sequences are decomposed, their marks are
+ * put in canonical order, and they are then composed again, following UAX #15. Marks outside that block are left where
+ * they are and block composition across them.
+ * <p>
+ * This is only part of NFC, and some text that full NFC would change is left as it is. The singleton decompositions
+ * U+0340, U+0341, U+0343, U+0344, U+0374, U+037E and U+0387 aren't replaced (U+0341 with U+0301, for example), so they
+ * neither compose nor count as the marks they stand for. Nothing composes into Greek Extended (U+1F00 to U+1FFF), so
+ * alpha followed by a grave accent or a breathing stays as two code points rather than becoming U+1F70 or U+1F00, and
+ * the letters of that block, including singletons such as U+1F71 and U+1FBE, aren't decomposed. Compositions into other
+ * blocks, such as "=" followed by U+0338 into U+2260, and letters of other scripts aren't handled either.
+ * <p>
+ * java.text.Normalizer isn't available on every Android version the library supports, so the canonical compositions
+ * of those letters are tabled here instead, taken from the Unicode Character Database.
+ */
+final class CanonicalComposition {
+
+	private static final int FIRST_MARK = 0x300;
+	private static final int LAST_MARK = 0x36f;
+
+	// Triples of a base character, a combining mark and the letter they compose to, sorted by base and then mark
+	private static final String COMPOSITIONS =
+			"A\u0300\u00c0A\u0301\u00c1A\u0302\u00c2A\u0303\u00c3A\u0304\u0100A\u0306\u0102A\u0307\u0226A\u0308\u00c4"
+			+ "A\u0309\u1ea2A\u030a\u00c5A\u030c\u01cdA\u030f\u0200A\u0311\u0202A\u0323\u1ea0A\u0325\u1e00A\u0328\u0104"
+			+ "B\u0307\u1e02B\u0323\u1e04B\u0331\u1e06C\u0301\u0106C\u0302\u0108C\u0307\u010aC\u030c\u010cC\u0327\u00c7"
+			+ "D\u0307\u1e0aD\u030c\u010eD\u0323\u1e0cD\u0327\u1e10D\u032d\u1e12D\u0331\u1e0eE\u0300\u00c8E\u0301\u00c9"
+			+ "E\u0302\u00caE\u0303\u1ebcE\u0304\u0112E\u0306\u0114E\u0307\u0116E\u0308\u00cbE\u0309\u1ebaE\u030c\u011a"
+			+ "E\u030f\u0204E\u0311\u0206E\u0323\u1eb8E\u0327\u0228E\u0328\u0118E\u032d\u1e18E\u0330\u1e1aF\u0307\u1e1e"
+			+ "G\u0301\u01f4G\u0302\u011cG\u0304\u1e20G\u0306\u011eG\u0307\u0120G\u030c\u01e6G\u0327\u0122H\u0302\u0124"
+			+ "H\u0307\u1e22H\u0308\u1e26H\u030c\u021eH\u0323\u1e24H\u0327\u1e28H\u032e\u1e2aI\u0300\u00ccI\u0301\u00cd"
+			+ "I\u0302\u00ceI\u0303\u0128I\u0304\u012aI\u0306\u012cI\u0307\u0130I\u0308\u00cfI\u0309\u1ec8I\u030c\u01cf"
+			+ "I\u030f\u0208I\u0311\u020aI\u0323\u1ecaI\u0328\u012eI\u0330\u1e2cJ\u0302\u0134K\u0301\u1e30K\u030c\u01e8"
+			+ "K\u0323\u1e32K\u0327\u0136K\u0331\u1e34L\u0301\u0139L\u030c\u013dL\u0323\u1e36L\u0327\u013bL\u032d\u1e3c"
+			+ "L\u0331\u1e3aM\u0301\u1e3eM\u0307\u1e40M\u0323\u1e42N\u0300\u01f8N\u0301\u0143N\u0303\u00d1N\u0307\u1e44"
+			+ "N\u030c\u0147N\u0323\u1e46N\u0327\u0145N\u032d\u1e4aN\u0331\u1e48O\u0300\u00d2O\u0301\u00d3O\u0302\u00d4"
+			+ "O\u0303\u00d5O\u0304\u014cO\u0306\u014eO\u0307\u022eO\u0308\u00d6O\u0309\u1eceO\u030b\u0150O\u030c\u01d1"
+			+ "O\u030f\u020cO\u0311\u020eO\u031b\u01a0O\u0323\u1eccO\u0328\u01eaP\u0301\u1e54P\u0307\u1e56R\u0301\u0154"
+			+ "R\u0307\u1e58R\u030c\u0158R\u030f\u0210R\u0311\u0212R\u0323\u1e5aR\u0327\u0156R\u0331\u1e5eS\u0301\u015a"
+			+ "S\u0302\u015cS\u0307\u1e60S\u030c\u0160S\u0323\u1e62S\u0326\u0218S\u0327\u015eT\u0307\u1e6aT\u030c\u0164"
+			+ "T\u0323\u1e6cT\u0326\u021aT\u0327\u0162T\u032d\u1e70T\u0331\u1e6eU\u0300\u00d9U\u0301\u00daU\u0302\u00db"
+			+ "U\u0303\u0168U\u0304\u016aU\u0306\u016cU\u0308\u00dcU\u0309\u1ee6U\u030a\u016eU\u030b\u0170U\u030c\u01d3"
+			+ "U\u030f\u0214U\u0311\u0216U\u031b\u01afU\u0323\u1ee4U\u0324\u1e72U\u0328\u0172U\u032d\u1e76U\u0330\u1e74"
+			+ "V\u0303\u1e7cV\u0323\u1e7eW\u0300\u1e80W\u0301\u1e82W\u0302\u0174W\u0307\u1e86W\u0308\u1e84W\u0323\u1e88"
+			+ "X\u0307\u1e8aX\u0308\u1e8cY\u0300\u1ef2Y\u0301\u00ddY\u0302\u0176Y\u0303\u1ef8Y\u0304\u0232Y\u0307\u1e8e"
+			+ "Y\u0308\u0178Y\u0309\u1ef6Y\u0323\u1ef4Z\u0301\u0179Z\u0302\u1e90Z\u0307\u017bZ\u030c\u017dZ\u0323\u1e92"
+			+ "Z\u0331\u1e94a\u0300\u00e0a\u0301\u00e1a\u0302\u00e2a\u0303\u00e3a\u0304\u0101a\u0306\u0103a\u0307\u0227"
+			+ "a\u0308\u00e4a\u0309\u1ea3a\u030a\u00e5a\u030c\u01cea\u030f\u0201a\u0311\u0203a\u0323\u1ea1a\u0325\u1e01"
+			+ "a\u0328\u0105b\u0307\u1e03b\u0323\u1e05b\u0331\u1e07c\u0301\u0107c\u0302\u0109c\u0307\u010bc\u030c\u010d"
+			+ "c\u0327\u00e7d\u0307\u1e0bd\u030c\u010fd\u0323\u1e0dd\u0327\u1e11d\u032d\u1e13d\u0331\u1e0fe\u0300\u00e8"
+			+ "e\u0301\u00e9e\u0302\u00eae\u0303\u1ebde\u0304\u0113e\u0306\u0115e\u0307\u0117e\u0308\u00ebe\u0309\u1ebb"
+			+ "e\u030c\u011be\u030f\u0205e\u0311\u0207e\u0323\u1eb9e\u0327\u0229e\u0328\u0119e\u032d\u1e19e\u0330\u1e1b"
+			+ "f\u0307\u1e1fg\u0301\u01f5g\u0302\u011dg\u0304\u1e21g\u0306\u011fg\u0307\u0121g\u030c\u01e7g\u0327\u0123"
+			+ "h\u0302\u0125h\u0307\u1e23h\u0308\u1e27h\u030c\u021fh\u0323\u1e25h\u0327\u1e29h\u032e\u1e2bh\u0331\u1e96"
+			+ "i\u0300\u00eci\u0301\u00edi\u0302\u00eei\u0303\u0129i\u0304\u012bi\u0306\u012di\u0308\u00efi\u0309\u1ec9"
+			+ "i\u030c\u01d0i\u030f\u0209i\u0311\u020bi\u0323\u1ecbi\u0328\u012fi\u0330\u1e2dj\u0302\u0135j\u030c\u01f0"
+			+ "k\u0301\u1e31k\u030c\u01e9k\u0323\u1e33k\u0327\u0137k\u0331\u1e35l\u0301\u013al\u030c\u013el\u0323\u1e37"
+			+ "l\u0327\u013cl\u032d\u1e3dl\u0331\u1e3bm\u0301\u1e3fm\u0307\u1e41m\u0323\u1e43n\u0300\u01f9n\u0301\u0144"
+			+ "n\u0303\u00f1n\u0307\u1e45n\u030c\u0148n\u0323\u1e47n\u0327\u0146n\u032d\u1e4bn\u0331\u1e49o\u0300\u00f2"
+			+ "o\u0301\u00f3o\u0302\u00f4o\u0303\u00f5o\u0304\u014do\u0306\u014fo\u0307\u022fo\u0308\u00f6o\u0309\u1ecf"
+			+ "o\u030b\u0151o\u030c\u01d2o\u030f\u020do\u0311\u020fo\u031b\u01a1o\u0323\u1ecdo\u0328\u01ebp\u0301\u1e55"
+			+ "p\u0307\u1e57r\u0301\u0155r\u0307\u1e59r\u030c\u0159r\u030f\u0211r\u0311\u0213r\u0323\u1e5br\u0327\u0157"
+			+ "r\u0331\u1e5fs\u0301\u015bs\u0302\u015ds\u0307\u1e61s\u030c\u0161s\u0323\u1e63s\u0326\u0219s\u0327\u015f"
+			+ "t\u0307\u1e6bt\u0308\u1e97t\u030c\u0165t\u0323\u1e6dt\u0326\u021bt\u0327\u0163t\u032d\u1e71t\u0331\u1e6f"
+			+ "u\u0300\u00f9u\u0301\u00fau\u0302\u00fbu\u0303\u0169u\u0304\u016bu\u0306\u016du\u0308\u00fcu\u0309\u1ee7"
+			+ "u\u030a\u016fu\u030b\u0171u\u030c\u01d4u\u030f\u0215u\u0311\u0217u\u031b\u01b0u\u0323\u1ee5u\u0324\u1e73"
+			+ "u\u0328\u0173u\u032d\u1e77u\u0330\u1e75v\u0303\u1e7dv\u0323\u1e7fw\u0300\u1e81w\u0301\u1e83w\u0302\u0175"
+			+ "w\u0307\u1e87w\u0308\u1e85w\u030a\u1e98w\u0323\u1e89x\u0307\u1e8bx\u0308\u1e8dy\u0300\u1ef3y\u0301\u00fd"
+			+ "y\u0302\u0177y\u0303\u1ef9y\u0304\u0233y\u0307\u1e8fy\u0308\u00ffy\u0309\u1ef7y\u030a\u1e99y\u0323\u1ef5"
+			+ "z\u0301\u017az\u0302\u1e91z\u0307\u017cz\u030c\u017ez\u0323\u1e93z\u0331\u1e95\u00a8\u0301\u0385\u00c2\u0300\u1ea6"
+			+ "\u00c2\u0301\u1ea4\u00c2\u0303\u1eaa\u00c2\u0309\u1ea8\u00c4\u0304\u01de\u00c5\u0301\u01fa\u00c6\u0301\u01fc\u00c6\u0304\u01e2\u00c7\u0301\u1e08"
+			+ "\u00ca\u0300\u1ec0\u00ca\u0301\u1ebe\u00ca\u0303\u1ec4\u00ca\u0309\u1ec2\u00cf\u0301\u1e2e\u00d4\u0300\u1ed2\u00d4\u0301\u1ed0\u00d4\u0303\u1ed6"
+			+ "\u00d4\u0309\u1ed4\u00d5\u0301\u1e4c\u00d5\u0304\u022c\u00d5\u0308\u1e4e\u00d6\u0304\u022a\u00d8\u0301\u01fe\u00dc\u0300\u01db\u00dc\u0301\u01d7"
+			+ "\u00dc\u0304\u01d5\u00dc\u030c\u01d9\u00e2\u0300\u1ea7\u00e2\u0301\u1ea5\u00e2\u0303\u1eab\u00e2\u0309\u1ea9\u00e4\u0304\u01df\u00e5\u0301\u01fb"
+			+ "\u00e6\u0301\u01fd\u00e6\u0304\u01e3\u00e7\u0301\u1e09\u00ea\u0300\u1ec1\u00ea\u0301\u1ebf\u00ea\u0303\u1ec5\u00ea\u0309\u1ec3\u00ef\u0301\u1e2f"
+			+ "\u00f4\u0300\u1ed3\u00f4\u0301\u1ed1\u00f4\u0303\u1ed7\u00f4\u0309\u1ed5\u00f5\u0301\u1e4d\u00f5\u0304\u022d\u00f5\u0308\u1e4f\u00f6\u0304\u022b"
+			+ "\u00f8\u0301\u01ff\u00fc\u0300\u01dc\u00fc\u0301\u01d8\u00fc\u0304\u01d6\u00fc\u030c\u01da\u0102\u0300\u1eb0\u0102\u0301\u1eae\u0102\u0303\u1eb4"
+			+ "\u0102\u0309\u1eb2\u0103\u0300\u1eb1\u0103\u0301\u1eaf\u0103\u0303\u1eb5\u0103\u0309\u1eb3\u0112\u0300\u1e14\u0112\u0301\u1e16\u0113\u0300\u1e15"
+			+ "\u0113\u0301\u1e17\u014c\u0300\u1e50\u014c\u0301\u1e52\u014d\u0300\u1e51\u014d\u0301\u1e53\u015a\u0307\u1e64\u015b\u0307\u1e65\u0160\u0307\u1e66"
+			+ "\u0161\u0307\u1e67\u0168\u0301\u1e78\u0169\u0301\u1e79\u016a\u0308\u1e7a\u016b\u0308\u1e7b\u017f\u0307\u1e9b\u01a0\u0300\u1edc\u01a0\u0301\u1eda"
+			+ "\u01a0\u0303\u1ee0\u01a0\u0309\u1ede\u01a0\u0323\u1ee2\u01a1\u0300\u1edd\u01a1\u0301\u1edb\u01a1\u0303\u1ee1\u01a1\u0309\u1edf\u01a1\u0323\u1ee3"
+			+ "\u01af\u0300\u1eea\u01af\u0301\u1ee8\u01af\u0303\u1eee\u01af\u0309\u1eec\u01af\u0323\u1ef0\u01b0\u0300\u1eeb\u01b0\u0301\u1ee9\u01b0\u0303\u1eef"
+			+ "\u01b0\u0309\u1eed\u01b0\u0323\u1ef1\u01b7\u030c\u01ee\u01ea\u0304\u01ec\u01eb\u0304\u01ed\u0226\u0304\u01e0\u0227\u0304\u01e1\u0228\u0306\u1e1c"
+			+ "\u0229\u0306\u1e1d\u022e\u0304\u0230\u022f\u0304\u0231\u0292\u030c\u01ef\u0391\u0301\u0386\u0395\u0301\u0388\u0397\u0301\u0389\u0399\u0301\u038a"
+			+ "\u0399\u0308\u03aa\u039f\u0301\u038c\u03a5\u0301\u038e\u03a5\u0308\u03ab\u03a9\u0301\u038f\u03b1\u0301\u03ac\u03b5\u0301\u03ad\u03b7\u0301\u03ae"
+			+ "\u03b9\u0301\u03af\u03b9\u0308\u03ca\u03bf\u0301\u03cc\u03c5\u0301\u03cd\u03c5\u0308\u03cb\u03c9\u0301\u03ce\u03ca\u0301\u0390\u03cb\u0301\u03b0"
+			+ "\u03d2\u0301\u03d3\u03d2\u0308\u03d4\u0406\u0308\u0407\u0410\u0306\u04d0\u0410\u0308\u04d2\u0413\u0301\u0403\u0415\u0300\u0400\u0415\u0306\u04d6"
+			+ "\u0415\u0308\u0401\u0416\u0306\u04c1\u0416\u0308\u04dc\u0417\u0308\u04de\u0418\u0300\u040d\u0418\u0304\u04e2\u0418\u0306\u0419\u0418\u0308\u04e4"
+			+ "\u041a\u0301\u040c\u041e\u0308\u04e6\u0423\u0304\u04ee\u0423\u0306\u040e\u0423\u0308\u04f0\u0423\u030b\u04f2\u0427\u0308\u04f4\u042b\u0308\u04f8"
+			+ "\u042d\u0308\u04ec\u0430\u0306\u04d1\u0430\u0308\u04d3\u0433\u0301\u0453\u0435\u0300\u0450\u0435\u0306\u04d7\u0435\u0308\u0451\u0436\u0306\u04c2"
+			+ "\u0436\u0308\u04dd\u0437\u0308\u04df\u0438\u0300\u045d\u0438\u0304\u04e3\u0438\u0306\u0439\u0438\u0308\u04e5\u043a\u0301\u045c\u043e\u0308\u04e7"
+			+ "\u0443\u0304\u04ef\u0443\u0306\u045e\u0443\u0308\u04f1\u0443\u030b\u04f3\u0447\u0308\u04f5\u044b\u0308\u04f9\u044d\u0308\u04ed\u0456\u0308\u0457"
+			+ "\u0474\u030f\u0476\u0475\u030f\u0477\u04d8\u0308\u04da\u04d9\u0308\u04db\u04e8\u0308\u04ea\u04e9\u0308\u04eb\u1e36\u0304\u1e38\u1e37\u0304\u1e39"
+			+ "\u1e5a\u0304\u1e5c\u1e5b\u0304\u1e5d\u1e62\u0307\u1e68\u1e63\u0307\u1e69\u1ea0\u0302\u1eac\u1ea0\u0306\u1eb6\u1ea1\u0302\u1ead\u1ea1\u0306\u1eb7"
+			+ "\u1eb8\u0302\u1ec6\u1eb9\u0302\u1ec7\u1ecc\u0302\u1ed8\u1ecd\u0302\u1ed9";
+
+	// The canonical combining class of each mark from FIRST_MARK to LAST_MARK
+	private static final String COMBINING_CLASSES =
+			"\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6"
+			+ "\u00e6\u00e6\u00e6\u00e6\u00e6\u00e8\u00dc\u00dc\u00dc\u00dc\u00e8\u00d8\u00dc\u00dc\u00dc\u00dc"
+			+ "\u00dc\u00ca\u00ca\u00dc\u00dc\u00dc\u00dc\u00ca\u00ca\u00dc\u00dc\u00dc\u00dc\u00dc\u00dc\u00dc"
+			+ "\u00dc\u00dc\u00dc\u00dc\u0001\u0001\u0001\u0001\u0001\u00dc\u00dc\u00dc\u00dc\u00e6\u00e6\u00e6"
+			+ "\u00e6\u00e6\u00e6\u00e6\u00e6\u00f0\u00e6\u00dc\u00dc\u00dc\u00e6\u00e6\u00e6\u00dc\u00dc\u0000"
+			+ "\u00e6\u00e6\u00e6\u00dc\u00dc\u00dc\u00dc\u00e6\u00e8\u00dc\u00dc\u00e6\u00e9\u00ea\u00ea\u00e9"
+			+ "\u00ea\u00ea\u00e9\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6\u00e6";
+
+	// (base << 16 | mark) of each composition, sorted, and the letters they compose to
+	private static final int[] PAIRS;
+	private static final char[] COMPOSITES;
+
+	// (composite << 16 | index into PAIRS) of each composition, sorted
+	private static final int[] DECOMPOSITIONS;
+
+	static {
+		final int count = COMPOSITIONS.length() / 3;
+		PAIRS = new int[count];
+		COMPOSITES = new char[count];
+		DECOMPOSITIONS = new int[count];
+		for (int i = 0; i < count; i++) {
+			PAIRS[i] = COMPOSITIONS.charAt(3 * i) << 16 | COMPOSITIONS.charAt(3 * i + 1);
+			COMPOSITES[i] = COMPOSITIONS.charAt(3 * i + 2);
+			DECOMPOSITIONS[i] = COMPOSITES[i] << 16 | i;
+		}
+		Arrays.sort(DECOMPOSITIONS);
+	}
+
+	private CanonicalComposition() { }
+
+	/**
+	 * @param codePoints The code points to normalize
+	 * @param length The number of code points to use
+	 * @return The composed code points, which is the same array if it was already composed and had no unused space
+	 */
+	static int[] compose(int[] codePoints, int length) {
+		boolean hasMarks = false;
+		for (int i = 0; i < length && !hasMarks; i++) {
+			hasMarks = getCombiningClass(codePoints[i]) != 0;
+		}
+		if (!hasMarks) {
+			// Precomposed letters without marks after them are already composed
+			if (length == codePoints.length) {
+				return codePoints;
+			}
+			int[] composed = new int[length];
+			System.arraycopy(codePoints, 0, composed, 0, length);
+			return composed;
+		}
+
+		// Letters in the table decompose into at most four code points
+		int[] decomposed = new int[length * 4];
+		int decomposedLength = 0;
+		for (int i = 0; i < length; i++) {
+			decomposedLength = decompose(codePoints[i], decomposed, decomposedLength);
+		}
+
+		// Stable sort each run of marks by combining class
+		for (int i = 1; i < decomposedLength; i++) {
+			final int codePoint = decomposed[i];
+			final int combiningClass = getCombiningClass(codePoint);
+			int j = i;
+			while (combiningClass != 0 && j > 0 && getCombiningClass(decomposed[j - 1]) > combiningClass) {
+				decomposed[j] = decomposed[j - 1];
+				j--;
+			}
+			decomposed[j] = codePoint;
+		}
+
+		// Compose each mark with the last starter before it, unless a mark in between has the same or a higher class
+		int composedLength = 0;
+		int starter = -1;
+		int lastClass = 0;
+		for (int i = 0; i < decomposedLength; i++) {
+			final int codePoint = decomposed[i];
+			final int combiningClass = getCombiningClass(codePoint);
+			if (starter >= 0 && (lastClass < combiningClass || lastClass == 0 && composedLength == starter + 1)) {
+				final int composite = getComposite(decomposed[starter], codePoint);
+				if (composite >= 0) {
+					decomposed[starter] = composite;
+					continue;
+				}
+			}
+			if (combiningClass == 0) {
+				starter = composedLength;
+			}
+			lastClass = combiningClass;
+			decomposed[composedLength++] = codePoint;
+		}
+		int[] composed = new int[composedLength];
+		System.arraycopy(decomposed, 0, composed, 0, composedLength);
+		return composed;
+	}
+
+	static int getCombiningClass(int codePoint) {
+		return codePoint >= FIRST_MARK && codePoint <= LAST_MARK ? COMBINING_CLASSES.charAt(codePoint - FIRST_MARK) : 0;
+	}
+
+	// Appends the full canonical decomposition of the code point, returning the new length
+	private static int decompose(int codePoint, int[] output, int length) {
+		if (codePoint <= Character.MAX_VALUE) {
+			final int index = Arrays.binarySearch(DECOMPOSITIONS, codePoint << 16);
+			final int insertionPoint = index >= 0 ? index : -index - 1;
+			if (insertionPoint < DECOMPOSITIONS.length && DECOMPOSITIONS[insertionPoint] >>> 16 == codePoint) {
+				final int pair = PAIRS[DECOMPOSITIONS[insertionPoint] & 0xffff];
+				length = decompose(pair >>> 16, output, length);
+				output[length++] = pair & 0xffff;
+				return length;
+			}
+		}
+		output[length++] = codePoint;
+		return length;
+	}
+
+	// The letter that a base and a mark compose to, or -1 if there is none
+	private static int getComposite(int base, int mark) {
+		if (base > Character.MAX_VALUE || mark < FIRST_MARK || mark > LAST_MARK) {
+			return -1;
+		}
+		final int index = Arrays.binarySearch(PAIRS, base << 16 | mark);
+		return index >= 0 ? COMPOSITES[index] : -1;
+	}
+}
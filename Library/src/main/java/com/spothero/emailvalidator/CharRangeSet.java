@@ -0,0 +1,96 @@
+/*
+ * CharRangeSet
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+/**
+ * An immutable open-addressing hash set of strings that can be queried with a range of any {@link CharSequence}, so
+ * that parts of an email address can be looked up without copying them into a new String first.
+ */
+final class CharRangeSet {
+
+	private final String[] mTable;
+	private final int mMask;
+	private final int mSize;
+
+	CharRangeSet(String[] strings) {
+		int capacity = 4;
+		while (capacity < strings.length * 2) {
+			capacity <<= 1;
+		}
+
+		mTable = new String[capacity];
+		mMask = capacity - 1;
+
+		int size = 0;
+		for (String string : strings) {
+			int index = spread(string.hashCode()) & mMask;
+			while (mTable[index] != null && !mTable[index].equals(string)) {
+				index = (index + 1) & mMask;
+			}
+			if (mTable[index] == null) {
+				mTable[index] = string;
+				size++;
+			}
+		}
+		mSize = size;
+	}
+
+	int size() {
+		return mSize;
+	}
+
+	boolean contains(CharSequence charSequence) {
+		return contains(charSequence, 0, charSequence.length());
+	}
+
+	boolean contains(CharSequence charSequence, int start, int end) {
+		// Same hash as String.hashCode(), so that the table can be built from the strings' cached hash codes
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + charSequence.charAt(i);
+		}
+
+		int index = spread(hash) & mMask;
+		String candidate;
+		while ((candidate = mTable[index]) != null) {
+			if (regionEquals(candidate, charSequence, start, end)) {
+				return true;
+			}
+			index = (index + 1) & mMask;
+		}
+		return false;
+	}
+
+	static boolean regionEquals(String string, CharSequence charSequence, int start, int end) {
+		final int length = end - start;
+		if (string.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (string.charAt(i) != charSequence.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * DictionaryFiles
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Files to load a validator's TLDs and domains from, so that they can be updated without a new release of the library.
+ * Any file that is left null keeps the list from the configuration that {@link #load(EmailValidatorConfiguration)} is
+ * given. Use a {@link DictionaryWatcher} to reload the files whenever they change.
+ * <p>
+ * Lists that have an index format can be given in it instead of as text, which is detected from the start of the file
+ * and saves building the index on every load.
+ */
+public class DictionaryFiles {
+
+	/**
+	 * The IANA list of TLDs (http://data.iana.org/TLD/tlds-alpha-by-domain.txt), one per line, with comments starting
+	 * with '#'. Without it the built in copy of the list is used, even if publicSuffixList is set.
+	 */
+	public File registeredTLDs;
+
+	/**
+	 * The Public Suffix List (https://publicsuffix.org/list/public_suffix_list.dat), one rule per line, with comments
+	 * starting with "//". Without it the built in rules for the most common email providers' countries are used, even if
+	 * registeredTLDs is set.
+	 */
+	public File publicSuffixList;
+
+	/**
+	 * The domains that typo suggestions are made from, either one per line in order of preference, with comments starting
+	 * with '#', or a dictionary written by {@link MappedDomainDictionary#write(java.util.Collection, java.io.OutputStream)}, which is memory mapped instead of read.
+	 */
+	public File commonDomains;
+
+	/**
+	 * The domains to reject addresses from, either one per line as read by {@link BlockedDomainList#parse(Reader)}, or a
+	 * list saved by {@link BlockedDomainList#write(java.io.OutputStream)}.
+	 */
+	public File blockedDomains;
+
+	/**
+	 * Builds a validator from the files, with any other settings taken from a configuration. Files that are replaced
+	 * while they are being read can produce a partial list, so replace them by renaming a complete new file over them.
+	 * @param configuration The settings to use for anything that isn't loaded from a file, which is not changed
+	 * @return A new validator
+	 * @throws IOException If any of the files could not be read
+	 */
+	public EmailValidator load(EmailValidatorConfiguration configuration) throws IOException {
+		EmailValidatorConfiguration loadedConfiguration = configuration.copy();
+
+		if (registeredTLDs != null || publicSuffixList != null) {
+			String[] tlds = DefaultDictionaries.REGISTERED_TLDS;
+			String[] rules = DefaultDictionaries.PUBLIC_SUFFIX_RULES;
+			if (registeredTLDs != null) {
+				Reader reader = openReader(registeredTLDs);
+				try {
+					tlds = PublicSuffixRegistry.readRegisteredTLDs(reader);
+				} finally {
+					reader.close();
+				}
+			}
+			if (publicSuffixList != null) {
+				Reader reader = openReader(publicSuffixList);
+				try {
+					rules = PublicSuffixRegistry.readRules(reader);
+				} finally {
+					reader.close();
+				}
+			}
+			loadedConfiguration.publicSuffixRegistry = new PublicSuffixRegistry(tlds, rules);
+		}
+
+		if (commonDomains != null) {
+			if (startsWith(commonDomains, MappedDomainDictionary.MAGIC)) {
+				loadedConfiguration.commonDomainDictionary = MappedDomainDictionary.open(commonDomains);
+			} else {
+				loadedConfiguration.commonDomains = readDomains(commonDomains);
+				loadedConfiguration.commonDomainDictionary = null;
+			}
+		}
+
+		if (blockedDomains != null) {
+			if (startsWith(blockedDomains, BlockedDomainList.MAGIC)) {
+				InputStream input = new BufferedInputStream(new FileInputStream(blockedDomains));
+				try {
+					loadedConfiguration.blockedDomains = BlockedDomainList.read(input);
+				} finally {
+					input.close();
+				}
+			} else {
+				Reader reader = openReader(blockedDomains);
+				try {
+					loadedConfiguration.blockedDomains = BlockedDomainList.parse(reader);
+				} finally {
+					reader.close();
+				}
+			}
+		}
+
+		return new EmailValidator(loadedConfiguration);
+	}
+
+	/**
+	 * @return The files, in a copy that is unaffected by changes to this one
+	 */
+	DictionaryFiles copy() {
+		DictionaryFiles files = new DictionaryFiles();
+		files.registeredTLDs = registeredTLDs;
+		files.publicSuffixList = publicSuffixList;
+		files.commonDomains = commonDomains;
+		files.blockedDomains = blockedDomains;
+		return files;
+	}
+
+	/**
+	 * @return The modification time and length of each file, which change whenever any of the files is replaced
+	 */
+	long[] getSignature() {
+		File[] files = new File[] { registeredTLDs, publicSuffixList, commonDomains, blockedDomains };
+		long[] signature = new long[files.length * 2];
+		for (int i = 0; i < files.length; i++) {
+			if (files[i] != null) {
+				signature[i * 2] = files[i].lastModified();
+				signature[i * 2 + 1] = files[i].length();
+			}
+		}
+		return signature;
+	}
+
+	private static List<String> readDomains(File file) throws IOException {
+		List<String> domains = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(openReader(file));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() > 0 && !line.startsWith("#")) {
+					domains.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return domains;
+	}
+
+	private static Reader openReader(File file) throws IOException {
+		return new InputStreamReader(new FileInputStream(file), "UTF-8");
+	}
+
+	private static boolean startsWith(File file, int magic) throws IOException {
+		DataInputStream input = new DataInputStream(new FileInputStream(file));
+		try {
+			return input.readInt() == magic;
+		} catch (EOFException e) {
+			return false;
+		} finally {
+			input.close();
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * DictionaryWatcher
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps a validator up to date with a set of {@link DictionaryFiles}, building a new validator whenever the files change.
+ * <p>
+ * Each validator is an immutable snapshot of the files, with its lookup structures built before it is published through
+ * a single atomic reference, so {@link #getValidator()} never locks and never sees a half built validator. Validations
+ * already running on the previous validator simply finish on it. Every snapshot gets the next
+ * {@link EmailValidator#getDictionaryVersion() dictionary version}, which the results it returns carry.
+ * <p>
+ * Once started, the files are polled in the background. A change is only loaded once the files have looked the same for
+ * two polls in a row, so that files still being written aren't loaded half way. If loading fails, the previous
+ * validator stays in use until the files change again.
+ */
+public final class DictionaryWatcher {
+
+	/**
+	 * A reasonable time between checks for changed files, in milliseconds
+	 */
+	public static final long DEFAULT_POLL_INTERVAL_MILLIS = 60 * 1000;
+
+	/**
+	 * Receives each new validator, for example to make it the default with {@link EmailValidator#setDefault(EmailValidator)}
+	 */
+	public interface Listener {
+		/**
+		 * Called on the thread that loaded the files, after the new validator has been published. Other reloads wait for
+		 * this to return, so validators arrive in the order they were published, and the one passed in is still
+		 * {@link DictionaryWatcher#getValidator() current} for as long as this runs.
+		 * @param validator The new validator
+		 */
+		void onReloaded(EmailValidator validator);
+
+		/**
+		 * Called on the polling thread when changed files could not be loaded
+		 * @param exception What went wrong
+		 */
+		void onReloadFailed(Exception exception);
+	}
+
+	private final EmailValidatorConfiguration mConfiguration;
+	private final DictionaryFiles mFiles;
+	private final Listener mListener;
+	private final AtomicReference<EmailValidator> mValidator = new AtomicReference<EmailValidator>();
+
+	// Reloads are rare, so they take turns, including telling the listener. Only the signatures and the version are
+	// guarded, never the validator.
+	private final Object mReloadLock = new Object();
+	private long[] mLoadedSignature;
+	private long[] mPolledSignature;
+	private long mNextVersion;
+
+	private ScheduledExecutorService mExecutor;
+
+	/**
+	 * Loads the first validator from the files. Call {@link #start(long)} to keep it up to date.
+	 * @param configuration The settings to use for anything that isn't loaded from a file. The first validator gets the
+	 *                      dictionary version after the configuration's, and each one after that the next.
+	 * @param files The files to load and watch
+	 * @param listener Receives new validators and failed reloads, or null
+	 * @throws IOException If any of the files could not be read
+	 */
+	public DictionaryWatcher(EmailValidatorConfiguration configuration, DictionaryFiles files, Listener listener) throws IOException {
+		mConfiguration = configuration.copy();
+		mFiles = files.copy();
+		mListener = listener;
+		mNextVersion = configuration.dictionaryVersion + 1;
+
+		synchronized (mReloadLock) {
+			final long[] signature = mFiles.getSignature();
+			mValidator.set(load());
+			mLoadedSignature = signature;
+			mPolledSignature = signature;
+		}
+	}
+
+	/**
+	 * @return The validator for the latest files that loaded successfully
+	 */
+	public EmailValidator getValidator() {
+		return mValidator.get();
+	}
+
+	/**
+	 * Starts checking the files for changes on a background thread. Does nothing if already started.
+	 * @param pollIntervalMillis The time between checks, such as {@link #DEFAULT_POLL_INTERVAL_MILLIS}
+	 */
+	public synchronized void start(long pollIntervalMillis) {
+		if (pollIntervalMillis <= 0) {
+			throw new IllegalArgumentException("Poll interval must be positive: " + pollIntervalMillis);
+		} else if (mExecutor != null) {
+			return;
+		}
+
+		mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "DictionaryWatcher");
+				// Watching shouldn't keep the process alive
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		mExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				poll();
+			}
+		}, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops checking the files for changes. The current validator stays available.
+	 */
+	public synchronized void stop() {
+		if (mExecutor != null) {
+			mExecutor.shutdown();
+			mExecutor = null;
+		}
+	}
+
+	/**
+	 * Loads the files straight away if they have changed since they were last loaded, without waiting for them to look
+	 * the same for two polls
+	 * @return True if a new validator was published
+	 * @throws IOException If the files have changed but could not be loaded, in which case the previous validator stays
+	 */
+	public boolean reloadIfChanged() throws IOException {
+		synchronized (mReloadLock) {
+			final long[] signature = mFiles.getSignature();
+			mPolledSignature = signature;
+			if (Arrays.equals(signature, mLoadedSignature)) {
+				return false;
+			}
+
+			// Recorded up front, so that files that fail to load aren't retried until they change again
+			mLoadedSignature = signature;
+			final EmailValidator validator = load();
+			mValidator.set(validator);
+
+			// Still holding the lock, so that a poll and a manual reload can't tell the listener in the wrong order
+			if (mListener != null) {
+				mListener.onReloaded(validator);
+			}
+		}
+		return true;
+	}
+
+	private void poll() {
+		try {
+			synchronized (mReloadLock) {
+				final long[] signature = mFiles.getSignature();
+				final boolean settled = Arrays.equals(signature, mPolledSignature);
+				mPolledSignature = signature;
+				if (!settled) {
+					return;
+				}
+			}
+			reloadIfChanged();
+		} catch (Exception e) {
+			// Anything thrown out of a scheduled task would silently cancel all future polls
+			if (mListener != null) {
+				mListener.onReloadFailed(e);
+			}
+		}
+	}
+
+	private EmailValidator load() throws IOException {
+		mConfiguration.dictionaryVersion = mNextVersion;
+		EmailValidator validator = mFiles.load(mConfiguration);
+		mNextVersion++;
+		return validator;
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ * DistanceMetric
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+/**
+ * How far apart a typo and a correction are considered to be when choosing typo suggestions
+ */
+public enum DistanceMetric {
+	/**
+	 * The number of characters that have to be inserted, deleted or replaced. Swapping two characters counts as two
+	 * edits.
+	 */
+	LEVENSHTEIN,
+
+	/**
+	 * Like {@link #LEVENSHTEIN}, but swapping two neighbouring characters is a single edit, and swapping characters or
+	 * hitting a key next to the intended one on a QWERTY keyboard only counts as half an edit. The most common typos
+	 * are then much closer to their corrections than unrelated domains are, so tolerances can be set lower.
+	 */
+	KEYBOARD;
+
+	/**
+	 * @return The largest distance, in this metric's units, for which edits / length is still under the tolerance, or
+	 * -1 if there is none
+	 */
+	int getMaxDistance(int length, float tolerance) {
+		// Keyboard distances are in half edits, so compare them against twice the length
+		return getMaxUnitDistance(this == KEYBOARD ? length * KeyboardDistance.EDIT_COST : length, tolerance);
+	}
+
+	// The largest distance for which distance / length is still under the tolerance, or -1 if there is none
+	private static int getMaxUnitDistance(int length, float tolerance) {
+		if (length == 0 || !(tolerance > 0)) {
+			return -1;
+		}
+
+		int maxDistance = (int)Math.min(tolerance * length, Integer.MAX_VALUE - 1);
+		while (maxDistance >= 0 && !((float)maxDistance / length < tolerance)) {
+			maxDistance--;
+		}
+		while (maxDistance < Integer.MAX_VALUE - 1 && (float)(maxDistance + 1) / length < tolerance) {
+			maxDistance++;
+		}
+		return maxDistance;
+	}
+}
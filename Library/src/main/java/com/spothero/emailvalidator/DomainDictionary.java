@@ -0,0 +1,33 @@
+/*
+ * DomainDictionary
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+/**
+ * The known domains that typo suggestions are made from.
+ */
+interface DomainDictionary {
+
+	boolean contains(CharSequence domain, int start, int end);
+
+	/**
+	 * @param maxDistance The largest distance a match may have, in half edits for {@link DistanceMetric#KEYBOARD}
+	 * @return The closest known domain within maxDistance, or null if there is none
+	 */
+	String findClosest(CharSequence domain, int start, int end, int maxDistance, DistanceMetric metric);
+}
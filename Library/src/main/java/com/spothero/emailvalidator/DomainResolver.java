@@ -0,0 +1,45 @@
+/*
+ * DomainResolver
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator;
+
+import java.io.IOException;
+
+/**
+ * Looks up the DNS records that show whether a domain can receive email, for {@link DomainVerifier}. Implementations
+ * are called from the verifier's worker threads, several at a time, so they must be thread safe. They may block.
+ */
+public interface DomainResolver {
+
+	/**
+	 * @param domain A domain, in lower case
+	 * @return The host names of the domain's MX records, or an empty array if the domain has none or doesn't exist. A
+	 * domain that accepts no mail at all has a single MX record of "." (RFC 7505).
+	 * @throws IOException If the lookup failed, rather than finding that there are no records
+	 */
+	String[] getMailExchangers(String domain) throws IOException;
+
+	/**
+	 * Used for domains without MX records, which receive email at their own address instead (RFC 5321)
+	 * @param domain A domain, in lower case
+	 * @return True if the domain has an A or AAAA record
+	 * @throws IOException If the lookup failed, rather than finding that there are no records
+	 */
+	boolean hasAddress(String domain) throws IOException;
+}
@@ -0,0 +1,380 @@
+/*
+ * DomainVerifier
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks whether the domains of email addresses can receive email, by looking up their MX records (or, if they have
+ * none, their A and AAAA records) with a {@link DomainResolver}. This catches addresses such as
+ * "user@nonexistent-domain.com" that have valid syntax and no typos, so it is meant to run on the addresses that pass
+ * {@link EmailValidator#validateAndAutocorrect(String)}.
+ * <p>
+ * Lookups run in the background and report back through a {@link Future} or a {@link Callback}. Each domain's answer
+ * is cached for a fixed time, and a request for a domain that is already being looked up waits for that lookup rather
+ * than starting another, so verifying any number of addresses only queries DNS once per distinct domain. Only a fixed
+ * number of lookups run at once, and the rest wait their turn in the order they were requested. Failed lookups are not
+ * cached, so the next request for the domain tries again.
+ * <p>
+ * Instances are thread safe. Call {@link #shutdown()} when finished to stop the worker threads.
+ */
+public final class DomainVerifier {
+
+	/**
+	 * Whether a domain can receive email
+	 */
+	public enum Deliverability {
+		/**
+		 * The domain has MX records, naming the servers that receive its email
+		 */
+		MAIL_EXCHANGER,
+
+		/**
+		 * The domain has no MX records, but has an address of its own that can receive email
+		 */
+		ADDRESS,
+
+		/**
+		 * The domain doesn't exist, has no records that email can be delivered to, or has declared that it accepts no
+		 * email with a null MX record
+		 */
+		UNDELIVERABLE
+	}
+
+	/**
+	 * Receives the outcome of a verification. Methods are called on the thread that finished the lookup, or on the
+	 * calling thread if the domain's answer was already cached, so they should return quickly.
+	 */
+	public interface Callback {
+		/**
+		 * @param domain The domain that was looked up, in lower case
+		 * @param deliverability Whether the domain can receive email
+		 */
+		void onVerified(String domain, Deliverability deliverability);
+
+		/**
+		 * @param domain The domain that was looked up, in lower case
+		 * @param cause The reason the lookup failed, usually an {@link IOException} from the resolver
+		 */
+		void onFailed(String domain, Throwable cause);
+	}
+
+	public static final int DEFAULT_MAX_CONCURRENT_LOOKUPS = 16;
+	public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 60 * 60 * 1000L;
+
+	// Expired answers are only swept out once the cache has grown this much since the last sweep
+	private static final int MIN_SWEEP_SIZE = 1024;
+
+	private final DomainResolver mResolver;
+	private final Executor mExecutor;
+	private final ExecutorService mOwnedExecutor;
+	private final long mTimeToLiveNanos;
+	private final Semaphore mPermits;
+	private final ConcurrentLinkedQueue<Lookup> mQueuedLookups = new ConcurrentLinkedQueue<Lookup>();
+	// Every domain's lookup, whether still in progress or finished and cached
+	private final ConcurrentHashMap<String, Lookup> mLookups = new ConcurrentHashMap<String, Lookup>();
+	private final AtomicInteger mSweepSize = new AtomicInteger(MIN_SWEEP_SIZE);
+
+	/**
+	 * Creates a verifier with its own worker threads, which runs up to {@link #DEFAULT_MAX_CONCURRENT_LOOKUPS} lookups
+	 * at once and caches answers for {@link #DEFAULT_TIME_TO_LIVE_MILLIS}
+	 * @param resolver The resolver to look up domains with
+	 */
+	public DomainVerifier(DomainResolver resolver) {
+		this(resolver, DEFAULT_MAX_CONCURRENT_LOOKUPS, DEFAULT_TIME_TO_LIVE_MILLIS);
+	}
+
+	/**
+	 * Creates a verifier with its own worker threads
+	 * @param resolver The resolver to look up domains with
+	 * @param maxConcurrentLookups The largest number of lookups to run at once
+	 * @param timeToLiveMillis How long to cache each domain's answer for, or 0 to only share lookups in progress
+	 */
+	public DomainVerifier(DomainResolver resolver, int maxConcurrentLookups, long timeToLiveMillis) {
+		this(resolver, null, maxConcurrentLookups, timeToLiveMillis);
+	}
+
+	/**
+	 * Creates a verifier that runs lookups on an existing executor
+	 * @param resolver The resolver to look up domains with
+	 * @param executor The executor to run lookups on, which should run them on threads other than the caller's
+	 * @param maxConcurrentLookups The largest number of lookups to run at once
+	 * @param timeToLiveMillis How long to cache each domain's answer for, or 0 to only share lookups in progress
+	 */
+	public DomainVerifier(DomainResolver resolver, Executor executor, int maxConcurrentLookups, long timeToLiveMillis) {
+		if (resolver == null) {
+			throw new NullPointerException("resolver");
+		} else if (maxConcurrentLookups < 1) {
+			throw new IllegalArgumentException("Concurrent lookups must be at least 1: " + maxConcurrentLookups);
+		} else if (timeToLiveMillis < 0) {
+			throw new IllegalArgumentException("Time to live must not be negative: " + timeToLiveMillis);
+		}
+		mResolver = resolver;
+		mOwnedExecutor = executor == null ? Executors.newFixedThreadPool(maxConcurrentLookups, new LookupThreadFactory()) : null;
+		mExecutor = executor == null ? mOwnedExecutor : executor;
+		mTimeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+		mPermits = new Semaphore(maxConcurrentLookups);
+	}
+
+	/**
+	 * Starts verifying the domain of an email address, unless its answer is cached or it is already being looked up.
+	 * The returned future is shared with every other request for the same domain, so cancelling it has no effect.
+	 * @param emailAddress An email address that passed validation
+	 * @return Whether the address's domain can receive email. Getting the result throws an ExecutionException if the
+	 * lookup failed.
+	 */
+	public Future<Deliverability> verify(String emailAddress) {
+		return getLookup(getDomain(emailAddress));
+	}
+
+	/**
+	 * Starts verifying the domain of an email address, unless its answer is cached or it is already being looked up
+	 * @param emailAddress An email address that passed validation
+	 * @param callback Called once the address's domain has been verified
+	 */
+	public void verify(String emailAddress, Callback callback) {
+		if (callback == null) {
+			throw new NullPointerException("callback");
+		}
+		getLookup(getDomain(emailAddress)).addCallback(callback);
+	}
+
+	/**
+	 * Stops the worker threads once any lookups in progress have finished. Lookups running on an executor that was
+	 * passed in are left alone.
+	 */
+	public void shutdown() {
+		if (mOwnedExecutor != null) {
+			mOwnedExecutor.shutdown();
+		}
+	}
+
+	private static String getDomain(String emailAddress) {
+		final int atIndex = emailAddress.lastIndexOf('@');
+		if (atIndex < 0) {
+			throw new IllegalArgumentException("Not an email address: " + emailAddress);
+		}
+		// DNS only knows the ASCII form of international domains
+		final String domain = Punycode.toAscii(emailAddress, atIndex + 1, emailAddress.length());
+		if (domain == null) {
+			throw new IllegalArgumentException("Not a valid domain: " + emailAddress);
+		}
+		return domain.toLowerCase(Locale.US);
+	}
+
+	private Lookup getLookup(String domain) {
+		while (true) {
+			final Lookup lookup = mLookups.get(domain);
+			if (lookup != null && !lookup.isExpired(System.nanoTime())) {
+				return lookup;
+			}
+
+			final Lookup newLookup = new Lookup(this, domain);
+			if (lookup == null ? mLookups.putIfAbsent(domain, newLookup) == null : mLookups.replace(domain, lookup, newLookup)) {
+				sweepIfNeeded();
+				mQueuedLookups.add(newLookup);
+				runQueuedLookups();
+				return newLookup;
+			}
+			// Another thread started looking the domain up first, so use its lookup instead
+		}
+	}
+
+	// Starts queued lookups while there are permits for them. This is called whenever a lookup is queued and whenever
+	// one finishes, so a lookup that is queued just as the last permit is released is still started by one or the other.
+	private void runQueuedLookups() {
+		while (!mQueuedLookups.isEmpty() && mPermits.tryAcquire()) {
+			final Lookup lookup = mQueuedLookups.poll();
+			if (lookup == null) {
+				mPermits.release();
+				continue;
+			}
+
+			try {
+				mExecutor.execute(lookup);
+			} catch (RejectedExecutionException e) {
+				mPermits.release();
+				lookup.fail(e);
+			}
+		}
+	}
+
+	// Removes expired answers once the cache has doubled in size, so that the cost of sweeping is spread over the
+	// lookups that grew it
+	private void sweepIfNeeded() {
+		final int sweepSize = mSweepSize.get();
+		if (mLookups.size() > sweepSize && mSweepSize.compareAndSet(sweepSize, Integer.MAX_VALUE)) {
+			final long now = System.nanoTime();
+			for (Map.Entry<String, Lookup> entry : mLookups.entrySet()) {
+				if (entry.getValue().isExpired(now)) {
+					// Only removed if it hasn't been replaced by a new lookup in the meantime
+					mLookups.remove(entry.getKey(), entry.getValue());
+				}
+			}
+			mSweepSize.set(Math.max(MIN_SWEEP_SIZE, mLookups.size() * 2));
+		}
+	}
+
+	private Deliverability resolve(String domain) throws IOException {
+		final String[] mailExchangers = mResolver.getMailExchangers(domain);
+		if (mailExchangers.length == 1 && isNullMailExchanger(mailExchangers[0])) {
+			return Deliverability.UNDELIVERABLE;
+		} else if (mailExchangers.length > 0) {
+			return Deliverability.MAIL_EXCHANGER;
+		} else {
+			return mResolver.hasAddress(domain) ? Deliverability.ADDRESS : Deliverability.UNDELIVERABLE;
+		}
+	}
+
+	private static boolean isNullMailExchanger(String host) {
+		return host.length() == 0 || host.equals(".");
+	}
+
+	private static final class Lookup extends FutureTask<Deliverability> {
+		private final DomainVerifier mVerifier;
+		private final String mDomain;
+		// Only read once mCompleted is set, which publishes it
+		private long mExpiryTime;
+		private volatile boolean mCompleted;
+		// Guarded by this, and null once the callbacks have been called
+		private List<Callback> mCallbacks = new ArrayList<Callback>(0);
+
+		Lookup(final DomainVerifier verifier, final String domain) {
+			super(new Callable<Deliverability>() {
+				@Override
+				public Deliverability call() throws IOException {
+					return verifier.resolve(domain);
+				}
+			});
+			mVerifier = verifier;
+			mDomain = domain;
+		}
+
+		@Override
+		public void run() {
+			try {
+				super.run();
+			} finally {
+				mVerifier.mPermits.release();
+				mVerifier.runQueuedLookups();
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			// Other requests for the domain share this lookup
+			return false;
+		}
+
+		void fail(Throwable cause) {
+			setException(cause);
+		}
+
+		boolean isExpired(long now) {
+			return mCompleted && now - mExpiryTime >= 0;
+		}
+
+		void addCallback(Callback callback) {
+			synchronized (this) {
+				if (mCallbacks != null) {
+					mCallbacks.add(callback);
+					return;
+				}
+			}
+			report(callback);
+		}
+
+		// The expiry is set before the outcome, so that anyone who has seen the outcome also sees when it expires
+		@Override
+		protected void set(Deliverability deliverability) {
+			setExpiryTime(mVerifier.mTimeToLiveNanos);
+			super.set(deliverability);
+		}
+
+		@Override
+		protected void setException(Throwable cause) {
+			mVerifier.mLookups.remove(mDomain, this);
+			setExpiryTime(0);
+			super.setException(cause);
+		}
+
+		private void setExpiryTime(long timeToLiveNanos) {
+			mExpiryTime = System.nanoTime() + timeToLiveNanos;
+			mCompleted = true;
+		}
+
+		@Override
+		protected void done() {
+			final List<Callback> callbacks;
+			synchronized (this) {
+				callbacks = mCallbacks;
+				mCallbacks = null;
+			}
+			for (Callback callback : callbacks) {
+				report(callback);
+			}
+		}
+
+		private void report(Callback callback) {
+			final Deliverability deliverability;
+			try {
+				deliverability = get();
+			} catch (ExecutionException e) {
+				callback.onFailed(mDomain, e.getCause());
+				return;
+			} catch (InterruptedException e) {
+				// Can't happen once the lookup is done
+				Thread.currentThread().interrupt();
+				return;
+			}
+			callback.onVerified(mDomain, deliverability);
+		}
+	}
+
+	private static final class LookupThreadFactory implements ThreadFactory {
+		private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "DomainVerifier-" + THREAD_NUMBER.incrementAndGet());
+			// Idle workers shouldn't keep the process alive
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
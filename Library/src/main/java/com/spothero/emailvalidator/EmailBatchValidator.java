@@ -0,0 +1,257 @@
+/*
+ * EmailBatchValidator
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validates large batches of email addresses with {@link EmailValidator#validateAndAutocorrect(String)}, spread across
+ * several threads. Results are returned in the same order as the addresses.
+ * <p>
+ * Each batch is split into small chunks that the worker threads claim one at a time until none are left, so a thread
+ * that gets quick addresses simply takes more chunks. The calling thread works on the batch too, so a parallelism of 1
+ * validates everything on the calling thread.
+ * <p>
+ * The default validator is read once per batch, so every address in a batch is checked against the same TLDs and
+ * domains, even if they are reloaded while the batch is running.
+ * <p>
+ * Instances are thread safe. Call {@link #shutdown()} when finished to stop the worker threads.
+ */
+public final class EmailBatchValidator {
+
+	// Small enough to balance the work between threads, large enough that claiming a chunk is rare
+	private static final int MIN_CHUNK_SIZE = 256;
+	private static final int CHUNKS_PER_THREAD = 8;
+
+	private final Executor mExecutor;
+	private final ExecutorService mOwnedExecutor;
+	private final int mParallelism;
+
+	/**
+	 * Creates a batch validator that uses one thread per available processor
+	 */
+	public EmailBatchValidator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a batch validator with its own worker threads
+	 * @param parallelism The number of threads to validate each batch with, including the calling thread
+	 */
+	public EmailBatchValidator(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+		}
+		mParallelism = parallelism;
+		mOwnedExecutor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism - 1, new WorkerThreadFactory()) : null;
+		mExecutor = mOwnedExecutor;
+	}
+
+	/**
+	 * Creates a batch validator that runs its workers on an existing executor
+	 * @param executor The executor to run workers on, which should be able to run parallelism - 1 tasks at once
+	 * @param parallelism The number of threads to validate each batch with, including the calling thread
+	 */
+	public EmailBatchValidator(Executor executor, int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+		} else if (executor == null) {
+			throw new NullPointerException("executor");
+		}
+		mParallelism = parallelism;
+		mOwnedExecutor = null;
+		mExecutor = executor;
+	}
+
+	/**
+	 * @return The number of threads each batch is validated with
+	 */
+	public int getParallelism() {
+		return mParallelism;
+	}
+
+	/**
+	 * Validates and looks for typos in a batch of email addresses
+	 * @param emailAddresses The email addresses to check
+	 * @return The result for each email address, in the same order
+	 * @throws InterruptedException If the calling thread was interrupted while waiting for the workers
+	 */
+	public EmailValidationResult[] validateAndAutocorrect(String[] emailAddresses) throws InterruptedException {
+		final EmailValidationResult[] results = new EmailValidationResult[emailAddresses.length];
+		validate(emailAddresses, results, false);
+		return results;
+	}
+
+	/**
+	 * Validates and looks for typos in a batch of email addresses, writing each outcome into the result at the same
+	 * index. Null entries are filled in with new results first, so passing the same array for every batch only
+	 * allocates results for the first one.
+	 * @param emailAddresses The email addresses to check
+	 * @param results The results to overwrite, at least as long as emailAddresses
+	 * @throws InterruptedException If the calling thread was interrupted while waiting for the workers
+	 */
+	public void validateAndAutocorrect(String[] emailAddresses, EmailValidationResult[] results) throws InterruptedException {
+		if (results.length < emailAddresses.length) {
+			throw new IllegalArgumentException("Only " + results.length + " results for " + emailAddresses.length + " email addresses");
+		}
+		for (int i = 0; i < emailAddresses.length; i++) {
+			if (results[i] == null) {
+				results[i] = new EmailValidationResult();
+			}
+		}
+		validate(emailAddresses, results, true);
+	}
+
+	/**
+	 * Validates and looks for typos in a batch of email addresses
+	 * @param emailAddresses The email addresses to check
+	 * @return The result for each email address, in the same order as the collection's iterator
+	 * @throws InterruptedException If the calling thread was interrupted while waiting for the workers
+	 */
+	public List<EmailValidationResult> validateAndAutocorrect(Collection<String> emailAddresses) throws InterruptedException {
+		return Arrays.asList(validateAndAutocorrect(emailAddresses.toArray(new String[emailAddresses.size()])));
+	}
+
+	/**
+	 * Validates and looks for typos in a batch of email addresses
+	 * @param emailAddresses The email addresses to check
+	 * @return The result for each email address, in the same order as the iterator
+	 * @throws InterruptedException If the calling thread was interrupted while waiting for the workers
+	 */
+	public List<EmailValidationResult> validateAndAutocorrect(Iterable<String> emailAddresses) throws InterruptedException {
+		if (emailAddresses instanceof Collection) {
+			return validateAndAutocorrect((Collection<String>)emailAddresses);
+		}
+
+		List<String> addresses = new ArrayList<String>();
+		for (String emailAddress : emailAddresses) {
+			addresses.add(emailAddress);
+		}
+		return validateAndAutocorrect(addresses);
+	}
+
+	/**
+	 * Stops the worker threads once any batches in progress have finished. Workers running on an executor that was
+	 * passed in are left alone.
+	 */
+	public void shutdown() {
+		if (mOwnedExecutor != null) {
+			mOwnedExecutor.shutdown();
+		}
+	}
+
+	// Either overwrites the results that are there, or stores a new or shared result for each address
+	private void validate(String[] emailAddresses, EmailValidationResult[] results, boolean overwrite) throws InterruptedException {
+		final int length = emailAddresses.length;
+		final int chunkSize = Math.max(MIN_CHUNK_SIZE, length / (mParallelism * CHUNKS_PER_THREAD) + 1);
+		final int chunkCount = (length + chunkSize - 1) / chunkSize;
+		final int workerCount = Math.min(mParallelism, chunkCount);
+
+		final Worker worker = new Worker(EmailValidator.getDefault(), emailAddresses, results, overwrite, chunkSize, chunkCount);
+		List<Future<Void>> helpers = new ArrayList<Future<Void>>(Math.max(workerCount - 1, 0));
+		for (int i = 1; i < workerCount; i++) {
+			FutureTask<Void> helper = new FutureTask<Void>(worker, null);
+			mExecutor.execute(helper);
+			helpers.add(helper);
+		}
+
+		try {
+			worker.run();
+			for (Future<Void> helper : helpers) {
+				helper.get();
+			}
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else if (cause instanceof Error) {
+				throw (Error)cause;
+			} else {
+				throw new RuntimeException(cause);
+			}
+		} finally {
+			// Stop helpers from claiming more chunks if anything went wrong
+			worker.cancel();
+		}
+	}
+
+	private static final class Worker implements Runnable {
+		private final EmailValidator mValidator;
+		private final String[] mEmailAddresses;
+		private final EmailValidationResult[] mResults;
+		private final boolean mOverwrite;
+		private final int mChunkSize;
+		private final int mChunkCount;
+		private final AtomicInteger mNextChunk = new AtomicInteger();
+
+		Worker(EmailValidator validator, String[] emailAddresses, EmailValidationResult[] results, boolean overwrite, int chunkSize, int chunkCount) {
+			mValidator = validator;
+			mEmailAddresses = emailAddresses;
+			mResults = results;
+			mOverwrite = overwrite;
+			mChunkSize = chunkSize;
+			mChunkCount = chunkCount;
+		}
+
+		@Override
+		public void run() {
+			int chunk;
+			while ((chunk = mNextChunk.getAndIncrement()) < mChunkCount) {
+				final int start = chunk * mChunkSize;
+				final int end = Math.min(start + mChunkSize, mEmailAddresses.length);
+				if (mOverwrite) {
+					for (int i = start; i < end; i++) {
+						mValidator.validate(mEmailAddresses[i], mResults[i]);
+					}
+				} else {
+					for (int i = start; i < end; i++) {
+						mResults[i] = mValidator.validate(mEmailAddresses[i]);
+					}
+				}
+			}
+		}
+
+		void cancel() {
+			mNextChunk.set(mChunkCount);
+		}
+	}
+
+	private static final class WorkerThreadFactory implements ThreadFactory {
+		private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "EmailBatchValidator-" + THREAD_NUMBER.incrementAndGet());
+			// Idle workers shouldn't keep the process alive
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
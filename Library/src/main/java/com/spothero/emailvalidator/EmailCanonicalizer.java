@@ -0,0 +1,301 @@
+/*
+ * EmailCanonicalizer
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reduces email addresses to a canonical form, so that different ways of writing the same mailbox (such as
+ * "John.Doe+promo@GMail.com" and "johndoe@gmail.com") can be recognised as duplicates.
+ * <p>
+ * Domains are always lower cased. Usernames are left alone unless the domain belongs to a provider with a
+ * {@link ProviderRule}, since usernames are case sensitive in general. For those providers the username is lower cased,
+ * anything from the tag separator on is removed, and dots are removed if the provider ignores them.
+ * <p>
+ * {@link #getFingerprint(String)} hashes the canonical form without building it as a String, for deduplicating large
+ * lists with {@link EmailDeduplicator}.
+ * <p>
+ * Instances are immutable and thread safe.
+ */
+public final class EmailCanonicalizer {
+
+	/**
+	 * How one provider's mail servers treat the usernames of the addresses they receive
+	 */
+	public static final class ProviderRule {
+		/**
+		 * The domain the rule applies to, such as "googlemail.com"
+		 */
+		public final String domain;
+
+		/**
+		 * The domain that addresses are rewritten to, such as "gmail.com"
+		 */
+		public final String canonicalDomain;
+
+		/**
+		 * True if the provider ignores dots in usernames
+		 */
+		public final boolean ignoreDots;
+
+		/**
+		 * The character that starts a tag which the provider ignores (such as the '+' in "john+promo"), or 0 if it has
+		 * none
+		 */
+		public final char tagSeparator;
+
+		/**
+		 * @param domain The domain the rule applies to
+		 * @param canonicalDomain The domain that addresses are rewritten to, which may be the same domain
+		 * @param ignoreDots True if the provider ignores dots in usernames
+		 * @param tagSeparator The character that starts a tag which the provider ignores, or 0 if it has none
+		 */
+		public ProviderRule(String domain, String canonicalDomain, boolean ignoreDots, char tagSeparator) {
+			this.domain = toLowerCase(domain);
+			this.canonicalDomain = toLowerCase(canonicalDomain);
+			this.ignoreDots = ignoreDots;
+			this.tagSeparator = tagSeparator;
+		}
+	}
+
+	private static final ProviderRule[] DEFAULT_RULES = new ProviderRule[] {
+			new ProviderRule("gmail.com", "gmail.com", true, '+'),
+			new ProviderRule("googlemail.com", "gmail.com", true, '+'),
+			new ProviderRule("outlook.com", "outlook.com", false, '+'),
+			new ProviderRule("hotmail.com", "hotmail.com", false, '+'),
+			new ProviderRule("hotmail.co.uk", "hotmail.co.uk", false, '+'),
+			new ProviderRule("live.com", "live.com", false, '+'),
+			new ProviderRule("msn.com", "msn.com", false, '+'),
+			new ProviderRule("icloud.com", "icloud.com", false, '+'),
+			new ProviderRule("me.com", "me.com", false, '+'),
+			new ProviderRule("mac.com", "mac.com", false, '+'),
+			new ProviderRule("fastmail.com", "fastmail.com", false, '+'),
+			new ProviderRule("protonmail.com", "protonmail.com", false, '+'),
+			new ProviderRule("proton.me", "proton.me", false, '+'),
+			new ProviderRule("pm.me", "pm.me", false, '+'),
+			new ProviderRule("yandex.ru", "yandex.ru", false, '+'),
+			new ProviderRule("yandex.com", "yandex.com", false, '+')
+	};
+
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
+	// An open-addressing table of rules by domain, looked up straight from the lower cased domain in a char array
+	private final ProviderRule[] mRules;
+	private final int mMask;
+	private final int mMaxCanonicalDomainLength;
+
+	/**
+	 * Creates a canonicalizer with the rules from {@link #getDefaultRules()}
+	 */
+	public EmailCanonicalizer() {
+		this(Arrays.asList(DEFAULT_RULES));
+	}
+
+	/**
+	 * @param rules The providers whose usernames should be canonicalized. When there are several rules for a domain,
+	 * the last one is used.
+	 */
+	public EmailCanonicalizer(Collection<ProviderRule> rules) {
+		int capacity = 4;
+		while (capacity < rules.size() * 2) {
+			capacity <<= 1;
+		}
+		mRules = new ProviderRule[capacity];
+		mMask = capacity - 1;
+
+		int maxCanonicalDomainLength = 0;
+		for (ProviderRule rule : rules) {
+			int index = spread(rule.domain.hashCode()) & mMask;
+			while (mRules[index] != null && !mRules[index].domain.equals(rule.domain)) {
+				index = (index + 1) & mMask;
+			}
+			mRules[index] = rule;
+			maxCanonicalDomainLength = Math.max(maxCanonicalDomainLength, rule.canonicalDomain.length());
+		}
+		mMaxCanonicalDomainLength = maxCanonicalDomainLength;
+	}
+
+	/**
+	 * @return A new, modifiable list of the rules that are used by default, which covers the largest providers that
+	 * support tags or ignore dots
+	 */
+	public static List<ProviderRule> getDefaultRules() {
+		return new ArrayList<ProviderRule>(Arrays.asList(DEFAULT_RULES));
+	}
+
+	/**
+	 * @param emailAddress The email address to canonicalize
+	 * @return The canonical form of the address, or null if the address doesn't pass syntax validation
+	 */
+	public String canonicalize(String emailAddress) {
+		final Scratch scratch = SCRATCH.get();
+		final int length = canonicalize(emailAddress, scratch);
+		return length >= 0 ? new String(scratch.buffer, 0, length) : null;
+	}
+
+	/**
+	 * Hashes the canonical form of an email address to 64 bits. Addresses with the same canonical form always have the
+	 * same fingerprint, and among 50 million different addresses the chance of any two sharing one is about 1 in 15,000.
+	 * Addresses that don't pass syntax validation are hashed exactly as they are.
+	 * @param emailAddress The email address to fingerprint
+	 * @return The fingerprint
+	 */
+	public long getFingerprint(String emailAddress) {
+		final Scratch scratch = SCRATCH.get();
+		final int length = canonicalize(emailAddress, scratch);
+		if (length >= 0) {
+			return getFingerprint(scratch.buffer, length);
+		}
+
+		final int addressLength = emailAddress != null ? emailAddress.length() : 0;
+		final char[] buffer = scratch.getBuffer(addressLength);
+		if (emailAddress != null) {
+			emailAddress.getChars(0, addressLength, buffer, 0);
+		}
+		return getFingerprint(buffer, addressLength);
+	}
+
+	// Writes the canonical form into the scratch buffer, returning its length, or -1 if the address is invalid
+	private int canonicalize(String emailAddress, Scratch scratch) {
+		final ParsedEmailAddress parsedAddress = scratch.parsedAddress;
+		try {
+			if (EmailSyntaxScanner.scan(emailAddress, parsedAddress) != null) {
+				return -1;
+			}
+
+			// International addresses are canonicalized with their domain in ASCII
+			final String address = parsedAddress.address.toString();
+			final int usernameEnd = parsedAddress.getUsernameEnd();
+			final int domainStart = parsedAddress.getDomainStart();
+			final int length = address.length();
+			final char[] buffer = scratch.getBuffer(length + mMaxCanonicalDomainLength);
+
+			// Everything is rewritten in place, since the canonical username is never longer than the original and the
+			// domain has been looked up by the time it is overwritten. Valid domains are ASCII.
+			address.getChars(0, length, buffer, 0);
+			for (int i = domainStart; i < length; i++) {
+				buffer[i] = toLowerCase(buffer[i]);
+			}
+			final ProviderRule rule = getRule(buffer, domainStart, length);
+
+			if (rule == null) {
+				// The username is left as it is, and the domain is already lower cased
+				return length;
+			}
+
+			int position = 0;
+			for (int i = 0; i < usernameEnd; i++) {
+				final char c = buffer[i];
+				if (c == rule.tagSeparator) {
+					break;
+				} else if (c != '.' || !rule.ignoreDots) {
+					buffer[position++] = toLowerCase(c);
+				}
+			}
+			if (position == 0) {
+				// The username starts with the tag separator, so it is kept whole rather than left empty
+				position = usernameEnd;
+			}
+
+			buffer[position++] = '@';
+			final String domain = rule.canonicalDomain;
+			domain.getChars(0, domain.length(), buffer, position);
+			position += domain.length();
+			return position;
+		} finally {
+			parsedAddress.clear();
+		}
+	}
+
+	private ProviderRule getRule(char[] buffer, int start, int end) {
+		// Same hash as String.hashCode(), so that the table can be built from the domains' cached hash codes
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+
+		int index = spread(hash) & mMask;
+		ProviderRule rule;
+		while ((rule = mRules[index]) != null) {
+			if (regionEquals(rule.domain, buffer, start, end)) {
+				return rule;
+			}
+			index = (index + 1) & mMask;
+		}
+		return null;
+	}
+
+	private static boolean regionEquals(String string, char[] buffer, int start, int end) {
+		final int length = end - start;
+		if (string.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (string.charAt(i) != buffer[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long getFingerprint(char[] chars, int length) {
+		long hash = FnvHash.OFFSET_BASIS;
+		for (int i = 0; i < length; i++) {
+			hash = FnvHash.update(hash, chars[i]);
+		}
+		return FnvHash.mix(hash);
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private static char toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char)(c + ('a' - 'A')) : c;
+	}
+
+	private static String toLowerCase(String string) {
+		final char[] chars = string.toCharArray();
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = toLowerCase(chars[i]);
+		}
+		return new String(chars);
+	}
+
+	private static final class Scratch {
+		final ParsedEmailAddress parsedAddress = new ParsedEmailAddress();
+		char[] buffer = new char[256];
+
+		char[] getBuffer(int length) {
+			if (buffer.length < length) {
+				buffer = new char[Math.max(length, buffer.length * 2)];
+			}
+			return buffer;
+		}
+	}
+}
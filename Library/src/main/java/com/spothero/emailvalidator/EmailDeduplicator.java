@@ -0,0 +1,98 @@
+/*
+ * EmailDeduplicator
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator;
+
+/**
+ * Finds duplicates in a list of email addresses, treating addresses with the same {@link EmailCanonicalizer} form as
+ * the same. Only a 64-bit fingerprint of each address is kept, in a primitive hash table rather than a set of Strings,
+ * so 50 million distinct addresses take 512MB. Giving the expected size up front avoids holding two copies of the table
+ * while it grows.
+ * <p>
+ * Because only fingerprints are compared, two different addresses are very occasionally taken for duplicates; see
+ * {@link EmailCanonicalizer#getFingerprint(String)} for how rarely. Fingerprints can be worked out on several threads
+ * and then passed to {@link #addFingerprint(long)} in order.
+ * <p>
+ * Not thread safe.
+ */
+public final class EmailDeduplicator {
+
+	private final EmailCanonicalizer mCanonicalizer;
+	private final FingerprintSet mFingerprints;
+
+	/**
+	 * Creates a deduplicator that uses the default canonicalization rules
+	 */
+	public EmailDeduplicator() {
+		this(new EmailCanonicalizer(), 0);
+	}
+
+	/**
+	 * @param canonicalizer The canonicalizer that decides which addresses are the same
+	 * @param expectedSize The number of distinct addresses to make room for up front
+	 */
+	public EmailDeduplicator(EmailCanonicalizer canonicalizer, int expectedSize) {
+		if (canonicalizer == null) {
+			throw new NullPointerException("canonicalizer");
+		} else if (expectedSize < 0) {
+			throw new IllegalArgumentException("Expected size must not be negative: " + expectedSize);
+		}
+		mCanonicalizer = canonicalizer;
+		mFingerprints = new FingerprintSet(expectedSize);
+	}
+
+	/**
+	 * @param emailAddress An email address
+	 * @return True if this is the first time the address (or another with the same canonical form) was added, false if
+	 * it is a duplicate
+	 */
+	public boolean add(String emailAddress) {
+		return mFingerprints.add(mCanonicalizer.getFingerprint(emailAddress));
+	}
+
+	/**
+	 * @param fingerprint A fingerprint from {@link EmailCanonicalizer#getFingerprint(String)}
+	 * @return True if this is the first time the fingerprint was added, false if it belongs to a duplicate
+	 */
+	public boolean addFingerprint(long fingerprint) {
+		return mFingerprints.add(fingerprint);
+	}
+
+	/**
+	 * @param emailAddress An email address
+	 * @return True if the address (or another with the same canonical form) has been added
+	 */
+	public boolean contains(String emailAddress) {
+		return mFingerprints.contains(mCanonicalizer.getFingerprint(emailAddress));
+	}
+
+	/**
+	 * @return The canonicalizer that decides which addresses are the same, for working out fingerprints elsewhere
+	 */
+	public EmailCanonicalizer getCanonicalizer() {
+		return mCanonicalizer;
+	}
+
+	/**
+	 * @return The number of distinct addresses that have been added
+	 */
+	public int size() {
+		return mFingerprints.size();
+	}
+}
@@ -0,0 +1,275 @@
+/*
+ * EmailSyntaxScanner
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+import com.spothero.emailvalidator.EmailValidationResult.ValidationError;
+
+/**
+ * Performs the syntax checks of {@link EmailValidator#validateSyntax(String)} in a single pass over the address. This
+ * replaces the regular expressions that were previously used for the whole address, username, domain and TLD, and
+ * returns exactly the same errors they did for ASCII addresses.
+ * <p>
+ * Addresses with any non-ASCII characters are checked again afterwards, as internationalized addresses: the username
+ * may contain any printable non-ASCII characters (as SMTPUTF8 allows), and the domain is converted to ASCII with
+ * {@link Punycode}, after which the ASCII rules apply to it. The parsed address then holds the ASCII form of the domain,
+ * so that TLD lookups and typo suggestions only ever deal with ASCII.
+ */
+final class EmailSyntaxScanner {
+
+	// Character classes for 7-bit characters. Anything outside of ASCII belongs to none of these classes.
+	private static final int USERNAME = 1;       // [A-Z0-9a-z.!#$%&'*+-/=?^_`{|}~]
+	private static final int DOMAIN = 1 << 1;    // [A-Z0-9a-z.-]
+	private static final int TLD_START = 1 << 2; // [A-Za-z]
+	private static final int TLD_BODY = 1 << 3;  // [A-Z0-9a-z-]
+	private static final int TLD_END = 1 << 4;   // [A-Z0-9a-z]
+	private static final int WORD = 1 << 5;      // [A-Z0-9a-z_], the ASCII part of a regex word boundary
+
+	private static final int MIN_TLD_LENGTH = 2;
+	private static final int MAX_TLD_LENGTH = 24;
+
+	private static final byte[] CHAR_CLASSES = new byte[128];
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++) {
+			addClass(c, USERNAME | DOMAIN | TLD_START | TLD_BODY | TLD_END | WORD);
+			addClass(Character.toUpperCase(c), USERNAME | DOMAIN | TLD_START | TLD_BODY | TLD_END | WORD);
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			addClass(c, USERNAME | DOMAIN | TLD_BODY | TLD_END | WORD);
+		}
+		// The "+-/" in the original username expression is a range, so it also admits ',' (and '-', '.')
+		for (char c : ".!#$%&'*+,-/=?^_`{|}~".toCharArray()) {
+			addClass(c, USERNAME);
+		}
+		addClass('.', DOMAIN);
+		addClass('-', DOMAIN | TLD_BODY);
+		addClass('_', WORD);
+	}
+
+	private EmailSyntaxScanner() { }
+
+	private static void addClass(char c, int characterClass) {
+		CHAR_CLASSES[c] |= characterClass;
+	}
+
+	/**
+	 * Validates the syntax of an email address
+	 * @param emailAddress The email address to check
+	 * @param parsedAddress If not null, receives the positions of the username, domain and TLD of the address
+	 * @return The error that was found, or null if the email address passed validation
+	 */
+	static ValidationError scan(CharSequence emailAddress, ParsedEmailAddress parsedAddress) {
+		if (emailAddress == null || emailAddress.length() == 0) {
+			return ValidationError.BLANK_ADDRESS;
+		}
+
+		final int length = emailAddress.length();
+
+		// The first '@' splits the username from the domain, but the overall syntax only needs some '@' with at
+		// least one character in front of it
+		int atIndex = -1;
+		int syntaxAtIndex = -1;
+		int lastPeriodIndex = -1;
+		int firstInvalidDomainIndex = -1;
+		boolean validUsername = true;
+		boolean validTLD = false;
+		boolean hasLineTerminator = false;
+		char previous = 0;
+		int allCharacters = 0;
+
+		for (int i = 0; i < length; i++) {
+			final char c = emailAddress.charAt(i);
+			allCharacters |= c;
+			final int characterClass = c < 128 ? CHAR_CLASSES[c] : 0;
+
+			if (atIndex < 0) {
+				if (c == '@') {
+					atIndex = i;
+					if (i > 0) {
+						syntaxAtIndex = i;
+					} else {
+						validUsername = false;
+					}
+					if (previous == '.') {
+						validUsername = false;
+					}
+				} else if ((characterClass & USERNAME) == 0 || (c == '.' && (i == 0 || previous == '.'))) {
+					validUsername = false;
+				}
+			} else if (c == '.') {
+				lastPeriodIndex = i;
+				validTLD = true;
+			} else {
+				if (c == '@' && syntaxAtIndex < 0) {
+					syntaxAtIndex = i;
+				}
+				if ((characterClass & DOMAIN) == 0 && firstInvalidDomainIndex < 0) {
+					firstInvalidDomainIndex = i;
+				}
+				if (lastPeriodIndex >= 0) {
+					validTLD &= (characterClass & (i == lastPeriodIndex + 1 ? TLD_START : TLD_BODY)) != 0;
+				}
+			}
+
+			if (characterClass == 0 && !hasLineTerminator) {
+				hasLineTerminator = isLineTerminator(c);
+			}
+			previous = c;
+		}
+
+		// Everything above is only right for ASCII, so anything else takes the slower international path
+		if (allCharacters >= 128) {
+			return scanInternational(emailAddress, atIndex, parsedAddress);
+		}
+
+		if (parsedAddress != null) {
+			parsedAddress.set(emailAddress, atIndex, lastPeriodIndex);
+		}
+
+		// Equivalent of "^\b.+@.+\..+\b$"
+		if (hasLineTerminator || syntaxAtIndex < 0 || lastPeriodIndex <= syntaxAtIndex + 1 || lastPeriodIndex >= length - 1
+				|| !isWordStart(emailAddress) || !isWordEnd(emailAddress)) {
+			return ValidationError.INVALID_SYNTAX;
+		}
+
+		final int tldLength = length - lastPeriodIndex - 1;
+		if (!validUsername) {
+			return ValidationError.INVALID_USERNAME;
+		} else if (lastPeriodIndex - atIndex <= 1 || (firstInvalidDomainIndex >= 0 && firstInvalidDomainIndex < lastPeriodIndex)) {
+			return ValidationError.INVALID_DOMAIN;
+		} else if (!validTLD || tldLength < MIN_TLD_LENGTH || tldLength > MAX_TLD_LENGTH || previous >= 128 || (CHAR_CLASSES[previous] & TLD_END) == 0) {
+			return ValidationError.INVALID_TLD;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Checks a non-ASCII address by scanning an ASCII stand-in for it. The username is mapped one char at a time to
+	 * ASCII characters that the ASCII rules treat the same way, and the domain is converted to ASCII, so that positions
+	 * in the stand-in match positions in the address with its domain converted.
+	 */
+	private static ValidationError scanInternational(CharSequence emailAddress, int atIndex, ParsedEmailAddress parsedAddress) {
+		final int length = emailAddress.length();
+		final int usernameEnd = atIndex >= 0 ? atIndex : length;
+		final String asciiDomain = atIndex >= 0 ? Punycode.toAscii(emailAddress, atIndex + 1, length) : null;
+
+		StringBuilder standIn = new StringBuilder(length + Punycode.ACE_PREFIX.length());
+		for (int i = 0; i < usernameEnd; ) {
+			final int codePoint = Character.codePointAt(emailAddress, i);
+			final int charCount = Math.min(Character.charCount(codePoint), usernameEnd - i);
+			final char standInChar = getUsernameStandIn(codePoint);
+			for (int j = 0; j < charCount; j++) {
+				standIn.append(standInChar);
+			}
+			i += charCount;
+		}
+		if (atIndex >= 0) {
+			standIn.append('@');
+			if (asciiDomain != null) {
+				standIn.append(asciiDomain);
+			} else {
+				appendInvalidDomainStandIn(emailAddress, atIndex + 1, length, standIn);
+			}
+		}
+
+		final ValidationError validationError = scan(standIn, parsedAddress);
+		if (parsedAddress != null) {
+			if (asciiDomain != null) {
+				parsedAddress.setInternational(new StringBuilder(usernameEnd + 1 + asciiDomain.length())
+						.append(emailAddress, 0, usernameEnd)
+						.append('@')
+						.append(asciiDomain)
+						.toString());
+			} else {
+				parsedAddress.setInternational(emailAddress);
+			}
+		}
+		return validationError;
+	}
+
+	private static char getUsernameStandIn(int codePoint) {
+		if (codePoint < 128) {
+			return (char)codePoint;
+		} else if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT && isLineTerminator((char)codePoint)) {
+			return '\n';
+		} else if (Character.isLetterOrDigit(codePoint)) {
+			return 'a';
+		} else if (Character.isDefined(codePoint) && !Character.isSpaceChar(codePoint) && !Character.isISOControl(codePoint)
+				&& Character.getType(codePoint) != Character.SURROGATE) {
+			// Printable, but not part of a word
+			return '!';
+		} else {
+			return ' ';
+		}
+	}
+
+	// A domain that can't be converted gets a stand-in in which every non-ASCII character fails the ASCII domain rules
+	private static void appendInvalidDomainStandIn(CharSequence emailAddress, int start, int end, StringBuilder standIn) {
+		for (int i = start; i < end; i++) {
+			final char c = emailAddress.charAt(i);
+			if (c < 128) {
+				standIn.append(c);
+			} else if (Punycode.isLabelSeparator(c)) {
+				standIn.append('.');
+			} else if (isLineTerminator(c)) {
+				standIn.append('\n');
+			} else if (Character.isLetterOrDigit(c) || Character.getType(c) == Character.SURROGATE || Punycode.isMark(c)) {
+				// A word character that isn't allowed in a domain
+				standIn.append('_');
+			} else {
+				standIn.append(' ');
+			}
+		}
+	}
+
+	// The same set of characters that '.' refuses to match in java.util.regex
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	private static boolean isWordStart(CharSequence emailAddress) {
+		final char c = emailAddress.charAt(0);
+		if (c < 128) {
+			return (CHAR_CLASSES[c] & WORD) != 0;
+		}
+		return Character.isLetterOrDigit(Character.codePointAt(emailAddress, 0));
+	}
+
+	private static boolean isWordEnd(CharSequence emailAddress) {
+		final int length = emailAddress.length();
+		final char c = emailAddress.charAt(length - 1);
+		if (c < 128) {
+			return (CHAR_CLASSES[c] & WORD) != 0;
+		}
+
+		// Like java.util.regex, a trailing combining mark counts as part of the word it is attached to
+		int index = length;
+		while (index > 0) {
+			final int codePoint = Character.codePointBefore(emailAddress, index);
+			if (Character.isLetterOrDigit(codePoint)) {
+				return true;
+			} else if (Character.getType(codePoint) != Character.NON_SPACING_MARK) {
+				return false;
+			}
+			index -= Character.charCount(codePoint);
+		}
+		return false;
+	}
+}
@@ -22,9 +22,13 @@ package com.spothero.emailvalidator;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.text.Editable;
 import android.text.InputType;
+import android.text.TextWatcher;
 import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewTreeObserver;
@@ -33,17 +37,27 @@ import android.widget.EditText;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class EmailValidationEditText extends EditText {
 
+	private static Executor sDefaultExecutor;
+
 	private final EmailValidationOnFocusChangeListener mOnFocusChangeListener = new EmailValidationOnFocusChangeListener();
 	private final Map<EmailValidationResult.ValidationError, String> mErrorMessages = new HashMap<EmailValidationResult.ValidationError, String>();
 	private final int[] mLocationArray = new int[2];
 	private final AutocorrectSuggestionPopup.OnDismissListener mOnDismissListener = new AutocorrectSuggestionPopup.OnDismissListener() {
 		@Override
 		public void onDismiss(boolean suggestionAccepted) {
+			final String suggestion = mAutocorrectSuggestionPopup.getSuggestion();
 			if (suggestionAccepted) {
-				setText(mAutocorrectSuggestionPopup.getSuggestion());
+				EmailValidator.getDefault().getMetrics().onSuggestionAccepted();
+				setText(suggestion);
+			} else if (suggestion != null) {
+				EmailValidator.getDefault().getMetrics().onSuggestionDismissed();
 			}
 		}
 	};
@@ -74,7 +88,30 @@ public class EmailValidationEditText extends EditText {
 		}
 	};
 
+	private final TextWatcher mTextWatcher = new TextWatcher() {
+		@Override
+		public void beforeTextChanged(CharSequence s, int start, int count, int after) { }
+
+		@Override
+		public void onTextChanged(CharSequence s, int start, int before, int count) { }
+
+		@Override
+		public void afterTextChanged(Editable s) {
+			// Any validation still in progress is for text that no longer exists
+			final int generation = cancelValidation();
+			if (mLiveValidationEnabled && s.length() > 0) {
+				updateIncrementalValidator(s.toString(), generation);
+			}
+		}
+	};
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+	// Incremented whenever pending results become stale, so that validations started before then are dropped
+	private final AtomicInteger mValidationGeneration = new AtomicInteger();
+
 	private AutocorrectSuggestionPopup mAutocorrectSuggestionPopup;
+	private Executor mExecutor;
+	private IncrementalEmailValidator mIncrementalValidator;
+	private boolean mLiveValidationEnabled;
 	private String mDefaultErrorMessage;
 	private String mMessageForSuggestion;
 	private boolean mNeedsPopupDisplay;
@@ -100,6 +137,7 @@ public class EmailValidationEditText extends EditText {
 		setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_NO_SUGGESTIONS | InputType.TYPE_TEXT_VARIATION_EMAIL_ADDRESS);
 		setImeOptions(getImeOptions());
 		setOnFocusChangeListener(mOnFocusChangeListener);
+		addTextChangedListener(mTextWatcher);
 		mAutocorrectSuggestionPopup = new AutocorrectSuggestionPopup(getContext());
 		mAutocorrectSuggestionPopup.setOnDismissListener(mOnDismissListener);
 		mDefaultErrorMessage = "Please enter a valid email address";
@@ -143,6 +181,12 @@ public class EmailValidationEditText extends EditText {
 			if (a.hasValue(R.styleable.EmailValidationEditText_invalidTLDError)) {
 				mErrorMessages.put(EmailValidationResult.ValidationError.INVALID_TLD, a.getString(R.styleable.EmailValidationEditText_invalidTLDError));
 			}
+			if (a.hasValue(R.styleable.EmailValidationEditText_blockedDomainError)) {
+				mErrorMessages.put(EmailValidationResult.ValidationError.BLOCKED_DOMAIN, a.getString(R.styleable.EmailValidationEditText_blockedDomainError));
+			}
+			if (a.hasValue(R.styleable.EmailValidationEditText_liveValidation)) {
+				setLiveValidationEnabled(a.getBoolean(R.styleable.EmailValidationEditText_liveValidation, false));
+			}
 
 			a.recycle();
 		}
@@ -207,33 +251,170 @@ public class EmailValidationEditText extends EditText {
 		mErrorMessages.put(error, message);
 	}
 
+	/**
+	 * Turns live validation on or off. With live validation, the input is validated as it is typed, reusing the work
+	 * done for the previous keystroke, so that the result is ready as soon as focus leaves the field.
+	 * @param liveValidationEnabled True to validate as the user types
+	 */
+	public void setLiveValidationEnabled(boolean liveValidationEnabled) {
+		if (liveValidationEnabled == mLiveValidationEnabled) {
+			return;
+		}
+
+		mLiveValidationEnabled = liveValidationEnabled;
+		if (liveValidationEnabled) {
+			if (length() > 0) {
+				updateIncrementalValidator(getText().toString(), mValidationGeneration.get());
+			}
+		} else {
+			mIncrementalValidator = null;
+		}
+	}
+
+	/**
+	 * @return True if the input is validated as it is typed
+	 */
+	public boolean isLiveValidationEnabled() {
+		return mLiveValidationEnabled;
+	}
+
 	@Override
 	public void setImeOptions(int imeOptions) {
 		super.setImeOptions(imeOptions | EditorInfo.IME_FLAG_NO_EXTRACT_UI | EditorInfo.IME_FLAG_NO_FULLSCREEN);
 	}
 
 	/**
-	 * Validates the input and displays error messages or typo suggestions if needed
+	 * Sets the executor that input is validated on, instead of the one shared by all instances
+	 * @param executor An executor, or null to use the shared one
+	 */
+	public void setExecutor(Executor executor) {
+		mExecutor = executor;
+	}
+
+	/**
+	 * Sets the executor that instances without their own executor validate input on. By default, a single background
+	 * thread shared by all instances is used.
+	 * @param executor An executor, or null to use the default
+	 */
+	public static synchronized void setDefaultExecutor(Executor executor) {
+		sDefaultExecutor = executor;
+	}
+
+	private Executor getExecutor() {
+		if (mExecutor != null) {
+			return mExecutor;
+		}
+
+		synchronized (EmailValidationEditText.class) {
+			if (sDefaultExecutor == null) {
+				sDefaultExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "EmailValidationEditText");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+			return sDefaultExecutor;
+		}
+	}
+
+	/**
+	 * Validates the input in the background, then displays error messages or typo suggestions if needed. Nothing is
+	 * displayed if the text changes, focus returns or this method is called again before validation finishes.
 	 */
 	public void validateInput() {
-		String input = getText().toString();
+		final String input = getText().toString();
+		final int generation = cancelValidation();
 		if (input.length() > 0) {
-			EmailValidationResult result = EmailValidator.validateAndAutocorrect(input);
-
-			if (!result.passedValidation) {
-				String errorMessage;
-				if (mErrorMessages.containsKey(result.validationError)) {
-					errorMessage = mErrorMessages.get(result.validationError);
-				} else {
-					errorMessage = mDefaultErrorMessage;
+			final IncrementalEmailValidator incrementalValidator = mLiveValidationEnabled ? getIncrementalValidator() : null;
+			getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					if (mValidationGeneration.get() != generation) {
+						return;
+					}
+
+					final EmailValidationResult result;
+					if (incrementalValidator != null) {
+						// Usually already worked out while the user was typing
+						synchronized (incrementalValidator) {
+							result = incrementalValidator.update(input);
+						}
+					} else {
+						result = EmailValidator.validateAndAutocorrect(input);
+					}
+
+					mMainHandler.post(new Runnable() {
+						@Override
+						public void run() {
+							if (mValidationGeneration.get() == generation) {
+								showResult(result);
+							}
+						}
+					});
 				}
-				mAutocorrectSuggestionPopup.showFromView(this, errorMessage, null);
-			} else if (result.autocorrectSuggestion != null) {
-				mAutocorrectSuggestionPopup.showFromView(this, mMessageForSuggestion, result.autocorrectSuggestion);
+			});
+		}
+	}
+
+	/**
+	 * Stops any validation in progress from displaying its result
+	 * @return The generation of validations that is now current
+	 */
+	private int cancelValidation() {
+		return mValidationGeneration.incrementAndGet();
+	}
+
+	private void showResult(EmailValidationResult result) {
+		if (!result.passedValidation) {
+			String errorMessage;
+			if (mErrorMessages.containsKey(result.validationError)) {
+				errorMessage = mErrorMessages.get(result.validationError);
+			} else {
+				errorMessage = mDefaultErrorMessage;
 			}
+			mAutocorrectSuggestionPopup.showFromView(this, errorMessage, null);
+		} else if (result.autocorrectSuggestion != null) {
+			EmailValidator.getDefault().getMetrics().onSuggestionShown();
+			mAutocorrectSuggestionPopup.showFromView(this, mMessageForSuggestion, result.autocorrectSuggestion);
 		}
 	}
 
+	private IncrementalEmailValidator getIncrementalValidator() {
+		EmailValidator validator = EmailValidator.getDefault();
+		if (mIncrementalValidator == null || mIncrementalValidator.getValidator() != validator) {
+			mIncrementalValidator = new IncrementalEmailValidator(validator);
+		}
+		return mIncrementalValidator;
+	}
+
+	private void updateIncrementalValidator(final String input, final int generation) {
+		final IncrementalEmailValidator incrementalValidator = getIncrementalValidator();
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				// Skip updates for text that has changed since, so fast typing doesn't queue up work ahead of the
+				// validation in validateInput(), which brings the validator up to date with the final text itself
+				if (mValidationGeneration.get() != generation) {
+					return;
+				}
+
+				// The executor may run tasks in parallel, and incremental validators aren't thread safe
+				synchronized (incrementalValidator) {
+					incrementalValidator.update(input);
+				}
+			}
+		});
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		cancelValidation();
+		super.onDetachedFromWindow();
+	}
+
 	/**
 	 * Dismisses any error/typo suggestion popups that are showing
 	 */
@@ -333,6 +514,7 @@ public class EmailValidationEditText extends EditText {
 			if (!hasFocus) {
 				validateInput();
 			} else {
+				cancelValidation();
 				dismissPopup();
 			}
 		}
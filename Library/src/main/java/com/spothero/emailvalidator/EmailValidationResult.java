@@ -19,6 +19,14 @@
 
 package com.spothero.emailvalidator;
 
+/**
+ * The outcome of validating an email address.
+ * <p>
+ * Each call returns a new result that belongs to the caller, unless the validator was configured with
+ * {@link EmailValidatorConfiguration#shareFailureResults}, in which case failures return a shared result that must not
+ * be modified. To avoid allocating a result for every address, pass one in to
+ * {@link EmailValidator#validate(String, EmailValidationResult)} and reuse it from one address to the next.
+ */
 public class EmailValidationResult {
 
 	/**
@@ -48,7 +56,13 @@ public class EmailValidationResult {
 		/**
 		 * The email address passed in had an invalid TLD
 		 */
-		INVALID_TLD
+		INVALID_TLD,
+
+		/**
+		 * The email address passed in had a valid syntax, but its domain is on the validator's
+		 * {@link BlockedDomainList}
+		 */
+		BLOCKED_DOMAIN
 	}
 
 	/**
@@ -57,7 +71,7 @@ public class EmailValidationResult {
 	public boolean passedValidation;
 
 	/**
-	 * A specific error for why the email address's syntax was invalid, or null
+	 * A specific error for why the email address was invalid, or null
 	 */
 	public ValidationError validationError;
 
@@ -66,9 +80,32 @@ public class EmailValidationResult {
 	 */
 	public String autocorrectSuggestion;
 
+	/**
+	 * The {@link EmailValidator#getDictionaryVersion() dictionary version} of the validator that produced this result
+	 */
+	public long dictionaryVersion;
+
+	/**
+	 * Creates an empty result, to be filled in by {@link EmailValidator#validate(String, EmailValidationResult)}
+	 */
+	public EmailValidationResult() { }
+
 	public EmailValidationResult(boolean passed, ValidationError error, String suggestion) {
 		passedValidation = passed;
 		validationError = error;
 		autocorrectSuggestion = suggestion;
 	}
+
+	EmailValidationResult(boolean passed, ValidationError error, String suggestion, long version) {
+		this(passed, error, suggestion);
+		dictionaryVersion = version;
+	}
+
+	EmailValidationResult set(boolean passed, ValidationError error, String suggestion, long version) {
+		passedValidation = passed;
+		validationError = error;
+		autocorrectSuggestion = suggestion;
+		dictionaryVersion = version;
+		return this;
+	}
 }
@@ -20,16 +20,134 @@
 package com.spothero.emailvalidator;
 
 import com.spothero.emailvalidator.EmailValidationResult.ValidationError;
+import com.spothero.emailvalidator.ValidationMetrics.Phase;
 
-import java.util.Arrays;
-import java.util.List;
+import java.nio.CharBuffer;
+import java.util.Collection;
 
+/**
+ * Validates the syntax of email addresses and suggests corrections for typos in their domains.
+ * <p>
+ * The static methods use a default validator. Instances built from an {@link EmailValidatorConfiguration} can each
+ * have their own TLDs, domains and tolerances, and are immutable and safe to share between threads.
+ * <p>
+ * Replacing the default validator, directly or through a {@link DictionaryWatcher}, swaps a single volatile reference,
+ * so validations never lock. Each validation reads the reference once and finishes on the validator it read, even if
+ * the default is replaced in the meantime.
+ */
 public class EmailValidator {
 
-	// All TLDs registered with IANA as of Sat Oct 12 07:07:01 2013 UTC (latest list at: http://data.iana.org/TLD/tlds-alpha-by-domain.txt)
-	private static final List<String> IANA_REGISTERED_TLDS = Arrays.asList("ac", "ad", "ae", "aero", "af", "ag", "ai", "al", "am", "an", "ao", "aq", "ar", "arpa", "as", "asia", "at", "au", "aw", "ax", "az", "ba", "bb", "bd", "be", "bf", "bg", "bh", "bi", "biz", "bj", "bm", "bn", "bo", "br", "bs", "bt", "bv", "bw", "by", "bz", "ca", "cat", "cc", "cd", "cf", "cg", "ch", "ci", "ck", "cl", "cm", "cn", "co", "com", "coop", "cr", "cu", "cv", "cw", "cx", "cy", "cz", "de", "dj", "dk", "dm", "do", "dz", "ec", "edu", "ee", "eg", "er", "es", "et", "eu", "fi", "fj", "fk", "fm", "fo", "fr", "ga", "gb", "gd", "ge", "gf", "gg", "gh", "gi", "gl", "gm", "gn", "gov", "gp", "gq", "gr", "gs", "gt", "gu", "gw", "gy", "hk", "hm", "hn", "hr", "ht", "hu", "id", "ie", "il", "im", "in", "info", "int", "io", "iq", "ir", "is", "it", "je", "jm", "jo", "jobs", "jp", "ke", "kg", "kh", "ki", "km", "kn", "kp", "kr", "kw", "ky", "kz", "la", "lb", "lc", "li", "lk", "lr", "ls", "lt", "lu", "lv", "ly", "ma", "mc", "md", "me", "mg", "mh", "mil", "mk", "ml", "mm", "mn", "mo", "mobi", "mp", "mq", "mr", "ms", "mt", "mu", "museum", "mv", "mw", "mx", "my", "mz", "na", "name", "nc", "ne", "net", "nf", "ng", "ni", "nl", "no", "np", "nr", "nu", "nz", "om", "org", "pa", "pe", "pf", "pg", "ph", "pk", "pl", "pm", "pn", "post", "pr", "pro", "ps", "pt", "pw", "py", "qa", "re", "ro", "rs", "ru", "rw", "sa", "sb", "sc", "sd", "se", "sg", "sh", "si", "sj", "sk", "sl", "sm", "sn", "so", "sr", "st", "su", "sv", "sx", "sy", "sz", "tc", "td", "tel", "tf", "tg", "th", "tj", "tk", "tl", "tm", "tn", "to", "tp", "tr", "travel", "tt", "tv", "tw", "tz", "ua", "ug", "uk", "us", "uy", "uz", "va", "vc", "ve", "vg", "vi", "vn", "vu", "wf", "ws", "xn", "xxx", "ye", "yt", "za", "zm", "zw");
-	private static final List<String> COMMON_TLDS = Arrays.asList("com", "net", "ru", "org", "de", "uk", "jp", "ca", "fr", "au", "br", "us", "info", "cn", "dk", "edu", "gov", "mil", "ch", "it", "nl", "se", "no", "es", "me");
-	private static final List<String> COMMON_DOMAINS = Arrays.asList("gmail.com", "googlemail.com", "yahoo.com", "yahoo.co.uk", "yahoo.co.in", "yahoo.ca", "ymail.com", "hotmail.com", "hotmail.co.uk", "msn.com", "live.com", "outlook.com", "comcast.net", "sbcglobal.net", "bellsouth.net", "verizon.net", "earthlink.net", "cox.net", "rediffmail.com", "charter.net", "facebook.com", "mail.com", "gmx.com", "aol.com", "att.net", "mac.com", "rocketmail.com");
+	// The built in lists are generated into DefaultDictionaries from src/main/dictionaries, along with their lookup structures
+	private static final String[] COMMON_MULTI_LABEL_SUFFIX_TLDS = getLastLabels(DefaultDictionaries.COMMON_MULTI_LABEL_SUFFIXES);
+
+	static final PublicSuffixRegistry DEFAULT_PUBLIC_SUFFIX_REGISTRY = PublicSuffixRegistry.unpack(DefaultDictionaries.PUBLIC_SUFFIX_FIRST_EDGES,
+			DefaultDictionaries.PUBLIC_SUFFIX_EDGE_CHARACTERS, DefaultDictionaries.PUBLIC_SUFFIX_EDGE_TARGETS, DefaultDictionaries.PUBLIC_SUFFIX_FLAGS);
+	private static final TLDTypoMap DEFAULT_TLD_TYPOS = TLDTypoMap.unpack(DefaultDictionaries.TLD_TYPOS, DefaultDictionaries.TLD_TYPO_CORRECTIONS,
+			DefaultDictionaries.COMMON_TLDS, DefaultDictionaries.TLD_TYPO_TOLERANCE, DefaultDictionaries.TLD_TYPO_METRIC);
+
+	// Longer domains are almost certainly not repeated, and would only push useful entries out of the cache
+	private static final int MAX_CACHED_DOMAIN_LENGTH = 64;
+
+	// Longer domains can't be resolved in DNS, so they are never matched against the common domains, whatever the cost
+	// of matching them would be
+	private static final int MAX_MATCHED_DOMAIN_LENGTH = 253;
+
+	private static final ThreadLocal<ParsedEmailAddress> PARSED_ADDRESS = new ThreadLocal<ParsedEmailAddress>() {
+		@Override
+		protected ParsedEmailAddress initialValue() {
+			return new ParsedEmailAddress();
+		}
+	};
+
+	private static volatile EmailValidator sDefaultValidator = new EmailValidator(new EmailValidatorConfiguration());
+
+	private final PublicSuffixRegistry mPublicSuffixRegistry;
+	private final String[] mCommonTLDs;
+	private final TLDTypoMap mTLDTypos;
+	private final DomainDictionary mCommonDomains;
+	private final BlockedDomainList mBlockedDomains;
+	private final float mTLDTolerance;
+	private final float mDomainTolerance;
+	private final DistanceMetric mDistanceMetric;
+	private final int mSuggestionCacheSize;
+	private final ValidationMetrics mMetrics;
+	private final SuggestionCache mSuggestionCache;
+	private final long mDictionaryVersion;
+	// One result per error, shared between every call that returns it, or null if results aren't shared
+	private final EmailValidationResult[] mFailedResults;
+
+	/**
+	 * Creates a validator with its own TLDs, domains and tolerances. Lookup structures for the lists are built once,
+	 * here, and never change afterwards, so a validator can be shared by any number of threads without locking.
+	 * @param configuration The settings to use, which are copied
+	 */
+	public EmailValidator(EmailValidatorConfiguration configuration) {
+		this(configuration.publicSuffixRegistry,
+				configuration.commonTLDs.toArray(new String[configuration.commonTLDs.size()]),
+				null,
+				configuration.commonDomainDictionary != null ? configuration.commonDomainDictionary
+						: new InMemoryDomainDictionary(configuration.commonDomains.toArray(new String[configuration.commonDomains.size()])),
+				configuration.blockedDomains,
+				configuration.tldTolerance,
+				configuration.domainTolerance,
+				configuration.distanceMetric,
+				configuration.suggestionCacheSize,
+				configuration.metrics,
+				configuration.dictionaryVersion,
+				configuration.shareFailureResults);
+	}
+
+	/**
+	 * @param tldTypos The typo map for commonTLDs, tldTolerance and distanceMetric, or null to build one
+	 */
+	private EmailValidator(PublicSuffixRegistry publicSuffixRegistry, String[] commonTLDs, TLDTypoMap tldTypos, DomainDictionary commonDomains, BlockedDomainList blockedDomains, float tldTolerance, float domainTolerance, DistanceMetric distanceMetric, int suggestionCacheSize, ValidationMetrics metrics, long dictionaryVersion, boolean shareFailureResults) {
+		if (publicSuffixRegistry == null) {
+			throw new NullPointerException("publicSuffixRegistry");
+		} else if (distanceMetric == null) {
+			throw new NullPointerException("distanceMetric");
+		} else if (metrics == null) {
+			throw new NullPointerException("metrics");
+		}
+		mPublicSuffixRegistry = publicSuffixRegistry;
+		mCommonTLDs = commonTLDs;
+		mTLDTypos = tldTypos != null ? tldTypos : getTLDTypoMap(commonTLDs, tldTolerance, distanceMetric);
+		mCommonDomains = commonDomains;
+		mBlockedDomains = blockedDomains;
+		mTLDTolerance = tldTolerance;
+		mDomainTolerance = domainTolerance;
+		mDistanceMetric = distanceMetric;
+		mSuggestionCacheSize = suggestionCacheSize;
+		mSuggestionCache = suggestionCacheSize > 0 ? new SuggestionCache(suggestionCacheSize) : null;
+		mMetrics = metrics;
+		mDictionaryVersion = dictionaryVersion;
+
+		if (shareFailureResults) {
+			mFailedResults = new EmailValidationResult[ValidationError.values().length];
+			for (ValidationError error : ValidationError.values()) {
+				mFailedResults[error.ordinal()] = new EmailValidationResult(false, error, null, dictionaryVersion);
+			}
+		} else {
+			mFailedResults = null;
+		}
+	}
+
+	/**
+	 * @return The validator that the static methods use
+	 */
+	public static EmailValidator getDefault() {
+		return sDefaultValidator;
+	}
+
+	/**
+	 * Replaces the validator that the static methods use
+	 * @param validator The new default validator
+	 */
+	public static synchronized void setDefault(EmailValidator validator) {
+		if (validator == null) {
+			throw new NullPointerException("validator");
+		}
+		sDefaultValidator = validator;
+	}
 
 	/**
 	 * Performs simple validation on the email address. If the validation check passes, a typo check will be performed.
@@ -39,37 +157,77 @@ public class EmailValidator {
 	 *
 	 */
 	public static EmailValidationResult validateAndAutocorrect(String emailAddress) {
-		String[] addressParts = getEmailAddressParts(emailAddress);
+		return sDefaultValidator.validate(emailAddress);
+	}
 
-		ValidationError validationError = validateSyntax(emailAddress, addressParts);
-		if (validationError != null) {
-			return new EmailValidationResult(false, validationError, null);
-		} else {
-			return new EmailValidationResult(true, null, getAutocorrectSuggestion(emailAddress, addressParts));
-		}
+	/**
+	 * Performs simple validation on the email address, writing the outcome into a result owned by the caller instead
+	 * of returning a new or shared one. If the validation check passes, a typo check will be performed.
+	 *
+	 * @param emailAddress The email address to check
+	 * @param result The result to overwrite, which may be reused for any number of addresses
+	 * @return The result that was passed in
+	 */
+	public static EmailValidationResult validateAndAutocorrect(String emailAddress, EmailValidationResult result) {
+		return sDefaultValidator.validate(emailAddress, result);
 	}
 
-	private static ValidationError validateSyntax(String emailAddress, String[] addressParts) {
-		if (emailAddress == null || emailAddress.length() == 0) {
-			return ValidationError.BLANK_ADDRESS;
-		}
+	/**
+	 * Performs simple validation on the email address using this validator's settings. If the validation check passes,
+	 * a typo check will be performed.
+	 *
+	 * @param emailAddress The email address to check
+	 * @return An {@link com.spothero.emailvalidator.EmailValidationResult} that contains data on if the email address passed validation, any errors that occurred, and a typo suggestion if applicable.
+	 */
+	public EmailValidationResult validate(String emailAddress) {
+		return validate(emailAddress, mCommonDomains, null);
+	}
 
-		if (!emailAddress.matches("^\\b.+@.+\\..+\\b$")) {
-			return ValidationError.INVALID_SYNTAX;
+	/**
+	 * Performs simple validation on the email address using this validator's settings, writing the outcome into a
+	 * result owned by the caller. If the validation check passes, a typo check will be performed.
+	 *
+	 * @param emailAddress The email address to check
+	 * @param result The result to overwrite, which may be reused for any number of addresses
+	 * @return The result that was passed in
+	 */
+	public EmailValidationResult validate(String emailAddress, EmailValidationResult result) {
+		if (result == null) {
+			throw new NullPointerException("result");
 		}
+		return validate(emailAddress, mCommonDomains, result);
+	}
 
-		String username = addressParts[0];
-		String domain = addressParts[1];
-		String tld = addressParts[2];
+	/**
+	 * Validates using a different view of this validator's common domains, which has to give the same answers
+	 * @param result The result to overwrite, or null to return a new one, or a shared one for a failure if the
+	 * validator was configured to share them
+	 */
+	EmailValidationResult validate(String emailAddress, DomainDictionary commonDomains, EmailValidationResult result) {
+		ParsedEmailAddress parsedAddress = PARSED_ADDRESS.get();
+		try {
+			ValidationError validationError = scan(emailAddress, parsedAddress);
+			if (validationError == null && mBlockedDomains != null && isBlocked(parsedAddress)) {
+				validationError = ValidationError.BLOCKED_DOMAIN;
+			}
+			if (mMetrics != ValidationMetrics.NONE) {
+				mMetrics.onValidated(validationError);
+			}
+			if (validationError != null) {
+				if (result != null) {
+					return result.set(false, validationError, null, mDictionaryVersion);
+				}
+				return mFailedResults != null ? mFailedResults[validationError.ordinal()] : new EmailValidationResult(false, validationError, null, mDictionaryVersion);
+			}
 
-		if (username.length() == 0 || !username.matches("[A-Z0-9a-z.!#$%&'*+-/=?^_`{|}~]+") || username.startsWith(".") || username.endsWith(".") || username.contains("..")) {
-			return ValidationError.INVALID_USERNAME;
-		} else if (domain.length() == 0 || !domain.matches("[A-Z0-9a-z.-]+")) {
-			return ValidationError.INVALID_DOMAIN;
-		} else if (!tld.matches("[A-Za-z][A-Z0-9a-z-]{0,22}[A-Z0-9a-z]")) {
-			return ValidationError.INVALID_TLD;
-		} else {
-			return null;
+			final String suggestion = getAutocorrectSuggestion(parsedAddress, commonDomains);
+			if (result != null) {
+				return result.set(true, null, suggestion, mDictionaryVersion);
+			} else {
+				return new EmailValidationResult(true, null, suggestion, mDictionaryVersion);
+			}
+		} finally {
+			parsedAddress.clear();
 		}
 	}
 
@@ -79,37 +237,129 @@ public class EmailValidator {
 	 * @return A {@link com.spothero.emailvalidator.EmailValidationResult.ValidationError} explaining an error that occurred, or null if the email address passed validation.
 	 */
 	public static ValidationError validateSyntax(String emailAddress) {
-		return validateSyntax(emailAddress, getEmailAddressParts(emailAddress));
+		return EmailSyntaxScanner.scan(emailAddress, null);
+	}
+
+	private ValidationError scan(String emailAddress, ParsedEmailAddress parsedAddress) {
+		if (mMetrics == ValidationMetrics.NONE) {
+			return EmailSyntaxScanner.scan(emailAddress, parsedAddress);
+		}
+
+		final long startTime = System.nanoTime();
+		final ValidationError validationError = EmailSyntaxScanner.scan(emailAddress, parsedAddress);
+		mMetrics.onPhaseCompleted(Phase.SYNTAX_CHECK, System.nanoTime() - startTime);
+		return validationError;
+	}
+
+	private boolean isBlocked(ParsedEmailAddress parsedAddress) {
+		if (mMetrics == ValidationMetrics.NONE) {
+			return mBlockedDomains.isBlocked(parsedAddress.address, parsedAddress.getDomainStart(), parsedAddress.getTLDEnd());
+		}
+
+		final long startTime = System.nanoTime();
+		final boolean blocked = mBlockedDomains.isBlocked(parsedAddress.address, parsedAddress.getDomainStart(), parsedAddress.getTLDEnd());
+		mMetrics.onPhaseCompleted(Phase.BLOCKED_DOMAIN_CHECK, System.nanoTime() - startTime);
+		return blocked;
 	}
 
-	private static String getAutocorrectSuggestion(String emailAddress, String[] addressParts) {
-		String username = addressParts[0];
-		String domain = addressParts[1];
-		String tld = addressParts[2];
+	private String getAutocorrectSuggestion(ParsedEmailAddress parsedAddress, DomainDictionary commonDomains) {
+		final CharSequence emailAddress = parsedAddress.address;
+		final int domainStart = parsedAddress.getDomainStart();
+		final int tldEnd = parsedAddress.getTLDEnd();
 
-		String suggestedTLD = null;
-		if (!IANA_REGISTERED_TLDS.contains(tld)) {
-			suggestedTLD = getClosestString(tld, COMMON_TLDS, 0.5f);
+		// The suggestion only depends on the domain, so the username is joined back on afterwards
+		final SuggestionCache suggestionCache = tldEnd - domainStart <= MAX_CACHED_DOMAIN_LENGTH ? mSuggestionCache : null;
+		SuggestionCache.Entry cachedSuggestion = suggestionCache != null ? suggestionCache.get(emailAddress, domainStart, tldEnd) : null;
+		String suggestedDomain;
+		if (cachedSuggestion != null) {
+			suggestedDomain = cachedSuggestion.suggestion;
+		} else {
+			suggestedDomain = getSuggestedDomain(emailAddress, domainStart, parsedAddress.getTLDStart(), tldEnd, commonDomains);
+			if (suggestionCache != null) {
+				suggestionCache.put(emailAddress, domainStart, tldEnd, suggestedDomain);
+			}
 		}
-		if (suggestedTLD == null) {
-			suggestedTLD = tld;
+
+		if (suggestedDomain == null) {
+			return null;
+		} else {
+			// International addresses were checked in ASCII, but are suggested in the form they were typed in
+			if (parsedAddress.international) {
+				suggestedDomain = Punycode.toUnicode(suggestedDomain);
+			}
+			return new StringBuilder(domainStart + suggestedDomain.length())
+					.append(emailAddress, 0, domainStart)
+					.append(suggestedDomain)
+					.toString();
+		}
+	}
+
+	// Returns the corrected domain, or null if the domain doesn't need correcting
+	private String getSuggestedDomain(CharSequence emailAddress, int domainStart, int tldStart, int tldEnd, DomainDictionary commonDomains) {
+		// Only the last label is checked against the registered TLDs, but a typo may also be in a suffix of several
+		// labels, such as the "uk" of "co.uk". In that case the whole suffix is corrected, as long as a label is left in
+		// front of it to register under.
+		final PublicSuffixRegistry publicSuffixRegistry = mPublicSuffixRegistry;
+		final ValidationMetrics metrics = mMetrics;
+		final boolean measured = metrics != ValidationMetrics.NONE;
+		String suggestedSuffix = null;
+		int suffixStart = tldStart;
+
+		long startTime = measured ? System.nanoTime() : 0;
+		// A TLD with upper case letters isn't treated as registered, so that it's suggested in lower case
+		final boolean registeredTLD = publicSuffixRegistry.isRegisteredTLD(emailAddress, tldStart, tldEnd, false);
+		if (measured) {
+			final long endTime = System.nanoTime();
+			metrics.onPhaseCompleted(Phase.TLD_LOOKUP, endTime - startTime);
+			startTime = endTime;
+		}
+
+		if (!registeredTLD) {
+			suggestedSuffix = mTLDTypos.getCorrection(emailAddress, tldStart, tldEnd);
+
+			final int secondLevelStart = lastIndexOf(emailAddress, '.', domainStart, tldStart - 1) + 1;
+			if (suggestedSuffix == null && secondLevelStart > domainStart) {
+				suggestedSuffix = getClosestMultiLabelSuffix(emailAddress, secondLevelStart, tldStart, tldEnd, publicSuffixRegistry);
+				if (suggestedSuffix != null) {
+					suffixStart = secondLevelStart;
+				}
+			}
+
+			if (measured) {
+				metrics.onPhaseCompleted(Phase.TLD_MATCH, System.nanoTime() - startTime);
+			}
+		}
+
+		// Only build a new domain if the suffix actually changed, otherwise match against the original address
+		CharSequence fullDomain = emailAddress;
+		int fullDomainStart = domainStart;
+		int fullDomainEnd = tldEnd;
+		if (suggestedSuffix != null) {
+			fullDomain = new StringBuilder(suffixStart - domainStart + suggestedSuffix.length())
+					.append(emailAddress, domainStart, suffixStart)
+					.append(suggestedSuffix)
+					.toString();
+			fullDomainStart = 0;
+			fullDomainEnd = fullDomain.length();
 		}
 
-		String fullDomain = domain + "." + suggestedTLD;
 		String suggestedDomain = null;
-		if (!COMMON_DOMAINS.contains(fullDomain)) {
-			suggestedDomain = getClosestString(fullDomain, COMMON_DOMAINS, 0.25f);
+		if (fullDomainEnd - fullDomainStart <= MAX_MATCHED_DOMAIN_LENGTH && !commonDomains.contains(fullDomain, fullDomainStart, fullDomainEnd)) {
+			startTime = measured ? System.nanoTime() : 0;
+			final int maxDistance = mDistanceMetric.getMaxDistance(fullDomainEnd - fullDomainStart, mDomainTolerance);
+			suggestedDomain = commonDomains.findClosest(fullDomain, fullDomainStart, fullDomainEnd, maxDistance, mDistanceMetric);
+			if (measured) {
+				metrics.onPhaseCompleted(Phase.DOMAIN_MATCH, System.nanoTime() - startTime);
+			}
 		}
 		if (suggestedDomain == null) {
-			suggestedDomain = fullDomain;
+			if (suggestedSuffix == null) {
+				return null;
+			}
+			suggestedDomain = fullDomain.toString();
 		}
 
-		String suggestedEmailAddress = username + "@" + suggestedDomain;
-		if (suggestedEmailAddress.equals(emailAddress)) {
-			return null;
-		} else {
-			return suggestedEmailAddress;
-		}
+		return CharRangeSet.regionEquals(suggestedDomain, emailAddress, domainStart, tldEnd) ? null : suggestedDomain;
 	}
 
 	/**
@@ -118,31 +368,208 @@ public class EmailValidator {
 	 * @return A typo suggestion, or null if one couldn't be found
 	 */
 	public static String getAutocorrectSuggestion(String emailAddress) {
-		String[] addressParts = getEmailAddressParts(emailAddress);
+		return sDefaultValidator.getSuggestion(emailAddress);
+	}
+
+	/**
+	 * Returns a typo suggestion using this validator's settings, if one is available
+	 * @param emailAddress The email address to check
+	 * @return A typo suggestion, or null if one couldn't be found
+	 */
+	public String getSuggestion(String emailAddress) {
+		ParsedEmailAddress parsedAddress = PARSED_ADDRESS.get();
+		try {
+			if (scan(emailAddress, parsedAddress) != null) {
+				return null;
+			} else {
+				return getAutocorrectSuggestion(parsedAddress, mCommonDomains);
+			}
+		} finally {
+			parsedAddress.clear();
+		}
+	}
+
+	/**
+	 * Replaces the registered TLDs and public suffixes that the default validator's typo suggestions are checked
+	 * against. By default, a built in copy of the IANA TLD list and the public suffixes of the most common email
+	 * providers' countries are used.
+	 * @param publicSuffixRegistry The registry, usually loaded with {@link PublicSuffixRegistry#parse(java.io.Reader, java.io.Reader)}
+	 */
+	public static synchronized void setPublicSuffixRegistry(PublicSuffixRegistry publicSuffixRegistry) {
+		EmailValidator validator = sDefaultValidator;
+		sDefaultValidator = new EmailValidator(publicSuffixRegistry, validator.mCommonTLDs, validator.mTLDTypos, validator.mCommonDomains, validator.mBlockedDomains, validator.mTLDTolerance, validator.mDomainTolerance, validator.mDistanceMetric, validator.mSuggestionCacheSize, validator.mMetrics, validator.mDictionaryVersion + 1, validator.mFailedResults != null);
+	}
+
+	/**
+	 * Replaces the domains that the default validator rejects addresses from with
+	 * {@link com.spothero.emailvalidator.EmailValidationResult.ValidationError#BLOCKED_DOMAIN}. By default, no domains are
+	 * blocked.
+	 * @param blockedDomains The domains, usually loaded with {@link BlockedDomainList#parse(java.io.Reader)}, or null to block none
+	 */
+	public static synchronized void setBlockedDomains(BlockedDomainList blockedDomains) {
+		EmailValidator validator = sDefaultValidator;
+		sDefaultValidator = new EmailValidator(validator.mPublicSuffixRegistry, validator.mCommonTLDs, validator.mTLDTypos, validator.mCommonDomains, blockedDomains, validator.mTLDTolerance, validator.mDomainTolerance, validator.mDistanceMetric, validator.mSuggestionCacheSize, validator.mMetrics, validator.mDictionaryVersion + 1, validator.mFailedResults != null);
+	}
 
-		if (validateSyntax(emailAddress, addressParts) != null) {
+	/**
+	 * Replaces the list of domains that the default validator's typo suggestions are made from. The list is indexed
+	 * once when this is called, so that suggestions stay fast for lists of many thousands of domains. When two domains
+	 * are equally close to a typo, the one that comes first in the list is suggested.
+	 * @param domains The domains, such as "gmail.com", in order of preference
+	 */
+	public static void setCommonDomains(Collection<String> domains) {
+		setCommonDomains(new InMemoryDomainDictionary(domains.toArray(new String[domains.size()])));
+	}
+
+	/**
+	 * Replaces the list of domains that the default validator's typo suggestions are made from with a memory mapped
+	 * dictionary, which keeps even very large lists off the heap. When two domains are equally close to a typo, the one
+	 * that comes first in sorted order is suggested.
+	 * @param domains The dictionary, usually opened with {@link MappedDomainDictionary#open(java.io.File)}
+	 */
+	public static void setCommonDomains(MappedDomainDictionary domains) {
+		setCommonDomains((DomainDictionary)domains);
+	}
+
+	private static synchronized void setCommonDomains(DomainDictionary domains) {
+		EmailValidator validator = sDefaultValidator;
+		sDefaultValidator = new EmailValidator(validator.mPublicSuffixRegistry, validator.mCommonTLDs, validator.mTLDTypos, domains, validator.mBlockedDomains, validator.mTLDTolerance, validator.mDomainTolerance, validator.mDistanceMetric, validator.mSuggestionCacheSize, validator.mMetrics, validator.mDictionaryVersion + 1, validator.mFailedResults != null);
+	}
+
+	// The typo map of the default TLDs and tolerance is generated at build time, so only other settings need their own
+	private static TLDTypoMap getTLDTypoMap(String[] commonTLDs, float tldTolerance, DistanceMetric distanceMetric) {
+		if (DEFAULT_TLD_TYPOS.isFor(commonTLDs, tldTolerance, distanceMetric)) {
+			return DEFAULT_TLD_TYPOS;
+		}
+		return TLDTypoMap.build(commonTLDs, tldTolerance, distanceMetric);
+	}
+
+	// Corrects a single typo in the TLD of a suffix like "co.uk", but only when the label in front of the TLD matches and
+	// the correction is unambiguous: no other common suffix is one edit away, and no other registered TLD is as close
+	// to the typo counting slips onto neighbouring keys, so "co.uj" becomes "co.uk" but "co.ku" (also a slip of "ky")
+	// and "co.ip" (a slip of "io") are left for the domain match
+	private static String getClosestMultiLabelSuffix(CharSequence emailAddress, int secondLevelStart, int tldStart, int tldEnd, PublicSuffixRegistry publicSuffixRegistry) {
+		LevenshteinDistance levenshteinDistance = LevenshteinDistance.get();
+		levenshteinDistance.setPattern(emailAddress, tldStart, tldEnd);
+
+		String closestSuffix = null;
+		String closestTLD = null;
+		for (int i = 0; i < DefaultDictionaries.COMMON_MULTI_LABEL_SUFFIXES.length; i++) {
+			String suffix = DefaultDictionaries.COMMON_MULTI_LABEL_SUFFIXES[i];
+			String suffixTLD = COMMON_MULTI_LABEL_SUFFIX_TLDS[i];
+			int secondLevelLength = suffix.length() - suffixTLD.length() - 1;
+			if (secondLevelLength == tldStart - 1 - secondLevelStart && regionMatches(suffix, emailAddress, secondLevelStart, secondLevelLength)
+					&& levenshteinDistance.getDistance(suffixTLD, 1) <= 1 && publicSuffixRegistry.isPublicSuffix(suffix, 0, suffix.length())) {
+				if (closestSuffix != null) {
+					return null;
+				}
+				closestSuffix = suffix;
+				closestTLD = suffixTLD;
+			}
+		}
+		if (closestSuffix == null) {
 			return null;
-		} else {
-			return getAutocorrectSuggestion(emailAddress, addressParts);
 		}
+
+		KeyboardDistance keyboardDistance = KeyboardDistance.get();
+		keyboardDistance.setPattern(emailAddress, tldStart, tldEnd);
+		final int distance = keyboardDistance.getDistance(closestTLD, KeyboardDistance.EDIT_COST);
+		final int ownCount = publicSuffixRegistry.isRegisteredTLD(closestTLD) ? 1 : 0;
+		final int count = publicSuffixRegistry.countRegisteredTLDsWithin(emailAddress, tldStart, tldEnd, distance, ownCount + 1);
+		return count == ownCount ? closestSuffix : null;
+	}
+
+	private static boolean regionMatches(String string, CharSequence charSequence, int start, int length) {
+		for (int i = 0; i < length; i++) {
+			if (string.charAt(i) != charSequence.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
-	private static String getClosestString(String string, List<String> list, float tolerance) {
-		String closestString = null;
-		float closestDistance = Float.MAX_VALUE;
+	private static String[] getLastLabels(String[] domains) {
+		String[] labels = new String[domains.length];
+		for (int i = 0; i < domains.length; i++) {
+			labels[i] = domains[i].substring(domains[i].lastIndexOf('.') + 1);
+		}
+		return labels;
+	}
 
-		for (String listString : list) {
-			float distance = getLevenshteinDistance(string.toCharArray(), listString.toCharArray());
-			if (distance < closestDistance && ((distance / string.length()) < tolerance)) {
-				closestDistance = distance;
-				closestString = listString;
+	private static int lastIndexOf(CharSequence charSequence, char c, int start, int end) {
+		for (int i = end - 1; i >= start; i--) {
+			if (charSequence.charAt(i) == c) {
+				return i;
 			}
 		}
+		return -1;
+	}
+
+	DomainDictionary getCommonDomains() {
+		return mCommonDomains;
+	}
+
+	DistanceMetric getDistanceMetric() {
+		return mDistanceMetric;
+	}
+
+	/**
+	 * @return The metrics this validator reports to, which {@link EmailValidationEditText} also reports suggestion
+	 * events to when this is the default validator
+	 */
+	public ValidationMetrics getMetrics() {
+		return mMetrics;
+	}
+
+	/**
+	 * @return The version of the TLDs and domains this validator was built from, which every result it returns carries.
+	 * Set by {@link EmailValidatorConfiguration#dictionaryVersion} or a {@link DictionaryWatcher}, and increased by one
+	 * each time a static method such as {@link #setCommonDomains(Collection)} replaces the default validator.
+	 */
+	public long getDictionaryVersion() {
+		return mDictionaryVersion;
+	}
+
+	/**
+	 * @return The number of typo suggestions that were answered from this validator's cache
+	 */
+	public long getSuggestionCacheHitCount() {
+		return mSuggestionCache != null ? mSuggestionCache.getHitCount() : 0;
+	}
+
+	/**
+	 * @return The number of typo suggestions that had to be worked out because their domain wasn't cached
+	 */
+	public long getSuggestionCacheMissCount() {
+		return mSuggestionCache != null ? mSuggestionCache.getMissCount() : 0;
+	}
 
-		return closestString;
+	/**
+	 * Measures how far apart two strings are by {@link DistanceMetric#KEYBOARD}
+	 * @return The number of edits between the strings, where swapping two neighbouring characters or hitting a
+	 * neighbouring key counts as half an edit
+	 */
+	public static float getKeyboardDistance(char[] a, char[] b) {
+		KeyboardDistance keyboardDistance = KeyboardDistance.get();
+		keyboardDistance.setPattern(CharBuffer.wrap(a), 0, a.length);
+		return (float)keyboardDistance.getDistance(CharBuffer.wrap(b), Integer.MAX_VALUE - 1) / KeyboardDistance.EDIT_COST;
 	}
 
 	public static int getLevenshteinDistance(char[] a, char[] b) {
+		// Characters outside of the BMP count as one character, not as the two halves of their surrogate pair
+		if (hasSurrogates(a) || hasSurrogates(b)) {
+			return getLevenshteinDistance(toCodePoints(a), toCodePoints(b));
+		}
+
+		// The bit-parallel algorithm handles text of any length as long as the pattern fits into 64 bits
+		char[] pattern = a.length <= b.length ? a : b;
+		if (pattern.length <= LevenshteinDistance.WORD_SIZE) {
+			char[] text = pattern == a ? b : a;
+			LevenshteinDistance levenshteinDistance = LevenshteinDistance.get();
+			levenshteinDistance.setPattern(pattern);
+			return levenshteinDistance.getDistance(text, text.length, Integer.MAX_VALUE - 1);
+		}
+
 		final int aLength = a.length;
 		final int bLength = b.length;
 		int[][] distance = new int[aLength + 1][bLength + 1];
@@ -164,22 +591,45 @@ public class EmailValidator {
 		return distance[aLength][bLength];
 	}
 
-	private static String[] getEmailAddressParts(String emailAddress) {
-		String username = "";
-		String domain = "";
-		String tld = "";
+	private static int getLevenshteinDistance(int[] a, int[] b) {
+		final int bLength = b.length;
+		int[] previousRow = new int[bLength + 1];
+		int[] currentRow = new int[bLength + 1];
 
-		int atIndex = emailAddress.indexOf('@');
-		if (atIndex >= 0) {
-			username = emailAddress.substring(0, atIndex);
+		for (int j = 0; j <= bLength; j++) {
+			previousRow[j] = j;
+		}
 
-			int periodIndex = emailAddress.lastIndexOf('.');
-			if (periodIndex >= 0 && periodIndex > atIndex) {
-				domain = emailAddress.substring(atIndex + 1, periodIndex);
-				tld = emailAddress.substring(periodIndex + 1);
+		for (int i = 1; i <= a.length; i++) {
+			currentRow[0] = i;
+			for (int j = 1; j <= bLength; j++) {
+				boolean match = a[i - 1] == b[j - 1];
+				currentRow[j] = Math.min(previousRow[j] + 1, Math.min(currentRow[j - 1] + 1, previousRow[j - 1] + (match ? 0 : 1)));
+			}
+
+			int[] row = previousRow;
+			previousRow = currentRow;
+			currentRow = row;
+		}
+
+		return previousRow[bLength];
+	}
+
+	private static boolean hasSurrogates(char[] string) {
+		for (char c : string) {
+			if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				return true;
 			}
 		}
+		return false;
+	}
 
-		return new String[] { username, domain, tld };
+	private static int[] toCodePoints(char[] string) {
+		int[] codePoints = new int[Character.codePointCount(string, 0, string.length)];
+		for (int i = 0, j = 0; i < string.length; j++) {
+			codePoints[j] = Character.codePointAt(string, i);
+			i += Character.charCount(codePoints[j]);
+		}
+		return codePoints;
 	}
 }
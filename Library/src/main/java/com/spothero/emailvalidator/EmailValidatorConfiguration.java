@@ -0,0 +1,120 @@
+/*
+ * EmailValidatorConfiguration
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The settings an {@link EmailValidator} is built from. A new configuration starts out with the same settings as the
+ * static {@link EmailValidator} methods use by default. Changing a configuration after a validator has been built from
+ * it has no effect on that validator.
+ */
+public class EmailValidatorConfiguration {
+
+	/**
+	 * The registered TLDs and public suffixes that typo suggestions are checked against
+	 */
+	public PublicSuffixRegistry publicSuffixRegistry = EmailValidator.DEFAULT_PUBLIC_SUFFIX_REGISTRY;
+
+	/**
+	 * The TLDs that unregistered TLDs are corrected to, in order of preference
+	 */
+	public List<String> commonTLDs = new ArrayList<String>(Arrays.asList(DefaultDictionaries.COMMON_TLDS));
+
+	/**
+	 * The domains that typo suggestions are made from, in order of preference. Ignored if commonDomainDictionary is set.
+	 */
+	public List<String> commonDomains = new ArrayList<String>(Arrays.asList(DefaultDictionaries.COMMON_DOMAINS));
+
+	/**
+	 * A memory mapped dictionary to make typo suggestions from instead of commonDomains, or null
+	 */
+	public MappedDomainDictionary commonDomainDictionary;
+
+	/**
+	 * Domains whose addresses fail validation with {@link EmailValidationResult.ValidationError#BLOCKED_DOMAIN}, or null
+	 * to block none
+	 */
+	public BlockedDomainList blockedDomains;
+
+	/**
+	 * How different a TLD may be from a common TLD to be corrected to it, as edits per character. A TLD is only
+	 * corrected if its distance divided by its length is less than this.
+	 */
+	public float tldTolerance = 0.5f;
+
+	/**
+	 * How different a domain may be from a common domain to be corrected to it, as edits per character. A domain is
+	 * only corrected if its distance divided by its length is less than this.
+	 */
+	public float domainTolerance = 0.25f;
+
+	/**
+	 * How distances are measured for both tolerances. With {@link DistanceMetric#KEYBOARD}, common typos such as
+	 * "gamil.com" only count as half an edit, so lower tolerances still catch them while ruling out more domains.
+	 */
+	public DistanceMetric distanceMetric = DistanceMetric.LEVENSHTEIN;
+
+	/**
+	 * The number of distinct domains whose typo suggestions are cached, or 0 to turn the cache off. Most traffic comes
+	 * from a small number of domains, whose suggestions then only have to be worked out once.
+	 */
+	public int suggestionCacheSize = 1024;
+
+	/**
+	 * Where timings of each validation phase and counts of each outcome are reported. By default nothing is reported,
+	 * and no time is spent measuring.
+	 */
+	public ValidationMetrics metrics = ValidationMetrics.NONE;
+
+	/**
+	 * The version that results from the validator are marked with, to tell which TLDs and domains they were checked
+	 * against
+	 */
+	public long dictionaryVersion;
+
+	/**
+	 * True to return one shared result for each {@link EmailValidationResult.ValidationError} from
+	 * {@link EmailValidator#validate(String)} instead of a new result for every failure. Shared results must not be
+	 * modified, since every later caller of the validator gets the same instance.
+	 */
+	public boolean shareFailureResults;
+
+	/**
+	 * @return A configuration with the same settings, whose lists can be changed without affecting this one
+	 */
+	EmailValidatorConfiguration copy() {
+		EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+		configuration.publicSuffixRegistry = publicSuffixRegistry;
+		configuration.commonTLDs = new ArrayList<String>(commonTLDs);
+		configuration.commonDomains = new ArrayList<String>(commonDomains);
+		configuration.commonDomainDictionary = commonDomainDictionary;
+		configuration.blockedDomains = blockedDomains;
+		configuration.tldTolerance = tldTolerance;
+		configuration.domainTolerance = domainTolerance;
+		configuration.distanceMetric = distanceMetric;
+		configuration.suggestionCacheSize = suggestionCacheSize;
+		configuration.metrics = metrics;
+		configuration.dictionaryVersion = dictionaryVersion;
+		configuration.shareFailureResults = shareFailureResults;
+		return configuration;
+	}
+}
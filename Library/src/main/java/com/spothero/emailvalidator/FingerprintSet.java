@@ -0,0 +1,143 @@
+/*
+ * FingerprintSet
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator;
+
+/**
+ * A growable set of longs, stored in a single open-addressing table with linear probing. Each entry takes 11 to 22 bytes
+ * depending on how full the table is, where a HashSet of boxed longs takes around 50, so tens of millions of
+ * fingerprints fit in a few hundred megabytes.
+ * <p>
+ * Not thread safe.
+ */
+final class FingerprintSet {
+
+	// 0 marks an empty slot, so whether 0 itself is in the set is kept separately
+	private static final long EMPTY = 0L;
+	private static final int MIN_CAPACITY = 16;
+	private static final int MAX_CAPACITY = 1 << 30;
+	// Fibonacci hashing, so that fingerprints whose low bits happen to collide are still spread over the table
+	private static final long GOLDEN_RATIO = 0x9e3779b97f4a7c15L;
+
+	private long[] mTable;
+	private int mShift;
+	private int mMask;
+	private int mResizeThreshold;
+	private int mSize;
+	private boolean mContainsEmpty;
+
+	/**
+	 * @param expectedSize The number of entries the set should hold without having to grow
+	 */
+	FingerprintSet(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < MAX_CAPACITY && getResizeThreshold(capacity) < expectedSize) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	int size() {
+		return mSize;
+	}
+
+	boolean contains(long value) {
+		if (value == EMPTY) {
+			return mContainsEmpty;
+		}
+
+		final long[] table = mTable;
+		int index = getIndex(value);
+		long entry;
+		while ((entry = table[index]) != EMPTY) {
+			if (entry == value) {
+				return true;
+			}
+			index = (index + 1) & mMask;
+		}
+		return false;
+	}
+
+	/**
+	 * @return True if the value was added, or false if it was already in the set
+	 */
+	boolean add(long value) {
+		if (value == EMPTY) {
+			if (mContainsEmpty) {
+				return false;
+			}
+			mContainsEmpty = true;
+			mSize++;
+			return true;
+		}
+
+		if (mSize >= mResizeThreshold) {
+			grow();
+		}
+
+		final long[] table = mTable;
+		int index = getIndex(value);
+		long entry;
+		while ((entry = table[index]) != EMPTY) {
+			if (entry == value) {
+				return false;
+			}
+			index = (index + 1) & mMask;
+		}
+
+		table[index] = value;
+		mSize++;
+		return true;
+	}
+
+	private int getIndex(long value) {
+		return (int)((value * GOLDEN_RATIO) >>> mShift);
+	}
+
+	private void grow() {
+		if (mTable.length == MAX_CAPACITY) {
+			throw new IllegalStateException("Too many fingerprints: " + mSize);
+		}
+
+		final long[] oldTable = mTable;
+		allocate(oldTable.length << 1);
+		final long[] table = mTable;
+		for (long value : oldTable) {
+			if (value != EMPTY) {
+				int index = getIndex(value);
+				while (table[index] != EMPTY) {
+					index = (index + 1) & mMask;
+				}
+				table[index] = value;
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		mTable = new long[capacity];
+		mMask = capacity - 1;
+		mShift = 64 - Integer.numberOfTrailingZeros(capacity);
+		mResizeThreshold = getResizeThreshold(capacity);
+	}
+
+	// Tables are kept at most three quarters full, past which linear probing slows down sharply
+	private static int getResizeThreshold(int capacity) {
+		return capacity - (capacity >>> 2);
+	}
+}
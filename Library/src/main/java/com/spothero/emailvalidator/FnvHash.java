@@ -0,0 +1,53 @@
+/*
+ * FnvHash
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+/**
+ * The 64-bit FNV-1a hash of a sequence of chars, with the finalizer of MurmurHash3 to spread it, so that every bit of
+ * the result depends on every bit of the input. Used for fingerprints and filters that are too hot to hash Strings.
+ */
+final class FnvHash {
+
+	static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long PRIME = 0x100000001b3L;
+
+	private FnvHash() { }
+
+	/**
+	 * @param hash The hash of the chars so far, starting from {@link #OFFSET_BASIS}
+	 * @param c The next char
+	 * @return The hash including c
+	 */
+	static long update(long hash, char c) {
+		return (hash ^ c) * PRIME;
+	}
+
+	/**
+	 * @param hash An FNV-1a hash
+	 * @return The hash put through the 64-bit finalizer of MurmurHash3
+	 */
+	static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
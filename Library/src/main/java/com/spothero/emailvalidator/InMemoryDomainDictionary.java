@@ -0,0 +1,60 @@
+/*
+ * InMemoryDomainDictionary
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+/**
+ * A {@link DomainDictionary} held on the heap. Exact matches are answered by a hash lookup, and closest matches by a
+ * {@link BkTree}, both of which are built once when the dictionary is created.
+ */
+final class InMemoryDomainDictionary implements DomainDictionary {
+
+	private final String[] mDomains;
+	private final CharRangeSet mDomainSet;
+	private final BkTree mDomainTree;
+
+	InMemoryDomainDictionary(String[] domains) {
+		mDomains = domains.clone();
+		mDomainSet = new CharRangeSet(domains);
+		mDomainTree = new BkTree(domains);
+	}
+
+	/**
+	 * @return The domains in order of preference, which must not be modified
+	 */
+	String[] getDomains() {
+		return mDomains;
+	}
+
+	@Override
+	public boolean contains(CharSequence domain, int start, int end) {
+		return mDomainSet.contains(domain, start, end);
+	}
+
+	/**
+	 * @return The closest known domain within maxDistance, with ties going to the domain that was listed first, or null
+	 */
+	@Override
+	public String findClosest(CharSequence domain, int start, int end, int maxDistance, DistanceMetric metric) {
+		if (metric == DistanceMetric.KEYBOARD) {
+			return mDomainTree.findClosestByKeyboardDistance(domain, start, end, maxDistance);
+		} else {
+			return mDomainTree.findClosest(domain, start, end, maxDistance);
+		}
+	}
+}
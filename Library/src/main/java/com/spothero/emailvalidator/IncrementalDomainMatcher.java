@@ -0,0 +1,143 @@
+/*
+ * IncrementalDomainMatcher
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+/**
+ * Finds the closest of a short list of domains to a domain that is being typed, keeping the rows of the edit distance
+ * matrix against every domain in the list between calls. When a query shares a prefix with the previous one, the rows
+ * for that prefix are reused, so typing one more character only computes one new row per domain.
+ * <p>
+ * Gives the same answers as the {@link InMemoryDomainDictionary} it is built from. Instances are not thread safe.
+ */
+final class IncrementalDomainMatcher implements DomainDictionary {
+
+	private final InMemoryDomainDictionary mDictionary;
+	private final DistanceMetric mMetric;
+	private final String[] mDomains;
+	private final char[][] mDomainCharacters;
+
+	// mRows[d] holds rows 0 to mQueryLength for domain d, each one character of the query longer than the last
+	private final int[][] mRows;
+	private char[] mQuery = new char[0];
+	private int mQueryLength;
+
+	/**
+	 * @param dictionary The domains to match against
+	 * @param metric The metric that every search will use, since the rows kept between calls depend on it
+	 */
+	IncrementalDomainMatcher(InMemoryDomainDictionary dictionary, DistanceMetric metric) {
+		mDictionary = dictionary;
+		mMetric = metric;
+		mDomains = dictionary.getDomains();
+		mDomainCharacters = new char[mDomains.length][];
+		for (int d = 0; d < mDomains.length; d++) {
+			mDomainCharacters[d] = mDomains[d].toCharArray();
+		}
+		mRows = new int[mDomains.length][];
+		ensureCapacity(16);
+	}
+
+	@Override
+	public boolean contains(CharSequence domain, int start, int end) {
+		return mDictionary.contains(domain, start, end);
+	}
+
+	/**
+	 * @return The closest domain within maxDistance, with ties going to the domain that was listed first, or null
+	 */
+	@Override
+	public String findClosest(CharSequence domain, int start, int end, int maxDistance, DistanceMetric metric) {
+		if (metric != mMetric) {
+			return mDictionary.findClosest(domain, start, end, maxDistance, metric);
+		}
+
+		final boolean keyboard = metric == DistanceMetric.KEYBOARD;
+		final int length = end - start;
+		ensureCapacity(length);
+
+		int commonLength = 0;
+		final int previousLength = Math.min(mQueryLength, length);
+		while (commonLength < previousLength && mQuery[commonLength] == domain.charAt(start + commonLength)) {
+			commonLength++;
+		}
+		for (int i = commonLength; i < length; i++) {
+			mQuery[i] = domain.charAt(start + i);
+		}
+
+		String closestDomain = null;
+		int closestDistance = maxDistance + 1;
+		for (int d = 0; d < mDomains.length; d++) {
+			final String candidate = mDomains[d];
+			final int[] rows = mRows[d];
+			final int rowLength = candidate.length() + 1;
+
+			for (int r = commonLength + 1; r <= length; r++) {
+				final char c = mQuery[r - 1];
+				final int current = r * rowLength;
+				final int previous = current - rowLength;
+				if (keyboard) {
+					final int beforePrevious = r >= 2 ? previous - rowLength : -1;
+					final char previousChar = r >= 2 ? mQuery[r - 2] : 0;
+					KeyboardDistance.computeRow(rows, current, previous, beforePrevious, rowLength, r, c, previousChar, mDomainCharacters[d]);
+				} else {
+					rows[current] = r;
+					for (int i = 1; i < rowLength; i++) {
+						final int cost = rows[previous + i - 1] + (candidate.charAt(i - 1) == c ? 0 : 1);
+						rows[current + i] = Math.min(cost, Math.min(rows[previous + i], rows[current + i - 1]) + 1);
+					}
+				}
+			}
+
+			final int distance = rows[length * rowLength + rowLength - 1];
+			if (distance < closestDistance) {
+				closestDistance = distance;
+				closestDomain = candidate;
+			}
+		}
+
+		mQueryLength = length;
+		return closestDomain;
+	}
+
+	private void ensureCapacity(int queryLength) {
+		if (mQuery.length >= queryLength) {
+			return;
+		}
+
+		final int capacity = Math.max(queryLength, mQuery.length * 2);
+		char[] query = new char[capacity];
+		System.arraycopy(mQuery, 0, query, 0, mQueryLength);
+		mQuery = query;
+
+		for (int d = 0; d < mDomains.length; d++) {
+			final int rowLength = mDomains[d].length() + 1;
+			int[] rows = new int[(capacity + 1) * rowLength];
+			if (mRows[d] != null) {
+				System.arraycopy(mRows[d], 0, rows, 0, (mQueryLength + 1) * rowLength);
+			} else if (mMetric == DistanceMetric.KEYBOARD) {
+				KeyboardDistance.initializeRow(rows, 0, rowLength);
+			} else {
+				for (int i = 0; i < rowLength; i++) {
+					rows[i] = i;
+				}
+			}
+			mRows[d] = rows;
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * IncrementalEmailValidator
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+/**
+ * Validates an email address as it is being typed, so that the result is ready as soon as typing stops. Work from the
+ * previous call is reused: when the domain is matched against a short list of common domains, only the edit distances
+ * for the characters that changed since the last call are worked out again.
+ * <p>
+ * Results are always the same as {@link EmailValidator#validate(String)} would give. Instances are not thread safe.
+ */
+public final class IncrementalEmailValidator {
+
+	// Larger lists are searched with the validator's own index, which beats updating every entry on each keystroke
+	private static final int MAX_INCREMENTAL_DOMAINS = 256;
+
+	private final EmailValidator mValidator;
+	private final DomainDictionary mCommonDomains;
+	private String mEmailAddress;
+	private EmailValidationResult mResult;
+
+	public IncrementalEmailValidator(EmailValidator validator) {
+		mValidator = validator;
+
+		DomainDictionary commonDomains = validator.getCommonDomains();
+		if (commonDomains instanceof InMemoryDomainDictionary && ((InMemoryDomainDictionary)commonDomains).getDomains().length <= MAX_INCREMENTAL_DOMAINS) {
+			commonDomains = new IncrementalDomainMatcher((InMemoryDomainDictionary)commonDomains, validator.getDistanceMetric());
+		}
+		mCommonDomains = commonDomains;
+	}
+
+	/**
+	 * @return The validator that results come from
+	 */
+	public EmailValidator getValidator() {
+		return mValidator;
+	}
+
+	/**
+	 * Validates the current text, reusing the work done for the previous text
+	 * @param emailAddress The email address as it is now
+	 * @return The result for the email address
+	 */
+	public EmailValidationResult update(CharSequence emailAddress) {
+		if (mEmailAddress == null || !CharRangeSet.regionEquals(mEmailAddress, emailAddress, 0, emailAddress.length())) {
+			mEmailAddress = emailAddress.toString();
+			mResult = mValidator.validate(mEmailAddress, mCommonDomains, null);
+		}
+		return mResult;
+	}
+
+	/**
+	 * @return The email address that was last validated, or null if there hasn't been one
+	 */
+	public String getEmailAddress() {
+		return mEmailAddress;
+	}
+
+	/**
+	 * @return The result for the email address that was last validated, or null if there hasn't been one
+	 */
+	public EmailValidationResult getResult() {
+		return mResult;
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * KeyboardDistance
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+/**
+ * Optimal string alignment distance (Levenshtein distance that also allows swapping two neighbouring characters),
+ * weighted for typing on a QWERTY keyboard. Swapping two characters or hitting a key next to the intended one costs half
+ * as much as any other edit, so "gamil" is half an edit from "gmail" rather than two. Distances are counted in half
+ * edits, so that every cost is a whole number.
+ * <p>
+ * Substitution costs for every pair of ASCII characters are worked out once, into a flat table indexed by both
+ * characters. Instances hold scratch space and are not thread safe, use {@link #get()} to obtain the one for the
+ * current thread.
+ */
+final class KeyboardDistance {
+
+	static final int EDIT_COST = 2;
+	static final int NEAR_MISS_COST = 1;
+
+	// Marks cells outside the band being computed, small enough that adding costs to it can't overflow
+	static final int OUT_OF_BAND = Integer.MAX_VALUE / 4;
+
+	private static final int ASCII_SIZE = 128;
+	private static final String[] KEYBOARD_ROWS = new String[] { "1234567890-", "qwertyuiop", "asdfghjkl", "zxcvbnm,." };
+
+	// SUBSTITUTION_COSTS[a * ASCII_SIZE + b] is the cost of replacing a with b, which is the same both ways round
+	private static final byte[] SUBSTITUTION_COSTS = buildSubstitutionCosts();
+
+	private static final ThreadLocal<KeyboardDistance> INSTANCES = new ThreadLocal<KeyboardDistance>() {
+		@Override
+		protected KeyboardDistance initialValue() {
+			return new KeyboardDistance();
+		}
+	};
+
+	private char[] mPattern = new char[0];
+	private int mPatternLength;
+	private int[] mRows = new int[0];
+
+	private KeyboardDistance() { }
+
+	static KeyboardDistance get() {
+		return INSTANCES.get();
+	}
+
+	/**
+	 * Sets the string that following calls to {@link #getDistance} will measure against
+	 * @param pattern The string
+	 * @param start The start of the range of the string to use
+	 * @param end The end of the range of the string to use
+	 */
+	void setPattern(CharSequence pattern, int start, int end) {
+		final int length = end - start;
+		if (mPattern.length < length) {
+			mPattern = new char[length];
+			mRows = new int[3 * (length + 1)];
+		}
+		for (int i = 0; i < length; i++) {
+			mPattern[i] = pattern.charAt(start + i);
+		}
+		mPatternLength = length;
+	}
+
+	/**
+	 * @param text The string to measure the distance to
+	 * @param maxDistance The largest distance that is of interest, in half edits
+	 * @return The distance from the pattern to the text in half edits, or maxDistance + 1 if the distance is greater
+	 * than maxDistance
+	 */
+	int getDistance(CharSequence text, int maxDistance) {
+		final int textLength = text.length();
+		final int rowLength = mPatternLength + 1;
+		if (maxDistance < 0 || Math.abs(textLength - mPatternLength) * EDIT_COST > maxDistance) {
+			return maxDistance + 1;
+		}
+
+		// The last three rows of the distance matrix are kept, in turn, since swaps reach back two rows. Reaching a cell
+		// more than maxDistance / EDIT_COST from the diagonal takes that many insertions or deletions, so only the band
+		// around the diagonal is computed.
+		final int[] rows = mRows;
+		final int bandWidth = maxDistance / EDIT_COST;
+		initializeRow(rows, 0, rowLength);
+		int previousMinimum = 0;
+		char previousChar = 0;
+		for (int r = 1; r <= textLength; r++) {
+			final char c = text.charAt(r - 1);
+			final int current = (r % 3) * rowLength;
+			final int previous = ((r - 1) % 3) * rowLength;
+			final int beforePrevious = r >= 2 ? ((r - 2) % 3) * rowLength : -1;
+			final int low = Math.max(1, r - bandWidth);
+			final int high = Math.min(mPatternLength, r + bandWidth);
+			final int rowMinimum = computeRow(rows, current, previous, beforePrevious, rowLength, r, low, high, c, previousChar, mPattern);
+
+			// A later row can only improve on the row before it by reaching back past it with a swap
+			if (rowMinimum > maxDistance && previousMinimum > maxDistance) {
+				return maxDistance + 1;
+			}
+			previousMinimum = rowMinimum;
+			previousChar = c;
+		}
+
+		final int distance = rows[(textLength % 3) * rowLength + mPatternLength];
+		return distance <= maxDistance ? distance : maxDistance + 1;
+	}
+
+	/**
+	 * Fills in row 0 of a distance matrix, the distances from an empty string
+	 */
+	static void initializeRow(int[] rows, int start, int rowLength) {
+		for (int i = 0; i < rowLength; i++) {
+			rows[start + i] = i * EDIT_COST;
+		}
+	}
+
+	/**
+	 * Fills in row r of a distance matrix from the rows before it, returning the smallest value in it
+	 * @param rows The matrix rows
+	 * @param current Where row r starts
+	 * @param previous Where row r - 1 starts
+	 * @param beforePrevious Where row r - 2 starts, or -1 if r is 1
+	 * @param rowLength The length of the columns plus one
+	 * @param r The row number
+	 * @param c The character that row r adds
+	 * @param previousChar The character that row r - 1 added
+	 * @param columns The characters of the columns
+	 */
+	static int computeRow(int[] rows, int current, int previous, int beforePrevious, int rowLength, int r, char c, char previousChar, char[] columns) {
+		return computeRow(rows, current, previous, beforePrevious, rowLength, r, 1, rowLength - 1, c, previousChar, columns);
+	}
+
+	/**
+	 * Fills in columns low to high of row r of a distance matrix, marking the columns on either side of them as out of
+	 * the band, and returns the smallest value in the band. The band must not move left from one row to the next, or
+	 * widen by more than one column to the right.
+	 */
+	static int computeRow(int[] rows, int current, int previous, int beforePrevious, int rowLength, int r, int low, int high, char c, char previousChar, char[] columns) {
+		int left = low == 1 ? r * EDIT_COST : OUT_OF_BAND;
+		rows[current + low - 1] = left;
+		if (high + 1 < rowLength) {
+			rows[current + high + 1] = OUT_OF_BAND;
+		}
+
+		// The costs of replacing c are one slice of the table
+		final int costs = c < ASCII_SIZE ? c * ASCII_SIZE : -1;
+		int rowMinimum = left;
+		for (int i = low; i <= high; i++) {
+			final char column = columns[i - 1];
+			final int substitutionCost;
+			if (costs >= 0 && column < ASCII_SIZE) {
+				substitutionCost = SUBSTITUTION_COSTS[costs + column];
+			} else {
+				substitutionCost = column == c ? 0 : EDIT_COST;
+			}
+
+			int cost = rows[previous + i - 1] + substitutionCost;
+			cost = Math.min(cost, Math.min(rows[previous + i], left) + EDIT_COST);
+			if (i > 1 && c == columns[i - 2] && previousChar == column && beforePrevious >= 0 && c != column) {
+				cost = Math.min(cost, rows[beforePrevious + i - 2] + NEAR_MISS_COST);
+			}
+
+			rows[current + i] = cost;
+			left = cost;
+			if (cost < rowMinimum) {
+				rowMinimum = cost;
+			}
+		}
+		return rowMinimum;
+	}
+
+	static int getSubstitutionCost(char a, char b) {
+		if (a == b) {
+			return 0;
+		} else if (a < ASCII_SIZE && b < ASCII_SIZE) {
+			return SUBSTITUTION_COSTS[a * ASCII_SIZE + b];
+		} else {
+			return EDIT_COST;
+		}
+	}
+
+	private static byte[] buildSubstitutionCosts() {
+		byte[] costs = new byte[ASCII_SIZE * ASCII_SIZE];
+		for (int a = 0; a < ASCII_SIZE; a++) {
+			for (int b = 0; b < ASCII_SIZE; b++) {
+				if (a == b) {
+					costs[a * ASCII_SIZE + b] = 0;
+				} else if (Character.toLowerCase((char)a) == Character.toLowerCase((char)b)) {
+					// The right key with or without shift
+					costs[a * ASCII_SIZE + b] = NEAR_MISS_COST;
+				} else {
+					costs[a * ASCII_SIZE + b] = EDIT_COST;
+				}
+			}
+		}
+
+		// Each row is offset a little to the right of the one above it, so a key touches two keys in each of those rows
+		for (int row = 0; row < KEYBOARD_ROWS.length; row++) {
+			final String keys = KEYBOARD_ROWS[row];
+			for (int column = 0; column < keys.length(); column++) {
+				final char key = keys.charAt(column);
+				setNearMiss(costs, key, KEYBOARD_ROWS[row], column - 1);
+				setNearMiss(costs, key, KEYBOARD_ROWS[row], column + 1);
+				if (row > 0) {
+					setNearMiss(costs, key, KEYBOARD_ROWS[row - 1], column);
+					setNearMiss(costs, key, KEYBOARD_ROWS[row - 1], column + 1);
+				}
+				if (row < KEYBOARD_ROWS.length - 1) {
+					setNearMiss(costs, key, KEYBOARD_ROWS[row + 1], column - 1);
+					setNearMiss(costs, key, KEYBOARD_ROWS[row + 1], column);
+				}
+			}
+		}
+		return costs;
+	}
+
+	private static void setNearMiss(byte[] costs, char key, String row, int column) {
+		if (column < 0 || column >= row.length()) {
+			return;
+		}
+
+		final char neighbour = row.charAt(column);
+		final char[] keys = new char[] { key, Character.toUpperCase(key) };
+		final char[] neighbours = new char[] { neighbour, Character.toUpperCase(neighbour) };
+		for (char a : keys) {
+			for (char b : neighbours) {
+				costs[a * ASCII_SIZE + b] = NEAR_MISS_COST;
+			}
+		}
+	}
+}
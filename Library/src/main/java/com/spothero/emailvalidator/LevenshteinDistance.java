@@ -0,0 +1,249 @@
+/*
+ * LevenshteinDistance
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+/**
+ * Levenshtein distance from one pattern to any number of strings, with an upper bound on the distances of interest.
+ * Patterns of up to 64 characters use Myers' bit-parallel algorithm (as formulated by Hyyr&ouml;), where each column
+ * of the distance matrix is held in a pair of longs. Longer patterns fall back to computing only the diagonal band of
+ * the matrix that can still produce a result within the bound. Either way the computation stops as soon as the bound
+ * can no longer be met.
+ * <p>
+ * Instances hold scratch space and are not thread safe, use {@link #get()} to obtain the one for the current thread.
+ */
+final class LevenshteinDistance {
+
+	static final int WORD_SIZE = 64;
+	private static final int ASCII_SIZE = 128;
+
+	private static final ThreadLocal<LevenshteinDistance> INSTANCES = new ThreadLocal<LevenshteinDistance>() {
+		@Override
+		protected LevenshteinDistance initialValue() {
+			return new LevenshteinDistance();
+		}
+	};
+
+	// For each ASCII character, the positions in the pattern at which it occurs
+	private final long[] mPatternMasks = new long[ASCII_SIZE];
+	private char[] mPattern = new char[WORD_SIZE];
+	private int mPatternLength;
+	private boolean mPatternIsAscii;
+	private char[] mText = new char[WORD_SIZE];
+	private int[] mPreviousRow = new int[WORD_SIZE + 1];
+	private int[] mCurrentRow = new int[WORD_SIZE + 1];
+
+	private LevenshteinDistance() { }
+
+	static LevenshteinDistance get() {
+		return INSTANCES.get();
+	}
+
+	/**
+	 * Sets the string that following calls to {@link #getDistance} will measure against
+	 * @param pattern The string
+	 * @param start The start of the range of the string to use
+	 * @param end The end of the range of the string to use
+	 */
+	void setPattern(CharSequence pattern, int start, int end) {
+		final int length = end - start;
+		preparePattern(length);
+		for (int i = 0; i < length; i++) {
+			mPattern[i] = pattern.charAt(start + i);
+		}
+		setPatternMasks(length);
+	}
+
+	/**
+	 * Sets the string that following calls to {@link #getDistance} will measure against
+	 * @param pattern The string
+	 */
+	void setPattern(char[] pattern) {
+		preparePattern(pattern.length);
+		System.arraycopy(pattern, 0, mPattern, 0, pattern.length);
+		setPatternMasks(pattern.length);
+	}
+
+	private void preparePattern(int length) {
+		// Only the masks of the previous pattern's characters are set, so clear just those
+		final int previousLength = Math.min(mPatternLength, WORD_SIZE);
+		for (int i = 0; i < previousLength; i++) {
+			final char c = mPattern[i];
+			if (c < ASCII_SIZE) {
+				mPatternMasks[c] = 0L;
+			}
+		}
+
+		if (mPattern.length < length) {
+			mPattern = new char[length];
+			mPreviousRow = new int[length + 1];
+			mCurrentRow = new int[length + 1];
+		}
+	}
+
+	private void setPatternMasks(int length) {
+		boolean isAscii = true;
+		for (int i = 0; i < length; i++) {
+			final char c = mPattern[i];
+			if (c >= ASCII_SIZE) {
+				isAscii = false;
+			} else if (i < WORD_SIZE) {
+				mPatternMasks[c] |= 1L << i;
+			}
+		}
+		mPatternLength = length;
+		mPatternIsAscii = isAscii;
+	}
+
+	/**
+	 * @param text The string to measure the distance to
+	 * @param maxDistance The largest distance that is of interest
+	 * @return The distance from the pattern to the text, or maxDistance + 1 if the distance is greater than maxDistance
+	 */
+	int getDistance(String text, int maxDistance) {
+		final int length = text.length();
+		if (mText.length < length) {
+			mText = new char[length];
+		}
+		text.getChars(0, length, mText, 0);
+		return getDistance(mText, length, maxDistance);
+	}
+
+	/**
+	 * @param text The string to measure the distance to
+	 * @param textLength The number of characters of text to use
+	 * @param maxDistance The largest distance that is of interest
+	 * @return The distance from the pattern to the text, or maxDistance + 1 if the distance is greater than maxDistance
+	 */
+	int getDistance(char[] text, int textLength, int maxDistance) {
+		final int patternLength = mPatternLength;
+
+		// The difference in length is a lower bound of the distance
+		if (maxDistance < 0 || Math.abs(patternLength - textLength) > maxDistance) {
+			return maxDistance + 1;
+		} else if (patternLength == 0 || textLength == 0) {
+			return Math.max(patternLength, textLength);
+		} else if (patternLength <= WORD_SIZE) {
+			return getBitParallelDistance(text, textLength, maxDistance);
+		} else {
+			return getBandedDistance(text, textLength, maxDistance);
+		}
+	}
+
+	private int getBitParallelDistance(char[] text, int textLength, int maxDistance) {
+		final int patternLength = mPatternLength;
+		final long lastBit = 1L << (patternLength - 1);
+
+		// Vertical positive and negative deltas of the current column, bit i being row i + 1
+		long positiveVertical = -1L;
+		long negativeVertical = 0L;
+		int score = patternLength;
+
+		for (int j = 0; j < textLength; j++) {
+			final long matches = getPatternMask(text[j]);
+			final long x = matches | negativeVertical;
+			final long diagonal = (((matches & positiveVertical) + positiveVertical) ^ positiveVertical) | matches;
+			long positiveHorizontal = negativeVertical | ~(diagonal | positiveVertical);
+			long negativeHorizontal = positiveVertical & diagonal;
+
+			if ((positiveHorizontal & lastBit) != 0) {
+				score++;
+			} else if ((negativeHorizontal & lastBit) != 0) {
+				score--;
+			}
+
+			// Each remaining character can lower the score by at most one
+			if (score - (textLength - j - 1) > maxDistance) {
+				return maxDistance + 1;
+			}
+
+			positiveHorizontal = (positiveHorizontal << 1) | 1L;
+			negativeHorizontal <<= 1;
+			positiveVertical = negativeHorizontal | ~(x | positiveHorizontal);
+			negativeVertical = positiveHorizontal & x;
+		}
+
+		return score;
+	}
+
+	private long getPatternMask(char c) {
+		if (c < ASCII_SIZE) {
+			return mPatternMasks[c];
+		} else if (mPatternIsAscii) {
+			return 0L;
+		}
+
+		long mask = 0L;
+		for (int i = 0; i < mPatternLength; i++) {
+			if (mPattern[i] == c) {
+				mask |= 1L << i;
+			}
+		}
+		return mask;
+	}
+
+	private int getBandedDistance(char[] text, int textLength, int maxDistance) {
+		final char[] pattern = mPattern;
+		final int patternLength = mPatternLength;
+		final int overLimit = maxDistance + 1;
+		int[] previousRow = mPreviousRow;
+		int[] currentRow = mCurrentRow;
+
+		for (int i = 0; i <= patternLength; i++) {
+			previousRow[i] = Math.min(i, overLimit);
+		}
+
+		for (int j = 1; j <= textLength; j++) {
+			final char textChar = text[j - 1];
+
+			// Cells further than maxDistance from the diagonal can never be within the limit
+			final int low = Math.max(1, j - maxDistance);
+			final int high = maxDistance >= patternLength - j ? patternLength : j + maxDistance;
+
+			currentRow[low - 1] = low == 1 ? Math.min(j, overLimit) : overLimit;
+			int rowMinimum = currentRow[low - 1];
+
+			for (int i = low; i <= high; i++) {
+				int cost = previousRow[i - 1] + (pattern[i - 1] == textChar ? 0 : 1);
+				cost = Math.min(cost, Math.min(previousRow[i], currentRow[i - 1]) + 1);
+				if (cost > overLimit) {
+					cost = overLimit;
+				}
+
+				currentRow[i] = cost;
+				if (cost < rowMinimum) {
+					rowMinimum = cost;
+				}
+			}
+			if (high < patternLength) {
+				currentRow[high + 1] = overLimit;
+			}
+
+			// Distances never decrease from one row to the next, so there is no way back under the limit
+			if (rowMinimum > maxDistance) {
+				return overLimit;
+			}
+
+			int[] row = previousRow;
+			previousRow = currentRow;
+			currentRow = row;
+		}
+
+		return previousRow[patternLength];
+	}
+}
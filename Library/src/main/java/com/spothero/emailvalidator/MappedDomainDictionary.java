@@ -0,0 +1,424 @@
+/*
+ * MappedDomainDictionary
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A read-only dictionary of known domains that is memory mapped from a file instead of loaded onto the heap, for
+ * dictionaries of millions of domains. Opening one only maps the file, and lookups read it in place, so heap use does not
+ * grow with the size of the dictionary.
+ * <p>
+ * The file holds the domains in sorted order, each as a length byte followed by its ASCII characters, preceded by an
+ * index of where every block of 16 domains starts. Exact lookups binary search the index and then scan one block.
+ * Closest matches walk the domains in order, treating them as the leaves of a trie: the rows of the edit distance
+ * matrix for the prefix a domain shares with the one before it are reused, and as soon as a prefix is too far from the
+ * query, every domain that starts with it is skipped. Each match tightens the bound to just under its distance, so later
+ * domains have to beat it. Only the band of each row within the bound of the diagonal is computed, and domains whose
+ * length alone puts them out of reach aren't measured at all, so the work depends on the bound rather than on the
+ * length of the query. Since most queries are an exact match or an edit or two from an entry, a walk with a bound of
+ * zero is tried first, and then walks with a bound of one edit, doubling it until a match is found or the bound reaches
+ * the maximum distance. Keyboard distances are found the same way, except that a prefix is only
+ * skipped once the row before its last one is out of reach as well, since a swap can reach back past a row.
+ * <p>
+ * Dictionary files are created with {@link #write(Collection, OutputStream)}. Instances are thread safe.
+ */
+public final class MappedDomainDictionary implements DomainDictionary {
+
+	// "EVDD"
+	static final int MAGIC = 0x45564444;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 24;
+	private static final int ENTRIES_PER_BLOCK = 16;
+	private static final int MAX_ENTRY_LENGTH = 255;
+	private static final int ASCII_SIZE = 128;
+
+	private static final ThreadLocal<SearchState> SEARCH_STATES = new ThreadLocal<SearchState>() {
+		@Override
+		protected SearchState initialValue() {
+			return new SearchState();
+		}
+	};
+
+	// Only absolute reads are used, which leave the buffer's position alone, so it can be shared between threads
+	private final ByteBuffer mBuffer;
+	private final int mEntryCount;
+	private final int mEntriesPerBlock;
+	private final int mMaxEntryLength;
+	private final int mBlockCount;
+	private final int mDataStart;
+	private final int mDataEnd;
+
+	/**
+	 * Maps a dictionary file that was created with {@link #write(Collection, OutputStream)}
+	 * @param file The dictionary file
+	 * @return The dictionary
+	 * @throws IOException If the file could not be mapped, or is not a dictionary file
+	 */
+	public static MappedDomainDictionary open(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Domain dictionary is too large to map: " + file);
+			}
+			// The mapping stays valid after the file is closed
+			return new MappedDomainDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Writes a dictionary file. The domains don't need to be sorted or unique.
+	 * @param domains The domains, such as "gmail.com", each between 1 and 255 ASCII characters long
+	 * @param outputStream The stream to write the file to, which is flushed but left open
+	 * @throws IOException If the file could not be written
+	 */
+	public static void write(Collection<String> domains, OutputStream outputStream) throws IOException {
+		String[] entries = domains.toArray(new String[domains.size()]);
+		Arrays.sort(entries);
+
+		// Sorting Strings by char matches sorting their ASCII bytes, which is the order the file is searched in
+		int entryCount = 0;
+		int maxEntryLength = 0;
+		for (String entry : entries) {
+			final int length = entry.length();
+			if (length == 0 || length > MAX_ENTRY_LENGTH) {
+				throw new IllegalArgumentException("Domains must be between 1 and " + MAX_ENTRY_LENGTH + " characters long: " + entry);
+			}
+			for (int i = 0; i < length; i++) {
+				if (entry.charAt(i) >= ASCII_SIZE) {
+					throw new IllegalArgumentException("Domains must be ASCII: " + entry);
+				}
+			}
+			if (entryCount == 0 || !entries[entryCount - 1].equals(entry)) {
+				entries[entryCount++] = entry;
+				maxEntryLength = Math.max(maxEntryLength, length);
+			}
+		}
+
+		final int blockCount = (entryCount + ENTRIES_PER_BLOCK - 1) / ENTRIES_PER_BLOCK;
+		int[] blockOffsets = new int[blockCount];
+		long offset = HEADER_SIZE + 4L * blockCount;
+		for (int i = 0; i < entryCount; i++) {
+			if (i % ENTRIES_PER_BLOCK == 0) {
+				blockOffsets[i / ENTRIES_PER_BLOCK] = (int)offset;
+			}
+			offset += 1 + entries[i].length();
+			if (offset > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Too many domains to fit in a dictionary file");
+			}
+		}
+
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeInt(entryCount);
+		output.writeInt(ENTRIES_PER_BLOCK);
+		output.writeInt(maxEntryLength);
+		output.writeInt(blockCount);
+		for (int blockOffset : blockOffsets) {
+			output.writeInt(blockOffset);
+		}
+		for (int i = 0; i < entryCount; i++) {
+			output.writeByte(entries[i].length());
+			output.writeBytes(entries[i]);
+		}
+		output.flush();
+	}
+
+	MappedDomainDictionary(ByteBuffer buffer) throws IOException {
+		mBuffer = buffer;
+		if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("Not a domain dictionary");
+		} else if (buffer.getInt(4) != VERSION) {
+			throw new IOException("Unsupported domain dictionary version " + buffer.getInt(4));
+		}
+
+		mEntryCount = buffer.getInt(8);
+		mEntriesPerBlock = buffer.getInt(12);
+		mMaxEntryLength = buffer.getInt(16);
+		mBlockCount = buffer.getInt(20);
+		mDataStart = HEADER_SIZE + 4 * mBlockCount;
+		mDataEnd = buffer.limit();
+		if (mEntryCount < 0 || mEntriesPerBlock <= 0 || mMaxEntryLength < 0 || mMaxEntryLength > MAX_ENTRY_LENGTH
+				|| mBlockCount != (mEntryCount + mEntriesPerBlock - 1) / mEntriesPerBlock || mDataStart > mDataEnd) {
+			throw new IOException("Corrupt domain dictionary");
+		}
+	}
+
+	/**
+	 * @return The number of domains in the dictionary
+	 */
+	public int size() {
+		return mEntryCount;
+	}
+
+	@Override
+	public boolean contains(CharSequence domain, int start, int end) {
+		final int offset = lowerBound(domain, start, end);
+		return offset < mDataEnd && compare(offset, domain, start, end) == 0;
+	}
+
+	/**
+	 * @return The closest domain within maxDistance by Levenshtein distance, with ties going to the domain that comes
+	 * first in sorted order, or null if there is none
+	 */
+	public String findClosest(CharSequence domain, int start, int end, int maxDistance) {
+		return findClosest(domain, start, end, maxDistance, DistanceMetric.LEVENSHTEIN);
+	}
+
+	/**
+	 * @return The closest domain within maxDistance, with ties going to the domain that comes first in sorted order, or
+	 * null if there is none
+	 */
+	@Override
+	public String findClosest(CharSequence domain, int start, int end, int maxDistance, DistanceMetric metric) {
+		final boolean keyboard = metric == DistanceMetric.KEYBOARD;
+		final int patternLength = end - start;
+		if (mEntryCount == 0 || maxDistance < 0 || (patternLength - mMaxEntryLength) * (keyboard ? KeyboardDistance.EDIT_COST : 1) > maxDistance) {
+			return null;
+		}
+
+		SearchState state = SEARCH_STATES.get();
+		state.prepare(domain, start, end, mMaxEntryLength, keyboard);
+
+		// Most misspelled domains are an edit or two from an entry, and walks with bounds that small prune nearly all of
+		// the dictionary, so look for an exact match and then a single edit, doubling the bound until it is reached
+		final int editCost = keyboard ? KeyboardDistance.EDIT_COST : 1;
+		int bound = 0;
+		int offset = findClosestOffset(state, patternLength, 0, keyboard);
+		while (offset == mDataEnd && bound < maxDistance) {
+			bound = Math.min(bound == 0 ? editCost : bound * 2, maxDistance);
+			offset = findClosestOffset(state, patternLength, bound, keyboard);
+		}
+		return offset < mDataEnd ? readEntry(offset) : null;
+	}
+
+	// Returns the offset of the closest entry within maxDistance of the pattern, or mDataEnd if there is none
+	private int findClosestOffset(SearchState state, int patternLength, int maxDistance, boolean keyboard) {
+		final int editCost = keyboard ? KeyboardDistance.EDIT_COST : 1;
+		final int rowLength = patternLength + 1;
+		final char[] path = state.path;
+		final int[] rows = state.rows;
+		final int[] rowMinimums = state.rowMinimums;
+
+		// Rows 0 to pathLength of the distance matrix hold the distances from the first characters of path. Cells
+		// outside the band they were computed in hold a value past the bound of the time, and the bound only shrinks.
+		int pathLength = 0;
+		int bound = maxDistance;
+		int closest = mDataEnd;
+
+		int offset = mDataStart;
+		while (offset < mDataEnd) {
+			final int length = mBuffer.get(offset) & 0xFF;
+
+			int depth = 0;
+			while (depth < pathLength && depth < length && path[depth] == mBuffer.get(offset + 1 + depth)) {
+				depth++;
+			}
+
+			if (Math.abs(length - patternLength) * editCost > bound) {
+				// Too long or short to be within the bound, but the rows for the prefix it shares are still good
+				pathLength = depth;
+				offset += 1 + length;
+				continue;
+			}
+
+			// Reaching a cell more than bandWidth from the diagonal takes more insertions or deletions than the bound
+			// allows. The length check above keeps the band from running off the end of the pattern.
+			final int bandWidth = bound / editCost;
+			int deadDepth = 0;
+			while (depth < length) {
+				final char c = (char)mBuffer.get(offset + 1 + depth);
+				path[depth] = c;
+				depth++;
+				final int low = Math.max(1, depth - bandWidth);
+				final int high = Math.min(patternLength, depth + bandWidth);
+				if (keyboard) {
+					final int current = depth * rowLength;
+					final int beforePrevious = depth >= 2 ? current - 2 * rowLength : -1;
+					final char previousChar = depth >= 2 ? path[depth - 2] : 0;
+					rowMinimums[depth] = KeyboardDistance.computeRow(rows, current, current - rowLength, beforePrevious, rowLength, depth, low, high, c, previousChar, state.pattern);
+					if (rowMinimums[depth] > bound && rowMinimums[depth - 1] > bound) {
+						deadDepth = depth;
+						break;
+					}
+				} else if (computeRow(rows, depth, rowLength, low, high, c, state.pattern) > bound) {
+					deadDepth = depth;
+					break;
+				}
+			}
+
+			if (deadDepth > 0) {
+				// No domain that starts with this prefix can be within the bound, so skip past all of them
+				pathLength = deadDepth;
+				offset = skipPrefix(state, deadDepth);
+				continue;
+			}
+
+			final int distance = rows[length * rowLength + patternLength];
+			if (distance <= bound) {
+				if (distance == 0) {
+					return offset;
+				}
+				// Later entries come after this one in sorted order, so they have to be strictly closer
+				closest = offset;
+				bound = distance - 1;
+			}
+			pathLength = length;
+			offset += 1 + length;
+		}
+		return closest;
+	}
+
+	// Fills in columns low to high of row r of the distance matrix from row r - 1, marking the columns on either side
+	// of them as out of the band, and returns the smallest value in the band
+	private static int computeRow(int[] rows, int r, int rowLength, int low, int high, char c, char[] pattern) {
+		final int current = r * rowLength;
+		final int previous = current - rowLength;
+		int left = low == 1 ? r : KeyboardDistance.OUT_OF_BAND;
+		rows[current + low - 1] = left;
+		if (high + 1 < rowLength) {
+			rows[current + high + 1] = KeyboardDistance.OUT_OF_BAND;
+		}
+
+		int rowMinimum = left;
+		for (int i = low; i <= high; i++) {
+			int cost = rows[previous + i - 1] + (pattern[i - 1] == c ? 0 : 1);
+			cost = Math.min(cost, Math.min(rows[previous + i], left) + 1);
+			rows[current + i] = cost;
+			left = cost;
+			if (cost < rowMinimum) {
+				rowMinimum = cost;
+			}
+		}
+		return rowMinimum;
+	}
+
+	// Finds the first entry that doesn't start with the first prefixLength characters of the search path
+	private int skipPrefix(SearchState state, int prefixLength) {
+		final char[] path = state.path;
+		final char last = path[prefixLength - 1];
+		path[prefixLength - 1] = (char)(last + 1);
+		final int offset = lowerBound(state.pathView, 0, prefixLength);
+		path[prefixLength - 1] = last;
+		return offset;
+	}
+
+	// Returns the offset of the first entry that is not less than the key, or mDataEnd if there is none
+	private int lowerBound(CharSequence key, int start, int end) {
+		// Find the first block that starts after the key, the key belongs in the block before it
+		int low = 0;
+		int high = mBlockCount;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (compare(getBlockOffset(middle), key, start, end) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		if (low == 0) {
+			return mDataStart;
+		}
+
+		int offset = getBlockOffset(low - 1);
+		final int blockEnd = low < mBlockCount ? getBlockOffset(low) : mDataEnd;
+		while (offset < blockEnd && compare(offset, key, start, end) < 0) {
+			offset += 1 + (mBuffer.get(offset) & 0xFF);
+		}
+		return offset;
+	}
+
+	private int getBlockOffset(int block) {
+		return mBuffer.getInt(HEADER_SIZE + 4 * block);
+	}
+
+	private int compare(int offset, CharSequence key, int start, int end) {
+		final int length = mBuffer.get(offset) & 0xFF;
+		final int keyLength = end - start;
+		final int commonLength = Math.min(length, keyLength);
+		for (int i = 0; i < commonLength; i++) {
+			final int difference = mBuffer.get(offset + 1 + i) - key.charAt(start + i);
+			if (difference != 0) {
+				return difference;
+			}
+		}
+		return length - keyLength;
+	}
+
+	private String readEntry(int offset) {
+		final int length = mBuffer.get(offset) & 0xFF;
+		char[] characters = new char[length];
+		for (int i = 0; i < length; i++) {
+			characters[i] = (char)mBuffer.get(offset + 1 + i);
+		}
+		return new String(characters);
+	}
+
+	// Scratch space for findClosest, reused between calls on the same thread
+	private static final class SearchState {
+		char[] pattern = new char[0];
+		char[] path = new char[0];
+		CharBuffer pathView = CharBuffer.wrap(path);
+		int[] rows = new int[0];
+		int[] rowMinimums = new int[1];
+
+		void prepare(CharSequence domain, int start, int end, int maxEntryLength, boolean keyboard) {
+			final int patternLength = end - start;
+			if (pattern.length < patternLength) {
+				pattern = new char[patternLength];
+			}
+			for (int i = 0; i < patternLength; i++) {
+				pattern[i] = domain.charAt(start + i);
+			}
+
+			if (path.length < maxEntryLength) {
+				path = new char[maxEntryLength];
+				pathView = CharBuffer.wrap(path);
+				rowMinimums = new int[maxEntryLength + 1];
+			}
+
+			final int rowsSize = (maxEntryLength + 1) * (patternLength + 1);
+			if (rows.length < rowsSize) {
+				rows = new int[rowsSize];
+			}
+			if (keyboard) {
+				KeyboardDistance.initializeRow(rows, 0, patternLength + 1);
+			} else {
+				for (int i = 0; i <= patternLength; i++) {
+					rows[i] = i;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * ParsedEmailAddress
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+/**
+ * A view of an email address that records where its username, domain and TLD are instead of copying them out. The
+ * username is everything before the first '@', and the TLD is everything after the last '.' that follows it. The
+ * domain of an international address is always in its ASCII form. Instances are reusable and are filled in by
+ * {@link EmailSyntaxScanner}.
+ */
+final class ParsedEmailAddress {
+
+	CharSequence address;
+	int atIndex;
+	int periodIndex;
+	boolean international;
+
+	void set(CharSequence address, int atIndex, int periodIndex) {
+		this.address = address;
+		this.atIndex = atIndex;
+		this.periodIndex = periodIndex > atIndex ? periodIndex : -1;
+		international = false;
+	}
+
+	/**
+	 * Replaces the address with its international original, whose domain has been converted to ASCII, so that the
+	 * positions stay the same
+	 */
+	void setInternational(CharSequence address) {
+		this.address = address;
+		international = true;
+	}
+
+	void clear() {
+		address = null;
+		atIndex = -1;
+		periodIndex = -1;
+		international = false;
+	}
+
+	int getUsernameEnd() {
+		return atIndex >= 0 ? atIndex : 0;
+	}
+
+	int getDomainStart() {
+		return atIndex + 1;
+	}
+
+	int getDomainEnd() {
+		return periodIndex >= 0 ? periodIndex : getDomainStart();
+	}
+
+	int getTLDStart() {
+		return periodIndex >= 0 ? periodIndex + 1 : address.length();
+	}
+
+	int getTLDEnd() {
+		return address.length();
+	}
+}
@@ -0,0 +1,385 @@
+/*
+ * PublicSuffixRegistry
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The registered TLDs and public suffixes (such as "com" or "co.uk") that email domains can end in. Rules are stored in
+ * a trie of reversed domain names that is flattened into arrays, so that finding the suffix of a domain takes one step
+ * per character and involves no allocation. Lookups ignore case.
+ * <p>
+ * A registry can be loaded from the IANA TLD list (http://data.iana.org/TLD/tlds-alpha-by-domain.txt) and the Public
+ * Suffix List (https://publicsuffix.org/list/public_suffix_list.dat) using {@link #parse(Reader, Reader)}, and then
+ * used for typo suggestions with {@link EmailValidator#setPublicSuffixRegistry(PublicSuffixRegistry)}.
+ */
+public final class PublicSuffixRegistry {
+
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+
+	private static final byte REGISTERED_TLD = 1;
+	private static final byte RULE = 1 << 1;
+	private static final byte WILDCARD_RULE = 1 << 2;
+	private static final byte EXCEPTION_RULE = 1 << 3;
+
+	// Node n's outgoing edges are mEdgeCharacters[mFirstEdge[n]] to mEdgeCharacters[mFirstEdge[n + 1] - 1], sorted
+	private final int[] mFirstEdge;
+	private final char[] mEdgeCharacters;
+	private final int[] mEdgeTargets;
+	private final byte[] mFlags;
+
+	/**
+	 * Loads a registry from the IANA TLD list and the Public Suffix List. Either list may be left out.
+	 * @param registeredTLDs The IANA list of TLDs, one per line, with comments starting with '#'
+	 * @param publicSuffixList The Public Suffix List, one rule per line, with comments starting with "//"
+	 * @return A new registry
+	 * @throws IOException If either list could not be read
+	 */
+	public static PublicSuffixRegistry parse(Reader registeredTLDs, Reader publicSuffixList) throws IOException {
+		return new PublicSuffixRegistry(registeredTLDs != null ? readRegisteredTLDs(registeredTLDs) : new String[0],
+				publicSuffixList != null ? readRules(publicSuffixList) : new String[0]);
+	}
+
+	/**
+	 * @param registeredTLDs The IANA list of TLDs, one per line, with comments starting with '#'
+	 * @return The TLDs in the list
+	 */
+	static String[] readRegisteredTLDs(Reader registeredTLDs) throws IOException {
+		List<String> tlds = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(registeredTLDs);
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.length() > 0 && !line.startsWith("#")) {
+				tlds.add(line);
+			}
+		}
+		return tlds.toArray(new String[tlds.size()]);
+	}
+
+	/**
+	 * @param publicSuffixList The Public Suffix List, one rule per line, with comments starting with "//"
+	 * @return The rules in the list
+	 */
+	static String[] readRules(Reader publicSuffixList) throws IOException {
+		List<String> rules = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(publicSuffixList);
+		String line;
+		while ((line = reader.readLine()) != null) {
+			// Rules end at the first whitespace
+			line = line.trim();
+			int whitespaceIndex = indexOfWhitespace(line);
+			if (whitespaceIndex >= 0) {
+				line = line.substring(0, whitespaceIndex);
+			}
+			if (line.length() > 0 && !line.startsWith("//")) {
+				rules.add(line);
+			}
+		}
+		return rules.toArray(new String[rules.size()]);
+	}
+
+	/**
+	 * @param registeredTLDs TLDs such as "com"
+	 * @param rules Public Suffix List rules such as "co.uk", "*.ck" or "!www.ck"
+	 */
+	PublicSuffixRegistry(String[] registeredTLDs, String[] rules) {
+		BuilderNode root = new BuilderNode();
+		int nodeCount = 1;
+
+		for (String tld : registeredTLDs) {
+			nodeCount += root.add(tld, REGISTERED_TLD);
+		}
+		for (String rule : rules) {
+			if (rule.startsWith("!")) {
+				nodeCount += root.add(rule.substring(1), EXCEPTION_RULE);
+			} else if (rule.startsWith("*.")) {
+				nodeCount += root.add(rule.substring(2), WILDCARD_RULE);
+			} else {
+				// A rule without dots is a TLD in its own right
+				nodeCount += root.add(rule, rule.indexOf('.') < 0 ? (byte)(RULE | REGISTERED_TLD) : RULE);
+			}
+		}
+
+		// Flatten the tree breadth first, so that every node's children get consecutive indexes
+		mFirstEdge = new int[nodeCount + 1];
+		mEdgeCharacters = new char[nodeCount - 1];
+		mEdgeTargets = new int[nodeCount - 1];
+		mFlags = new byte[nodeCount];
+
+		List<BuilderNode> queue = new ArrayList<BuilderNode>(nodeCount);
+		queue.add(root);
+		int edgeCount = 0;
+		for (int node = 0; node < queue.size(); node++) {
+			BuilderNode builderNode = queue.get(node);
+			mFlags[node] = builderNode.flags;
+			mFirstEdge[node] = edgeCount;
+			for (Map.Entry<Character, BuilderNode> child : builderNode.children.entrySet()) {
+				mEdgeCharacters[edgeCount] = child.getKey();
+				mEdgeTargets[edgeCount] = queue.size();
+				queue.add(child.getValue());
+				edgeCount++;
+			}
+		}
+		mFirstEdge[nodeCount] = edgeCount;
+	}
+
+	private PublicSuffixRegistry(int[] firstEdge, char[] edgeCharacters, int[] edgeTargets, byte[] flags) {
+		mFirstEdge = firstEdge;
+		mEdgeCharacters = edgeCharacters;
+		mEdgeTargets = edgeTargets;
+		mFlags = flags;
+	}
+
+	/**
+	 * Rebuilds a registry from the output of {@link #pack()}, without having to build the trie
+	 */
+	static PublicSuffixRegistry unpack(String firstEdges, String edgeCharacters, String edgeTargets, String flags) {
+		byte[] flagBytes = new byte[flags.length()];
+		for (int i = 0; i < flagBytes.length; i++) {
+			flagBytes[i] = (byte)flags.charAt(i);
+		}
+		return new PublicSuffixRegistry(unpackInts(firstEdges), edgeCharacters.toCharArray(), unpackInts(edgeTargets), flagBytes);
+	}
+
+	/**
+	 * Packs the flattened trie into strings with one character per array element, so that it can be generated into a
+	 * class as constants. The strings are the first edge of each node, the edge characters, the edge targets and the
+	 * node flags.
+	 * @throws IllegalStateException If the trie has too many nodes for a node index to fit into a character
+	 */
+	String[] pack() {
+		StringBuilder flags = new StringBuilder(mFlags.length);
+		for (byte flag : mFlags) {
+			flags.append((char)flag);
+		}
+		return new String[] { packInts(mFirstEdge), new String(mEdgeCharacters), packInts(mEdgeTargets), flags.toString() };
+	}
+
+	/**
+	 * @param tld A TLD, such as "com"
+	 * @return True if the TLD is registered
+	 */
+	public boolean isRegisteredTLD(String tld) {
+		return isRegisteredTLD(tld, 0, tld.length(), true);
+	}
+
+	/**
+	 * Finds the public suffix of a domain using the longest matching rule, or the last label of the domain if no rule
+	 * matches. For example, the public suffix of "yahoo.co.uk" is "co.uk".
+	 * @param domain A domain, such as "yahoo.co.uk"
+	 * @return The public suffix of the domain
+	 */
+	public String getPublicSuffix(String domain) {
+		return domain.substring(getPublicSuffixStart(domain, 0, domain.length()));
+	}
+
+	/**
+	 * @param ignoreCase False to only match TLDs that are already lower case, as they are stored
+	 */
+	boolean isRegisteredTLD(CharSequence domain, int start, int end, boolean ignoreCase) {
+		int node = ROOT;
+		for (int i = end - 1; i >= start && node != NONE; i--) {
+			final char c = domain.charAt(i);
+			node = getChild(node, ignoreCase ? toLowerCase(c) : c);
+		}
+		return node != NONE && node != ROOT && (mFlags[node] & REGISTERED_TLD) != 0;
+	}
+
+	/**
+	 * Counts the registered TLDs within maxDistance of a label by keyboard distance, stopping once limit are found
+	 * @param maxDistance The largest distance to count, in half edits
+	 */
+	int countRegisteredTLDsWithin(CharSequence domain, int start, int end, int maxDistance, int limit) {
+		// The trie holds TLDs in reverse, and reversing both strings doesn't change their distance
+		final int length = end - start;
+		char[] pattern = new char[length];
+		for (int i = 0; i < length; i++) {
+			pattern[i] = domain.charAt(end - 1 - i);
+		}
+
+		// Rows deeper than this are too long to be within maxDistance
+		final int maxDepth = length + maxDistance / KeyboardDistance.EDIT_COST;
+		int[] rows = new int[(maxDepth + 1) * (length + 1)];
+		KeyboardDistance.initializeRow(rows, 0, length + 1);
+		return countRegisteredTLDsWithin(ROOT, 0, (char)0, 0, pattern, rows, maxDepth, maxDistance, limit, 0);
+	}
+
+	// Walks the TLDs below node, whose distance matrix row is at the given depth, adding those within maxDistance
+	private int countRegisteredTLDsWithin(int node, int depth, char previousChar, int previousMinimum, char[] pattern, int[] rows, int maxDepth, int maxDistance, int limit, int count) {
+		final int rowLength = pattern.length + 1;
+		final int current = (depth + 1) * rowLength;
+		for (int edge = mFirstEdge[node]; edge < mFirstEdge[node + 1] && count < limit && depth < maxDepth; edge++) {
+			final char c = mEdgeCharacters[edge];
+			if (c == '.') {
+				continue;
+			}
+
+			final int rowMinimum = KeyboardDistance.computeRow(rows, current, current - rowLength, depth > 0 ? current - 2 * rowLength : -1, rowLength, depth + 1, c, previousChar, pattern);
+			final int child = mEdgeTargets[edge];
+			if ((mFlags[child] & REGISTERED_TLD) != 0 && rows[current + pattern.length] <= maxDistance) {
+				count++;
+			}
+
+			// A later row can only improve on the row before it by reaching back past it with a swap
+			if (rowMinimum <= maxDistance || previousMinimum <= maxDistance) {
+				count = countRegisteredTLDsWithin(child, depth + 1, c, rowMinimum, pattern, rows, maxDepth, maxDistance, limit, count);
+			}
+		}
+		return count;
+	}
+
+	boolean isPublicSuffix(CharSequence domain, int start, int end) {
+		return getPublicSuffixStart(domain, start, end) == start;
+	}
+
+	/**
+	 * @return The index at which the public suffix of the domain in the given range starts
+	 */
+	int getPublicSuffixStart(CharSequence domain, int start, int end) {
+		int suffixStart = end;
+		int labelEnd = end;
+		int node = ROOT;
+
+		while (true) {
+			// Walk the next label to the left
+			int i = labelEnd - 1;
+			while (i >= start && domain.charAt(i) != '.' && node != NONE) {
+				node = getChild(node, toLowerCase(domain.charAt(i)));
+				i--;
+			}
+			if (node == NONE) {
+				break;
+			}
+
+			final int labelStart = i + 1;
+			final byte flags = mFlags[node];
+			if ((flags & EXCEPTION_RULE) != 0) {
+				// An exception rule's suffix is the rule without its leftmost label, and overrides everything else
+				return labelEnd < end ? labelEnd + 1 : labelStart;
+			}
+			if ((flags & RULE) != 0) {
+				suffixStart = Math.min(suffixStart, labelStart);
+			}
+			if ((flags & WILDCARD_RULE) != 0 && labelStart > start) {
+				int wildcardStart = labelStart - 2;
+				while (wildcardStart >= start && domain.charAt(wildcardStart) != '.') {
+					wildcardStart--;
+				}
+				suffixStart = Math.min(suffixStart, wildcardStart + 1);
+			}
+
+			if (i < start) {
+				break;
+			}
+			node = getChild(node, '.');
+			labelEnd = i;
+		}
+
+		if (suffixStart == end) {
+			// No rule matched, so the suffix is the last label
+			while (suffixStart > start && domain.charAt(suffixStart - 1) != '.') {
+				suffixStart--;
+			}
+		}
+		return suffixStart;
+	}
+
+	private int getChild(int node, char c) {
+		int low = mFirstEdge[node];
+		int high = mFirstEdge[node + 1] - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final char edge = mEdgeCharacters[middle];
+			if (edge < c) {
+				low = middle + 1;
+			} else if (edge > c) {
+				high = middle - 1;
+			} else {
+				return mEdgeTargets[middle];
+			}
+		}
+		return NONE;
+	}
+
+	private static char toLowerCase(char c) {
+		if (c >= 'A' && c <= 'Z') {
+			return (char)(c + 'a' - 'A');
+		}
+		return c >= 128 ? Character.toLowerCase(c) : c;
+	}
+
+	private static String packInts(int[] values) {
+		StringBuilder packed = new StringBuilder(values.length);
+		for (int value : values) {
+			if (value < 0 || value > Character.MAX_VALUE) {
+				throw new IllegalStateException("Too many nodes to pack: " + value);
+			}
+			packed.append((char)value);
+		}
+		return packed.toString();
+	}
+
+	private static int[] unpackInts(String packed) {
+		int[] values = new int[packed.length()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = packed.charAt(i);
+		}
+		return values;
+	}
+
+	private static int indexOfWhitespace(String string) {
+		for (int i = 0; i < string.length(); i++) {
+			if (Character.isWhitespace(string.charAt(i))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static class BuilderNode {
+		final TreeMap<Character, BuilderNode> children = new TreeMap<Character, BuilderNode>();
+		byte flags;
+
+		// Adds a domain in reverse, returning the number of nodes that had to be created
+		int add(String domain, byte flag) {
+			int created = 0;
+			BuilderNode node = this;
+			for (int i = domain.length() - 1; i >= 0; i--) {
+				char c = Character.toLowerCase(domain.charAt(i));
+				BuilderNode child = node.children.get(c);
+				if (child == null) {
+					child = new BuilderNode();
+					node.children.put(c, child);
+					created++;
+				}
+				node = child;
+			}
+			node.flags |= flag;
+			return created;
+		}
+	}
+}
@@ -0,0 +1,338 @@
+/*
+ * Punycode
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+/**
+ * Converts internationalized domain names to and from the ASCII form that DNS, the TLD lists and the domain lists use,
+ * with the Punycode encoding of RFC 3492. A label with any non-ASCII characters becomes "xn--" followed by its
+ * encoding, after being lower cased and composed (see {@link CanonicalComposition}). Labels may contain letters, digits
+ * and marks, as well as hyphens that aren't at either end, and may not start with a mark. Labels can be separated by
+ * ideographic and full width periods as well as ASCII ones.
+ * <p>
+ * java.net.IDN isn't available on every Android version the library supports, so the conversion is done here instead.
+ * Conversions are cached by domain, since most non-ASCII traffic comes from a few domains.
+ */
+final class Punycode {
+
+	static final String ACE_PREFIX = "xn--";
+
+	private static final int BASE = 36;
+	private static final int T_MIN = 1;
+	private static final int T_MAX = 26;
+	private static final int SKEW = 38;
+	private static final int DAMP = 700;
+	private static final int INITIAL_BIAS = 72;
+	private static final int INITIAL_N = 128;
+
+	private static final int CACHE_SIZE = 1024;
+
+	// Maps non-ASCII domains to their ASCII form, or to null if they can't be converted
+	private static final SuggestionCache ASCII_DOMAINS = new SuggestionCache(CACHE_SIZE);
+
+	private Punycode() { }
+
+	/**
+	 * @return The ASCII form of the domain in the given range, or null if one of its labels can't be converted
+	 */
+	static String toAscii(CharSequence domain, int start, int end) {
+		if (isAscii(domain, start, end)) {
+			return domain.subSequence(start, end).toString();
+		}
+
+		SuggestionCache.Entry cachedDomain = ASCII_DOMAINS.get(domain, start, end);
+		if (cachedDomain != null) {
+			return cachedDomain.suggestion;
+		}
+
+		String asciiDomain = convertToAscii(domain, start, end);
+		ASCII_DOMAINS.put(domain, start, end, asciiDomain);
+		return asciiDomain;
+	}
+
+	/**
+	 * @return The domain with each "xn--" label decoded, or the domain as it is if none of its labels can be decoded
+	 */
+	static String toUnicode(String domain) {
+		if (domain.indexOf(ACE_PREFIX) < 0) {
+			return domain;
+		}
+
+		StringBuilder unicodeDomain = new StringBuilder(domain.length());
+		boolean decoded = false;
+		int labelStart = 0;
+		while (labelStart <= domain.length()) {
+			int labelEnd = domain.indexOf('.', labelStart);
+			if (labelEnd < 0) {
+				labelEnd = domain.length();
+			}
+			if (labelStart > 0) {
+				unicodeDomain.append('.');
+			}
+
+			final int length = unicodeDomain.length();
+			if (domain.regionMatches(true, labelStart, ACE_PREFIX, 0, ACE_PREFIX.length())
+					&& decode(domain, labelStart + ACE_PREFIX.length(), labelEnd, unicodeDomain)) {
+				decoded = true;
+			} else {
+				unicodeDomain.setLength(length);
+				unicodeDomain.append(domain, labelStart, labelEnd);
+			}
+			labelStart = labelEnd + 1;
+		}
+		return decoded ? unicodeDomain.toString() : domain;
+	}
+
+	/**
+	 * @return True if the label in the given range could be part of an internationalized domain name
+	 */
+	private static boolean isValidLabel(CharSequence domain, int start, int end) {
+		if (start < end && (domain.charAt(start) == '-' || domain.charAt(end - 1) == '-')) {
+			return false;
+		}
+		for (int i = start; i < end; ) {
+			final int codePoint = Character.codePointAt(domain, i);
+			if (codePoint < 128) {
+				if (!isAsciiLetterOrDigit(codePoint) && codePoint != '-') {
+					return false;
+				}
+			} else if (Character.isLetterOrDigit(codePoint)) {
+				// Valid anywhere in a label
+			} else if (!isMark(codePoint) || i == start) {
+				return false;
+			}
+			i += Character.charCount(codePoint);
+		}
+		return true;
+	}
+
+	static boolean isLabelSeparator(char c) {
+		return c == '.' || c == '\u3002' || c == '\uff0e' || c == '\uff61';
+	}
+
+	static boolean isMark(int codePoint) {
+		final int type = Character.getType(codePoint);
+		return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK || type == Character.ENCLOSING_MARK;
+	}
+
+	private static String convertToAscii(CharSequence domain, int start, int end) {
+		StringBuilder asciiDomain = new StringBuilder(end - start + ACE_PREFIX.length());
+		int labelStart = start;
+		while (labelStart <= end) {
+			int labelEnd = labelStart;
+			while (labelEnd < end && !isLabelSeparator(domain.charAt(labelEnd))) {
+				labelEnd++;
+			}
+			if (labelStart > start) {
+				asciiDomain.append('.');
+			}
+
+			if (isAscii(domain, labelStart, labelEnd)) {
+				asciiDomain.append(domain, labelStart, labelEnd);
+			} else if (!isValidLabel(domain, labelStart, labelEnd) || !encode(domain, labelStart, labelEnd, asciiDomain.append(ACE_PREFIX))) {
+				return null;
+			}
+			labelStart = labelEnd + 1;
+		}
+		return asciiDomain.toString();
+	}
+
+	// Appends the Punycode encoding of the lower cased and composed label, returning false if it is too long to encode
+	private static boolean encode(CharSequence label, int start, int end, StringBuilder output) {
+		int[] codePoints = new int[end - start];
+		int length = 0;
+		for (int i = start; i < end; ) {
+			final int codePoint = Character.codePointAt(label, i);
+			codePoints[length++] = Character.toLowerCase(codePoint);
+			i += Character.charCount(codePoint);
+		}
+		codePoints = CanonicalComposition.compose(codePoints, length);
+		length = codePoints.length;
+
+		// Basic code points are copied as they are, followed by a delimiter if there were any
+		int handled = 0;
+		for (int i = 0; i < length; i++) {
+			if (codePoints[i] < INITIAL_N) {
+				output.append((char)codePoints[i]);
+				handled++;
+			}
+		}
+		final int basicCount = handled;
+		if (basicCount > 0) {
+			output.append('-');
+		}
+
+		int n = INITIAL_N;
+		int delta = 0;
+		int bias = INITIAL_BIAS;
+		while (handled < length) {
+			// Insert the smallest code point that hasn't been handled yet, everywhere it occurs
+			int next = Integer.MAX_VALUE;
+			for (int i = 0; i < length; i++) {
+				if (codePoints[i] >= n && codePoints[i] < next) {
+					next = codePoints[i];
+				}
+			}
+			if (next - n > (Integer.MAX_VALUE - delta) / (handled + 1)) {
+				return false;
+			}
+			delta += (next - n) * (handled + 1);
+			n = next;
+
+			for (int i = 0; i < length; i++) {
+				final int codePoint = codePoints[i];
+				if (codePoint < n && ++delta == Integer.MAX_VALUE) {
+					return false;
+				} else if (codePoint == n) {
+					// Write delta as a generalized variable-length integer
+					int q = delta;
+					for (int k = BASE; ; k += BASE) {
+						final int t = getThreshold(k, bias);
+						if (q < t) {
+							break;
+						}
+						output.append(toDigit(t + (q - t) % (BASE - t)));
+						q = (q - t) / (BASE - t);
+					}
+					output.append(toDigit(q));
+					bias = adapt(delta, handled + 1, handled == basicCount);
+					delta = 0;
+					handled++;
+				}
+			}
+			delta++;
+			n++;
+		}
+		return true;
+	}
+
+	// Appends the decoded label, returning false if it isn't valid Punycode
+	private static boolean decode(String label, int start, int end, StringBuilder output) {
+		int delimiterIndex = label.lastIndexOf('-', end - 1);
+		if (delimiterIndex < start) {
+			delimiterIndex = start - 1;
+		}
+
+		int[] codePoints = new int[end - start];
+		int length = 0;
+		for (int i = start; i < delimiterIndex; i++) {
+			final char c = label.charAt(i);
+			if (c >= INITIAL_N) {
+				return false;
+			}
+			codePoints[length++] = c;
+		}
+
+		int n = INITIAL_N;
+		int i = 0;
+		int bias = INITIAL_BIAS;
+		int position = delimiterIndex + 1;
+		while (position < end) {
+			final int previousI = i;
+			int weight = 1;
+			for (int k = BASE; ; k += BASE) {
+				if (position >= end) {
+					return false;
+				}
+				final int digit = fromDigit(label.charAt(position++));
+				if (digit < 0 || digit > (Integer.MAX_VALUE - i) / weight) {
+					return false;
+				}
+				i += digit * weight;
+				final int t = getThreshold(k, bias);
+				if (digit < t) {
+					break;
+				} else if (weight > Integer.MAX_VALUE / (BASE - t)) {
+					return false;
+				}
+				weight *= BASE - t;
+			}
+
+			bias = adapt(i - previousI, length + 1, previousI == 0);
+			if (i / (length + 1) > Integer.MAX_VALUE - n) {
+				return false;
+			}
+			n += i / (length + 1);
+			i %= length + 1;
+			if (n > Character.MAX_CODE_POINT || (n >= Character.MIN_SURROGATE && n <= Character.MAX_SURROGATE)) {
+				return false;
+			}
+
+			System.arraycopy(codePoints, i, codePoints, i + 1, length - i);
+			codePoints[i++] = n;
+			length++;
+		}
+
+		if (length == 0) {
+			return false;
+		}
+		for (int j = 0; j < length; j++) {
+			output.appendCodePoint(codePoints[j]);
+		}
+		return true;
+	}
+
+	private static int getThreshold(int k, int bias) {
+		if (k <= bias) {
+			return T_MIN;
+		} else if (k >= bias + T_MAX) {
+			return T_MAX;
+		} else {
+			return k - bias;
+		}
+	}
+
+	private static int adapt(int delta, int pointCount, boolean first) {
+		delta = first ? delta / DAMP : delta / 2;
+		delta += delta / pointCount;
+		int k = 0;
+		while (delta > ((BASE - T_MIN) * T_MAX) / 2) {
+			delta /= BASE - T_MIN;
+			k += BASE;
+		}
+		return k + (BASE - T_MIN + 1) * delta / (delta + SKEW);
+	}
+
+	private static char toDigit(int digit) {
+		return (char)(digit < 26 ? 'a' + digit : '0' + digit - 26);
+	}
+
+	private static int fromDigit(char c) {
+		if (c >= 'a' && c <= 'z') {
+			return c - 'a';
+		} else if (c >= 'A' && c <= 'Z') {
+			return c - 'A';
+		} else if (c >= '0' && c <= '9') {
+			return c - '0' + 26;
+		} else {
+			return -1;
+		}
+	}
+
+	private static boolean isAscii(CharSequence string, int start, int end) {
+		int allCharacters = 0;
+		for (int i = start; i < end; i++) {
+			allCharacters |= string.charAt(i);
+		}
+		return allCharacters < 128;
+	}
+
+	private static boolean isAsciiLetterOrDigit(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+	}
+}
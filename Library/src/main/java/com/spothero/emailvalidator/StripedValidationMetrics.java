@@ -0,0 +1,140 @@
+/*
+ * StripedValidationMetrics
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+import com.spothero.emailvalidator.EmailValidationResult.ValidationError;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link ValidationMetrics} that keeps running totals, cheap enough to leave on in production. Every counter is spread
+ * over several stripes, each on its own cache lines, and a thread only ever adds to the stripe picked by its ID, so
+ * threads validating at the same time rarely touch the same memory. Reading a total adds up its stripes, and may miss
+ * updates that are in progress.
+ */
+public final class StripedValidationMetrics implements ValidationMetrics {
+
+	private static final int STRIPES = 8;
+	private static final int PHASE_COUNT = Phase.values().length;
+	private static final int ERROR_COUNT = ValidationError.values().length;
+
+	// Counters within a stripe: calls and total time for each phase, then addresses per outcome, then suggestion events
+	private static final int PHASE_CALLS = 0;
+	private static final int PHASE_NANOSECONDS = PHASE_CALLS + PHASE_COUNT;
+	private static final int FAILED = PHASE_NANOSECONDS + PHASE_COUNT;
+	private static final int PASSED = FAILED + ERROR_COUNT;
+	private static final int SUGGESTIONS_SHOWN = PASSED + 1;
+	private static final int SUGGESTIONS_ACCEPTED = SUGGESTIONS_SHOWN + 1;
+	private static final int SUGGESTIONS_DISMISSED = SUGGESTIONS_ACCEPTED + 1;
+	private static final int COUNTERS = SUGGESTIONS_DISMISSED + 1;
+
+	// Rounded up to whole 128 byte blocks, so that no two stripes share a cache line or an adjacent-line prefetch
+	private static final int STRIDE = (COUNTERS + 15) & ~15;
+
+	private final AtomicLongArray mCounters = new AtomicLongArray(STRIPES * STRIDE);
+
+	@Override
+	public void onPhaseCompleted(Phase phase, long nanoseconds) {
+		final int stripe = getStripe();
+		mCounters.incrementAndGet(stripe + PHASE_CALLS + phase.ordinal());
+		mCounters.addAndGet(stripe + PHASE_NANOSECONDS + phase.ordinal(), nanoseconds);
+	}
+
+	@Override
+	public void onValidated(ValidationError validationError) {
+		mCounters.incrementAndGet(getStripe() + (validationError != null ? FAILED + validationError.ordinal() : PASSED));
+	}
+
+	@Override
+	public void onSuggestionShown() {
+		mCounters.incrementAndGet(getStripe() + SUGGESTIONS_SHOWN);
+	}
+
+	@Override
+	public void onSuggestionAccepted() {
+		mCounters.incrementAndGet(getStripe() + SUGGESTIONS_ACCEPTED);
+	}
+
+	@Override
+	public void onSuggestionDismissed() {
+		mCounters.incrementAndGet(getStripe() + SUGGESTIONS_DISMISSED);
+	}
+
+	/**
+	 * @return The number of times the phase has completed
+	 */
+	public long getPhaseCount(Phase phase) {
+		return sum(PHASE_CALLS + phase.ordinal());
+	}
+
+	/**
+	 * @return The total time spent in the phase, in nanoseconds
+	 */
+	public long getPhaseNanoseconds(Phase phase) {
+		return sum(PHASE_NANOSECONDS + phase.ordinal());
+	}
+
+	/**
+	 * @return The number of addresses that failed validation with the given error
+	 */
+	public long getFailedCount(ValidationError validationError) {
+		return sum(FAILED + validationError.ordinal());
+	}
+
+	/**
+	 * @return The number of addresses that passed validation
+	 */
+	public long getPassedCount() {
+		return sum(PASSED);
+	}
+
+	/**
+	 * @return The number of typo suggestions shown to users
+	 */
+	public long getSuggestionShownCount() {
+		return sum(SUGGESTIONS_SHOWN);
+	}
+
+	/**
+	 * @return The number of typo suggestions users accepted
+	 */
+	public long getSuggestionAcceptedCount() {
+		return sum(SUGGESTIONS_ACCEPTED);
+	}
+
+	/**
+	 * @return The number of typo suggestions users dismissed
+	 */
+	public long getSuggestionDismissedCount() {
+		return sum(SUGGESTIONS_DISMISSED);
+	}
+
+	// The index of the current thread's stripe
+	private static int getStripe() {
+		return ((int)Thread.currentThread().getId() & (STRIPES - 1)) * STRIDE;
+	}
+
+	private long sum(int counter) {
+		long sum = 0;
+		for (int stripe = 0; stripe < STRIPES; stripe++) {
+			sum += mCounters.get(stripe * STRIDE + counter);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * SuggestionCache
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded cache of typo suggestions keyed on the domain part of an address, since far fewer distinct domains than
+ * addresses are seen. Lookups take a range of the address, so hits don't allocate.
+ * <p>
+ * The cache is set associative: a domain can only be stored in one of the four slots of the set its hash picks. When a
+ * set is full, the entry that was hit the least is evicted and the hit counts of the others are halved, so domains that
+ * were popular once but aren't anymore are eventually evicted too. Reads and writes don't lock. Two threads adding to
+ * the same set at once may overwrite each other's entries, which only costs a later miss.
+ */
+final class SuggestionCache {
+
+	private static final int WAYS = 4;
+	private static final int MAX_FREQUENCY = 255;
+
+	// Hit and miss counts are spread over several stripes, each on its own cache line, so that threads don't contend
+	private static final int COUNTER_STRIPES = 8;
+	private static final int COUNTER_STRIDE = 16;
+	private static final int HITS = 0;
+	private static final int MISSES = 8;
+
+	private final AtomicReferenceArray<Entry> mEntries;
+	private final int mSetMask;
+	private final AtomicLongArray mCounters = new AtomicLongArray(COUNTER_STRIPES * COUNTER_STRIDE);
+
+	/**
+	 * @param capacity The most domains to cache, rounded up to a power of two
+	 */
+	SuggestionCache(int capacity) {
+		int setCount = 1;
+		while (setCount * WAYS < capacity) {
+			setCount <<= 1;
+		}
+		mEntries = new AtomicReferenceArray<Entry>(setCount * WAYS);
+		mSetMask = setCount - 1;
+	}
+
+	/**
+	 * @return The cached entry for the domain, or null if it isn't cached
+	 */
+	Entry get(CharSequence domain, int start, int end) {
+		final int hash = hash(domain, start, end);
+		final int base = getSet(hash);
+		for (int way = 0; way < WAYS; way++) {
+			final Entry entry = mEntries.get(base + way);
+			if (entry != null && entry.hash == hash && CharRangeSet.regionEquals(entry.domain, domain, start, end)) {
+				if (entry.frequency < MAX_FREQUENCY) {
+					entry.frequency++;
+				}
+				count(HITS);
+				return entry;
+			}
+		}
+		count(MISSES);
+		return null;
+	}
+
+	/**
+	 * @param suggestion The suggested domain, or null if there is no suggestion for the domain
+	 */
+	void put(CharSequence domain, int start, int end, String suggestion) {
+		final int hash = hash(domain, start, end);
+		final int base = getSet(hash);
+
+		int victim = -1;
+		int victimFrequency = Integer.MAX_VALUE;
+		for (int way = 0; way < WAYS; way++) {
+			final Entry entry = mEntries.get(base + way);
+			if (entry == null || (entry.hash == hash && CharRangeSet.regionEquals(entry.domain, domain, start, end))) {
+				victim = way;
+				break;
+			} else if (entry.frequency < victimFrequency) {
+				victim = way;
+				victimFrequency = entry.frequency;
+			}
+		}
+
+		if (victimFrequency != Integer.MAX_VALUE) {
+			// The set is full, so age the entries that survive
+			for (int way = 0; way < WAYS; way++) {
+				final Entry entry = mEntries.get(base + way);
+				if (way != victim && entry != null) {
+					entry.frequency >>= 1;
+				}
+			}
+		}
+
+		mEntries.set(base + victim, new Entry(domain.subSequence(start, end).toString(), hash, suggestion));
+	}
+
+	long getHitCount() {
+		return sum(HITS);
+	}
+
+	long getMissCount() {
+		return sum(MISSES);
+	}
+
+	private int getSet(int hash) {
+		return ((hash ^ (hash >>> 16)) & mSetMask) * WAYS;
+	}
+
+	private void count(int counter) {
+		final int stripe = (int)Thread.currentThread().getId() & (COUNTER_STRIPES - 1);
+		mCounters.incrementAndGet(stripe * COUNTER_STRIDE + counter);
+	}
+
+	private long sum(int counter) {
+		long sum = 0;
+		for (int stripe = 0; stripe < COUNTER_STRIPES; stripe++) {
+			sum += mCounters.get(stripe * COUNTER_STRIDE + counter);
+		}
+		return sum;
+	}
+
+	private static int hash(CharSequence charSequence, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + charSequence.charAt(i);
+		}
+		return hash;
+	}
+
+	static final class Entry {
+		final String domain;
+		final int hash;
+		/** The suggested domain, or null if there is no suggestion */
+		final String suggestion;
+		// Only approximate, since updates from different threads can be lost
+		int frequency;
+
+		Entry(String domain, int hash, String suggestion) {
+			this.domain = domain;
+			this.hash = hash;
+			this.suggestion = suggestion;
+		}
+	}
+}
@@ -0,0 +1,285 @@
+/*
+ * TLDTypoMap
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Corrects typos in TLDs to the closest of a list of TLDs, with ties going to the TLD that comes first in the list.
+ * Every string within one edit of a TLD is corrected ahead of time and kept in an open-addressing hash map, so that the
+ * usual typos are corrected with a single lookup instead of measuring the distance to every TLD. The edits are
+ * deleting, inserting or replacing one character, or swapping two neighbouring ones.
+ * <p>
+ * Any string made of {@link #ALPHABET} that isn't one of those typos is at least two edits from every TLD by
+ * Levenshtein distance, and at least two half edits by {@link KeyboardDistance}, since every edit of either kind costs
+ * at least one. Typos that shouldn't be corrected are left out of the map, so when the tolerance allows less than that,
+ * a lookup that misses means there is no correction at all. Only the remaining strings are measured against every TLD.
+ * <p>
+ * The map of the default TLDs is generated at build time, see {@link #pack()}.
+ */
+final class TLDTypoMap {
+
+	// The smallest distance, in either metric's units, that a string made of ALPHABET can be from the TLDs when it isn't
+	// one of the typos
+	private static final int MIN_UNMAPPED_DISTANCE = 2;
+
+	// The characters that TLDs are made of, once lower cased
+	private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789-";
+
+	// Separates the typos of a packed map, which never contain it
+	private static final char PACKED_SEPARATOR = ' ';
+
+	private final String[] mTLDs;
+	private final float mTolerance;
+	private final DistanceMetric mMetric;
+	private final String[] mTypos;
+	private final String[] mCorrections;
+	private final int mMask;
+	private final int mSize;
+
+	private TLDTypoMap(String[] tlds, float tolerance, DistanceMetric metric, String[] typos, String[] corrections, int size) {
+		mTLDs = tlds;
+		mTolerance = tolerance;
+		mMetric = metric;
+		mTypos = typos;
+		mCorrections = corrections;
+		mMask = typos.length - 1;
+		mSize = size;
+	}
+
+	/**
+	 * Corrects every typo of the TLDs the same way {@link #getCorrection} would by measuring it against each TLD
+	 * @param tlds The TLDs to correct typos to, in order of preference
+	 * @param tolerance The largest fraction of a typo's length that may be edits
+	 * @param metric How edits are counted
+	 */
+	static TLDTypoMap build(String[] tlds, float tolerance, DistanceMetric metric) {
+		final String[] typos = getTypos(tlds);
+		final String[] corrections = new String[typos.length];
+		int count = 0;
+		for (int i = 0; i < typos.length; i++) {
+			final int length = typos[i].length();
+			corrections[i] = findClosest(typos[i], 0, length, tlds, metric.getMaxDistance(length, tolerance), metric);
+			if (corrections[i] != null) {
+				count++;
+			}
+		}
+
+		int capacity = 4;
+		while (capacity < count * 2) {
+			capacity <<= 1;
+		}
+
+		final String[] table = new String[capacity];
+		final String[] tableCorrections = new String[capacity];
+		for (int i = 0; i < typos.length; i++) {
+			if (corrections[i] != null) {
+				// Typos are unique, so each one gets the first free slot
+				int index = spread(typos[i].hashCode()) & (capacity - 1);
+				while (table[index] != null) {
+					index = (index + 1) & (capacity - 1);
+				}
+				table[index] = typos[i];
+				tableCorrections[index] = corrections[i];
+			}
+		}
+		return new TLDTypoMap(tlds, tolerance, metric, table, tableCorrections, count);
+	}
+
+	/**
+	 * Rebuilds a map from the output of {@link #pack()}, without having to correct any typos
+	 */
+	static TLDTypoMap unpack(String typos, String corrections, String[] tlds, float tolerance, DistanceMetric metric) {
+		final int capacity = corrections.length();
+		final String[] table = new String[capacity];
+		final String[] tableCorrections = new String[capacity];
+		int size = 0;
+		int typoStart = 0;
+		for (int i = 0; i < capacity; i++) {
+			int typoEnd = typos.indexOf(PACKED_SEPARATOR, typoStart);
+			if (typoEnd < 0) {
+				typoEnd = typos.length();
+			}
+			final char correction = corrections.charAt(i);
+			if (correction != 0) {
+				table[i] = typos.substring(typoStart, typoEnd);
+				tableCorrections[i] = tlds[correction - 1];
+				size++;
+			}
+			typoStart = typoEnd + 1;
+		}
+		return new TLDTypoMap(tlds, tolerance, metric, table, tableCorrections, size);
+	}
+
+	/**
+	 * Packs the hash table into two strings, so that it can be generated into a class as constants. The first holds
+	 * every slot's typo, separated by spaces, and empty for empty slots, and the second holds one character per slot,
+	 * which is one more than the index of the slot's correction in the TLDs, or 0 for empty slots.
+	 */
+	String[] pack() {
+		StringBuilder typos = new StringBuilder();
+		StringBuilder corrections = new StringBuilder(mTypos.length);
+		for (int i = 0; i < mTypos.length; i++) {
+			if (i > 0) {
+				typos.append(PACKED_SEPARATOR);
+			}
+			if (mTypos[i] != null) {
+				typos.append(mTypos[i]);
+				corrections.append((char)(Arrays.asList(mTLDs).indexOf(mCorrections[i]) + 1));
+			} else {
+				corrections.append((char)0);
+			}
+		}
+		return new String[] { typos.toString(), corrections.toString() };
+	}
+
+	/**
+	 * @return True if this map corrects typos to the same TLDs, with the same tolerance and metric
+	 */
+	boolean isFor(String[] tlds, float tolerance, DistanceMetric metric) {
+		return Float.compare(mTolerance, tolerance) == 0 && mMetric == metric && Arrays.equals(mTLDs, tlds);
+	}
+
+	int size() {
+		return mSize;
+	}
+
+	/**
+	 * @return The TLD that the range should be corrected to, or null if it shouldn't be corrected
+	 */
+	String getCorrection(CharSequence charSequence, int start, int end) {
+		final String correction = get(charSequence, start, end);
+		if (correction != null) {
+			return correction;
+		}
+
+		final int maxDistance = mMetric.getMaxDistance(end - start, mTolerance);
+		if (maxDistance < MIN_UNMAPPED_DISTANCE && isInAlphabet(charSequence, start, end)) {
+			return null;
+		}
+		return findClosest(charSequence, start, end, mTLDs, maxDistance, mMetric);
+	}
+
+	// Returns the correction of a typo in the map, or null if the range isn't in the map
+	private String get(CharSequence charSequence, int start, int end) {
+		// Same hash as String.hashCode(), so that the table can be built from the strings' cached hash codes
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + charSequence.charAt(i);
+		}
+
+		int index = spread(hash) & mMask;
+		String typo;
+		while ((typo = mTypos[index]) != null) {
+			if (CharRangeSet.regionEquals(typo, charSequence, start, end)) {
+				return mCorrections[index];
+			}
+			index = (index + 1) & mMask;
+		}
+		return null;
+	}
+
+	// Every string that is one edit from one of the TLDs, using characters from ALPHABET, and the TLDs themselves, each
+	// once and in a fixed order
+	private static String[] getTypos(String[] tlds) {
+		Set<String> typos = new LinkedHashSet<String>();
+		StringBuilder builder = new StringBuilder();
+		for (String tld : tlds) {
+			final int length = tld.length();
+			typos.add(tld);
+
+			for (int i = 0; i < length; i++) {
+				builder.setLength(0);
+				typos.add(builder.append(tld, 0, i).append(tld, i + 1, length).toString());
+
+				if (i + 1 < length) {
+					builder.setLength(0);
+					typos.add(builder.append(tld, 0, i).append(tld.charAt(i + 1)).append(tld.charAt(i)).append(tld, i + 2, length).toString());
+				}
+			}
+
+			for (int i = 0; i < ALPHABET.length(); i++) {
+				final char c = ALPHABET.charAt(i);
+				for (int j = 0; j <= length; j++) {
+					builder.setLength(0);
+					typos.add(builder.append(tld, 0, j).append(c).append(tld, j, length).toString());
+					if (j < length) {
+						builder.setLength(0);
+						typos.add(builder.append(tld, 0, j).append(c).append(tld, j + 1, length).toString());
+					}
+				}
+			}
+		}
+		return typos.toArray(new String[typos.size()]);
+	}
+
+	// Finds the closest TLD within maxListDistance, with ties going to the TLD that comes first
+	private static String findClosest(CharSequence string, int start, int end, String[] tlds, int maxListDistance, DistanceMetric metric) {
+		final int length = end - start;
+		String closestString = null;
+		int closestDistance = maxListDistance + 1;
+
+		final boolean keyboard = metric == DistanceMetric.KEYBOARD;
+		final int editCost = keyboard ? KeyboardDistance.EDIT_COST : 1;
+		LevenshteinDistance levenshteinDistance = null;
+		KeyboardDistance keyboardDistance = null;
+		if (keyboard) {
+			keyboardDistance = KeyboardDistance.get();
+			keyboardDistance.setPattern(string, start, end);
+		} else {
+			levenshteinDistance = LevenshteinDistance.get();
+			levenshteinDistance.setPattern(string, start, end);
+		}
+
+		for (String listString : tlds) {
+			// A candidate has to beat the closest string so far, and can't do better than the difference in length
+			final int maxDistance = closestDistance - 1;
+			if (maxDistance < 0) {
+				break;
+			} else if (Math.abs(listString.length() - length) * editCost > maxDistance) {
+				continue;
+			}
+
+			int distance = keyboard ? keyboardDistance.getDistance(listString, maxDistance) : levenshteinDistance.getDistance(listString, maxDistance);
+			if (distance <= maxDistance) {
+				closestDistance = distance;
+				closestString = listString;
+			}
+		}
+
+		return closestString;
+	}
+
+	// True if every character in the range is in ALPHABET
+	private static boolean isInAlphabet(CharSequence charSequence, int start, int end) {
+		for (int i = start; i < end; i++) {
+			final char c = charSequence.charAt(i);
+			if (!((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * ValidationMetrics
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.spothero.emailvalidator;
+
+import com.spothero.emailvalidator.EmailValidationResult.ValidationError;
+
+/**
+ * Receives timings and counts from an {@link EmailValidator}, and suggestion events from
+ * {@link EmailValidationEditText}, to show where validation time goes and how often suggestions are taken. Set one
+ * with {@link EmailValidatorConfiguration#metrics}.
+ * <p>
+ * Methods are called on whichever thread is validating, so implementations must be thread safe and should return
+ * quickly. {@link StripedValidationMetrics} counts everything without contention between threads.
+ */
+public interface ValidationMetrics {
+
+	/**
+	 * Reports nothing. Validators with these metrics don't read the clock at all.
+	 */
+	ValidationMetrics NONE = new ValidationMetrics() {
+		@Override
+		public void onPhaseCompleted(Phase phase, long nanoseconds) { }
+
+		@Override
+		public void onValidated(ValidationError validationError) { }
+
+		@Override
+		public void onSuggestionShown() { }
+
+		@Override
+		public void onSuggestionAccepted() { }
+
+		@Override
+		public void onSuggestionDismissed() { }
+	};
+
+	/**
+	 * The timed steps of validating an email address
+	 */
+	enum Phase {
+		/**
+		 * Checking the syntax of the whole address
+		 */
+		SYNTAX_CHECK,
+
+		/**
+		 * Checking whether the domain is blocked, for validators with a {@link BlockedDomainList}
+		 */
+		BLOCKED_DOMAIN_CHECK,
+
+		/**
+		 * Looking up whether the TLD is registered
+		 */
+		TLD_LOOKUP,
+
+		/**
+		 * Finding the closest common TLD or public suffix to an unregistered TLD
+		 */
+		TLD_MATCH,
+
+		/**
+		 * Finding the closest common domain to a domain that isn't one
+		 */
+		DOMAIN_MATCH
+	}
+
+	/**
+	 * Called each time a phase finishes. Phases that aren't needed, such as matching domains whose suggestion was
+	 * cached, aren't reported.
+	 * @param phase The phase
+	 * @param nanoseconds How long it took
+	 */
+	void onPhaseCompleted(Phase phase, long nanoseconds);
+
+	/**
+	 * Called once for every address that is validated
+	 * @param validationError The reason the address failed validation, or null if it passed
+	 */
+	void onValidated(ValidationError validationError);
+
+	/**
+	 * Called when a typo suggestion is shown to the user
+	 */
+	void onSuggestionShown();
+
+	/**
+	 * Called when the user accepts a typo suggestion that was shown
+	 */
+	void onSuggestionAccepted();
+
+	/**
+	 * Called when the user dismisses a typo suggestion that was shown without accepting it
+	 */
+	void onSuggestionDismissed();
+}
@@ -0,0 +1,157 @@
+/*
+ * JsonWriter
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator.server;
+
+import com.spothero.emailvalidator.EmailValidationResult;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes JSON straight to a writer, keeping track of where commas go. Objects can be nested up to
+ * {@link #MAX_DEPTH} deep.
+ */
+final class JsonWriter {
+
+	static final int MAX_DEPTH = 16;
+
+	private final Writer mWriter;
+	// Whether each open object already has a member, so that the next one needs a comma before it
+	private final boolean[] mHasMembers = new boolean[MAX_DEPTH];
+	private int mDepth;
+
+	JsonWriter(Writer writer) {
+		mWriter = writer;
+	}
+
+	JsonWriter beginObject() throws IOException {
+		if (mDepth == MAX_DEPTH) {
+			throw new IllegalStateException("Objects nested more than " + MAX_DEPTH + " deep");
+		}
+		mWriter.write('{');
+		mHasMembers[mDepth++] = false;
+		return this;
+	}
+
+	JsonWriter beginObject(String name) throws IOException {
+		return name(name).beginObject();
+	}
+
+	JsonWriter endObject() throws IOException {
+		mWriter.write('}');
+		mDepth--;
+		return this;
+	}
+
+	JsonWriter member(String name, String value) throws IOException {
+		name(name);
+		if (value != null) {
+			writeString(value);
+		} else {
+			mWriter.write("null");
+		}
+		return this;
+	}
+
+	JsonWriter member(String name, long value) throws IOException {
+		name(name);
+		mWriter.write(Long.toString(value));
+		return this;
+	}
+
+	JsonWriter member(String name, boolean value) throws IOException {
+		name(name);
+		mWriter.write(value ? "true" : "false");
+		return this;
+	}
+
+	/**
+	 * Writes a result as an object with "address", "valid", "error", "suggestion" and "dictionaryVersion" members
+	 */
+	JsonWriter result(String emailAddress, EmailValidationResult result) throws IOException {
+		return beginObject()
+				.member("address", emailAddress)
+				.member("valid", result.passedValidation)
+				.member("error", result.validationError != null ? result.validationError.name() : null)
+				.member("suggestion", result.autocorrectSuggestion)
+				.member("dictionaryVersion", result.dictionaryVersion)
+				.endObject();
+	}
+
+	/**
+	 * Ends a line, for streams of one object per line
+	 */
+	JsonWriter newLine() throws IOException {
+		mWriter.write('\n');
+		return this;
+	}
+
+	void flush() throws IOException {
+		mWriter.flush();
+	}
+
+	private JsonWriter name(String name) throws IOException {
+		if (mDepth == 0) {
+			throw new IllegalStateException("Members have to be inside an object");
+		}
+		if (mHasMembers[mDepth - 1]) {
+			mWriter.write(',');
+		}
+		mHasMembers[mDepth - 1] = true;
+		writeString(name);
+		mWriter.write(':');
+		return this;
+	}
+
+	private void writeString(String string) throws IOException {
+		mWriter.write('"');
+		final int length = string.length();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			final char c = string.charAt(i);
+			if (c != '"' && c != '\\' && c >= 0x20 && c != '\u2028' && c != '\u2029') {
+				continue;
+			}
+
+			mWriter.write(string, start, i - start);
+			start = i + 1;
+			if (c == '"' || c == '\\') {
+				mWriter.write('\\');
+				mWriter.write(c);
+			} else if (c == '\n') {
+				mWriter.write("\\n");
+			} else if (c == '\r') {
+				mWriter.write("\\r");
+			} else if (c == '\t') {
+				mWriter.write("\\t");
+			} else {
+				// Other control characters, and the separators that end lines in JavaScript
+				final String hex = Integer.toHexString(c);
+				mWriter.write("\\u");
+				for (int j = hex.length(); j < 4; j++) {
+					mWriter.write('0');
+				}
+				mWriter.write(hex);
+			}
+		}
+		mWriter.write(string, start, length - start);
+		mWriter.write('"');
+	}
+}
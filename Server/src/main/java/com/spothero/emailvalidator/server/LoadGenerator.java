@@ -0,0 +1,276 @@
+/*
+ * LoadGenerator
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator.server;
+
+import com.spothero.emailvalidator.EmailValidator;
+import com.spothero.emailvalidator.EmailValidatorConfiguration;
+import com.spothero.emailvalidator.StripedValidationMetrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the latency of a {@link ValidationServer}'s single address endpoint under concurrent load. Each client
+ * thread sends requests back to back over a kept alive connection, cycling through a mix of valid, mistyped and invalid
+ * addresses, and the time of every request is kept so that percentiles are exact. A warmup round runs first and isn't
+ * counted.
+ * <p>
+ * Without a URL, a server is started in this JVM on a free local port, so the numbers include both ends but no network.
+ * <p>
+ * Usage: {@code LoadGenerator [--concurrency n] [--requests n] [--warmup n] [--platform-threads] [url]}
+ */
+public final class LoadGenerator {
+
+	static final String[] ADDRESSES = new String[] {
+			"test@gmail.com",
+			"test@gamil.con",
+			"first.last@yahoo.co.uk",
+			"someone@hotmial.com",
+			"not an address",
+			"j\u00f6rg@gmail.con",
+			"test@spothero.com",
+			"customer+tag@outlook.cmo",
+			"test@b\u00fccher.de",
+			"user@company.example"
+	};
+
+	private static final int READ_BUFFER_SIZE = 4096;
+
+	private final URL mBaseUrl;
+	private final int mConcurrency;
+
+	/**
+	 * @param baseUrl The server to load, such as "http://localhost:8080/"
+	 * @param concurrency The number of requests to keep in flight at once
+	 */
+	public LoadGenerator(URL baseUrl, int concurrency) {
+		if (concurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be at least 1: " + concurrency);
+		}
+		mBaseUrl = baseUrl;
+		mConcurrency = concurrency;
+	}
+
+	public static void main(String[] args) {
+		int concurrency = 64;
+		int requestCount = 100000;
+		int warmupCount = 20000;
+		boolean platformThreads = false;
+		String url = null;
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("--concurrency") && i + 1 < args.length) {
+					concurrency = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--requests") && i + 1 < args.length) {
+					requestCount = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--warmup") && i + 1 < args.length) {
+					warmupCount = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--platform-threads")) {
+					platformThreads = true;
+				} else if (args[i].startsWith("--") || url != null) {
+					throw new IllegalArgumentException("Unknown option " + args[i]);
+				} else {
+					url = args[i];
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: LoadGenerator [--concurrency n] [--requests n] [--warmup n] [--platform-threads] [url]");
+			System.exit(2);
+			return;
+		}
+
+		ValidationServer server = null;
+		try {
+			if (url == null) {
+				EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+				configuration.metrics = new StripedValidationMetrics();
+				server = new ValidationServer(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), new EmailValidator(configuration),
+						Runtime.getRuntime().availableProcessors() * 4, platformThreads);
+				server.start();
+				url = "http://127.0.0.1:" + server.getPort() + "/";
+				System.err.println("Started a server with " + (server.isUsingVirtualThreads() ? "virtual threads" : "platform threads"));
+			}
+
+			LoadGenerator loadGenerator = new LoadGenerator(new URL(url), concurrency);
+			loadGenerator.run(warmupCount);
+			final long startTime = System.nanoTime();
+			Report report = loadGenerator.run(requestCount);
+			report.print(System.out, System.nanoTime() - startTime);
+			if (report.failedCount > 0) {
+				System.exit(1);
+			}
+		} catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(1);
+		} catch (InterruptedException e) {
+			System.exit(130);
+		} finally {
+			if (server != null) {
+				server.stop();
+			}
+		}
+	}
+
+	/**
+	 * Sends requests from every client thread until the given number have been sent
+	 * @param requestCount The total number of requests to send
+	 * @return The latencies of the requests that succeeded, and the number that didn't
+	 * @throws IOException If the URL of a request could not be built
+	 * @throws InterruptedException If the calling thread was interrupted
+	 */
+	public Report run(final int requestCount) throws IOException, InterruptedException {
+		final URL[] urls = new URL[ADDRESSES.length];
+		for (int i = 0; i < urls.length; i++) {
+			urls[i] = new URL(mBaseUrl, "validate?address=" + URLEncoder.encode(ADDRESSES[i], "UTF-8"));
+		}
+
+		final AtomicLong nextRequest = new AtomicLong();
+		final AtomicLong failedCount = new AtomicLong();
+		final long[][] latencies = new long[mConcurrency][];
+		final int[] latencyCounts = new int[mConcurrency];
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<Thread>(mConcurrency);
+
+		for (int i = 0; i < mConcurrency; i++) {
+			final int client = i;
+			latencies[client] = new long[requestCount / mConcurrency + 1];
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					final byte[] buffer = new byte[READ_BUFFER_SIZE];
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+
+					long request;
+					while ((request = nextRequest.getAndIncrement()) < requestCount) {
+						final long startTime = System.nanoTime();
+						if (!send(urls[(int)(request % urls.length)], buffer)) {
+							failedCount.incrementAndGet();
+							continue;
+						}
+						final long latency = System.nanoTime() - startTime;
+						if (latencyCounts[client] == latencies[client].length) {
+							latencies[client] = Arrays.copyOf(latencies[client], latencies[client].length * 2);
+						}
+						latencies[client][latencyCounts[client]++] = latency;
+					}
+				}
+			}, "LoadGenerator-client-" + i));
+		}
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		int total = 0;
+		for (int count : latencyCounts) {
+			total += count;
+		}
+		final long[] allLatencies = new long[total];
+		int offset = 0;
+		for (int i = 0; i < mConcurrency; i++) {
+			System.arraycopy(latencies[i], 0, allLatencies, offset, latencyCounts[i]);
+			offset += latencyCounts[i];
+		}
+		Arrays.sort(allLatencies);
+		return new Report(allLatencies, failedCount.get());
+	}
+
+	// Sends a request and reads the whole response, so that the connection can be kept alive
+	private static boolean send(URL url, byte[] buffer) {
+		HttpURLConnection connection = null;
+		try {
+			connection = (HttpURLConnection)url.openConnection();
+			final int status = connection.getResponseCode();
+			InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+			if (input != null) {
+				while (input.read(buffer) >= 0) { }
+				input.close();
+			}
+			return status == 200;
+		} catch (IOException e) {
+			if (connection != null) {
+				connection.disconnect();
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * The outcome of a run
+	 */
+	public static final class Report {
+
+		/**
+		 * The latency of every request that succeeded, in nanoseconds, sorted
+		 */
+		public final long[] latencies;
+
+		/**
+		 * The number of requests that failed or didn't answer with a 200
+		 */
+		public final long failedCount;
+
+		Report(long[] latencies, long failedCount) {
+			this.latencies = latencies;
+			this.failedCount = failedCount;
+		}
+
+		/**
+		 * @param percentile The percentile, such as 99 for the 99th
+		 * @return The smallest latency that at least that percent of requests took no longer than, in nanoseconds,
+		 * or 0 if no requests succeeded
+		 */
+		public long getPercentile(double percentile) {
+			if (latencies.length == 0) {
+				return 0;
+			}
+			final int rank = (int)Math.ceil(percentile / 100 * latencies.length);
+			return latencies[Math.min(Math.max(rank, 1), latencies.length) - 1];
+		}
+
+		void print(PrintStream output, long elapsedNanoseconds) {
+			output.printf("requests=%d failed=%d throughput=%.0f/s%n", latencies.length, failedCount,
+					latencies.length * 1e9 / Math.max(elapsedNanoseconds, 1));
+			output.printf("p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms%n", getPercentile(50) / 1e6, getPercentile(90) / 1e6,
+					getPercentile(99) / 1e6, getPercentile(99.9) / 1e6, getPercentile(100) / 1e6);
+		}
+	}
+}
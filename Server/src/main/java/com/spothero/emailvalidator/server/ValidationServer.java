@@ -0,0 +1,508 @@
+/*
+ * ValidationServer
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator.server;
+
+import com.spothero.emailvalidator.BlockedDomainList;
+import com.spothero.emailvalidator.EmailValidationResult;
+import com.spothero.emailvalidator.EmailValidator;
+import com.spothero.emailvalidator.EmailValidatorConfiguration;
+import com.spothero.emailvalidator.StripedValidationMetrics;
+import com.spothero.emailvalidator.ValidationMetrics;
+import com.spothero.emailvalidator.ValidationMetrics.Phase;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small HTTP service around an {@link EmailValidator}, built on the JDK's own HTTP server so that it needs nothing
+ * else at runtime. Endpoints:
+ * <ul>
+ * <li>{@code GET /validate?address=...} validates one address, answering with a JSON object with "address", "valid",
+ * "error", "suggestion" and "dictionaryVersion" members.</li>
+ * <li>{@code POST /validate/batch} validates a UTF-8 body of addresses, one per line, answering with one of those
+ * objects per line as newline delimited JSON. Results are written as the addresses are read, and flushed whenever the
+ * body has nothing more ready to read, so results stream back while the client is still sending. A line longer than
+ * {@link #MAX_LINE_LENGTH} characters ends the batch with an object whose "error" is "LINE_TOO_LONG".</li>
+ * <li>{@code GET /metrics} answers with request counts and times for each endpoint, along with the validator's
+ * counts and phase times if it reports to {@link StripedValidationMetrics}.</li>
+ * </ul>
+ * Requests run on virtual threads when the JVM has them (Java 21 and later), which are found by reflection so that the
+ * server still builds and runs on older JVMs, where it falls back to a fixed pool of platform threads. Every virtual
+ * thread starts with empty thread locals, so single address requests pay for the validator's per thread scratch
+ * buffers, about a kilobyte, each time, while a batch reuses them for every address in it.
+ * <p>
+ * Usage: {@code ValidationServer [--port n] [--threads n] [--platform-threads] [--blocked-domains file]}
+ */
+public final class ValidationServer {
+
+	public static final int DEFAULT_PORT = 8080;
+
+	static final int MAX_LINE_LENGTH = 64 * 1024;
+
+	static final String LINE_TOO_LONG = "LINE_TOO_LONG";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String JSON = "application/json; charset=utf-8";
+	private static final String NEWLINE_DELIMITED_JSON = "application/x-ndjson; charset=utf-8";
+
+	static {
+		// The JDK's server writes a response's headers and body separately, so with Nagle's algorithm on, every small
+		// response waits for the client's delayed ACK, about 40ms. The setting is read once, when the first server in
+		// the JVM is created.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final EmailValidator mValidator;
+	private final HttpServer mServer;
+	private final ExecutorService mExecutor;
+	private final boolean mVirtualThreads;
+
+	private final Endpoint mValidateEndpoint = new Endpoint("validate");
+	private final Endpoint mBatchEndpoint = new Endpoint("batch");
+	private final Endpoint mMetricsEndpoint = new Endpoint("metrics");
+
+	/**
+	 * Creates a server, which doesn't accept connections until it is started
+	 * @param address The address to listen on, with a port of 0 to pick any free port
+	 * @param validator The validator to validate addresses with
+	 * @param threadCount The number of platform threads to handle requests on when virtual threads aren't used
+	 * @param platformThreads True to use platform threads even when virtual threads are available
+	 * @throws IOException If the server could not listen on the address
+	 */
+	public ValidationServer(InetSocketAddress address, EmailValidator validator, int threadCount, boolean platformThreads) throws IOException {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("Thread count must be at least 1: " + threadCount);
+		}
+		mValidator = validator;
+
+		ExecutorService executor = platformThreads ? null : newVirtualThreadExecutor();
+		mVirtualThreads = executor != null;
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(threadCount, new RequestThreadFactory());
+		}
+		mExecutor = executor;
+
+		mServer = HttpServer.create(address, 0);
+		mServer.setExecutor(mExecutor);
+		mServer.createContext("/validate", new ValidateHandler());
+		mServer.createContext("/validate/batch", new BatchHandler());
+		mServer.createContext("/metrics", new MetricsHandler());
+	}
+
+	public static void main(String[] args) {
+		int port = DEFAULT_PORT;
+		int threadCount = Runtime.getRuntime().availableProcessors() * 4;
+		boolean platformThreads = false;
+		String blockedDomainsPath = null;
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("--port") && i + 1 < args.length) {
+					port = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--threads") && i + 1 < args.length) {
+					threadCount = Integer.parseInt(args[++i]);
+				} else if (args[i].equals("--platform-threads")) {
+					platformThreads = true;
+				} else if (args[i].equals("--blocked-domains") && i + 1 < args.length) {
+					blockedDomainsPath = args[++i];
+				} else {
+					throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: ValidationServer [--port n] [--threads n] [--platform-threads] [--blocked-domains file]");
+			System.exit(2);
+			return;
+		}
+
+		try {
+			EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+			configuration.metrics = new StripedValidationMetrics();
+			if (blockedDomainsPath != null) {
+				Reader blockedDomains = new InputStreamReader(new FileInputStream(blockedDomainsPath), "UTF-8");
+				try {
+					configuration.blockedDomains = BlockedDomainList.parse(blockedDomains);
+				} finally {
+					blockedDomains.close();
+				}
+			}
+
+			final ValidationServer server = new ValidationServer(new InetSocketAddress(port), new EmailValidator(configuration), threadCount, platformThreads);
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					server.stop();
+				}
+			}));
+			server.start();
+			System.err.println("Listening on port " + server.getPort() + " with " + (server.isUsingVirtualThreads() ? "virtual threads" : threadCount + " platform threads"));
+		} catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	public void start() {
+		mServer.start();
+	}
+
+	/**
+	 * Stops accepting connections, and gives requests in progress up to a second to finish
+	 */
+	public void stop() {
+		mServer.stop(1);
+		mExecutor.shutdown();
+	}
+
+	/**
+	 * @return The port the server listens on, which is useful when it was created with a port of 0
+	 */
+	public int getPort() {
+		return mServer.getAddress().getPort();
+	}
+
+	/**
+	 * @return True if requests run on virtual threads, false if they run on a pool of platform threads
+	 */
+	public boolean isUsingVirtualThreads() {
+		return mVirtualThreads;
+	}
+
+	// Executors.newVirtualThreadPerTaskExecutor(), or null if this JVM doesn't have it
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService)method.invoke(null);
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (IllegalAccessException e) {
+			return null;
+		} catch (InvocationTargetException e) {
+			// Virtual threads were a preview feature before Java 21, and refuse to start unless previews are enabled
+			return null;
+		}
+	}
+
+	// The value of a query parameter, or null if it isn't there
+	static String getQueryParameter(String rawQuery, String name) throws UnsupportedEncodingException {
+		if (rawQuery == null) {
+			return null;
+		}
+		int start = 0;
+		while (start <= rawQuery.length()) {
+			int end = rawQuery.indexOf('&', start);
+			if (end < 0) {
+				end = rawQuery.length();
+			}
+			final int equalsIndex = rawQuery.indexOf('=', start);
+			final int nameEnd = equalsIndex >= 0 && equalsIndex < end ? equalsIndex : end;
+			if (URLDecoder.decode(rawQuery.substring(start, nameEnd), "UTF-8").equals(name)) {
+				return nameEnd < end ? URLDecoder.decode(rawQuery.substring(nameEnd + 1, end), "UTF-8") : "";
+			}
+			start = end + 1;
+		}
+		return null;
+	}
+
+	private static void sendJson(HttpExchange exchange, int status, StringWriter json) throws IOException {
+		final byte[] body = json.toString().getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", JSON);
+		exchange.sendResponseHeaders(status, body.length);
+		OutputStream output = exchange.getResponseBody();
+		output.write(body);
+		output.close();
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		StringWriter json = new StringWriter();
+		new JsonWriter(json).beginObject().member("error", message).endObject();
+		sendJson(exchange, status, json);
+	}
+
+	// Only lets through requests with the given method, answering anything else with 405
+	private static boolean checkMethod(HttpExchange exchange, String method) throws IOException {
+		if (exchange.getRequestMethod().equalsIgnoreCase(method)) {
+			return true;
+		}
+		exchange.getResponseHeaders().set("Allow", method);
+		sendError(exchange, 405, "Use " + method);
+		return false;
+	}
+
+	// Reads a line into the builder, without its line ending. Returns false at the end of the input, or if the line
+	// is too long, which leaves more than MAX_LINE_LENGTH characters in the builder.
+	private static boolean readLine(Reader reader, StringBuilder line) throws IOException {
+		line.setLength(0);
+		int c;
+		while ((c = reader.read()) >= 0) {
+			if (c == '\n') {
+				return true;
+			} else if (line.length() == MAX_LINE_LENGTH) {
+				line.append((char)c);
+				return false;
+			}
+			line.append((char)c);
+		}
+		return line.length() > 0;
+	}
+
+	private void writeMetrics(JsonWriter json) throws IOException {
+		json.beginObject();
+		json.member("threads", mVirtualThreads ? "virtual" : "platform");
+		json.member("dictionaryVersion", mValidator.getDictionaryVersion());
+
+		json.beginObject("endpoints");
+		mValidateEndpoint.write(json);
+		mBatchEndpoint.write(json);
+		mMetricsEndpoint.write(json);
+		json.endObject();
+
+		json.beginObject("suggestionCache")
+				.member("hits", mValidator.getSuggestionCacheHitCount())
+				.member("misses", mValidator.getSuggestionCacheMissCount())
+				.endObject();
+
+		final ValidationMetrics metrics = mValidator.getMetrics();
+		if (metrics instanceof StripedValidationMetrics) {
+			final StripedValidationMetrics stripedMetrics = (StripedValidationMetrics)metrics;
+			json.beginObject("addresses");
+			json.member("passed", stripedMetrics.getPassedCount());
+			json.beginObject("failed");
+			for (EmailValidationResult.ValidationError validationError : EmailValidationResult.ValidationError.values()) {
+				json.member(validationError.name(), stripedMetrics.getFailedCount(validationError));
+			}
+			json.endObject();
+			json.endObject();
+
+			json.beginObject("phases");
+			for (Phase phase : Phase.values()) {
+				json.beginObject(phase.name())
+						.member("count", stripedMetrics.getPhaseCount(phase))
+						.member("nanoseconds", stripedMetrics.getPhaseNanoseconds(phase))
+						.endObject();
+			}
+			json.endObject();
+		}
+		json.endObject();
+	}
+
+	/**
+	 * Running totals for one endpoint
+	 */
+	private static final class Endpoint {
+		private final String mName;
+		private final AtomicLong mRequests = new AtomicLong();
+		private final AtomicLong mFailedRequests = new AtomicLong();
+		private final AtomicLong mAddresses = new AtomicLong();
+		private final AtomicLong mNanoseconds = new AtomicLong();
+
+		Endpoint(String name) {
+			mName = name;
+		}
+
+		void onRequestCompleted(HttpExchange exchange, long addresses, long nanoseconds) {
+			mRequests.incrementAndGet();
+			if (exchange.getResponseCode() != 200) {
+				mFailedRequests.incrementAndGet();
+			}
+			if (addresses > 0) {
+				mAddresses.addAndGet(addresses);
+			}
+			mNanoseconds.addAndGet(nanoseconds);
+		}
+
+		void write(JsonWriter json) throws IOException {
+			json.beginObject(mName)
+					.member("requests", mRequests.get())
+					.member("failedRequests", mFailedRequests.get())
+					.member("addresses", mAddresses.get())
+					.member("nanoseconds", mNanoseconds.get())
+					.endObject();
+		}
+	}
+
+	/**
+	 * Handles a request, answering with a 500 if it fails before a response was started, and records it against its
+	 * endpoint
+	 */
+	private abstract static class EndpointHandler implements HttpHandler {
+		private final Endpoint mEndpoint;
+
+		EndpointHandler(Endpoint endpoint) {
+			mEndpoint = endpoint;
+		}
+
+		@Override
+		public final void handle(HttpExchange exchange) throws IOException {
+			final long startTime = System.nanoTime();
+			long addresses = 0;
+			try {
+				addresses = handleRequest(exchange);
+			} catch (RuntimeException e) {
+				if (exchange.getResponseCode() == -1) {
+					sendError(exchange, 500, e.toString());
+				}
+				throw e;
+			} finally {
+				exchange.close();
+				mEndpoint.onRequestCompleted(exchange, addresses, System.nanoTime() - startTime);
+			}
+		}
+
+		/**
+		 * @return The number of addresses validated
+		 */
+		abstract long handleRequest(HttpExchange exchange) throws IOException;
+	}
+
+	private final class ValidateHandler extends EndpointHandler {
+		ValidateHandler() {
+			super(mValidateEndpoint);
+		}
+
+		@Override
+		long handleRequest(HttpExchange exchange) throws IOException {
+			if (!exchange.getRequestURI().getPath().equals("/validate")) {
+				sendError(exchange, 404, "Not found");
+				return 0;
+			} else if (!checkMethod(exchange, "GET")) {
+				return 0;
+			}
+
+			final String emailAddress;
+			try {
+				emailAddress = getQueryParameter(exchange.getRequestURI().getRawQuery(), "address");
+			} catch (IllegalArgumentException e) {
+				sendError(exchange, 400, "Malformed query");
+				return 0;
+			}
+			if (emailAddress == null) {
+				sendError(exchange, 400, "Missing address parameter");
+				return 0;
+			}
+
+			StringWriter json = new StringWriter();
+			new JsonWriter(json).result(emailAddress, mValidator.validate(emailAddress));
+			sendJson(exchange, 200, json);
+			return 1;
+		}
+	}
+
+	private final class BatchHandler extends EndpointHandler {
+		BatchHandler() {
+			super(mBatchEndpoint);
+		}
+
+		@Override
+		long handleRequest(HttpExchange exchange) throws IOException {
+			if (!exchange.getRequestURI().getPath().equals("/validate/batch")) {
+				sendError(exchange, 404, "Not found");
+				return 0;
+			} else if (!checkMethod(exchange, "POST")) {
+				return 0;
+			}
+
+			exchange.getResponseHeaders().set("Content-Type", NEWLINE_DELIMITED_JSON);
+			// A length of 0 streams the response in chunks
+			exchange.sendResponseHeaders(200, 0);
+
+			final Reader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), "UTF-8"), BUFFER_SIZE);
+			final JsonWriter json = new JsonWriter(new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), "UTF-8"), BUFFER_SIZE));
+			final EmailValidationResult result = new EmailValidationResult();
+			final StringBuilder line = new StringBuilder();
+			long lineCount = 0;
+
+			while (true) {
+				// Send what is ready before waiting on the client for more
+				if (!reader.ready()) {
+					json.flush();
+				}
+				if (!readLine(reader, line)) {
+					if (line.length() > MAX_LINE_LENGTH) {
+						json.beginObject().member("line", lineCount + 1).member("error", LINE_TOO_LONG).endObject().newLine();
+					}
+					break;
+				}
+
+				final int length = line.length();
+				final String emailAddress = line.substring(0, length > 0 && line.charAt(length - 1) == '\r' ? length - 1 : length);
+				json.result(emailAddress, mValidator.validate(emailAddress, result)).newLine();
+				lineCount++;
+			}
+			json.flush();
+			return lineCount;
+		}
+	}
+
+	private final class MetricsHandler extends EndpointHandler {
+		MetricsHandler() {
+			super(mMetricsEndpoint);
+		}
+
+		@Override
+		long handleRequest(HttpExchange exchange) throws IOException {
+			if (!exchange.getRequestURI().getPath().equals("/metrics")) {
+				sendError(exchange, 404, "Not found");
+				return 0;
+			} else if (!checkMethod(exchange, "GET")) {
+				return 0;
+			}
+
+			StringWriter json = new StringWriter();
+			writeMetrics(new JsonWriter(json));
+			sendJson(exchange, 200, json);
+			return 0;
+		}
+	}
+
+	private static final class RequestThreadFactory implements ThreadFactory {
+		private final AtomicInteger mThreadCount = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "ValidationServer-request-" + mThreadCount.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * ValidationServerTestCase
+ *
+ * Copyright (C) 2013 SpotHero
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.spothero.emailvalidator.server;
+
+import com.spothero.emailvalidator.EmailValidator;
+import com.spothero.emailvalidator.EmailValidatorConfiguration;
+import com.spothero.emailvalidator.StripedValidationMetrics;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+
+public class ValidationServerTestCase extends TestCase {
+
+	private ValidationServer mServer;
+
+	@Override
+	protected void setUp() throws Exception {
+		EmailValidatorConfiguration configuration = new EmailValidatorConfiguration();
+		configuration.metrics = new StripedValidationMetrics();
+		mServer = new ValidationServer(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), new EmailValidator(configuration), 4, false);
+		mServer.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mServer.stop();
+	}
+
+	public void testValidate() throws Throwable {
+		Assert.assertEquals("200 {\"address\":\"test@gamil.con\",\"valid\":true,\"error\":null,\"suggestion\":\"test@gmail.com\",\"dictionaryVersion\":0}",
+				request("GET", "validate?address=test%40gamil.con", null));
+		Assert.assertEquals("200 {\"address\":\"not an address\",\"valid\":false,\"error\":\"INVALID_SYNTAX\",\"suggestion\":null,\"dictionaryVersion\":0}",
+				request("GET", "validate?other=1&address=not+an+address", null));
+		Assert.assertEquals("200 {\"address\":\"j\u00f6rg@gmail.con\",\"valid\":true,\"error\":null,\"suggestion\":\"j\u00f6rg@gmail.com\",\"dictionaryVersion\":0}",
+				request("GET", "validate?address=j%C3%B6rg%40gmail.con", null));
+
+		Assert.assertEquals("400 {\"error\":\"Missing address parameter\"}", request("GET", "validate", null));
+		Assert.assertEquals("405 {\"error\":\"Use GET\"}", request("POST", "validate?address=test%40gmail.com", ""));
+		Assert.assertEquals("404 {\"error\":\"Not found\"}", request("GET", "validate/other?address=test%40gmail.com", null));
+	}
+
+	public void testBatch() throws Throwable {
+		Assert.assertEquals("200 {\"address\":\"test@gamil.con\",\"valid\":true,\"error\":null,\"suggestion\":\"test@gmail.com\",\"dictionaryVersion\":0}\n"
+				+ "{\"address\":\"\",\"valid\":false,\"error\":\"BLANK_ADDRESS\",\"suggestion\":null,\"dictionaryVersion\":0}\n"
+				+ "{\"address\":\"\\\"quoted\\\"\\t@gmail.com\",\"valid\":false,\"error\":\"INVALID_SYNTAX\",\"suggestion\":null,\"dictionaryVersion\":0}\n"
+				+ "{\"address\":\"test@spothero.com\",\"valid\":true,\"error\":null,\"suggestion\":null,\"dictionaryVersion\":0}\n",
+				request("POST", "validate/batch", "test@gamil.con\r\n\n\"quoted\"\t@gmail.com\ntest@spothero.com"));
+
+		Assert.assertEquals("200 ", request("POST", "validate/batch", ""));
+		Assert.assertEquals("405 {\"error\":\"Use POST\"}", request("GET", "validate/batch", null));
+	}
+
+	public void testBatchLineTooLong() throws Throwable {
+		StringBuilder body = new StringBuilder("test@spothero.com\n");
+		for (int i = 0; i <= ValidationServer.MAX_LINE_LENGTH; i++) {
+			body.append('a');
+		}
+		body.append("\ntest@gmail.com\n");
+
+		Assert.assertEquals("200 {\"address\":\"test@spothero.com\",\"valid\":true,\"error\":null,\"suggestion\":null,\"dictionaryVersion\":0}\n"
+				+ "{\"line\":2,\"error\":\"LINE_TOO_LONG\"}\n", request("POST", "validate/batch", body.toString()));
+	}
+
+	public void testBatchStreams() throws Throwable {
+		// The first result has to come back before the rest of the body is sent
+		Socket socket = new Socket(InetAddress.getByName("127.0.0.1"), mServer.getPort());
+		try {
+			socket.setSoTimeout(10000);
+			OutputStream output = socket.getOutputStream();
+			InputStream input = socket.getInputStream();
+			output.write(("POST /validate/batch HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n"
+					+ "f\r\ntest@gamil.con\n\r\n").getBytes("UTF-8"));
+			output.flush();
+			Assert.assertTrue(readUntil(input, "\"suggestion\":\"test@gmail.com\"").startsWith("HTTP/1.1 200"));
+
+			output.write("11\r\ntest@hotmial.com\n\r\n0\r\n\r\n".getBytes("UTF-8"));
+			output.flush();
+			readUntil(input, "\"suggestion\":\"test@hotmail.com\"");
+		} finally {
+			socket.close();
+		}
+	}
+
+	public void testMetrics() throws Throwable {
+		request("GET", "validate?address=test%40gamil.con", null);
+		request("GET", "validate", null);
+		request("POST", "validate/batch", "test@gmail.com\nnot an address\n");
+
+		String metrics = request("GET", "metrics", null);
+		Assert.assertTrue(metrics, metrics.startsWith("200 {\"threads\":\"" + (mServer.isUsingVirtualThreads() ? "virtual" : "platform") + "\",\"dictionaryVersion\":0,"));
+		Assert.assertTrue(metrics, metrics.contains("\"validate\":{\"requests\":2,\"failedRequests\":1,\"addresses\":1,"));
+		Assert.assertTrue(metrics, metrics.contains("\"batch\":{\"requests\":1,\"failedRequests\":0,\"addresses\":2,"));
+		Assert.assertTrue(metrics, metrics.contains("\"addresses\":{\"passed\":2,\"failed\":{\"BLANK_ADDRESS\":0,\"INVALID_SYNTAX\":1,"));
+		Assert.assertTrue(metrics, metrics.contains("\"SYNTAX_CHECK\":{\"count\":3,"));
+	}
+
+	public void testQueryParameters() throws Throwable {
+		Assert.assertNull(ValidationServer.getQueryParameter(null, "address"));
+		Assert.assertNull(ValidationServer.getQueryParameter("", "address"));
+		Assert.assertNull(ValidationServer.getQueryParameter("addresses=a", "address"));
+		Assert.assertEquals("", ValidationServer.getQueryParameter("address", "address"));
+		Assert.assertEquals("", ValidationServer.getQueryParameter("a=1&address=", "address"));
+		Assert.assertEquals("a b@c=d", ValidationServer.getQueryParameter("x&address=a+b%40c%3Dd&address=second", "address"));
+
+		try {
+			ValidationServer.getQueryParameter("address=%zz", "address");
+			Assert.fail("Malformed escape was accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	public void testLoadGenerator() throws Throwable {
+		LoadGenerator.Report report = new LoadGenerator(new URL("http://127.0.0.1:" + mServer.getPort() + "/"), 8).run(400);
+		Assert.assertEquals(0, report.failedCount);
+		Assert.assertEquals(400, report.latencies.length);
+		Assert.assertTrue(report.getPercentile(50) > 0);
+		Assert.assertTrue(report.getPercentile(50) <= report.getPercentile(99));
+		Assert.assertTrue(report.getPercentile(99) <= report.getPercentile(100));
+		Assert.assertEquals(report.latencies[report.latencies.length - 1], report.getPercentile(100));
+
+		String metrics = request("GET", "metrics", null);
+		Assert.assertTrue(metrics, metrics.contains("\"validate\":{\"requests\":400,\"failedRequests\":0,\"addresses\":400,"));
+	}
+
+	// The status code and body of a response, separated by a space
+	private String request(String method, String path, String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection)new URL("http://127.0.0.1:" + mServer.getPort() + "/" + path).openConnection();
+		try {
+			connection.setRequestMethod(method);
+			if (body != null) {
+				connection.setDoOutput(true);
+				OutputStream output = connection.getOutputStream();
+				output.write(body.getBytes("UTF-8"));
+				output.close();
+			}
+
+			final int status = connection.getResponseCode();
+			InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+			ByteArrayOutputStream response = new ByteArrayOutputStream();
+			if (input != null) {
+				byte[] buffer = new byte[4096];
+				int count;
+				while ((count = input.read(buffer)) >= 0) {
+					response.write(buffer, 0, count);
+				}
+				input.close();
+			}
+			return status + " " + response.toString("UTF-8");
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	// Reads from a stream until what has been read contains the given text, returning everything read
+	private static String readUntil(InputStream input, String text) throws IOException {
+		ByteArrayOutputStream read = new ByteArrayOutputStream();
+		while (!read.toString("UTF-8").contains(text)) {
+			final int b = input.read();
+			if (b < 0) {
+				Assert.fail("Stream ended before " + text + " in " + read.toString("UTF-8"));
+			}
+			read.write(b);
+		}
+		return read.toString("UTF-8");
+	}
+}